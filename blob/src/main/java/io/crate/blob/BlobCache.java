@@ -0,0 +1,236 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.blob;
+
+import com.google.common.cache.*;
+import io.crate.blob.exceptions.DigestNotFoundException;
+import io.crate.blob.stats.BlobStats;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * caches open file channels and the size of blobs of a blob shard.
+ * Optionally the content of small blobs is kept in direct (off-heap) buffers.
+ *
+ * Blobs are immutable, so only delete operations need to invalidate cached entries.
+ */
+public class BlobCache {
+
+    public static final String SETTING_OPEN_FILES = "blobs.cache.open_files";
+    public static final String SETTING_CONTENT_SIZE = "blobs.cache.content.size";
+    public static final String SETTING_CONTENT_MAX_BLOB_SIZE = "blobs.cache.content.max_blob_size";
+
+    public static final int DEFAULT_OPEN_FILES = 1000;
+    public static final ByteSizeValue DEFAULT_CONTENT_SIZE = new ByteSizeValue(0);
+    public static final ByteSizeValue DEFAULT_CONTENT_MAX_BLOB_SIZE = new ByteSizeValue(64, ByteSizeUnit.KB);
+
+    private static final ESLogger logger = Loggers.getLogger(BlobCache.class);
+
+    private final BlobContainer container;
+    private final Cache<String, OpenBlob> openBlobs;
+
+    @Nullable
+    private final Cache<String, ByteBuffer> contents;
+    private final long contentMaxBlobSize;
+
+    public BlobCache(BlobContainer container, Settings settings) {
+        this.container = container;
+        this.openBlobs = CacheBuilder.newBuilder()
+                .maximumSize(settings.getAsInt(SETTING_OPEN_FILES, DEFAULT_OPEN_FILES))
+                .recordStats()
+                .removalListener(new RemovalListener<String, OpenBlob>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<String, OpenBlob> notification) {
+                        // release the reference held by the cache,
+                        // the channel is closed once all ongoing transfers are done
+                        notification.getValue().release();
+                    }
+                })
+                .build();
+
+        long contentSize = settings.getAsBytesSize(SETTING_CONTENT_SIZE, DEFAULT_CONTENT_SIZE).bytes();
+        this.contentMaxBlobSize = Math.min(contentSize,
+                settings.getAsBytesSize(SETTING_CONTENT_MAX_BLOB_SIZE, DEFAULT_CONTENT_MAX_BLOB_SIZE).bytes());
+        if (contentSize > 0) {
+            this.contents = CacheBuilder.newBuilder()
+                    .maximumWeight(contentSize)
+                    .weigher(new Weigher<String, ByteBuffer>() {
+                        @Override
+                        public int weigh(String key, ByteBuffer value) {
+                            return value.capacity();
+                        }
+                    })
+                    .recordStats()
+                    .build();
+        } else {
+            this.contents = null;
+        }
+    }
+
+    /**
+     * returns an open blob with an acquired reference.
+     * {@link OpenBlob#release()} must be called once the blob isn't used anymore.
+     *
+     * @throws DigestNotFoundException if the blob doesn't exist
+     */
+    public OpenBlob acquire(String digest) {
+        OpenBlob openBlob = openBlobs.getIfPresent(digest);
+        if (openBlob != null && openBlob.tryAcquire()) {
+            return openBlob;
+        }
+        if (!container.exists(digest)) {
+            throw new DigestNotFoundException(digest);
+        }
+        try {
+            openBlob = new OpenBlob(new RandomAccessFile(container.getFile(digest), "r").getChannel());
+        } catch (FileNotFoundException e) {
+            throw new DigestNotFoundException(digest);
+        } catch (IOException e) {
+            throw new BlobWriteException(digest, 0, e);
+        }
+        openBlob.tryAcquire();
+        openBlobs.put(digest, openBlob);
+        return openBlob;
+    }
+
+    /**
+     * @return the size of the blob or -1 if it doesn't exist
+     */
+    public long length(String digest) {
+        return container.length(digest);
+    }
+
+    /**
+     * returns the content of the blob from the content cache. Blobs that are small enough are loaded
+     * into the cache on the first access.
+     *
+     * @return a buffer with the content or null if the content cache is disabled or the blob is too large
+     */
+    @Nullable
+    public ByteBuffer content(String digest, OpenBlob openBlob) throws IOException {
+        if (contents == null || openBlob.length() > contentMaxBlobSize) {
+            return null;
+        }
+        ByteBuffer content = contents.getIfPresent(digest);
+        if (content == null) {
+            content = ByteBuffer.allocateDirect((int) openBlob.length());
+            while (content.hasRemaining()) {
+                if (openBlob.channel().read(content, content.position()) < 0) {
+                    throw new EOFException(String.format("blob %s is shorter than expected", digest));
+                }
+            }
+            content.flip();
+            contents.put(digest, content);
+        }
+        return content.duplicate();
+    }
+
+    public void invalidate(String digest) {
+        openBlobs.invalidate(digest);
+        if (contents != null) {
+            contents.invalidate(digest);
+        }
+    }
+
+    public void clear() {
+        openBlobs.invalidateAll();
+        if (contents != null) {
+            contents.invalidateAll();
+        }
+    }
+
+    public void stats(BlobStats stats) {
+        CacheStats openBlobStats = openBlobs.stats();
+        stats.cacheOpenFiles(openBlobs.size());
+        stats.cacheHits(openBlobStats.hitCount());
+        stats.cacheMisses(openBlobStats.missCount());
+        if (contents != null) {
+            CacheStats contentStats = contents.stats();
+            long contentSize = 0;
+            for (ByteBuffer content : contents.asMap().values()) {
+                contentSize += content.capacity();
+            }
+            stats.contentCacheSize(contentSize);
+            stats.contentCacheHits(contentStats.hitCount());
+            stats.contentCacheMisses(contentStats.missCount());
+            stats.contentCacheEvictions(contentStats.evictionCount());
+        }
+    }
+
+    /**
+     * a reference counted open blob file. The cache holds one reference until the entry is removed,
+     * every reader holds one until its transfer is done.
+     */
+    public static class OpenBlob {
+
+        private final FileChannel channel;
+        private final long length;
+        private final AtomicInteger refCount = new AtomicInteger(1);
+
+        OpenBlob(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.length = channel.size();
+        }
+
+        public FileChannel channel() {
+            return channel;
+        }
+
+        public long length() {
+            return length;
+        }
+
+        boolean tryAcquire() {
+            int refs;
+            do {
+                refs = refCount.get();
+                if (refs <= 0) {
+                    return false;
+                }
+            } while (!refCount.compareAndSet(refs, refs + 1));
+            return true;
+        }
+
+        public void release() {
+            if (refCount.decrementAndGet() == 0) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    logger.warn("could not close blob file channel", e);
+                }
+            }
+        }
+    }
+}
@@ -23,7 +23,6 @@ package io.crate.blob;
 
 import io.crate.blob.exceptions.DigestNotFoundException;
 import io.crate.common.Hex;
-import org.elasticsearch.ElasticsearchIllegalStateException;
 import org.elasticsearch.common.io.FileSystemUtils;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
@@ -31,9 +30,8 @@ import org.elasticsearch.common.logging.Loggers;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FilenameFilter;
+import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.UUID;
 
 public class BlobContainer {
@@ -56,15 +54,24 @@ public class BlobContainer {
     private final File baseDirectory;
     private final File tmpDirectory;
     private final File varDirectory;
+    private final File indexDirectory;
+    private final BlobDigestIndex digestIndex;
 
     public BlobContainer(File baseDirectory) {
         this.baseDirectory = baseDirectory;
         this.tmpDirectory = new File(baseDirectory, "tmp");
         this.varDirectory = new File(baseDirectory, "var");
+        this.indexDirectory = new File(baseDirectory, "index");
         FileSystemUtils.mkdirs(this.varDirectory);
         FileSystemUtils.mkdirs(this.tmpDirectory);
+        FileSystemUtils.mkdirs(this.indexDirectory);
 
         createSubDirectories(this.varDirectory);
+        cleanTmpDirectory();
+        this.digestIndex = new BlobDigestIndex(indexDirectory);
+        if (!digestIndex.load()) {
+            rebuildDigestIndex();
+        }
     }
 
     /**
@@ -81,6 +88,44 @@ public class BlobContainer {
         }
     }
 
+    /**
+     * no transfers are active while the container is created,
+     * so all files in the tmp directory are leftovers of interrupted uploads or recoveries
+     */
+    private void cleanTmpDirectory() {
+        File[] files = tmpDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!file.delete()) {
+                logger.error("Could not delete {}", file);
+            }
+        }
+    }
+
+    /**
+     * walks all blob files once to fill the digest index.
+     * files with a .X suffix are leftovers from a previous recovery and are deleted.
+     */
+    private void rebuildDigestIndex() {
+        logger.debug("rebuilding blob digest index of {}", baseDirectory);
+        for (File dir : subDirs) {
+            File[] files = dir.listFiles();
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                byte[] digest = BlobDigestIndex.digestBytes(file.getName());
+                if (digest != null) {
+                    digestIndex.put(digest, file.length());
+                } else if (!file.delete()) {
+                    logger.error("Could not delete {}", file);
+                }
+            }
+        }
+    }
+
     public interface FileVisitor {
 
         public boolean visit(File file);
@@ -105,46 +150,14 @@ public class BlobContainer {
      * get all digests in a subfolder
      * the digests are returned as byte[][] instead as String[] to save overhead in the BlobRecovery
      *
-     * incomplete files leftover from a previous recovery are deleted.
+     * the digests are read from the digest index, leftover files from a previous recovery have been
+     * deleted when the index was built.
      *
      * @param prefix the subfolder for which to get the digests
      * @return byte array containing the digests (digest = byte[20])
      */
     public byte[][] cleanAndReturnDigests(byte prefix) {
-        int index = prefix & 0xFF;  // byte is signed and may be negative, convert to int to get correct index
-        String[] names = cleanDigests(subDirs[index].list(), index);
-        byte[][] digests = new byte[names.length][];
-        for(int i = 0; i < names.length; i ++){
-            try {
-                digests[i] = Hex.decodeHex(names[i]);
-            } catch (ElasticsearchIllegalStateException ex) {
-                logger.error("Can't convert string {} to byte array", names[i]);
-                throw ex;
-            }
-        }
-        return digests;
-    }
-
-    /**
-     * delete all digests that have a .X suffix.
-     * they are leftover files from a previous recovery that was interrupted
-     */
-    private String[] cleanDigests(String[] names, int index) {
-        if (names == null) {
-            return null;
-        }
-        List<String> newNames = new ArrayList<>(names.length);
-        for (String name : names) {
-            if (name.contains(".")) {
-                if (!new File(subDirs[index], name).delete()) {
-                    logger.error("Could not delete {}/{}", subDirs[index], name);
-                }
-            } else {
-                newNames.add(name);
-            }
-        }
-
-        return newNames.toArray(new String[newNames.size()]);
+        return digestIndex.digests(prefix);
     }
 
     public File getBaseDirectory() {
@@ -164,7 +177,85 @@ public class BlobContainer {
     }
 
     public boolean exists(String digest) {
-        return getFile(digest).exists();
+        return length(digest) >= 0;
+    }
+
+    /**
+     * @return the size of the blob or -1 if it doesn't exist
+     */
+    public long length(String digest) {
+        byte[] digestBytes = BlobDigestIndex.digestBytes(digest);
+        if (digestBytes == null) {
+            return -1;
+        }
+        return digestIndex.length(digestBytes);
+    }
+
+    /**
+     * @return the number of blobs in this container
+     */
+    public long count() {
+        return digestIndex.count();
+    }
+
+    /**
+     * @return the size of all blobs in this container in bytes
+     */
+    public long totalSize() {
+        return digestIndex.totalSize();
+    }
+
+    /**
+     * moves a completely written file into the container and adds it to the digest index.
+     * if the blob exists already the file is deleted.
+     *
+     * @return the file of the blob
+     */
+    public File commit(File source, String digest) {
+        File target = getFile(digest);
+        byte[] digestBytes = Hex.decodeHex(digest);
+        synchronized (digestIndex) {
+            if (digestIndex.length(digestBytes) >= 0) {
+                logger.info("target file {} exists already.", digest);
+                if (!source.delete()) {
+                    logger.error("Could not delete {}", source);
+                }
+                return target;
+            }
+            long size = source.length();
+            if (!source.renameTo(target)) {
+                throw new BlobWriteException(digest, size, null);
+            }
+            digestIndex.put(digestBytes, size);
+        }
+        return target;
+    }
+
+    /**
+     * removes the blob from the digest index and deletes its file
+     *
+     * @return true if the file has been deleted
+     */
+    public boolean delete(String digest) {
+        byte[] digestBytes = BlobDigestIndex.digestBytes(digest);
+        if (digestBytes == null) {
+            return false;
+        }
+        synchronized (digestIndex) {
+            digestIndex.remove(digestBytes);
+            return getFile(digest).delete();
+        }
+    }
+
+    /**
+     * persists the digest index so that it doesn't have to be rebuilt on the next start
+     */
+    public void close() {
+        try {
+            digestIndex.close();
+        } catch (IOException e) {
+            logger.warn("could not persist blob digest index of {}", e, baseDirectory);
+        }
     }
 
     public DigestBlob createBlob(String digest, UUID transferId) {
@@ -0,0 +1,372 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.blob;
+
+import io.crate.common.Hex;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.ElasticsearchIllegalStateException;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * in-memory index of all blobs of a {@link BlobContainer} keyed by their digest.
+ *
+ * For every prefix the digests and sizes are kept as sorted fixed-size entries in an off-heap buffer.
+ * Changes are collected in small pending sets which are merged into the sorted entries once they grow
+ * too large, so lookups are a binary search and never hit the filesystem.
+ *
+ * The index is persisted on {@link #close()} with one file per prefix. A marker file records that the
+ * persisted state is complete; if it is missing on startup the index has to be rebuilt from the blob files.
+ */
+public class BlobDigestIndex {
+
+    private static final ESLogger logger = Loggers.getLogger(BlobDigestIndex.class);
+
+    public static final int DIGEST_LENGTH = 20;
+    static final int ENTRY_LENGTH = DIGEST_LENGTH + 8;
+    static final int MIN_PENDING_CHANGES = 1024;
+    static final String CLEAN_MARKER = "clean";
+
+    private final File indexDirectory;
+    private final PrefixIndex[] prefixes = new PrefixIndex[BlobContainer.SUB_DIRS.length];
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalSize = new AtomicLong();
+
+    public BlobDigestIndex(File indexDirectory) {
+        this.indexDirectory = indexDirectory;
+        for (int i = 0; i < prefixes.length; i++) {
+            prefixes[i] = new PrefixIndex();
+        }
+    }
+
+    /**
+     * loads the index persisted by a previous {@link #close()}.
+     *
+     * @return false if there is no complete persisted index, the index is empty in that case
+     * and has to be rebuilt using {@link #put(byte[], long)}
+     */
+    public boolean load() {
+        File marker = new File(indexDirectory, CLEAN_MARKER);
+        if (!marker.exists()) {
+            return false;
+        }
+        try {
+            for (int i = 0; i < prefixes.length; i++) {
+                prefixes[i].load(new File(indexDirectory, BlobContainer.SUB_DIRS[i]));
+            }
+        } catch (IOException e) {
+            logger.warn("could not load blob digest index from {}, rebuilding it", e, indexDirectory);
+            clear();
+            return false;
+        }
+        // once files are added or removed the persisted index is stale until it is written again
+        if (!marker.delete()) {
+            logger.warn("could not delete {}, rebuilding blob digest index", marker);
+            clear();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * writes the index to disk so that it can be loaded on the next start without walking the blob files
+     */
+    public void close() throws IOException {
+        for (int i = 0; i < prefixes.length; i++) {
+            prefixes[i].persist(new File(indexDirectory, BlobContainer.SUB_DIRS[i]));
+        }
+        File marker = new File(indexDirectory, CLEAN_MARKER);
+        if (!marker.createNewFile() && !marker.exists()) {
+            throw new IOException("could not create " + marker);
+        }
+    }
+
+    /**
+     * @return the size of the blob or -1 if the index doesn't contain the digest
+     */
+    public long length(byte[] digest) {
+        return prefix(digest).length(new BytesRef(digest));
+    }
+
+    /**
+     * @return true if the digest was added, false if the index contained it already
+     */
+    public boolean put(byte[] digest, long size) {
+        if (prefix(digest).put(new BytesRef(digest), size)) {
+            count.incrementAndGet();
+            totalSize.addAndGet(size);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the digest was removed, false if the index didn't contain it
+     */
+    public boolean remove(byte[] digest) {
+        long size = prefix(digest).remove(new BytesRef(digest));
+        if (size < 0) {
+            return false;
+        }
+        count.decrementAndGet();
+        totalSize.addAndGet(-size);
+        return true;
+    }
+
+    /**
+     * @return all digests starting with the given prefix in ascending order
+     */
+    public byte[][] digests(byte prefix) {
+        return prefixes[prefix & 0xFF].digests();
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    public long totalSize() {
+        return totalSize.get();
+    }
+
+    private void clear() {
+        for (PrefixIndex prefix : prefixes) {
+            prefix.clear();
+        }
+        count.set(0);
+        totalSize.set(0);
+    }
+
+    private PrefixIndex prefix(byte[] digest) {
+        assert digest.length == DIGEST_LENGTH : "invalid digest length " + digest.length;
+        return prefixes[digest[0] & 0xFF];
+    }
+
+    /**
+     * @return the digest as bytes or null if it isn't a valid sha1 hex string
+     */
+    public static byte[] digestBytes(String digest) {
+        if (digest == null || digest.length() != DIGEST_LENGTH * 2) {
+            return null;
+        }
+        try {
+            return Hex.decodeHex(digest);
+        } catch (ElasticsearchIllegalStateException e) {
+            return null;
+        }
+    }
+
+    private class PrefixIndex {
+
+        private ByteBuffer entries = ByteBuffer.allocateDirect(0);
+        private int numEntries = 0;
+        private final TreeMap<BytesRef, Long> added = new TreeMap<>();
+        private final Set<BytesRef> removed = new HashSet<>();
+
+        synchronized void load(File file) throws IOException {
+            if (!file.exists()) {
+                return;
+            }
+            try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+                long fileSize = channel.size();
+                if (fileSize % ENTRY_LENGTH != 0) {
+                    throw new IOException("corrupted blob digest index file " + file);
+                }
+                ByteBuffer buffer = ByteBuffer.allocateDirect((int) fileSize);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        throw new IOException("unexpected end of blob digest index file " + file);
+                    }
+                }
+                entries = buffer;
+                numEntries = (int) (fileSize / ENTRY_LENGTH);
+            }
+            for (int i = 0; i < numEntries; i++) {
+                long size = entries.getLong(i * ENTRY_LENGTH + DIGEST_LENGTH);
+                count.incrementAndGet();
+                totalSize.addAndGet(size);
+            }
+        }
+
+        synchronized void persist(File file) throws IOException {
+            merge();
+            try (FileChannel channel = new RandomAccessFile(file, "rw").getChannel()) {
+                channel.truncate(0);
+                ByteBuffer buffer = entries.duplicate();
+                buffer.clear();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+        }
+
+        synchronized long length(BytesRef digest) {
+            Long size = added.get(digest);
+            if (size != null) {
+                return size;
+            }
+            if (removed.contains(digest)) {
+                return -1;
+            }
+            int idx = search(digest);
+            return idx < 0 ? -1 : entries.getLong(idx * ENTRY_LENGTH + DIGEST_LENGTH);
+        }
+
+        synchronized boolean put(BytesRef digest, long size) {
+            if (removed.remove(digest)) {
+                return true;
+            }
+            if (added.containsKey(digest) || search(digest) >= 0) {
+                return false;
+            }
+            added.put(digest, size);
+            maybeMerge();
+            return true;
+        }
+
+        synchronized long remove(BytesRef digest) {
+            Long size = added.remove(digest);
+            if (size != null) {
+                return size;
+            }
+            if (removed.contains(digest)) {
+                return -1;
+            }
+            int idx = search(digest);
+            if (idx < 0) {
+                return -1;
+            }
+            removed.add(digest);
+            maybeMerge();
+            return entries.getLong(idx * ENTRY_LENGTH + DIGEST_LENGTH);
+        }
+
+        synchronized byte[][] digests() {
+            merge();
+            byte[][] digests = new byte[numEntries][DIGEST_LENGTH];
+            ByteBuffer buffer = entries.duplicate();
+            for (int i = 0; i < numEntries; i++) {
+                buffer.position(i * ENTRY_LENGTH);
+                buffer.get(digests[i]);
+            }
+            return digests;
+        }
+
+        synchronized void clear() {
+            entries = ByteBuffer.allocateDirect(0);
+            numEntries = 0;
+            added.clear();
+            removed.clear();
+        }
+
+        /**
+         * binary search on the sorted entries, comparing the digests as unsigned bytes like {@link BytesRef}
+         */
+        private int search(BytesRef digest) {
+            int low = 0;
+            int high = numEntries - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compare(mid, digest);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        private int compare(int idx, BytesRef digest) {
+            int offset = idx * ENTRY_LENGTH;
+            for (int i = 0; i < DIGEST_LENGTH; i++) {
+                int diff = (entries.get(offset + i) & 0xFF) - (digest.bytes[digest.offset + i] & 0xFF);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return 0;
+        }
+
+        private void maybeMerge() {
+            if (added.size() + removed.size() > Math.max(MIN_PENDING_CHANGES, numEntries / 16)) {
+                merge();
+            }
+        }
+
+        /**
+         * merges the pending changes into the sorted entries
+         */
+        private void merge() {
+            if (added.isEmpty() && removed.isEmpty()) {
+                return;
+            }
+            int newNumEntries = numEntries - removed.size() + added.size();
+            ByteBuffer merged = ByteBuffer.allocateDirect(newNumEntries * ENTRY_LENGTH);
+            byte[] digest = new byte[DIGEST_LENGTH];
+            BytesRef current = new BytesRef(digest);
+            Iterator<Map.Entry<BytesRef, Long>> it = added.entrySet().iterator();
+            Map.Entry<BytesRef, Long> next = it.hasNext() ? it.next() : null;
+            for (int i = 0; i < numEntries; i++) {
+                int offset = i * ENTRY_LENGTH;
+                for (int j = 0; j < DIGEST_LENGTH; j++) {
+                    digest[j] = entries.get(offset + j);
+                }
+                while (next != null && next.getKey().compareTo(current) < 0) {
+                    writeEntry(merged, next.getKey(), next.getValue());
+                    next = it.hasNext() ? it.next() : null;
+                }
+                if (!removed.contains(current)) {
+                    writeEntry(merged, current, entries.getLong(offset + DIGEST_LENGTH));
+                }
+            }
+            while (next != null) {
+                writeEntry(merged, next.getKey(), next.getValue());
+                next = it.hasNext() ? it.next() : null;
+            }
+            assert !merged.hasRemaining() : "merged blob digest index entries don't match the expected size";
+            entries = merged;
+            numEntries = newNumEntries;
+            added.clear();
+            removed.clear();
+        }
+
+        private void writeEntry(ByteBuffer buffer, BytesRef digest, long size) {
+            buffer.put(digest.bytes, digest.offset, DIGEST_LENGTH);
+            buffer.putLong(size);
+        }
+    }
+}
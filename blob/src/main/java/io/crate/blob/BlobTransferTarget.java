@@ -36,7 +36,6 @@ import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.*;
 
-import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
@@ -88,9 +87,8 @@ public class BlobTransferTarget extends AbstractComponent {
         logger.debug("startTransfer {} {}", request.transferId(), request.isLast());
 
         BlobShard blobShard = blobIndices.blobShardSafe(request.index(), shardId);
-        File existing = blobShard.blobContainer().getFile(request.id());
-        long size = existing.length();
-        if (existing.exists()) {
+        long size = blobShard.blobContainer().length(request.id());
+        if (size >= 0) {
             // the file exists
             response.status(RemoteDigestBlob.Status.EXISTS);
             response.size(size);
@@ -40,16 +40,25 @@ import java.util.concurrent.atomic.AtomicLong;
 
 public class DigestBlob {
 
+    /**
+     * number of bytes after which the written content is synced to disk.
+     * Syncing in batches prevents a single huge fsync on the last chunk of large uploads.
+     */
+    static final long SYNC_INTERVAL_BYTES = 16 * 1024 * 1024;
+
     private final String digest;
     private final BlobContainer container;
     private final UUID transferId;
     protected File file;
     private FileChannel fileChannel;
     private FileChannel headFileChannel;
-    private int size;
+    private long size;
+    private long unsyncedBytes;
     private long headLength;
     private AtomicLong headSize;
-    private MessageDigest md;
+    private final MessageDigest md;
+    private final Object digestLock = new Object();
+    private boolean tailDigested;
     private long chunks;
     private CountDownLatch headCatchedUpLatch;
     private static final ESLogger logger = Loggers.getLogger(DigestBlob.class);
@@ -59,13 +68,18 @@ public class DigestBlob {
         this.container = container;
         this.size = 0;
         this.transferId = transferId;
+        try {
+            this.md = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new BlobWriteException(digest, 0, e);
+        }
     }
 
     public String getDigest() {
         return digest;
     }
 
-    public int size() {
+    public long size() {
         return size;
     }
 
@@ -84,51 +98,58 @@ public class DigestBlob {
         return tmpFile;
     }
 
-    private void updateDigest(ByteBuffer bbf) throws IOException {
-        if (md == null){
-            try {
-                md = MessageDigest.getInstance("SHA-1");
-            } catch (NoSuchAlgorithmException e) {
-                throw new IOException(e);
-            }
+    private void openFileChannel() throws IOException {
+        if (file == null) {
+            file = createTmpFile();
+        }
+        if (fileChannel == null) {
+            FileOutputStream outputStream = new FileOutputStream(file);
+            fileChannel = outputStream.getChannel();
+        }
+    }
+
+    /**
+     * feed the buffers to the digest without modifying their positions,
+     * so that the very same buffers can be written to the file afterwards.
+     */
+    private void updateDigest(ByteBuffer[] byteBuffers) {
+        for (ByteBuffer byteBuffer : byteBuffers) {
+            md.update(byteBuffer.duplicate());
         }
-        md.update(bbf.slice());
     }
 
     private void addContent(ChannelBuffer buffer, boolean last) throws IOException {
         if (buffer != null) {
             int readableBytes = buffer.readableBytes();
-            ByteBuffer byteBuffer = buffer.toByteBuffer();
-            if (file == null) {
-                file = createTmpFile();
-            }
-            if (fileChannel == null) {
-                FileOutputStream outputStream = new FileOutputStream(file);
-                fileChannel = outputStream.getChannel();
-            }
+            // toByteBuffers() doesn't copy composite buffers, they are written using a gathering write
+            ByteBuffer[] byteBuffers = buffer.toByteBuffers();
+            openFileChannel();
 
-            int written = 0;
-            do {
-                if (headLength == 0) {
-                    updateDigest(byteBuffer);
+            long written = 0;
+            synchronized (digestLock) {
+                if (headLength == 0 || tailDigested) {
+                    updateDigest(byteBuffers);
+                }
+                while (written < readableBytes) {
+                    written += fileChannel.write(byteBuffers);
                 }
-                written += fileChannel.write(byteBuffer);
-            } while (written < readableBytes);
-            size += readableBytes;
-            buffer.readerIndex(buffer.readerIndex() + written);
+                size += written;
+            }
+            buffer.readerIndex(buffer.readerIndex() + (int) written);
             chunks ++;
+
+            unsyncedBytes += written;
+            if (!last && unsyncedBytes >= SYNC_INTERVAL_BYTES) {
+                fileChannel.force(false);
+                unsyncedBytes = 0;
+            }
         }
         if (last) {
-            if (file == null) {
-                file = createTmpFile();
-            }
-            if (fileChannel == null) {
-                FileOutputStream outputStream = new FileOutputStream(file);
-                fileChannel = outputStream.getChannel();
-            }
+            openFileChannel();
             fileChannel.force(false);
             fileChannel.close();
             fileChannel = null;
+            unsyncedBytes = 0;
         } else {
             if (buffer == null) {
                 throw new NullPointerException("buffer");
@@ -136,28 +157,35 @@ public class DigestBlob {
         }
     }
 
-    private void calculateDigest() {
+    /**
+     * feeds the tail content which was received before the head caught up to the digest.
+     * After this, all further content is digested incrementally in {@link #addContent(ChannelBuffer, boolean)}.
+     *
+     * Must be called while holding the digestLock.
+     */
+    private void digestTail() throws IOException {
         assert headSize.get() == headLength : "Head hasn't catched up, can't calculate digest";
-        try {
-            FileInputStream stream = new FileInputStream(file);
-            stream.skip(headLength);
-            byte[] buffer = new byte[4096];
-            int bytesRead;
-            while ((bytesRead = stream.read(buffer, 0, 4096)) > 0) {
-                md.update(buffer, 0, bytesRead);
+        try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            long position = headLength;
+            long end = headLength + size;
+            while (position < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                int bytesRead = channel.read(buffer, position);
+                if (bytesRead < 0) {
+                    break;
+                }
+                buffer.flip();
+                md.update(buffer);
+                position += bytesRead;
             }
-            stream.close();
-        } catch (IOException ex) {
-            logger.error("error accessing file to calculate digest", ex);
         }
+        tailDigested = true;
     }
 
     public File commit() throws DigestMismatchException {
-        if (headLength > 0) {
-            calculateDigest();
-        }
-
-        assert md != null;
+        assert headLength == 0 || tailDigested : "Head hasn't catched up, can't calculate digest";
         try {
             String contentDigest = Hex.encodeHexString(md.digest());
             if (!contentDigest.equals(digest)) {
@@ -168,9 +196,7 @@ public class DigestBlob {
             IOUtils.closeWhileHandlingException(headFileChannel);
             headFileChannel = null;
         }
-        File newFile = container.getFile(digest);
-        file.renameTo(newFile);
-        return newFile;
+        return container.commit(file, digest);
     }
 
     public void addContent(BytesReference content, boolean last){
@@ -186,18 +212,21 @@ public class DigestBlob {
             return;
         }
 
-        int written = 0;
+        long written = 0;
         ChannelBuffer channelBuffer = content.toChannelBuffer();
         int readableBytes = channelBuffer.readableBytes();
         assert readableBytes + headSize.get() <= headLength : "Got too many bytes in addToHead()";
 
-        ByteBuffer byteBuffer = channelBuffer.toByteBuffer();
+        ByteBuffer[] byteBuffers = channelBuffer.toByteBuffers();
+        updateDigest(byteBuffers);
         while (written < readableBytes) {
-            updateDigest(byteBuffer);
-            written += headFileChannel.write(byteBuffer);
+            written += headFileChannel.write(byteBuffers);
         }
         headSize.addAndGet(written);
         if (headSize.get() == headLength) {
+            synchronized (digestLock) {
+                digestTail();
+            }
             headCatchedUpLatch.countDown();
         }
     }
@@ -26,6 +26,7 @@ import io.crate.blob.BlobTransferTarget;
 import io.crate.blob.v2.BlobIndices;
 import io.crate.blob.v2.BlobShard;
 import io.crate.common.Hex;
+import org.apache.lucene.store.RateLimiter;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.common.StopWatch;
 import org.elasticsearch.common.bytes.BytesArray;
@@ -40,9 +41,11 @@ import org.elasticsearch.transport.*;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.concurrent.CountDownLatch;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -57,6 +60,10 @@ public class BlobRecoveryHandler {
     private final BlobTransferTarget blobTransferTarget;
     private final int GET_HEAD_TIMEOUT;
 
+    private static final int PENDING_TRANSFERS_PER_STREAM = 4;
+    private static final TransportRequestOptions RECOVERY_OPTIONS =
+        TransportRequestOptions.options().withType(TransportRequestOptions.Type.RECOVERY);
+
     public BlobRecoveryHandler(TransportService transportService,
                                RecoverySettings recoverySettings,
                                BlobTransferTarget blobTransferTarget,
@@ -77,12 +84,11 @@ public class BlobRecoveryHandler {
         }
     }
 
-    private Set<BytesArray> getExistingDigestsFromTarget(byte prefix) {
-        BlobStartPrefixResponse response =
-            (BlobStartPrefixResponse)transportService.submitRequest(
+    private BlobStartPrefixResponse syncPrefix(byte prefix, byte[][] localDigests) {
+        return (BlobStartPrefixResponse)transportService.submitRequest(
                 request.targetNode(),
                 BlobRecoveryTarget.Actions.START_PREFIX,
-                new BlobStartPrefixSyncRequest(request.recoveryId(), request.shardId(), prefix),
+                new BlobStartPrefixSyncRequest(request.recoveryId(), request.shardId(), prefix, localDigests),
                 TransportRequestOptions.options(),
                 new FutureTransportResponseHandler<TransportResponse>() {
                     @Override
@@ -91,12 +97,6 @@ public class BlobRecoveryHandler {
                     }
                 }
             ).txGet();
-
-        Set<BytesArray> result = new HashSet<BytesArray>();
-        for (byte[] digests : response.existingDigests) {
-            result.add(new BytesArray(digests));
-        }
-        return result;
     }
 
     public void phase1() throws Exception {
@@ -152,38 +152,62 @@ public class BlobRecoveryHandler {
     public void phase2() throws ElasticsearchException {
     }
 
+    /**
+     * syncs all prefixes one after another, but doesn't wait for the file transfers of a prefix to finish
+     * before the next prefix is synced. The transfers run concurrently on the recovery stream pools.
+     *
+     * The number of pending transfers is limited so that the pools' queues stay bounded.
+     */
     private void syncVarFiles(AtomicReference<Exception> lastException) throws InterruptedException {
+        ThreadPoolExecutor streamPool = recoverySettings.concurrentStreamPool();
+        ThreadPoolExecutor smallFileStreamPool = recoverySettings.concurrentSmallFileStreamPool();
+        int maxPendingTransfers = PENDING_TRANSFERS_PER_STREAM *
+            (streamPool.getMaximumPoolSize() + smallFileStreamPool.getMaximumPoolSize());
+        Semaphore pendingTransfers = new Semaphore(maxPendingTransfers);
 
-        for (byte prefix : BlobContainer.PREFIXES) {
-            // byte[1] and byte[1] have different hashCodes
-            // so setA.removeAll(setB) wouldn't work with byte[], that's why BytesArray is used here
-            Set<BytesArray> remoteDigests = getExistingDigestsFromTarget(prefix);
-            Set<BytesArray> localDigests = new HashSet<BytesArray>();
-            for (byte[] digest : blobShard.currentDigests(prefix)) {
-                localDigests.add(new BytesArray(digest));
-            }
-
-            Set<BytesArray> localButNotRemoteDigests = new HashSet<BytesArray>(localDigests);
-            localButNotRemoteDigests.removeAll(remoteDigests);
+        try {
+            for (byte prefix : BlobContainer.PREFIXES) {
+                if (lastException.get() != null) {
+                    break;
+                }
+                BlobStartPrefixResponse response = syncPrefix(prefix, blobShard.currentDigests(prefix));
 
-            final CountDownLatch latch = new CountDownLatch(localButNotRemoteDigests.size());
-            for (BytesArray digestBytes : localButNotRemoteDigests) {
-                final String digest = Hex.encodeHexString(digestBytes.toBytes());
-                logger.trace("[{}][{}] start to transfer file var/{} to {}",
-                    request.shardId().index().name(), request.shardId().id(), digest,
-                    request.targetNode().getName());
+                for (byte[] digestBytes : response.missingDigests) {
+                    final String digest = Hex.encodeHexString(digestBytes);
+                    File file = blobShard.blobContainer().getFile(digest);
+                    logger.trace("[{}][{}] start to transfer file var/{} to {}",
+                        request.shardId().index().name(), request.shardId().id(), digest,
+                        request.targetNode().getName());
 
-                recoverySettings.concurrentStreamPool().execute(
-                    new TransferFileRunnable(blobShard.blobContainer().getFile(digest),
-                        lastException, latch)
-                );
-            }
-            latch.await();
+                    ThreadPoolExecutor pool;
+                    if (blobShard.blobContainer().length(digest) > RecoverySettings.SMALL_FILE_CUTOFF_BYTES) {
+                        pool = streamPool;
+                    } else {
+                        pool = smallFileStreamPool;
+                    }
+                    pendingTransfers.acquire();
+                    try {
+                        pool.execute(new TransferFileRunnable(file, lastException, pendingTransfers));
+                    } catch (RejectedExecutionException e) {
+                        pendingTransfers.release();
+                        throw e;
+                    }
+                }
 
-            remoteDigests.removeAll(localDigests);
-            if (!remoteDigests.isEmpty()) {
-                deleteFilesRequest(remoteDigests.toArray(new BytesArray[remoteDigests.size()]));
+                List<BytesArray> deletableDigests = new ArrayList<>(response.unknownDigests.length);
+                for (byte[] digestBytes : response.unknownDigests) {
+                    // the blob might have been uploaded after the local digests have been read
+                    if (!blobShard.blobContainer().exists(Hex.encodeHexString(digestBytes))) {
+                        deletableDigests.add(new BytesArray(digestBytes));
+                    }
+                }
+                if (!deletableDigests.isEmpty()) {
+                    deleteFilesRequest(deletableDigests.toArray(new BytesArray[deletableDigests.size()]));
+                }
             }
+        } finally {
+            // wait until all pending transfers are done
+            pendingTransfers.acquire(maxPendingTransfers);
         }
     }
 
@@ -219,21 +243,32 @@ public class BlobRecoveryHandler {
         private final AtomicReference<Exception> lastException;
         private final String baseDir;
         private final File file;
-        private final CountDownLatch latch;
+        private final Semaphore pendingTransfers;
 
         public TransferFileRunnable(File filePath, AtomicReference<Exception> lastException,
-                                    CountDownLatch latch) {
+                                    Semaphore pendingTransfers) {
             this.file = filePath;
             this.lastException = lastException;
-            this.latch = latch;
+            this.pendingTransfers = pendingTransfers;
             this.baseDir = blobShard.blobContainer().getBaseDirectory().getAbsolutePath();
         }
 
+        /**
+         * throttles the transfer using the rate limiter which is shared with the index recovery
+         */
+        private int read(FileInputStream fileStream, byte[] buf) throws IOException {
+            RateLimiter rateLimiter = recoverySettings.rateLimiter();
+            if (rateLimiter != null) {
+                rateLimiter.pause(buf.length);
+            }
+            return fileStream.read(buf, 0, buf.length);
+        }
+
         @Override
         public void run() {
 
             try {
-                final int BUFFER_SIZE = 4 * 4096;
+                final int BUFFER_SIZE = (int) recoverySettings.fileChunkSize().bytes();
 
                 long fileSize = file.length();
 
@@ -246,7 +281,7 @@ public class BlobRecoveryHandler {
                     String filePath = file.getAbsolutePath();
                     String relPath = filePath.substring(baseDir.length(), filePath.length());
                     byte[] buf = new byte[BUFFER_SIZE];
-                    int bytesRead = fileStream.read(buf, 0, BUFFER_SIZE);
+                    int bytesRead = read(fileStream, buf);
                     long bytesReadTotal = 0;
                     BytesArray content = new BytesArray(buf, 0, bytesRead);
                     BlobRecoveryStartTransferRequest startTransferRequest =
@@ -267,13 +302,13 @@ public class BlobRecoveryHandler {
                             request.targetNode(),
                             BlobRecoveryTarget.Actions.START_TRANSFER,
                             startTransferRequest,
-                            TransportRequestOptions.options(),
+                            RECOVERY_OPTIONS,
                             EmptyTransportResponseHandler.INSTANCE_SAME
                         ).txGet();
 
                         boolean isLast = false;
                         boolean sentChunks = false;
-                        while ((bytesRead = fileStream.read(buf, 0, BUFFER_SIZE)) > 0) {
+                        while ((bytesRead = read(fileStream, buf)) > 0) {
 
                             sentChunks = true;
                             bytesReadTotal += bytesRead;
@@ -290,7 +325,7 @@ public class BlobRecoveryHandler {
                                 BlobRecoveryTarget.Actions.TRANSFER_CHUNK,
                                 new BlobRecoveryChunkRequest(request.recoveryId(),
                                     startTransferRequest.transferId(), content, isLast),
-                                TransportRequestOptions.options(),
+                                RECOVERY_OPTIONS,
                                 EmptyTransportResponseHandler.INSTANCE_SAME
                             ).txGet();
                         }
@@ -311,11 +346,11 @@ public class BlobRecoveryHandler {
                         request.shardId().index().name(), request.shardId().id(), file.getName(),
                         request.targetNode().getName());
                 }
-            } catch (IOException ex) {
+            } catch (Exception ex) {
                 logger.error("exception while file transfer", ex);
                 lastException.set(ex);
             } finally {
-                latch.countDown();
+                pendingTransfers.release();
             }
         }
     }
@@ -35,6 +35,13 @@ public class BlobStats implements Streamable, ToXContent {
     private long totalUsage;
     private long availableSpace;
     private String location;
+    private long cacheOpenFiles;
+    private long cacheHits;
+    private long cacheMisses;
+    private long contentCacheSize;
+    private long contentCacheHits;
+    private long contentCacheMisses;
+    private long contentCacheEvictions;
 
     public String location() {
         return location;
@@ -68,12 +75,75 @@ public class BlobStats implements Streamable, ToXContent {
         this.totalUsage = totalUsage;
     }
 
+    public long cacheOpenFiles() {
+        return cacheOpenFiles;
+    }
+
+    public void cacheOpenFiles(long cacheOpenFiles) {
+        this.cacheOpenFiles = cacheOpenFiles;
+    }
+
+    public long cacheHits() {
+        return cacheHits;
+    }
+
+    public void cacheHits(long cacheHits) {
+        this.cacheHits = cacheHits;
+    }
+
+    public long cacheMisses() {
+        return cacheMisses;
+    }
+
+    public void cacheMisses(long cacheMisses) {
+        this.cacheMisses = cacheMisses;
+    }
+
+    public long contentCacheSize() {
+        return contentCacheSize;
+    }
+
+    public void contentCacheSize(long contentCacheSize) {
+        this.contentCacheSize = contentCacheSize;
+    }
+
+    public long contentCacheHits() {
+        return contentCacheHits;
+    }
+
+    public void contentCacheHits(long contentCacheHits) {
+        this.contentCacheHits = contentCacheHits;
+    }
+
+    public long contentCacheMisses() {
+        return contentCacheMisses;
+    }
+
+    public void contentCacheMisses(long contentCacheMisses) {
+        this.contentCacheMisses = contentCacheMisses;
+    }
+
+    public long contentCacheEvictions() {
+        return contentCacheEvictions;
+    }
+
+    public void contentCacheEvictions(long contentCacheEvictions) {
+        this.contentCacheEvictions = contentCacheEvictions;
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         count = in.readVLong();
         totalUsage = in.readVLong();
         availableSpace = in.readVLong();
         location = in.readString();
+        cacheOpenFiles = in.readVLong();
+        cacheHits = in.readVLong();
+        cacheMisses = in.readVLong();
+        contentCacheSize = in.readVLong();
+        contentCacheHits = in.readVLong();
+        contentCacheMisses = in.readVLong();
+        contentCacheEvictions = in.readVLong();
     }
 
     @Override
@@ -82,6 +152,13 @@ public class BlobStats implements Streamable, ToXContent {
         out.writeVLong(totalUsage);
         out.writeVLong(availableSpace);
         out.writeString(location);
+        out.writeVLong(cacheOpenFiles);
+        out.writeVLong(cacheHits);
+        out.writeVLong(cacheMisses);
+        out.writeVLong(contentCacheSize);
+        out.writeVLong(contentCacheHits);
+        out.writeVLong(contentCacheMisses);
+        out.writeVLong(contentCacheEvictions);
     }
 
     @Override
@@ -92,6 +169,17 @@ public class BlobStats implements Streamable, ToXContent {
             .field("size", totalUsage)
             .field("available_space", availableSpace)
             .field("location", location)
+            .startObject("cache")
+                .field("open_files", cacheOpenFiles)
+                .field("hits", cacheHits)
+                .field("misses", cacheMisses)
+                .startObject("content")
+                    .field("size", contentCacheSize)
+                    .field("hits", contentCacheHits)
+                    .field("misses", contentCacheMisses)
+                    .field("evictions", contentCacheEvictions)
+                .endObject()
+            .endObject()
         .endObject();
 
         return builder;
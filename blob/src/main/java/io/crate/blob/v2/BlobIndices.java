@@ -53,6 +53,7 @@ import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.service.IndexService;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.shard.service.IndexShard;
 import org.elasticsearch.indices.IndicesLifecycle;
 import org.elasticsearch.indices.IndicesService;
 
@@ -111,6 +112,17 @@ public class BlobIndices extends AbstractComponent implements ClusterStateListen
         this.blobEnvironment = blobEnvironment;
         clusterService.addLast(this);
         logger.setLevel("debug");
+        indicesLifecycle.addListener(new IndicesLifecycle.Listener() {
+            @Override
+            public void beforeIndexShardClosed(ShardId shardId, IndexShard indexShard) {
+                if (isBlobShard(shardId)) {
+                    BlobShard blobShard = blobShard(shardId.getIndex(), shardId.id());
+                    if (blobShard != null) {
+                        blobShard.close();
+                    }
+                }
+            }
+        });
     }
 
     public BlobShard blobShardSafe(ShardId shardId) {
@@ -21,6 +21,7 @@
 
 package io.crate.blob.v2;
 
+import io.crate.blob.BlobCache;
 import io.crate.blob.BlobContainer;
 import io.crate.blob.BlobEnvironment;
 import io.crate.blob.stats.BlobStats;
@@ -37,6 +38,7 @@ import java.io.File;
 public class BlobShard extends AbstractIndexShardComponent {
 
     private final BlobContainer blobContainer;
+    private final BlobCache blobCache;
     private final IndexShard indexShard;
 
     @Inject
@@ -48,6 +50,7 @@ public class BlobShard extends AbstractIndexShardComponent {
         File blobDir = blobDir(blobEnvironment);
         logger.info("creating BlobContainer at {}", blobDir);
         this.blobContainer = new BlobContainer(blobDir);
+        this.blobCache = new BlobCache(blobContainer, indexSettings);
     }
 
     public byte[][] currentDigests(byte prefix) {
@@ -55,13 +58,26 @@ public class BlobShard extends AbstractIndexShardComponent {
     }
 
     public boolean delete(String digest) {
-        return blobContainer.getFile(digest).delete();
+        blobCache.invalidate(digest);
+        return blobContainer.delete(digest);
     }
 
     public BlobContainer blobContainer() {
         return blobContainer;
     }
 
+    public BlobCache blobCache() {
+        return blobCache;
+    }
+
+    /**
+     * releases the open files held by the blob cache and persists the digest index
+     */
+    public void close() {
+        blobCache.clear();
+        blobContainer.close();
+    }
+
     public ShardRouting shardRouting() {
         return indexShard.routingEntry();
     }
@@ -71,14 +87,9 @@ public class BlobShard extends AbstractIndexShardComponent {
 
         stats.location(blobContainer().getBaseDirectory().getAbsolutePath());
         stats.availableSpace(blobContainer().getBaseDirectory().getFreeSpace());
-        blobContainer().walkFiles(null, new BlobContainer.FileVisitor() {
-            @Override
-            public boolean visit(File file) {
-                stats.totalUsage(stats.totalUsage() + file.length());
-                stats.count(stats.count() + 1);
-                return true;
-            }
-        });
+        stats.totalUsage(blobContainer.totalSize());
+        stats.count(blobContainer.count());
+        blobCache.stats(stats);
 
         return stats;
     }
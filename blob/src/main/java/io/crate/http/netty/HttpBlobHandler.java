@@ -21,6 +21,7 @@
 
 package io.crate.http.netty;
 
+import io.crate.blob.BlobCache;
 import io.crate.blob.BlobService;
 import io.crate.blob.DigestBlob;
 import io.crate.blob.RemoteDigestBlob;
@@ -40,9 +41,9 @@ import org.jboss.netty.handler.codec.http.*;
 import org.jboss.netty.util.CharsetUtil;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -242,7 +243,7 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
         // should be a redirect upfront if data is not local
 
         BlobShard blobShard = localBlobShard(index, digest);
-        long length = blobShard.blobContainer().getFile(digest).length();
+        long length = blobShard.blobCache().length(digest);
         if (length < 1) {
             simpleResponse(HttpResponseStatus.NOT_FOUND, null);
             return;
@@ -257,11 +258,18 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
     }
 
     private void get(HttpRequest request, String index, final String digest) throws IOException {
-        String range = request.headers().get(RANGE);
-        if (range != null) {
-            partialContentResponse(range, request, index, digest);
-        } else {
-            fullContentResponse(request, index, digest);
+        BlobCache blobCache = localBlobShard(index, digest).blobCache();
+        BlobCache.OpenBlob openBlob = blobCache.acquire(digest);
+        try {
+            String range = request.headers().get(RANGE);
+            if (range != null) {
+                partialContentResponse(range, request, blobCache, digest, openBlob);
+            } else {
+                fullContentResponse(request, blobCache, digest, openBlob);
+            }
+        } catch (IOException | RuntimeException e) {
+            openBlob.release();
+            throw e;
         }
     }
 
@@ -269,69 +277,94 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
         return blobIndices.localBlobShard(index, digest);
     }
 
-    private void partialContentResponse(String range, HttpRequest request, String index, final String digest)
-        throws  IOException
-    {
+    private void partialContentResponse(String range,
+                                        HttpRequest request,
+                                        BlobCache blobCache,
+                                        String digest,
+                                        BlobCache.OpenBlob openBlob) throws IOException {
         assert(range != null);
         Matcher matcher = contentRangePattern.matcher(range);
         if (!matcher.matches()) {
             logger.warn("Invalid byte-range: {}; returning full content", range);
-            fullContentResponse(request, index, digest);
+            fullContentResponse(request, blobCache, digest, openBlob);
             return;
         }
-        BlobShard blobShard = localBlobShard(index, digest);
 
-        final RandomAccessFile raf = blobShard.blobContainer().getRandomAccessFile(digest);
+        long length = openBlob.length();
         long start;
         long end;
         try {
             start = Long.parseLong(matcher.group(1));
-            if (start > raf.length()) {
-                logger.warn("416 Requested Range not satisfiable");
-                simpleResponse(HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE, null);
-                raf.close();
-                return;
-            }
-            end = raf.length() - 1 ;
+            end = length - 1;
             if (!matcher.group(2).equals("")) {
-                end = Long.parseLong(matcher.group(2));
+                end = Math.min(Long.parseLong(matcher.group(2)), length - 1);
             }
         } catch (NumberFormatException ex) {
             logger.error("Couldn't parse Range Header", ex);
-            start = 0;
-            end = raf.length();
+            fullContentResponse(request, blobCache, digest, openBlob);
+            return;
+        }
+        if (start >= length || end < start) {
+            logger.warn("416 Requested Range not satisfiable");
+            simpleResponse(HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE, null);
+            openBlob.release();
+            return;
         }
 
         HttpResponse response = new DefaultHttpResponse(HTTP_1_1, PARTIAL_CONTENT);
-        HttpHeaders.setContentLength(response, end - start + 1);
-        response.headers().set(CONTENT_RANGE, "bytes " + start + "-" + end + "/" + raf.length());
-        setDefaultGetHeaders(response);
-
-        ctx.getChannel().write(response);
-        ChannelFuture writeFuture = transferFile(digest, raf, start, end - start + 1);
-        if (!HttpHeaders.isKeepAlive(request)) {
-            writeFuture.addListener(ChannelFutureListener.CLOSE);
-        }
+        response.headers().set(CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        writeContent(request, response, blobCache, digest, openBlob, start, end - start + 1);
     }
 
-    private void fullContentResponse(HttpRequest request, String index, final String digest) throws  IOException {
-        BlobShard blobShard = localBlobShard(index, digest);
-        final RandomAccessFile raf = blobShard.blobContainer().getRandomAccessFile(digest);
+    private void fullContentResponse(HttpRequest request,
+                                     BlobCache blobCache,
+                                     String digest,
+                                     BlobCache.OpenBlob openBlob) throws IOException {
         HttpResponse response = new DefaultHttpResponse(HTTP_1_1, OK);
-        HttpHeaders.setContentLength(response, raf.length());
+        writeContent(request, response, blobCache, digest, openBlob, 0, openBlob.length());
+    }
+
+    /**
+     * writes the response together with the requested part of the blob.
+     * Small blobs are served from the content cache, all others are transferred from the file.
+     *
+     * Takes over the reference to the openBlob and releases it once the content is written.
+     */
+    private void writeContent(HttpRequest request,
+                              HttpResponse response,
+                              BlobCache blobCache,
+                              String digest,
+                              BlobCache.OpenBlob openBlob,
+                              long position,
+                              long count) throws IOException {
+        HttpHeaders.setContentLength(response, count);
         setDefaultGetHeaders(response);
-        logger.trace("HttpResponse: {}", response);
-        ctx.getChannel().write(response);
-        ChannelFuture writeFuture = transferFile(digest, raf, 0, raf.length());
+
+        ChannelFuture writeFuture;
+        ByteBuffer content = blobCache.content(digest, openBlob);
+        if (content != null) {
+            content.position((int) position);
+            content.limit((int) (position + count));
+            response.setContent(ChannelBuffers.wrappedBuffer(content.slice()));
+            logger.trace("HttpResponse: {}", response);
+            writeFuture = ctx.getChannel().write(response);
+            openBlob.release();
+        } else {
+            logger.trace("HttpResponse: {}", response);
+            ctx.getChannel().write(response);
+            writeFuture = transferFile(digest, openBlob, position, count);
+        }
         if (!HttpHeaders.isKeepAlive(request)) {
             writeFuture.addListener(ChannelFutureListener.CLOSE);
         }
     }
 
-    private ChannelFuture transferFile(final String digest, RandomAccessFile raf, long position, long count)
-        throws IOException
-    {
-        final FileRegion region = new DefaultFileRegion(raf.getChannel(), position, count);
+    private ChannelFuture transferFile(final String digest,
+                                       final BlobCache.OpenBlob openBlob,
+                                       long position,
+                                       long count) {
+        // the file channel is shared with other requests, it is released instead of closed
+        final FileRegion region = new DefaultFileRegion(openBlob.channel(), position, count, false);
         ChannelFuture writeFuture = ctx.getChannel().write(region);
         writeFuture.addListener(new ChannelFutureProgressListener() {
             @Override
@@ -341,7 +374,7 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
 
             @Override
             public void operationComplete(ChannelFuture future) throws Exception {
-                region.releaseExternalResources();
+                openBlob.release();
                 logger.trace("file transfer completed");
             }
         });
@@ -26,10 +26,14 @@ import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.common.util.concurrent.ConcurrentMapLong;
 import org.elasticsearch.index.shard.ShardId;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 public class BlobRecoveryStatus {
 
     private final RecoveryStatus indexRecoveryStatus;
     private final ConcurrentMapLong<BlobRecoveryTransferStatus> onGoingTransfers = ConcurrentCollections.newConcurrentMapLong();
+    private final AtomicLong recoveredFiles = new AtomicLong();
+    private final AtomicLong recoveredBytes = new AtomicLong();
     final BlobShard blobShard;
 
 
@@ -57,5 +61,29 @@ public class BlobRecoveryStatus {
     public ConcurrentMapLong<BlobRecoveryTransferStatus> onGoingTransfers() {
         return onGoingTransfers;
     }
-}
 
+    /**
+     * number of blobs that have been completely transferred
+     */
+    public long recoveredFiles() {
+        return recoveredFiles.get();
+    }
+
+    /**
+     * number of bytes received, including the bytes of ongoing transfers
+     */
+    public long recoveredBytes() {
+        return recoveredBytes.get();
+    }
+
+    void addRecoveredBytes(BlobRecoveryTransferStatus transferStatus, long bytes) {
+        recoveredBytes.addAndGet(bytes);
+        if (transferStatus != null) {
+            transferStatus.addRecoveredBytes(bytes);
+        }
+    }
+
+    void fileRecovered() {
+        recoveredFiles.incrementAndGet();
+    }
+}
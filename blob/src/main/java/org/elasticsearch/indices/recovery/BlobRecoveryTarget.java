@@ -21,11 +21,11 @@
 
 package org.elasticsearch.indices.recovery;
 
-import io.crate.blob.BlobWriteException;
 import io.crate.blob.exceptions.IllegalBlobRecoveryStateException;
 import io.crate.blob.v2.BlobShard;
 import io.crate.common.Hex;
 import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.component.AbstractComponent;
 import org.elasticsearch.common.inject.Inject;
@@ -42,6 +42,10 @@ import org.elasticsearch.transport.*;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 
 public class BlobRecoveryTarget extends AbstractComponent {
@@ -53,18 +57,17 @@ public class BlobRecoveryTarget extends AbstractComponent {
     * actor TargetNode as t
     *
     * group for every two char prefix
-    * s -> t:StartPrefixSync(prefix)
+    * s -> t:StartPrefixSync(prefix, source digests)
     * t -> t:getDigests for prefix
-    * t --> s:found digests
-    * s -> s: get missing digests
-    * group for every missing digest
+    * t --> s:missing digests, unknown digests
+    * group for every missing digest, concurrently
     *  s -> t:BlobSyncStartRequest(transferId, digest, contents, totalsize)
     *  t -> s: ack
     *  s -> s: BlobSyncChunkRequest(transferid, contents, isLast)
     *  t -> t: if isLast move to final
     *  t -> s: ack
     * end
-    * s -> t:FinishPrefixSync(deletableDigests)
+    * s -> t:DeleteFiles(unknown digests that don't exist on the source)
     * t -> t: delete deletable digests
     * s -> t: ack
     * end
@@ -203,25 +206,16 @@ public class BlobRecoveryTarget extends AbstractComponent {
             transferStatus.outputStream().write(
                 content.array(), content.arrayOffset(), content.length()
             );
+            onGoingRecovery.addRecoveredBytes(transferStatus, content.length());
 
             if (request.isLast()) {
                 transferStatus.outputStream().close();
                 File source = new File(shard.blobContainer().getBaseDirectory(),
                     transferStatus.sourcePath()
                 );
-                File target = new File(shard.blobContainer().getBaseDirectory(),
-                    transferStatus.targetPath()
-                );
-
-                if (target.exists()) {
-                    logger.info("target file {} exists already.", target.getName());
-                    // this might happen on bad timing while recovering/relocating.
-                    // noop
-                } else {
-                    if (!source.renameTo(target)) {
-                        throw new BlobWriteException(target.getName(), target.length(), null);
-                    }
-                }
+                // if the target exists already this might happen on bad timing while recovering/relocating.
+                shard.blobContainer().commit(source, new File(transferStatus.targetPath()).getName());
+                onGoingRecovery.fileRecovered();
 
                 onGoingRecovery.onGoingTransfers().remove(request.transferId());
             }
@@ -249,8 +243,27 @@ public class BlobRecoveryTarget extends AbstractComponent {
             if (status.canceled()) {
                 throw new IndexShardClosedException(status.shardId());
             }
+            // byte[1] and byte[1] have different hashCodes
+            // so setA.removeAll(setB) wouldn't work with byte[], that's why BytesArray is used here
+            Set<BytesArray> sourceDigests = new HashSet<>(request.sourceDigests().length);
+            for (byte[] digest : request.sourceDigests()) {
+                sourceDigests.add(new BytesArray(digest));
+            }
+            List<byte[]> unknownDigests = new ArrayList<>();
+            for (byte[] digest : status.blobShard.currentDigests(request.prefix())) {
+                if (!sourceDigests.remove(new BytesArray(digest))) {
+                    unknownDigests.add(digest);
+                }
+            }
+            byte[][] missingDigests = new byte[sourceDigests.size()][];
+            int i = 0;
+            for (BytesArray digest : sourceDigests) {
+                missingDigests[i++] = digest.toBytes();
+            }
+
             BlobStartPrefixResponse response = new BlobStartPrefixResponse();
-            response.existingDigests = status.blobShard.currentDigests(request.prefix());
+            response.missingDigests = missingDigests;
+            response.unknownDigests = unknownDigests.toArray(new byte[unknownDigests.size()][]);
             channel.sendResponse(response);
         }
     }
@@ -277,7 +290,8 @@ public class BlobRecoveryTarget extends AbstractComponent {
             }
 
             BlobShard shard = status.blobShard;
-            String tmpPath = request.path() + "." + request.transferId();
+            // written into the tmp directory so that files of interrupted recoveries are cleaned up
+            String tmpPath = "tmp" + File.separator + new File(request.path()).getName() + "." + request.transferId();
             FileOutputStream outputStream = new FileOutputStream(
                 new File(shard.blobContainer().getBaseDirectory(), tmpPath)
             );
@@ -287,22 +301,18 @@ public class BlobRecoveryTarget extends AbstractComponent {
                 content = content.toBytesArray();
             }
             outputStream.write(content.array(), content.arrayOffset(), content.length());
+            status.addRecoveredBytes(null, content.length());
 
             if (request.size() == request.content().length()) {  // start request contains the whole file.
                 outputStream.close();
                 File source = new File(shard.blobContainer().getBaseDirectory(), tmpPath);
-                File target = new File(shard.blobContainer().getBaseDirectory(), request.path());
-                if (!target.exists()) {
-                    if (!source.renameTo(target)) {
-                        throw new IllegalBlobRecoveryStateException(
-                            "couldn't rename file to " + request.path()
-                        );
-                    }
-                }
+                shard.blobContainer().commit(source, new File(request.path()).getName());
+                status.fileRecovered();
             } else {
                 BlobRecoveryTransferStatus transferStatus= new BlobRecoveryTransferStatus(
-                    request.transferId(), outputStream, tmpPath, request.path()
+                    request.transferId(), outputStream, tmpPath, request.path(), request.size()
                 );
+                transferStatus.addRecoveredBytes(content.length());
                 status.onGoingTransfers().put(request.transferId(), transferStatus);
             }
 
@@ -348,6 +358,8 @@ public class BlobRecoveryTarget extends AbstractComponent {
                     );
                 }
             }
+            logger.debug("[{}] blob recovery finished, recovered {} files with {} bytes",
+                status.shardId(), status.recoveredFiles(), status.recoveredBytes());
             onGoingRecoveries.remove(request.recoveryId);
             channel.sendResponse(TransportResponse.Empty.INSTANCE);
         }
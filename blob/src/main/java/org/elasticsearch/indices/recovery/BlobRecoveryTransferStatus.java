@@ -22,7 +22,7 @@
 package org.elasticsearch.indices.recovery;
 
 import java.io.FileOutputStream;
-import java.io.RandomAccessFile;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class BlobRecoveryTransferStatus {
 
@@ -30,13 +30,28 @@ public class BlobRecoveryTransferStatus {
     private final FileOutputStream outputStream;
     private final String sourcePath;
     private final String targetPath;
+    private final long size;
+    private final AtomicLong recoveredBytes = new AtomicLong();
 
     public BlobRecoveryTransferStatus(long transferId, FileOutputStream outputStream,
-                                      String sourcePath, String targetPath) {
+                                      String sourcePath, String targetPath, long size) {
         this.transferId = transferId;
         this.outputStream = outputStream;
         this.sourcePath = sourcePath;
         this.targetPath = targetPath;
+        this.size = size;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public long recoveredBytes() {
+        return recoveredBytes.get();
+    }
+
+    public void addRecoveredBytes(long bytes) {
+        recoveredBytes.addAndGet(bytes);
     }
 
     public String sourcePath() {
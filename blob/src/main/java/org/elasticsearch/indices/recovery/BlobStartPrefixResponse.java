@@ -28,24 +28,44 @@ import org.elasticsearch.transport.TransportResponse;
 import java.io.IOException;
 
 public class BlobStartPrefixResponse extends TransportResponse {
-    public byte[][] existingDigests;
+
+    /**
+     * digests which exist on the source but are missing on the target
+     */
+    public byte[][] missingDigests;
+
+    /**
+     * digests which exist on the target but weren't sent by the source
+     */
+    public byte[][] unknownDigests;
 
     @Override
     public void readFrom(StreamInput in) throws IOException {
         super.readFrom(in);
-        int size = in.readInt();
-        existingDigests = new byte[size][20];
-        for (int i=0; i<size; i++){
-            in.read(existingDigests[i]);
-        }
+        missingDigests = readDigests(in);
+        unknownDigests = readDigests(in);
     }
 
     @Override
     public void writeTo(StreamOutput out) throws IOException {
         super.writeTo(out);
-        out.writeInt(existingDigests.length);
-        for (byte[] digest: existingDigests){
-            out.write(digest);
+        writeDigests(out, missingDigests);
+        writeDigests(out, unknownDigests);
+    }
+
+    private static byte[][] readDigests(StreamInput in) throws IOException {
+        int size = in.readVInt();
+        byte[][] digests = new byte[size][20];
+        for (int i = 0; i < size; i++) {
+            in.readBytes(digests[i], 0, 20);
+        }
+        return digests;
+    }
+
+    private static void writeDigests(StreamOutput out, byte[][] digests) throws IOException {
+        out.writeVInt(digests.length);
+        for (byte[] digest : digests) {
+            out.writeBytes(digest);
         }
     }
 }
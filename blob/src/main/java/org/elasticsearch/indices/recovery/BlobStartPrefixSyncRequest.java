@@ -27,29 +27,49 @@ import org.elasticsearch.index.shard.ShardId;
 
 import java.io.IOException;
 
+/**
+ * contains the digests of a prefix that exist on the recovery source.
+ * The target responds with the digests it is missing and the digests the source doesn't know about,
+ * so that a prefix is compared in a single round trip.
+ */
 public class BlobStartPrefixSyncRequest extends BlobRecoveryRequest {
 
     private byte prefix;
     private ShardId shardId;
+    private byte[][] sourceDigests;
 
     public BlobStartPrefixSyncRequest() {
     }
 
-    public BlobStartPrefixSyncRequest(long recoveryId, ShardId shardId, byte prefix) {
+    public BlobStartPrefixSyncRequest(long recoveryId, ShardId shardId, byte prefix, byte[][] sourceDigests) {
         super(recoveryId);
         this.prefix = prefix;
         this.shardId = shardId;
+        this.sourceDigests = sourceDigests;
     }
 
     public byte prefix() {
         return prefix;
     }
 
+    public ShardId shardId() {
+        return shardId;
+    }
+
+    public byte[][] sourceDigests() {
+        return sourceDigests;
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         super.readFrom(in);
         prefix = in.readByte();
-        ShardId.readShardId(in);
+        shardId = ShardId.readShardId(in);
+        int size = in.readVInt();
+        sourceDigests = new byte[size][20];
+        for (int i = 0; i < size; i++) {
+            in.readBytes(sourceDigests[i], 0, 20);
+        }
     }
 
     @Override
@@ -57,6 +77,10 @@ public class BlobStartPrefixSyncRequest extends BlobRecoveryRequest {
         super.writeTo(out);
         out.writeByte(prefix);
         shardId.writeTo(out);
+        out.writeVInt(sourceDigests.length);
+        for (byte[] digest : sourceDigests) {
+            out.writeBytes(digest);
+        }
     }
 
 }
@@ -24,6 +24,8 @@ package io.crate;
 import io.crate.blob.BlobContainer;
 import io.crate.blob.DigestBlob;
 import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.ChannelBufferBytesReference;
+import org.jboss.netty.buffer.ChannelBuffers;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -170,4 +172,26 @@ public class DigestBlobTests {
         assertTrue(file.delete());
     }
 
+    @Test
+    public void testDigestBlobAddCompositeContent() throws IOException {
+        UUID transferId = UUID.randomUUID();
+        BlobContainer container = new BlobContainer(tmpDir.toFile());
+        DigestBlob digestBlob = container.createBlob("417de3231e23dcd6d224ff60918024bc6c59aa58", transferId);
+
+        // composite buffers are written with a gathering write and digested without copying
+        digestBlob.addContent(new ChannelBufferBytesReference(ChannelBuffers.wrappedBuffer(
+            ChannelBuffers.wrappedBuffer("ABCD".getBytes()),
+            ChannelBuffers.wrappedBuffer("EFGHIJ".getBytes())
+        )), false);
+        digestBlob.addContent(new BytesArray("KLMNO".getBytes()), true);
+        assertEquals(15L, digestBlob.size());
+
+        File file = digestBlob.commit();
+        byte[] buffer = new byte[15];
+        FileInputStream stream = new FileInputStream(file);
+        stream.read(buffer, 0, 15);
+        stream.close();
+        assertEquals("ABCDEFGHIJKLMNO", new BytesArray(buffer).toUtf8().trim());
+        assertTrue(file.delete());
+    }
 }
@@ -0,0 +1,143 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.blob;
+
+import io.crate.blob.exceptions.DigestNotFoundException;
+import io.crate.blob.stats.BlobStats;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class BlobCacheTest {
+
+    private static final String DIGEST = "417de3231e23dcd6d224ff60918024bc6c59aa58";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BlobContainer container;
+
+    @Before
+    public void prepare() throws Exception {
+        container = new BlobContainer(folder.newFolder());
+        File file = new File(container.getTmpDirectory(), DIGEST);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write("ABCDEFGHIJKLMNO".getBytes());
+        }
+        container.commit(file, DIGEST);
+    }
+
+    private BlobCache blobCache(long contentSize) {
+        Settings settings = ImmutableSettings.builder()
+                .put(BlobCache.SETTING_CONTENT_SIZE, contentSize)
+                .build();
+        return new BlobCache(container, settings);
+    }
+
+    @Test
+    public void testLength() throws Exception {
+        BlobCache blobCache = blobCache(0);
+        assertThat(blobCache.length(DIGEST), is(15L));
+        assertThat(blobCache.length(DIGEST), is(15L));
+        assertThat(blobCache.length("0000000000000000000000000000000000000000"), is(-1L));
+
+        // the length is answered by the digest index without opening the file
+        BlobStats stats = new BlobStats();
+        blobCache.stats(stats);
+        assertThat(stats.cacheOpenFiles(), is(0L));
+    }
+
+    @Test
+    public void testAcquireUsesOpenFile() throws Exception {
+        BlobCache blobCache = blobCache(0);
+        blobCache.acquire(DIGEST).release();
+        BlobCache.OpenBlob openBlob = blobCache.acquire(DIGEST);
+        assertThat(openBlob.length(), is(15L));
+        openBlob.release();
+
+        BlobStats stats = new BlobStats();
+        blobCache.stats(stats);
+        assertThat(stats.cacheOpenFiles(), is(1L));
+        assertThat(stats.cacheHits(), is(1L));
+    }
+
+    @Test(expected = DigestNotFoundException.class)
+    public void testAcquireMissingBlob() throws Exception {
+        blobCache(0).acquire("0000000000000000000000000000000000000000");
+    }
+
+    @Test
+    public void testOpenBlobIsClosedAfterInvalidateAndRelease() throws Exception {
+        BlobCache blobCache = blobCache(0);
+        BlobCache.OpenBlob openBlob = blobCache.acquire(DIGEST);
+        blobCache.invalidate(DIGEST);
+        assertThat(openBlob.channel().isOpen(), is(true));
+
+        openBlob.release();
+        assertThat(openBlob.channel().isOpen(), is(false));
+
+        BlobCache.OpenBlob reopened = blobCache.acquire(DIGEST);
+        assertThat(reopened, not(sameInstance(openBlob)));
+        assertThat(reopened.channel().isOpen(), is(true));
+        reopened.release();
+    }
+
+    @Test
+    public void testContentCacheDisabled() throws Exception {
+        BlobCache blobCache = blobCache(0);
+        BlobCache.OpenBlob openBlob = blobCache.acquire(DIGEST);
+        assertThat(blobCache.content(DIGEST, openBlob), nullValue());
+        openBlob.release();
+    }
+
+    @Test
+    public void testContentCache() throws Exception {
+        BlobCache blobCache = blobCache(1024);
+        BlobCache.OpenBlob openBlob = blobCache.acquire(DIGEST);
+        ByteBuffer content = blobCache.content(DIGEST, openBlob);
+        assertThat(content.isDirect(), is(true));
+        byte[] bytes = new byte[content.remaining()];
+        content.get(bytes);
+        assertThat(new String(bytes), is("ABCDEFGHIJKLMNO"));
+
+        // the returned buffers are independent of each other
+        assertThat(blobCache.content(DIGEST, openBlob).remaining(), is(15));
+        openBlob.release();
+
+        BlobStats stats = new BlobStats();
+        blobCache.stats(stats);
+        assertThat(stats.contentCacheSize(), is(15L));
+        assertThat(stats.contentCacheHits(), is(1L));
+        assertThat(stats.contentCacheMisses(), is(1L));
+    }
+}
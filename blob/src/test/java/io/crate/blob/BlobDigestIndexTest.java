@@ -0,0 +1,137 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.blob;
+
+import io.crate.common.Hex;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class BlobDigestIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] digest(int prefix, int value) {
+        byte[] digest = new byte[BlobDigestIndex.DIGEST_LENGTH];
+        digest[0] = (byte) prefix;
+        digest[16] = (byte) (value >>> 24);
+        digest[17] = (byte) (value >>> 16);
+        digest[18] = (byte) (value >>> 8);
+        digest[19] = (byte) value;
+        return digest;
+    }
+
+    @Test
+    public void testPutRemoveAndLength() throws Exception {
+        BlobDigestIndex index = new BlobDigestIndex(folder.newFolder());
+        assertThat(index.put(digest(0xff, 1), 10L), is(true));
+        assertThat(index.put(digest(0xff, 1), 10L), is(false));
+        assertThat(index.put(digest(0x01, 1), 20L), is(true));
+
+        assertThat(index.length(digest(0xff, 1)), is(10L));
+        assertThat(index.length(digest(0xff, 2)), is(-1L));
+        assertThat(index.count(), is(2L));
+        assertThat(index.totalSize(), is(30L));
+
+        assertThat(index.remove(digest(0xff, 1)), is(true));
+        assertThat(index.remove(digest(0xff, 1)), is(false));
+        assertThat(index.length(digest(0xff, 1)), is(-1L));
+        assertThat(index.count(), is(1L));
+        assertThat(index.totalSize(), is(20L));
+    }
+
+    @Test
+    public void testMergeKeepsEntriesSorted() throws Exception {
+        BlobDigestIndex index = new BlobDigestIndex(folder.newFolder());
+        int numDigests = BlobDigestIndex.MIN_PENDING_CHANGES * 3;
+        for (int i = numDigests - 1; i >= 0; i--) {
+            index.put(digest(0x80, i * 2), i);
+        }
+        for (int i = 0; i < numDigests; i += 3) {
+            assertThat(index.remove(digest(0x80, i * 2)), is(true));
+        }
+        for (int i = 0; i < numDigests; i++) {
+            long expected = i % 3 == 0 ? -1L : i;
+            assertThat(index.length(digest(0x80, i * 2)), is(expected));
+            assertThat(index.length(digest(0x80, i * 2 + 1)), is(-1L));
+        }
+
+        byte[][] digests = index.digests((byte) 0x80);
+        assertThat(digests.length, is(numDigests - numDigests / 3));
+        assertThat((long) digests.length, is(index.count()));
+        for (int i = 1; i < digests.length; i++) {
+            assertThat(Hex.encodeHexString(digests[i - 1]),
+                lessThan(Hex.encodeHexString(digests[i])));
+        }
+    }
+
+    @Test
+    public void testCloseAndLoad() throws Exception {
+        File dir = folder.newFolder();
+        BlobDigestIndex index = new BlobDigestIndex(dir);
+        assertThat(index.load(), is(false));
+        index.put(digest(0x10, 1), 5L);
+        index.put(digest(0x20, 1), 7L);
+        index.close();
+
+        index = new BlobDigestIndex(dir);
+        assertThat(index.load(), is(true));
+        assertThat(index.length(digest(0x10, 1)), is(5L));
+        assertThat(index.length(digest(0x20, 1)), is(7L));
+        assertThat(index.count(), is(2L));
+        assertThat(index.totalSize(), is(12L));
+
+        // the index isn't marked as clean until it is closed again
+        assertThat(new BlobDigestIndex(dir).load(), is(false));
+    }
+
+    @Test
+    public void testContainerRebuildsIndex() throws Exception {
+        File dir = folder.newFolder();
+        BlobContainer container = new BlobContainer(dir);
+        String digest = "417de3231e23dcd6d224ff60918024bc6c59aa58";
+        File tmpFile = new File(container.getTmpDirectory(), digest);
+        try (FileOutputStream out = new FileOutputStream(tmpFile)) {
+            out.write(new byte[]{1, 2, 3});
+        }
+        container.commit(tmpFile, digest);
+        File leftover = new File(container.getFile(digest).getParentFile(), digest + ".1234");
+        assertThat(leftover.createNewFile(), is(true));
+
+        // not closed, so the index has to be rebuilt from the files
+        container = new BlobContainer(dir);
+        assertThat(container.length(digest), is(3L));
+        assertThat(container.count(), is(1L));
+        assertThat(leftover.exists(), is(false));
+
+        assertThat(container.delete(digest), is(true));
+        assertThat(container.exists(digest), is(false));
+        assertThat(container.totalSize(), is(0L));
+    }
+}
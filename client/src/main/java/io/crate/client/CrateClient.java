@@ -38,6 +38,7 @@ import org.elasticsearch.common.settings.ImmutableSettings;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.settings.SettingsModule;
 import org.elasticsearch.common.transport.InetSocketTransportAddress;
+import org.elasticsearch.common.util.concurrent.ListenableFuture;
 import org.elasticsearch.env.Environment;
 import org.elasticsearch.indices.breaker.CircuitBreakerModule;
 import org.elasticsearch.node.internal.InternalSettingsPreparer;
@@ -61,7 +62,12 @@ public class CrateClient {
     public CrateClient(Settings pSettings, boolean loadConfigSettings) throws
             ElasticsearchException {
 
-        Settings settings = settingsBuilder().put(pSettings)
+        ImmutableSettings.Builder builder = settingsBuilder();
+        if (pSettings.getAsBoolean(ShardAwareRouting.SETTING_ENABLED, false)) {
+            // connect to all nodes so that statements can be sent to the nodes holding their shards
+            builder.put("client.transport.sniff", true);
+        }
+        Settings settings = builder.put(pSettings)
                 .put("network.server", false)
                 .put("node.client", true)
                 .put("client.transport.ignore_cluster_name", true)
@@ -104,7 +110,16 @@ public class CrateClient {
     }
 
     public CrateClient(String... servers) {
-        this();
+        this(ImmutableSettings.Builder.EMPTY_SETTINGS, servers);
+    }
+
+    /**
+     * create a client connecting to the given servers using the given settings.
+     * Setting <code>client.shard_aware_routing</code> to true sends statements which
+     * read or write a single row by its primary key directly to a node holding its shard.
+     */
+    public CrateClient(Settings settings, String... servers) {
+        this(settings, true);
         for (String server : servers) {
             String[] parts = server.split(":");
             String host = parts[0];
@@ -140,6 +155,26 @@ public class CrateClient {
         internalClient.bulkSql(bulkRequest, listener);
     }
 
+    public ListenableFuture<SQLResponse> sqlAsync(SQLRequest request) {
+        return internalClient.sqlAsync(request);
+    }
+
+    public ListenableFuture<SQLBulkResponse> bulkSqlAsync(SQLBulkRequest bulkRequest) {
+        return internalClient.bulkSqlAsync(bulkRequest);
+    }
+
+    /**
+     * execute the statement with the given arguments as part of a bulk request.
+     *
+     * Concurrent calls using the same statement are coalesced into one bulk request,
+     * see <code>client.batching.window</code> and <code>client.batching.max_size</code>.
+     *
+     * @return a future which is completed with the row count of the given arguments
+     */
+    public ListenableFuture<Long> batchedSql(String stmt, Object... args) {
+        return internalClient.batchedSql(stmt, args);
+    }
+
     public Settings settings() {
         return settings;
     }
@@ -24,32 +24,46 @@ package io.crate.client;
 import com.google.common.collect.ImmutableMap;
 import io.crate.action.sql.*;
 import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.*;
 import org.elasticsearch.action.support.PlainActionFuture;
 import org.elasticsearch.client.ElasticsearchClient;
 import org.elasticsearch.client.transport.TransportClientNodesService;
 import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.collect.MapBuilder;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.transport.TransportAddress;
+import org.elasticsearch.common.util.concurrent.ListenableFuture;
+import org.elasticsearch.common.util.concurrent.SettableFuture;
 import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.ConnectTransportException;
 import org.elasticsearch.transport.Transport;
 import org.elasticsearch.transport.TransportService;
 
-import java.util.concurrent.TimeUnit;
+import java.util.List;
 
 public class InternalCrateClient {
 
     private final ImmutableMap<Action, TransportActionNodeProxy> actions;
     private final TransportClientNodesService nodesService;
+    @Nullable
+    private final ShardAwareRouting shardAwareRouting;
+    private final StatementBatcher statementBatcher;
 
     @Inject
     public InternalCrateClient(Settings settings,
                                TransportService transportService,
-                               TransportClientNodesService nodesService) {
+                               TransportClientNodesService nodesService,
+                               ThreadPool threadPool) {
 
         this.nodesService = nodesService;
+        if (settings.getAsBoolean(ShardAwareRouting.SETTING_ENABLED, false)) {
+            shardAwareRouting = new ShardAwareRouting(settings, transportService, nodesService, threadPool);
+        } else {
+            shardAwareRouting = null;
+        }
 
         MapBuilder<Action, TransportActionNodeProxy> actionsBuilder = new MapBuilder<>();
         actionsBuilder.put(SQLAction.INSTANCE,
@@ -57,6 +71,21 @@ public class InternalCrateClient {
                       .put(SQLBulkAction.INSTANCE,
                            new TransportActionNodeProxy(settings, SQLBulkAction.INSTANCE, transportService));
         this.actions = actionsBuilder.immutableMap();
+        this.statementBatcher = new StatementBatcher(settings, new StatementBatcher.Sender() {
+            @Override
+            public List<DiscoveryNode> nodes() {
+                return InternalCrateClient.this.nodesService.connectedNodes();
+            }
+
+            @Override
+            public void send(@Nullable DiscoveryNode node, SQLBulkRequest request, ActionListener<SQLBulkResponse> listener) {
+                if (node == null) {
+                    bulkSql(request, listener);
+                } else {
+                    executeOnNode(node, SQLBulkAction.INSTANCE, request, listener);
+                }
+            }
+        }, threadPool);
     }
 
     public ActionFuture<SQLResponse> sql(final SQLRequest request) {
@@ -83,11 +112,76 @@ public class InternalCrateClient {
         execute(SQLBulkAction.INSTANCE, bulkRequest, listener);
     }
 
+    public ListenableFuture<SQLResponse> sqlAsync(final SQLRequest request) {
+        SettableFuture<SQLResponse> future = SettableFuture.create();
+        sql(request, new SettableFutureListener<>(future));
+        return future;
+    }
+
+    public ListenableFuture<SQLBulkResponse> bulkSqlAsync(final SQLBulkRequest bulkRequest) {
+        SettableFuture<SQLBulkResponse> future = SettableFuture.create();
+        bulkSql(bulkRequest, new SettableFutureListener<>(future));
+        return future;
+    }
+
+    /**
+     * adds the row to a bulk request of the statement which is sent once enough rows
+     * are collected or the batching window passed.
+     *
+     * @return a future completed with the row count of the row
+     */
+    public ListenableFuture<Long> batchedSql(final String stmt, final Object[] args) {
+        return statementBatcher.add(stmt, args);
+    }
+
     protected <Request extends ActionRequest, Response extends ActionResponse,
             RequestBuilder extends ActionRequestBuilder<Request, Response,
                     RequestBuilder, Client>, Client extends ElasticsearchClient> void execute(final Action<Request,
             Response, RequestBuilder, Client> action, final Request request, final ActionListener<Response> listener) {
         final TransportActionNodeProxy<Request, Response> proxy = actions.get(action);
+        if (shardAwareRouting != null && request instanceof SQLRequest) {
+            DiscoveryNode node = shardAwareRouting.node((SQLRequest) request);
+            if (node != null) {
+                executeOnNode(node, action, request, listener);
+                return;
+            }
+        }
+        executeOnAnyNode(proxy, request, listener);
+    }
+
+    /**
+     * executes the request on the given node, or on any other node if the given node can't be reached
+     */
+    private <Request extends ActionRequest, Response extends ActionResponse,
+            RequestBuilder extends ActionRequestBuilder<Request, Response,
+                    RequestBuilder, Client>, Client extends ElasticsearchClient> void executeOnNode(
+            DiscoveryNode node,
+            final Action<Request, Response, RequestBuilder, Client> action,
+            final Request request,
+            final ActionListener<Response> listener) {
+        final TransportActionNodeProxy<Request, Response> proxy = actions.get(action);
+        proxy.execute(node, request, new ActionListener<Response>() {
+            @Override
+            public void onResponse(Response response) {
+                listener.onResponse(response);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                if (ExceptionsHelper.unwrapCause(e) instanceof ConnectTransportException) {
+                    // the node is gone, any other node can execute the statement as well
+                    executeOnAnyNode(proxy, request, listener);
+                } else {
+                    listener.onFailure(e);
+                }
+            }
+        });
+    }
+
+    private <Request extends ActionRequest, Response extends ActionResponse> void executeOnAnyNode(
+            final TransportActionNodeProxy<Request, Response> proxy,
+            final Request request,
+            final ActionListener<Response> listener) {
         nodesService.execute(
             new TransportClientNodesService.NodeListenerCallback<Response>() {
                 @Override
@@ -100,9 +194,35 @@ public class InternalCrateClient {
 
     public void addTransportAddress(TransportAddress transportAddress) {
         nodesService.addTransportAddresses(transportAddress);
+        if (shardAwareRouting != null) {
+            shardAwareRouting.refresh();
+        }
+    }
+
+    private static class SettableFutureListener<Response> implements ActionListener<Response> {
+
+        private final SettableFuture<Response> future;
+
+        SettableFutureListener(SettableFuture<Response> future) {
+            this.future = future;
+        }
+
+        @Override
+        public void onResponse(Response response) {
+            future.set(response);
+        }
+
+        @Override
+        public void onFailure(Throwable e) {
+            future.setException(e);
+        }
     }
 
     public void close() {
+        statementBatcher.close();
+        if (shardAwareRouting != null) {
+            shardAwareRouting.close();
+        }
         nodesService.close();
     }
 }
@@ -0,0 +1,244 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client;
+
+import org.elasticsearch.common.Nullable;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A statement which only reads or writes rows of a single shard of a table,
+ * extracted from the statement text without parsing it completely.
+ *
+ * Supported are single row inserts and selects, updates and deletes using a single
+ * equality condition like <code>WHERE id = ?</code>. Every other statement is not
+ * recognized, which only means that it is sent to any node.
+ */
+class RoutingStatement {
+
+    private static final String IDENT = "(\"[^\"]+\"|[a-z_][a-z0-9_]*)";
+    private static final String TABLE = IDENT + "(?:\\s*\\.\\s*" + IDENT + ")?";
+    private static final String VALUE = "(\\?|\\$\\d+|-?\\d+|'[^']*')";
+    private static final String CONDITION = "\\s+where\\s+" + IDENT + "\\s*=\\s*" + VALUE + "\\s*;?\\s*$";
+
+    private static final Pattern SELECT = Pattern.compile(
+            "^\\s*select\\s+.+?\\s+from\\s+" + TABLE + CONDITION,
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern UPDATE = Pattern.compile(
+            "^\\s*update\\s+" + TABLE + "\\s+set\\s+.+?" + CONDITION,
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern DELETE = Pattern.compile(
+            "^\\s*delete\\s+from\\s+" + TABLE + CONDITION,
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern INSERT = Pattern.compile(
+            "^\\s*insert\\s+into\\s+" + TABLE + "\\s*\\(([^)]+)\\)\\s*values\\s*\\(([^()']+)\\)" +
+            "(?:\\s*on\\s+duplicate\\s+key\\s+update\\s+.+?)?\\s*;?\\s*$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern PARAMETER = Pattern.compile("\\$(\\d+)");
+
+    private final String schema;
+    private final String table;
+    private final String column;
+    private final boolean write;
+    private final int parameterIndex;
+    private final Object literal;
+
+    private RoutingStatement(@Nullable String schema,
+                             String table,
+                             String column,
+                             boolean write,
+                             int parameterIndex,
+                             @Nullable Object literal) {
+        this.schema = schema;
+        this.table = table;
+        this.column = column;
+        this.write = write;
+        this.parameterIndex = parameterIndex;
+        this.literal = literal;
+    }
+
+    /**
+     * @return the routing statement or null if the statement isn't recognized
+     */
+    @Nullable
+    static RoutingStatement parse(String stmt) {
+        Matcher matcher = SELECT.matcher(stmt);
+        if (matcher.matches()) {
+            return fromCondition(stmt, matcher, false);
+        }
+        matcher = UPDATE.matcher(stmt);
+        if (matcher.matches()) {
+            return fromCondition(stmt, matcher, true);
+        }
+        matcher = DELETE.matcher(stmt);
+        if (matcher.matches()) {
+            return fromCondition(stmt, matcher, true);
+        }
+        matcher = INSERT.matcher(stmt);
+        if (matcher.matches()) {
+            return fromInsert(matcher);
+        }
+        return null;
+    }
+
+    @Nullable
+    private static RoutingStatement fromCondition(String stmt, Matcher matcher, boolean write) {
+        String schema = identifier(matcher.group(2) == null ? null : matcher.group(1));
+        String table = identifier(matcher.group(2) == null ? matcher.group(1) : matcher.group(2));
+        String column = identifier(matcher.group(3));
+        String value = matcher.group(4);
+        if (value.equals("?")) {
+            // parameters are numbered by their position in the statement
+            String prefix = stmt.substring(0, matcher.start(4));
+            if (prefix.indexOf('\'') >= 0) {
+                return null;
+            }
+            return new RoutingStatement(schema, table, column, write, count(prefix, '?'), null);
+        }
+        return fromValue(schema, table, column, write, value);
+    }
+
+    @Nullable
+    private static RoutingStatement fromInsert(Matcher matcher) {
+        String schema = identifier(matcher.group(2) == null ? null : matcher.group(1));
+        String table = identifier(matcher.group(2) == null ? matcher.group(1) : matcher.group(2));
+        String[] columns = matcher.group(3).split(",");
+        String[] values = matcher.group(4).split(",");
+        if (columns.length != values.length) {
+            return null;
+        }
+        // the routing column is only known once the table is resolved, see withColumn
+        return new InsertStatement(schema, table, columns, values);
+    }
+
+    @Nullable
+    private static RoutingStatement fromValue(@Nullable String schema, String table, String column,
+                                              boolean write, String value) {
+        Matcher parameter = PARAMETER.matcher(value);
+        if (parameter.matches()) {
+            return new RoutingStatement(schema, table, column, write, Integer.parseInt(parameter.group(1)) - 1, null);
+        }
+        if (value.startsWith("'")) {
+            return new RoutingStatement(schema, table, column, write, -1, value.substring(1, value.length() - 1));
+        }
+        try {
+            return new RoutingStatement(schema, table, column, write, -1, Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            // out of the range of a long, left to the server
+            return null;
+        }
+    }
+
+    private static int count(String text, char c) {
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == c) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Nullable
+    private static String identifier(@Nullable String identifier) {
+        if (identifier == null) {
+            return null;
+        }
+        identifier = identifier.trim();
+        if (identifier.startsWith("\"")) {
+            return identifier.substring(1, identifier.length() - 1);
+        }
+        return identifier.toLowerCase(Locale.ENGLISH);
+    }
+
+    @Nullable
+    String schema() {
+        return schema;
+    }
+
+    String table() {
+        return table;
+    }
+
+    /**
+     * @return true if the statement writes and must be routed to the primary shard
+     */
+    boolean isWrite() {
+        return write;
+    }
+
+    /**
+     * @return the statement with the value of the given column or null if the statement
+     *         doesn't contain a single value for it
+     */
+    @Nullable
+    RoutingStatement withColumn(String column) {
+        return this.column.equals(column) ? this : null;
+    }
+
+    /**
+     * @return the value of the column or null if it can't be resolved
+     */
+    @Nullable
+    Object value(Object[] args) {
+        if (parameterIndex < 0) {
+            return literal;
+        }
+        if (args == null || parameterIndex >= args.length) {
+            return null;
+        }
+        return args[parameterIndex];
+    }
+
+    private static class InsertStatement extends RoutingStatement {
+
+        private final String[] columns;
+        private final String[] values;
+
+        private InsertStatement(@Nullable String schema, String table, String[] columns, String[] values) {
+            super(schema, table, "", true, -1, null);
+            this.columns = columns;
+            this.values = values;
+        }
+
+        @Nullable
+        @Override
+        RoutingStatement withColumn(String column) {
+            int parameterIndex = 0;
+            for (int i = 0; i < columns.length; i++) {
+                String value = values[i].trim();
+                if (column.equals(identifier(columns[i]))) {
+                    if (value.equals("?")) {
+                        return new RoutingStatement(schema(), table(), column, true, parameterIndex, null);
+                    }
+                    return fromValue(schema(), table(), column, true, value);
+                }
+                if (value.equals("?")) {
+                    parameterIndex++;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client;
+
+import io.crate.action.sql.SQLRequest;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.TransportActionNodeProxy;
+import org.elasticsearch.action.admin.cluster.state.ClusterStateAction;
+import org.elasticsearch.action.admin.cluster.state.ClusterStateRequest;
+import org.elasticsearch.action.admin.cluster.state.ClusterStateResponse;
+import org.elasticsearch.client.transport.TransportClientNodesService;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MappingMetaData;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.routing.IndexRoutingTable;
+import org.elasticsearch.cluster.routing.IndexShardRoutingTable;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.cluster.routing.operation.hash.djb.DjbHashFunction;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.UncheckedExecutionException;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Resolves the node holding the shard a statement reads from or writes to, so that
+ * the statement can be sent to this node directly instead of being forwarded by the
+ * node which received it.
+ *
+ * The routing is computed from a copy of the cluster state which is fetched periodically.
+ * A stale copy only causes a statement to be sent to a node which doesn't hold the shard
+ * anymore, which executes it like any other node would.
+ */
+class ShardAwareRouting extends AbstractComponent {
+
+    static final String SETTING_ENABLED = "client.shard_aware_routing";
+    static final String SETTING_REFRESH_INTERVAL = "client.shard_aware_routing.refresh_interval";
+
+    // io.crate.Constants and the schema information are not part of the client
+    private static final String DEFAULT_SCHEMA_NAME = "doc";
+    private static final String DEFAULT_MAPPING_TYPE = "default";
+
+    private static final TimeValue DEFAULT_REFRESH_INTERVAL = TimeValue.timeValueSeconds(10);
+    private static final Object NO_ROUTING = new Object();
+
+    private final TransportClientNodesService nodesService;
+    private final TransportActionNodeProxy<ClusterStateRequest, ClusterStateResponse> clusterStateProxy;
+    private final ScheduledFuture<?> refreshFuture;
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+    /**
+     * parsed statements, caches {@link #NO_ROUTING} for statements which are not recognized
+     */
+    private final Cache<String, Object> statements = CacheBuilder.newBuilder().maximumSize(1000).build();
+    private final ConcurrentMap<String, TableRouting> tables = new ConcurrentHashMap<>();
+    private volatile ClusterState clusterState;
+
+    ShardAwareRouting(Settings settings,
+                      TransportService transportService,
+                      TransportClientNodesService nodesService,
+                      ThreadPool threadPool) {
+        super(settings);
+        this.nodesService = nodesService;
+        this.clusterStateProxy = new TransportActionNodeProxy<>(settings, ClusterStateAction.INSTANCE, transportService);
+        this.refreshFuture = threadPool.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                refresh();
+            }
+        }, settings.getAsTime(SETTING_REFRESH_INTERVAL, DEFAULT_REFRESH_INTERVAL));
+    }
+
+    void refresh() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        final ClusterStateRequest request = new ClusterStateRequest()
+                .clear()
+                .nodes(true)
+                .routingTable(true)
+                .metaData(true)
+                .local(true);
+        try {
+            nodesService.execute(new TransportClientNodesService.NodeListenerCallback<ClusterStateResponse>() {
+                @Override
+                public void doWithNode(DiscoveryNode node, ActionListener<ClusterStateResponse> listener)
+                        throws ElasticsearchException {
+                    clusterStateProxy.execute(node, request, listener);
+                }
+            }, new ActionListener<ClusterStateResponse>() {
+                @Override
+                public void onResponse(ClusterStateResponse response) {
+                    clusterState(response.getState());
+                    refreshing.set(false);
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    logger.debug("failed to fetch the cluster state for shard aware routing", e);
+                    refreshing.set(false);
+                }
+            });
+        } catch (Throwable e) {
+            logger.debug("failed to fetch the cluster state for shard aware routing", e);
+            refreshing.set(false);
+        }
+    }
+
+    void clusterState(ClusterState clusterState) {
+        this.clusterState = clusterState;
+    }
+
+    /**
+     * @return the connected node holding the shard the request reads from or writes to
+     *         or null if it is not known
+     */
+    @Nullable
+    DiscoveryNode node(SQLRequest request) {
+        ClusterState state = clusterState;
+        if (state == null) {
+            return null;
+        }
+        RoutingStatement statement = statement(request.stmt());
+        if (statement == null) {
+            return null;
+        }
+        String index = statement.schema() == null || statement.schema().equals(DEFAULT_SCHEMA_NAME)
+                ? statement.table()
+                : statement.schema() + "." + statement.table();
+        IndexMetaData indexMetaData = state.metaData().index(index);
+        IndexRoutingTable indexRoutingTable = state.routingTable().index(index);
+        if (indexMetaData == null || indexRoutingTable == null) {
+            return null;
+        }
+        TableRouting tableRouting = tableRouting(indexMetaData);
+        if (tableRouting.column == null) {
+            return null;
+        }
+        statement = statement.withColumn(tableRouting.column);
+        if (statement == null) {
+            return null;
+        }
+        String routing = tableRouting.routing(statement.value(request.args()));
+        if (routing == null) {
+            return null;
+        }
+        int shardId = Math.abs(DjbHashFunction.DJB_HASH(routing) % indexMetaData.numberOfShards());
+        IndexShardRoutingTable shardRoutingTable = indexRoutingTable.shard(shardId);
+        if (shardRoutingTable == null) {
+            return null;
+        }
+        ShardRouting shardRouting = statement.isWrite()
+                ? shardRoutingTable.primaryShard()
+                : shardRoutingTable.activeShardsRandomIt().nextOrNull();
+        if (shardRouting == null || !shardRouting.started()) {
+            return null;
+        }
+        return connectedNode(state.nodes().get(shardRouting.currentNodeId()));
+    }
+
+    @Nullable
+    private RoutingStatement statement(final String stmt) {
+        try {
+            Object statement = statements.get(stmt, new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    RoutingStatement statement = RoutingStatement.parse(stmt);
+                    return statement == null ? NO_ROUTING : statement;
+                }
+            });
+            return statement == NO_ROUTING ? null : (RoutingStatement) statement;
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            return null;
+        }
+    }
+
+    private TableRouting tableRouting(IndexMetaData indexMetaData) {
+        TableRouting tableRouting = tables.get(indexMetaData.index());
+        if (tableRouting == null || tableRouting.version != indexMetaData.version()) {
+            tableRouting = new TableRouting(indexMetaData);
+            tables.put(indexMetaData.index(), tableRouting);
+        }
+        return tableRouting;
+    }
+
+    /**
+     * the node of the cluster state is only used if the client is connected to it,
+     * either by its id if the client sniffs the cluster or by its address otherwise
+     */
+    @Nullable
+    private DiscoveryNode connectedNode(@Nullable DiscoveryNode node) {
+        if (node == null) {
+            return null;
+        }
+        for (DiscoveryNode connectedNode : nodesService.connectedNodes()) {
+            if (connectedNode.id().equals(node.id()) || connectedNode.address().equals(node.address())) {
+                return connectedNode;
+            }
+        }
+        return null;
+    }
+
+    void close() {
+        refreshFuture.cancel(false);
+    }
+
+    /**
+     * the routing column of a table and how its values are converted into routing values
+     */
+    static class TableRouting {
+
+        private final long version;
+        private final String column;
+        private final boolean isString;
+
+        TableRouting(IndexMetaData indexMetaData) {
+            version = indexMetaData.version();
+            String column = null;
+            boolean isString = false;
+            MappingMetaData mappingMetaData = indexMetaData.mapping(DEFAULT_MAPPING_TYPE);
+            if (mappingMetaData != null) {
+                try {
+                    Map<String, Object> mapping = mappingMetaData.sourceAsMap();
+                    column = routingColumn(mapping);
+                    String type = column == null ? null : columnType(mapping, column);
+                    if (type == null) {
+                        column = null;
+                    } else {
+                        isString = type.equals("string");
+                    }
+                } catch (IOException e) {
+                    column = null;
+                }
+            }
+            this.column = column;
+            this.isString = isString;
+        }
+
+        /**
+         * rows are routed by the value of the clustered by column, if it is part of the primary key
+         * (or the only primary key column) the routing value is the value of the column
+         */
+        @Nullable
+        @SuppressWarnings("unchecked")
+        private static String routingColumn(Map<String, Object> mapping) {
+            Object meta = mapping.get("_meta");
+            if (!(meta instanceof Map)) {
+                return null;
+            }
+            Object primaryKeys = ((Map<String, Object>) meta).get("primary_keys");
+            if (primaryKeys instanceof String) {
+                primaryKeys = Collections.singletonList(primaryKeys);
+            }
+            if (!(primaryKeys instanceof Collection) || ((Collection) primaryKeys).isEmpty()) {
+                return null;
+            }
+            Object routing = ((Map<String, Object>) meta).get("routing");
+            if (routing == null && ((Collection) primaryKeys).size() == 1) {
+                routing = ((Collection) primaryKeys).iterator().next();
+            }
+            if (routing == null || !((Collection) primaryKeys).contains(routing)) {
+                return null;
+            }
+            return routing.toString();
+        }
+
+        @Nullable
+        @SuppressWarnings("unchecked")
+        private static String columnType(Map<String, Object> mapping, String column) {
+            Object properties = mapping.get("properties");
+            if (!(properties instanceof Map)) {
+                return null;
+            }
+            Object columnMapping = ((Map<String, Object>) properties).get(column);
+            if (!(columnMapping instanceof Map)) {
+                return null;
+            }
+            Object type = ((Map<String, Object>) columnMapping).get("type");
+            if (type == null) {
+                return null;
+            }
+            switch (type.toString()) {
+                case "string":
+                case "long":
+                case "integer":
+                case "short":
+                case "byte":
+                case "date":
+                    return type.toString();
+                default:
+                    return null;
+            }
+        }
+
+        /**
+         * converts a value into the routing value the same way the value is converted
+         * if it is inserted, returns null for values which would need a type conversion
+         */
+        @Nullable
+        String routing(@Nullable Object value) {
+            if (value == null) {
+                return null;
+            }
+            if (isString) {
+                return value instanceof String ? (String) value : null;
+            }
+            if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                return Long.toString(((Number) value).longValue());
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,378 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.client;
+
+import io.crate.action.sql.SQLActionException;
+import io.crate.action.sql.SQLBulkRequest;
+import io.crate.action.sql.SQLBulkResponse;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.common.util.concurrent.ListenableFuture;
+import org.elasticsearch.common.util.concurrent.SettableFuture;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.util.*;
+
+/**
+ * Coalesces statements with the same statement string which are issued concurrently
+ * into {@link SQLBulkRequest}s.
+ *
+ * Rows of a statement are collected until either <code>client.batching.max_size</code>
+ * rows are collected or <code>client.batching.window</code> has passed since the first row
+ * was added. At most <code>client.batching.max_outstanding_per_node</code> bulk requests
+ * are in flight per node, further batches wait for a free slot and keep collecting rows
+ * in the meantime, so that batches grow if the cluster can't keep up. At most
+ * <code>client.batching.max_queued</code> rows wait to be sent, further rows are rejected.
+ *
+ * If a bulk request fails as a whole, for example because the parameters of one row can't
+ * be analyzed, its rows are sent again one by one, so only the rows which fail are failed.
+ */
+class StatementBatcher extends AbstractComponent {
+
+    static final String SETTING_WINDOW = "client.batching.window";
+    static final String SETTING_MAX_SIZE = "client.batching.max_size";
+    static final String SETTING_MAX_OUTSTANDING = "client.batching.max_outstanding_per_node";
+    static final String SETTING_MAX_QUEUED = "client.batching.max_queued";
+
+    private static final TimeValue DEFAULT_WINDOW = TimeValue.timeValueMillis(2);
+    private static final int DEFAULT_MAX_SIZE = 1000;
+    private static final int DEFAULT_MAX_OUTSTANDING = 4;
+    private static final int DEFAULT_MAX_QUEUED = 10000;
+
+    /**
+     * key of the outstanding requests if no node is connected yet
+     */
+    private static final String ANY_NODE = "";
+
+    interface Sender {
+
+        /**
+         * @return the nodes bulk requests can be sent to
+         */
+        List<DiscoveryNode> nodes();
+
+        /**
+         * send the request to the given node or to any node if node is null
+         */
+        void send(@Nullable DiscoveryNode node, SQLBulkRequest request, ActionListener<SQLBulkResponse> listener);
+    }
+
+    private final Sender sender;
+    private final ThreadPool threadPool;
+    private final TimeValue window;
+    private final int maxSize;
+    private final int maxOutstanding;
+    private final int maxQueued;
+
+    // all fields below are guarded by this
+    private final Map<String, Batch> pending = new LinkedHashMap<>();
+    private final Deque<Batch> full = new ArrayDeque<>();
+    private final Map<String, Integer> outstanding = new HashMap<>();
+    private int queued = 0;
+    private boolean closed = false;
+
+    StatementBatcher(Settings settings, Sender sender, ThreadPool threadPool) {
+        super(settings);
+        this.sender = sender;
+        this.threadPool = threadPool;
+        this.window = settings.getAsTime(SETTING_WINDOW, DEFAULT_WINDOW);
+        this.maxSize = settings.getAsInt(SETTING_MAX_SIZE, DEFAULT_MAX_SIZE);
+        this.maxOutstanding = settings.getAsInt(SETTING_MAX_OUTSTANDING, DEFAULT_MAX_OUTSTANDING);
+        this.maxQueued = settings.getAsInt(SETTING_MAX_QUEUED, DEFAULT_MAX_QUEUED);
+        if (maxSize < 1) {
+            throw new IllegalArgumentException(SETTING_MAX_SIZE + " must be greater than 0");
+        }
+        if (maxOutstanding < 1) {
+            throw new IllegalArgumentException(SETTING_MAX_OUTSTANDING + " must be greater than 0");
+        }
+        if (maxQueued < maxSize) {
+            throw new IllegalArgumentException(SETTING_MAX_QUEUED + " must not be less than " + SETTING_MAX_SIZE);
+        }
+    }
+
+    /**
+     * add a row to the batch of the given statement
+     *
+     * @return a future which is completed with the row count of the row
+     *         once the bulk request containing it has been executed.
+     *         It fails with an {@link EsRejectedExecutionException} if too many rows wait to be sent.
+     */
+    ListenableFuture<Long> add(String stmt, Object[] args) {
+        SettableFuture<Long> future = SettableFuture.create();
+        boolean isFull = false;
+        synchronized (this) {
+            if (closed) {
+                future.setException(new IllegalStateException("client is closed"));
+                return future;
+            }
+            if (queued >= maxQueued) {
+                future.setException(new EsRejectedExecutionException(
+                        "rejected row, " + queued + " rows are waiting to be sent"));
+                return future;
+            }
+            queued++;
+            Batch batch = pending.get(stmt);
+            if (batch == null) {
+                batch = new Batch(stmt);
+                pending.put(stmt, batch);
+                scheduleExpiry(batch);
+            }
+            batch.add(args, future);
+            if (batch.size() >= maxSize) {
+                pending.remove(stmt);
+                full.add(batch);
+                isFull = true;
+            }
+        }
+        if (isFull) {
+            sendBatches();
+        }
+        return future;
+    }
+
+    private void scheduleExpiry(final Batch batch) {
+        threadPool.schedule(window, ThreadPool.Names.GENERIC, new Runnable() {
+            @Override
+            public void run() {
+                synchronized (StatementBatcher.this) {
+                    batch.expired = true;
+                }
+                sendBatches();
+            }
+        });
+    }
+
+    /**
+     * send full and expired batches as long as there are free slots
+     */
+    private void sendBatches() {
+        while (true) {
+            List<DiscoveryNode> nodes = sender.nodes();
+            final Batch batch;
+            final DiscoveryNode node;
+            final String nodeKey;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (nodes.isEmpty()) {
+                    node = null;
+                    nodeKey = ANY_NODE;
+                    if (outstanding(nodeKey) >= maxOutstanding) {
+                        return;
+                    }
+                } else {
+                    node = leastLoaded(nodes);
+                    if (node == null) {
+                        return;
+                    }
+                    nodeKey = node.id();
+                }
+                batch = pollBatch();
+                if (batch == null) {
+                    return;
+                }
+                outstanding.put(nodeKey, outstanding(nodeKey) + 1);
+            }
+            send(batch, node, nodeKey);
+        }
+    }
+
+    @Nullable
+    private DiscoveryNode leastLoaded(List<DiscoveryNode> nodes) {
+        DiscoveryNode leastLoaded = null;
+        int min = maxOutstanding;
+        for (DiscoveryNode node : nodes) {
+            int numOutstanding = outstanding(node.id());
+            if (numOutstanding < min) {
+                min = numOutstanding;
+                leastLoaded = node;
+            }
+        }
+        return leastLoaded;
+    }
+
+    private int outstanding(String nodeKey) {
+        Integer numOutstanding = outstanding.get(nodeKey);
+        return numOutstanding == null ? 0 : numOutstanding;
+    }
+
+    @Nullable
+    private Batch pollBatch() {
+        Batch batch = full.poll();
+        if (batch != null) {
+            queued -= batch.size();
+            return batch;
+        }
+        for (Iterator<Batch> it = pending.values().iterator(); it.hasNext(); ) {
+            batch = it.next();
+            if (batch.expired) {
+                it.remove();
+                queued -= batch.size();
+                return batch;
+            }
+        }
+        return null;
+    }
+
+    private void send(final Batch batch, @Nullable DiscoveryNode node, final String nodeKey) {
+        ActionListener<SQLBulkResponse> listener = new ActionListener<SQLBulkResponse>() {
+            @Override
+            public void onResponse(SQLBulkResponse response) {
+                release(nodeKey);
+                batch.complete(response);
+                sendBatches();
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                release(nodeKey);
+                if (batch.size() > 1 && ExceptionsHelper.unwrapCause(e) instanceof SQLActionException) {
+                    // the statement failed for all rows, which might be caused by a single row
+                    resendRowByRow(batch);
+                } else {
+                    batch.fail(e);
+                }
+                sendBatches();
+            }
+        };
+        try {
+            sender.send(node, new SQLBulkRequest(batch.stmt, batch.bulkArgs()), listener);
+        } catch (Throwable e) {
+            listener.onFailure(e);
+        }
+    }
+
+    /**
+     * queues every row of the batch as a batch of its own, ahead of all other batches
+     */
+    private void resendRowByRow(Batch batch) {
+        synchronized (this) {
+            if (!closed) {
+                List<Batch> rows = batch.split();
+                for (int i = rows.size() - 1; i >= 0; i--) {
+                    full.addFirst(rows.get(i));
+                }
+                // the rows have been accepted already, so they are queued even if max_queued is exceeded
+                queued += rows.size();
+                return;
+            }
+        }
+        batch.fail(new IllegalStateException("client is closed"));
+    }
+
+    private synchronized void release(String nodeKey) {
+        int numOutstanding = outstanding(nodeKey) - 1;
+        if (numOutstanding <= 0) {
+            outstanding.remove(nodeKey);
+        } else {
+            outstanding.put(nodeKey, numOutstanding);
+        }
+    }
+
+    /**
+     * fails all rows which haven't been sent yet, rows which have been sent are
+     * completed once their response or failure arrives
+     */
+    void close() {
+        List<Batch> unsent;
+        synchronized (this) {
+            closed = true;
+            unsent = new ArrayList<>(full);
+            unsent.addAll(pending.values());
+            full.clear();
+            pending.clear();
+            queued = 0;
+        }
+        IllegalStateException e = new IllegalStateException("client is closed");
+        for (Batch batch : unsent) {
+            batch.fail(e);
+        }
+    }
+
+    private static class Batch {
+
+        private final String stmt;
+        private final List<Object[]> rows = new ArrayList<>();
+        private final List<SettableFuture<Long>> futures = new ArrayList<>();
+        private boolean expired = false;
+
+        Batch(String stmt) {
+            this.stmt = stmt;
+        }
+
+        void add(Object[] args, SettableFuture<Long> future) {
+            rows.add(args);
+            futures.add(future);
+        }
+
+        int size() {
+            return rows.size();
+        }
+
+        Object[][] bulkArgs() {
+            return rows.toArray(new Object[rows.size()][]);
+        }
+
+        /**
+         * @return a batch for every row of this batch
+         */
+        List<Batch> split() {
+            List<Batch> batches = new ArrayList<>(rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                Batch batch = new Batch(stmt);
+                batch.add(rows.get(i), futures.get(i));
+                batches.add(batch);
+            }
+            return batches;
+        }
+
+        void complete(SQLBulkResponse response) {
+            SQLBulkResponse.Result[] results = response.results();
+            for (int i = 0; i < futures.size(); i++) {
+                SettableFuture<Long> future = futures.get(i);
+                if (results == null || i >= results.length) {
+                    future.setException(new IllegalStateException("bulk response is missing the result of the row"));
+                } else if (results[i].errorMessage() != null) {
+                    // the bulk response only contains the message of the error of a row
+                    future.setException(new ElasticsearchException(results[i].errorMessage()));
+                } else {
+                    future.set(results[i].rowCount());
+                }
+            }
+        }
+
+        void fail(Throwable e) {
+            for (SettableFuture<Long> future : futures) {
+                future.setException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class RoutingStatementTest {
+
+    private static Object value(String stmt, String column, Object... args) {
+        RoutingStatement statement = RoutingStatement.parse(stmt);
+        assertThat(statement, notNullValue());
+        statement = statement.withColumn(column);
+        assertThat(statement, notNullValue());
+        return statement.value(args);
+    }
+
+    @Test
+    public void testSelectByPrimaryKey() throws Exception {
+        RoutingStatement statement = RoutingStatement.parse("select name from Users where id = ?");
+        assertThat(statement, notNullValue());
+        assertThat(statement.schema(), nullValue());
+        assertThat(statement.table(), is("users"));
+        assertThat(statement.isWrite(), is(false));
+        assertThat(statement.withColumn("name"), nullValue());
+        assertThat(statement.withColumn("id").value(new Object[]{1L}), is((Object) 1L));
+    }
+
+    @Test
+    public void testParameterPosition() throws Exception {
+        assertThat(value("select ? from t where id = ?", "id", "a", "b"), is((Object) "b"));
+        assertThat(value("select name from t where id = $2", "id", "a", "b"), is((Object) "b"));
+        assertThat(value("update t set name = ?, x = ? where id = ?", "id", "a", "b", "c"), is((Object) "c"));
+        assertThat(value("delete from t where id = ?", "id", "a"), is((Object) "a"));
+        assertThat(value("select name from t where id = ?", "id"), nullValue());
+    }
+
+    @Test
+    public void testLiterals() throws Exception {
+        assertThat(value("select name from t where id = 42", "id"), is((Object) 42L));
+        assertThat(value("select name from t where id = 'x'", "id"), is((Object) "x"));
+    }
+
+    @Test
+    public void testSchemaAndQuotedIdentifiers() throws Exception {
+        RoutingStatement statement = RoutingStatement.parse("update \"Custom\".t set x = 1 where \"Id\" = ?");
+        assertThat(statement, notNullValue());
+        assertThat(statement.schema(), is("Custom"));
+        assertThat(statement.table(), is("t"));
+        assertThat(statement.isWrite(), is(true));
+        assertThat(statement.withColumn("Id"), notNullValue());
+        assertThat(statement.withColumn("id"), nullValue());
+    }
+
+    @Test
+    public void testInsert() throws Exception {
+        String stmt = "insert into t (name, id, x) values (?, ?, 1) on duplicate key update x = x + 1";
+        RoutingStatement statement = RoutingStatement.parse(stmt);
+        assertThat(statement, notNullValue());
+        assertThat(statement.isWrite(), is(true));
+        assertThat(value(stmt, "id", "Arthur", 2L), is((Object) 2L));
+        assertThat(value(stmt, "x", "Arthur", 2L), is((Object) 1L));
+        assertThat(statement.withColumn("y"), nullValue());
+    }
+
+    @Test
+    public void testUnsupportedStatements() throws Exception {
+        assertThat(RoutingStatement.parse("select name from t where id = ? and name = ?"), nullValue());
+        assertThat(RoutingStatement.parse("select name from t where id > ?"), nullValue());
+        assertThat(RoutingStatement.parse("select name from t"), nullValue());
+        assertThat(RoutingStatement.parse("insert into t (id) values (?), (?)"), nullValue());
+        assertThat(RoutingStatement.parse("insert into t (id, name) values (?, 'a')"), nullValue());
+        assertThat(RoutingStatement.parse("insert into t (id) (select id from t2)"), nullValue());
+        assertThat(RoutingStatement.parse("refresh table t"), nullValue());
+    }
+
+    @Test
+    public void testLiteralOutOfLongRange() throws Exception {
+        assertThat(RoutingStatement.parse("select name from t where id = 99999999999999999999"), nullValue());
+        RoutingStatement statement = RoutingStatement.parse("insert into t (id, name) values (99999999999999999999, ?)");
+        assertThat(statement, notNullValue());
+        assertThat(statement.withColumn("id"), nullValue());
+    }
+}
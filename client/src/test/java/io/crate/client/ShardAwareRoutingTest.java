@@ -0,0 +1,166 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client;
+
+import io.crate.action.sql.SQLRequest;
+import org.elasticsearch.Version;
+import org.elasticsearch.client.transport.TransportClientNodesService;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.routing.*;
+import org.elasticsearch.cluster.routing.allocation.decider.AwarenessAllocationDecider;
+import org.elasticsearch.cluster.routing.operation.hash.djb.DjbHashFunction;
+import org.elasticsearch.cluster.routing.operation.plain.PlainOperationRouting;
+import org.elasticsearch.common.collect.ImmutableList;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.transport.LocalTransportAddress;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ShardAwareRoutingTest {
+
+    private static final int NUMBER_OF_SHARDS = 5;
+    private static final String[] NODES = new String[]{"n1", "n2", "n3"};
+
+    private ClusterState clusterState;
+    private ShardAwareRouting routing;
+
+    private static IndexMetaData indexMetaData(String index, String mapping) throws Exception {
+        return IndexMetaData.builder(index)
+                .settings(ImmutableSettings.builder()
+                        .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, NUMBER_OF_SHARDS)
+                        .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0))
+                .putMapping("default", mapping)
+                .build();
+    }
+
+    private static IndexRoutingTable indexRoutingTable(String index) {
+        IndexRoutingTable.Builder builder = IndexRoutingTable.builder(index);
+        for (int i = 0; i < NUMBER_OF_SHARDS; i++) {
+            builder.addIndexShard(new IndexShardRoutingTable.Builder(new ShardId(index, i), true)
+                    .addShard(new ImmutableShardRouting(index, i, NODES[i % NODES.length], true,
+                            ShardRoutingState.STARTED, 1))
+                    .build());
+        }
+        return builder.build();
+    }
+
+    @Before
+    public void setUpRouting() throws Exception {
+        MetaData metaData = MetaData.builder()
+                .put(indexMetaData("users", "{\"default\": {" +
+                        "\"_meta\": {\"primary_keys\": [\"id\"]}," +
+                        "\"properties\": {\"id\": {\"type\": \"long\"}, \"name\": {\"type\": \"string\"}}}}"), false)
+                .put(indexMetaData("custom.tags", "{\"default\": {" +
+                        "\"_meta\": {\"primary_keys\": [\"id\", \"name\"], \"routing\": \"name\"}," +
+                        "\"properties\": {\"id\": {\"type\": \"long\"}, \"name\": {\"type\": \"string\"}}}}"), false)
+                .put(indexMetaData("events", "{\"default\": {" +
+                        "\"properties\": {\"id\": {\"type\": \"long\"}}}}"), false)
+                .build();
+        RoutingTable routingTable = RoutingTable.builder()
+                .add(indexRoutingTable("users"))
+                .add(indexRoutingTable("custom.tags"))
+                .add(indexRoutingTable("events"))
+                .build();
+        DiscoveryNodes.Builder nodes = DiscoveryNodes.builder();
+        ImmutableList.Builder<DiscoveryNode> connectedNodes = ImmutableList.builder();
+        for (String node : NODES) {
+            nodes.put(new DiscoveryNode(node, new LocalTransportAddress(node), Version.CURRENT));
+            // not sniffing, the client only knows the addresses of the nodes
+            connectedNodes.add(new DiscoveryNode("#transport#-" + node, new LocalTransportAddress(node), Version.CURRENT));
+        }
+        clusterState = ClusterState.builder(ClusterName.DEFAULT)
+                .metaData(metaData)
+                .routingTable(routingTable)
+                .nodes(nodes)
+                .build();
+
+        TransportClientNodesService nodesService = mock(TransportClientNodesService.class);
+        when(nodesService.connectedNodes()).thenReturn(connectedNodes.build());
+        routing = new ShardAwareRouting(ImmutableSettings.EMPTY, mock(TransportService.class),
+                nodesService, mock(ThreadPool.class));
+        routing.clusterState(clusterState);
+    }
+
+    /**
+     * the node elasticsearch routes the given routing value to
+     */
+    private String expectedNode(String index, String routingValue) {
+        Settings settings = ImmutableSettings.EMPTY;
+        ShardIterator shards = new PlainOperationRouting(
+                settings, new DjbHashFunction(), new AwarenessAllocationDecider(settings))
+                .indexShards(clusterState, index, "default", routingValue, routingValue);
+        return "#transport#-" + NODES[shards.shardId().id() % NODES.length];
+    }
+
+    @Test
+    public void testRoutedByPrimaryKey() throws Exception {
+        for (long id = 0; id < 20; id++) {
+            DiscoveryNode node = routing.node(new SQLRequest("select name from users where id = ?", new Object[]{id}));
+            assertThat(node, notNullValue());
+            assertThat(node.id(), is(expectedNode("users", Long.toString(id))));
+        }
+        DiscoveryNode node = routing.node(new SQLRequest(
+                "insert into users (name, id) values (?, ?)", new Object[]{"Arthur", 3}));
+        assertThat(node.id(), is(expectedNode("users", "3")));
+    }
+
+    @Test
+    public void testRoutedByClusteredByColumn() throws Exception {
+        DiscoveryNode node = routing.node(new SQLRequest(
+                "delete from custom.tags where name = ?", new Object[]{"crate"}));
+        assertThat(node, notNullValue());
+        assertThat(node.id(), is(expectedNode("custom.tags", "crate")));
+        assertThat(routing.node(new SQLRequest("delete from custom.tags where id = ?", new Object[]{1L})),
+                nullValue());
+    }
+
+    @Test
+    public void testNotRouted() throws Exception {
+        // no primary key
+        assertThat(routing.node(new SQLRequest("select * from events where id = 1")), nullValue());
+        // unknown table
+        assertThat(routing.node(new SQLRequest("select * from unknown where id = 1")), nullValue());
+        // the value would have to be converted
+        assertThat(routing.node(new SQLRequest("select * from users where id = ?", new Object[]{"1"})),
+                nullValue());
+        assertThat(routing.node(new SQLRequest("select * from users where id = ?", new Object[]{null})),
+                nullValue());
+        assertThat(routing.node(new SQLRequest("select * from users")), nullValue());
+        // out of the range of a long
+        assertThat(routing.node(new SQLRequest("select * from users where id = 99999999999999999999")),
+                nullValue());
+    }
+}
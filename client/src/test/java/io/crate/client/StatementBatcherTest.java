@@ -0,0 +1,296 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.client;
+
+import io.crate.action.sql.SQLActionException;
+import io.crate.action.sql.SQLBulkRequest;
+import io.crate.action.sql.SQLBulkResponse;
+import io.crate.types.DataType;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.Version;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.collect.ImmutableList;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.transport.LocalTransportAddress;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.common.util.concurrent.ListenableFuture;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class StatementBatcherTest {
+
+    private static final String STMT = "insert into t (id) values (?)";
+
+    private ThreadPool threadPool;
+    private RecordingSender sender;
+
+    private static class RecordingSender implements StatementBatcher.Sender {
+
+        private final List<DiscoveryNode> nodes = new ArrayList<>();
+        private final List<DiscoveryNode> sentTo = new ArrayList<>();
+        private final List<SQLBulkRequest> requests = new ArrayList<>();
+        private final List<ActionListener<SQLBulkResponse>> listeners = new ArrayList<>();
+
+        @Override
+        public List<DiscoveryNode> nodes() {
+            return nodes;
+        }
+
+        @Override
+        public synchronized void send(@Nullable DiscoveryNode node,
+                                      SQLBulkRequest request,
+                                      ActionListener<SQLBulkResponse> listener) {
+            sentTo.add(node);
+            requests.add(request);
+            listeners.add(listener);
+        }
+
+        synchronized int numRequests() {
+            return requests.size();
+        }
+
+        void respond(int idx, SQLBulkResponse.Result... results) {
+            listeners.get(idx).onResponse(
+                    new SQLBulkResponse(new String[0], results, 0L, new DataType[0], false));
+        }
+    }
+
+    private static DiscoveryNode node(String id) {
+        return new DiscoveryNode(id, new LocalTransportAddress(id), Version.CURRENT);
+    }
+
+    private StatementBatcher batcher(String window, int maxSize, int maxOutstanding) {
+        return batcher(window, maxSize, maxOutstanding, 10000);
+    }
+
+    private StatementBatcher batcher(String window, int maxSize, int maxOutstanding, int maxQueued) {
+        Settings settings = ImmutableSettings.builder()
+                .put(StatementBatcher.SETTING_WINDOW, window)
+                .put(StatementBatcher.SETTING_MAX_SIZE, maxSize)
+                .put(StatementBatcher.SETTING_MAX_OUTSTANDING, maxOutstanding)
+                .put(StatementBatcher.SETTING_MAX_QUEUED, maxQueued)
+                .build();
+        return new StatementBatcher(settings, sender, threadPool);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        threadPool = new ThreadPool("testing");
+        sender = new RecordingSender();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        threadPool.shutdownNow();
+        threadPool.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testFullBatchIsSentImmediately() throws Exception {
+        StatementBatcher batcher = batcher("1h", 3, 1);
+        ListenableFuture<Long> f1 = batcher.add(STMT, new Object[]{1});
+        ListenableFuture<Long> f2 = batcher.add(STMT, new Object[]{2});
+        assertThat(sender.numRequests(), is(0));
+        ListenableFuture<Long> f3 = batcher.add(STMT, new Object[]{3});
+        assertThat(sender.numRequests(), is(1));
+
+        SQLBulkRequest request = sender.requests.get(0);
+        assertThat(request.stmt(), is(STMT));
+        assertThat(request.bulkArgs().length, is(3));
+        assertThat((Integer) request.bulkArgs()[2][0], is(3));
+
+        sender.respond(0,
+                new SQLBulkResponse.Result(null, 1L),
+                new SQLBulkResponse.Result(null, 0L),
+                new SQLBulkResponse.Result(null, 1L));
+        assertThat(f1.get(), is(1L));
+        assertThat(f2.get(), is(0L));
+        assertThat(f3.get(), is(1L));
+    }
+
+    @Test
+    public void testBatchIsSentAfterWindow() throws Exception {
+        StatementBatcher batcher = batcher("10ms", 1000, 2);
+        batcher.add(STMT, new Object[]{1});
+        batcher.add(STMT, new Object[]{2});
+        batcher.add("insert into t2 (id) values (?)", new Object[]{3});
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sender.numRequests() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(sender.numRequests(), is(2));
+        assertThat(sender.requests.get(0).bulkArgs().length + sender.requests.get(1).bulkArgs().length, is(3));
+    }
+
+    @Test
+    public void testFailedRowsAndRequests() throws Exception {
+        StatementBatcher batcher = batcher("1h", 2, 2);
+        ListenableFuture<Long> f1 = batcher.add(STMT, new Object[]{1});
+        ListenableFuture<Long> f2 = batcher.add(STMT, new Object[]{1});
+        ListenableFuture<Long> f3 = batcher.add(STMT, new Object[]{2});
+        ListenableFuture<Long> f4 = batcher.add(STMT, new Object[]{3});
+        assertThat(sender.numRequests(), is(2));
+
+        sender.respond(0,
+                new SQLBulkResponse.Result(null, 1L),
+                new SQLBulkResponse.Result("duplicate key", -2L));
+        sender.listeners.get(1).onFailure(new IllegalStateException("node gone"));
+
+        assertThat(f1.get(), is(1L));
+        assertFailure(f2, ElasticsearchException.class, "duplicate key");
+        assertFailure(f3, IllegalStateException.class, "node gone");
+        assertFailure(f4, IllegalStateException.class, "node gone");
+    }
+
+    @Test
+    public void testFailedRequestIsSentAgainRowByRow() throws Exception {
+        StatementBatcher batcher = batcher("1h", 3, 1);
+        ListenableFuture<Long> f1 = batcher.add(STMT, new Object[]{1});
+        ListenableFuture<Long> f2 = batcher.add(STMT, new Object[]{"invalid"});
+        ListenableFuture<Long> f3 = batcher.add(STMT, new Object[]{3});
+        assertThat(sender.numRequests(), is(1));
+
+        sender.listeners.get(0).onFailure(new SQLActionException(
+                "Validation failed for id: invalid", 4003, RestStatus.BAD_REQUEST, ""));
+        assertThat(sender.numRequests(), is(2));
+        assertThat((Integer) sender.requests.get(1).bulkArgs()[0][0], is(1));
+        sender.respond(1, new SQLBulkResponse.Result(null, 1L));
+        assertThat(sender.numRequests(), is(3));
+        assertThat((String) sender.requests.get(2).bulkArgs()[0][0], is("invalid"));
+        sender.listeners.get(2).onFailure(new SQLActionException(
+                "Validation failed for id: invalid", 4003, RestStatus.BAD_REQUEST, ""));
+        assertThat(sender.numRequests(), is(4));
+        assertThat(sender.requests.get(3).bulkArgs().length, is(1));
+        sender.respond(3, new SQLBulkResponse.Result(null, 1L));
+
+        assertThat(f1.get(), is(1L));
+        assertFailure(f2, SQLActionException.class, "Validation failed for id: invalid");
+        assertThat(f3.get(), is(1L));
+    }
+
+    @Test
+    public void testRowsAreRejectedIfTooManyAreQueued() throws Exception {
+        StatementBatcher batcher = batcher("1h", 2, 1, 4);
+        batcher.add(STMT, new Object[]{1});
+        batcher.add(STMT, new Object[]{2});
+        assertThat(sender.numRequests(), is(1));
+        for (int i = 3; i <= 6; i++) {
+            batcher.add(STMT, new Object[]{i});
+        }
+        // the first request is still outstanding, so 4 rows are queued
+        assertThat(sender.numRequests(), is(1));
+        ListenableFuture<Long> rejected = batcher.add(STMT, new Object[]{7});
+        try {
+            rejected.get();
+            fail("expected the row to be rejected");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(EsRejectedExecutionException.class));
+        }
+
+        sender.respond(0, new SQLBulkResponse.Result(null, 1L), new SQLBulkResponse.Result(null, 1L));
+        assertThat(sender.numRequests(), is(2));
+        ListenableFuture<Long> accepted = batcher.add(STMT, new Object[]{8});
+        assertThat(accepted.isDone(), is(false));
+    }
+
+    @Test
+    public void testOutstandingRequestsPerNodeAreLimited() throws Exception {
+        sender.nodes.addAll(ImmutableList.of(node("n1"), node("n2")));
+        StatementBatcher batcher = batcher("1h", 1, 1);
+        batcher.add(STMT, new Object[]{1});
+        batcher.add(STMT, new Object[]{2});
+        batcher.add(STMT, new Object[]{3});
+        batcher.add(STMT, new Object[]{4});
+
+        // one request per node, the others wait for a free slot
+        assertThat(sender.numRequests(), is(2));
+        assertThat(sender.sentTo.get(0).id(), is("n1"));
+        assertThat(sender.sentTo.get(1).id(), is("n2"));
+
+        sender.respond(1, new SQLBulkResponse.Result(null, 1L));
+        assertThat(sender.numRequests(), is(3));
+        assertThat(sender.sentTo.get(2).id(), is("n2"));
+
+        sender.respond(0, new SQLBulkResponse.Result(null, 1L));
+        assertThat(sender.numRequests(), is(4));
+        assertThat(sender.sentTo.get(3).id(), is("n1"));
+    }
+
+    @Test
+    public void testBatchesGrowWhileWaitingForASlot() throws Exception {
+        StatementBatcher batcher = batcher("1ms", 1000, 1);
+        batcher.add(STMT, new Object[]{1});
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sender.numRequests() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(sender.numRequests(), is(1));
+        assertThat(sender.sentTo.get(0), nullValue());
+
+        batcher.add(STMT, new Object[]{2});
+        Thread.sleep(20);
+        batcher.add(STMT, new Object[]{3});
+        assertThat(sender.numRequests(), is(1));
+
+        sender.respond(0, new SQLBulkResponse.Result(null, 1L));
+        assertThat(sender.numRequests(), is(2));
+        assertThat(sender.requests.get(1).bulkArgs().length, is(2));
+    }
+
+    @Test
+    public void testCloseFailsUnsentRows() throws Exception {
+        StatementBatcher batcher = batcher("1h", 1000, 1);
+        ListenableFuture<Long> f1 = batcher.add(STMT, new Object[]{1});
+        batcher.close();
+        assertFailure(f1, IllegalStateException.class, "client is closed");
+        assertFailure(batcher.add(STMT, new Object[]{2}), IllegalStateException.class, "client is closed");
+        assertThat(sender.numRequests(), is(0));
+    }
+
+    private static void assertFailure(ListenableFuture<Long> future,
+                                      Class<? extends Throwable> type,
+                                      String message) throws InterruptedException {
+        try {
+            future.get();
+            fail("expected the future to fail");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(type));
+            assertThat(e.getCause().getMessage(), is(message));
+        }
+    }
+}
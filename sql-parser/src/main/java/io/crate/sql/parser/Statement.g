@@ -79,6 +79,7 @@ tokens {
     CREATE_TABLE;
     CREATE_BLOB_TABLE;
     CREATE_MATERIALIZED_VIEW;
+    CREATE_ROLLUP;
     REFRESH_MATERIALIZED_VIEW;
     VIEW_REFRESH;
     CREATE_ALIAS;
@@ -194,10 +195,8 @@ statement
 //    | showPartitionsStmt
 //    | showFunctionsStmt
     | CREATE createStatement -> createStatement
-//    | createMaterializedViewStmt
     | ALTER alterStatement -> alterStatement
     | DROP dropStatement -> dropStatement
-//    | refreshMaterializedViewStmt
     | insertStmt
     | deleteStmt
     | updateStmt
@@ -205,6 +204,7 @@ statement
     | refreshStmt
     | setStmt
     | resetStmt
+    | killStmt
     ;
 
 query
@@ -690,11 +690,11 @@ showFunctionsStmt
     ;
 
 createMaterializedViewStmt
-    : CREATE MATERIALIZED VIEW qname r=viewRefresh? AS s=restrictedSelectStmt -> ^(CREATE_MATERIALIZED_VIEW qname $r? $s)
+    : qname r=viewRefresh? AS query -> ^(CREATE_MATERIALIZED_VIEW qname $r? query)
     ;
 
-refreshMaterializedViewStmt
-    : REFRESH MATERIALIZED VIEW qname -> ^(REFRESH_MATERIALIZED_VIEW qname)
+createRollupStmt
+    : qname AS query -> ^(CREATE_ROLLUP qname query)
     ;
 
 viewRefresh
@@ -809,6 +809,8 @@ createStatement
     | BLOB TABLE createBlobTableStmt -> createBlobTableStmt
     | ALIAS createAliasStmt -> createAliasStmt
     | ANALYZER createAnalyzerStmt -> createAnalyzerStmt
+    | MATERIALIZED VIEW createMaterializedViewStmt -> createMaterializedViewStmt
+    | ROLLUP createRollupStmt -> createRollupStmt
     ;
 
 createTableStmt
@@ -1002,6 +1004,7 @@ namedProperties
 
 refreshStmt
     : REFRESH TABLE tableWithPartition -> ^(REFRESH tableWithPartition)
+    | REFRESH MATERIALIZED VIEW qname -> ^(REFRESH_MATERIALIZED_VIEW qname)
     ;
 
 setStmt
@@ -1012,6 +1015,10 @@ resetStmt
     : RESET GLOBAL columnList -> ^(RESET columnList)
     ;
 
+killStmt
+    : KILL parameterOrSimpleLiteral -> ^(KILL parameterOrSimpleLiteral)
+    ;
+
 settingsType
     : TRANSIENT
     | PERSISTENT
@@ -1023,10 +1030,10 @@ nonReserved
     | EXTENDS | FOLLOWING | FORMAT | FULLTEXT | FUNCTIONS | GEO_POINT | GLOBAL
     | GRAPHVIZ | HOUR | IGNORED | INTERVAL | LOGICAL | MATERIALIZED | MINUTE
     | MONTH | OFF | OVER | PARTITION | PARTITIONED | PARTITIONS | PLAIN
-    | PRECEDING | RANGE | REFRESH | ROW | ROWS | SCHEMAS | SECOND
+    | PRECEDING | RANGE | REFRESH | ROLLUP | ROW | ROWS | SCHEMAS | SECOND
     | SHARDS | SHOW | STRICT | SYSTEM | TABLES | TABLESAMPLE | TEXT | TIME
     | TIMESTAMP | TO | TOKENIZER | TOKEN_FILTERS | TYPE | VIEW | YEAR
-    | DUPLICATE | KEY | VALUES
+    | DUPLICATE | KEY | VALUES | KILL
     ;
 
 SELECT: 'SELECT';
@@ -1149,6 +1156,7 @@ FUNCTIONS: 'FUNCTIONS';
 MATERIALIZED: 'MATERIALIZED';
 VIEW: 'VIEW';
 REFRESH: 'REFRESH';
+ROLLUP: 'ROLLUP';
 DROP: 'DROP';
 ALIAS: 'ALIAS';
 UNION: 'UNION';
@@ -1167,6 +1175,7 @@ KEY: 'KEY';
 DUPLICATE: 'DUPLICATE';
 SET: 'SET';
 RESET: 'RESET';
+KILL: 'KILL';
 COPY: 'COPY';
 CLUSTERED: 'CLUSTERED';
 SHARDS: 'SHARDS';
@@ -81,6 +81,7 @@ statement returns [Statement value]
     | alterBlobTable            { $value = $alterBlobTable.value; }
     | createBlobTable           { $value = $createBlobTable.value; }
     | createMaterializedView    { $value = $createMaterializedView.value; }
+    | createRollup              { $value = $createRollup.value; }
     | refreshMaterializedView   { $value = $refreshMaterializedView.value; }
     | createAlias               { $value = $createAlias.value; }
     | dropAlias                 { $value = $dropAlias.value; }
@@ -95,6 +96,7 @@ statement returns [Statement value]
     | refresh                   { $value = $refresh.value; }
     | set                       { $value = $set.value; }
     | resetStatement            { $value = $resetStatement.value; }
+    | kill                      { $value = $kill.value; }
     ;
 
 query returns [Query value]
@@ -626,8 +628,13 @@ showFunctions returns [Statement value]
     ;
 
 createMaterializedView returns [Statement value]
-    : ^(CREATE_MATERIALIZED_VIEW qname refreshView=viewRefresh? select=restrictedSelectStmt)
-        { $value = new CreateMaterializedView($qname.value, Optional.fromNullable($refreshView.value), $select.value); }
+    : ^(CREATE_MATERIALIZED_VIEW qname refreshView=viewRefresh? query)
+        { $value = new CreateMaterializedView($qname.value, Optional.fromNullable($refreshView.value), $query.value); }
+    ;
+
+createRollup returns [Statement value]
+    : ^(CREATE_ROLLUP qname query)
+        { $value = new CreateMaterializedView($qname.value, Optional.<String>absent(), $query.value, true); }
     ;
 
 refreshMaterializedView returns [Statement value]
@@ -961,3 +968,7 @@ set returns [SetStatement value]
 resetStatement returns [ResetStatement value]
     : ^(RESET columns=columnList) { $value = new ResetStatement($columns.value); }
     ;
+
+kill returns [KillStatement value]
+    : ^(KILL parameterOrSimpleLiteral) { $value = new KillStatement($parameterOrSimpleLiteral.value); }
+    ;
@@ -557,6 +557,10 @@ public abstract class AstVisitor<R, C>
         return visitStatement(node, context);
     }
 
+    public R visitKillStatement(KillStatement node, C context) {
+        return visitStatement(node, context);
+    }
+
     public R visitAlterTableAddColumnStatement(AlterTableAddColumn node, C context) {
         return visitStatement(node, context);
     }
@@ -32,12 +32,19 @@ public class CreateMaterializedView
     private final QualifiedName name;
     private final Optional<String> refresh;
     private final Query tableDefinition;
+    private final boolean rollup;
 
     public CreateMaterializedView(QualifiedName name, Optional<String> refresh, Query tableDefinition)
+    {
+        this(name, refresh, tableDefinition, false);
+    }
+
+    public CreateMaterializedView(QualifiedName name, Optional<String> refresh, Query tableDefinition, boolean rollup)
     {
         this.name = checkNotNull(name, "name is null");
         this.refresh = checkNotNull(refresh, "refresh is null");
         this.tableDefinition = checkNotNull(tableDefinition, "tableDefinition is null");
+        this.rollup = rollup;
     }
 
     public QualifiedName getName()
@@ -55,6 +62,14 @@ public class CreateMaterializedView
         return tableDefinition;
     }
 
+    /**
+     * true if created using <code>CREATE ROLLUP</code>
+     */
+    public boolean isRollup()
+    {
+        return rollup;
+    }
+
     @Override
     public <R, C> R accept(AstVisitor<R, C> visitor, C context)
     {
@@ -64,7 +79,7 @@ public class CreateMaterializedView
     @Override
     public int hashCode()
     {
-        return Objects.hashCode(name, refresh, tableDefinition);
+        return Objects.hashCode(name, refresh, tableDefinition, rollup);
     }
 
     @Override
@@ -79,7 +94,8 @@ public class CreateMaterializedView
         CreateMaterializedView o = (CreateMaterializedView) obj;
         return Objects.equal(name, o.name)
                 && Objects.equal(refresh, o.refresh)
-                && Objects.equal(tableDefinition, o.tableDefinition);
+                && Objects.equal(tableDefinition, o.tableDefinition)
+                && rollup == o.rollup;
     }
 
     @Override
@@ -89,6 +105,7 @@ public class CreateMaterializedView
                 .add("name", name)
                 .add("refresh", refresh)
                 .add("tableDefinition", tableDefinition)
+                .add("rollup", rollup)
                 .toString();
     }
 }
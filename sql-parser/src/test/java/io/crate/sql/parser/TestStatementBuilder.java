@@ -208,6 +208,9 @@ public class TestStatementBuilder
         printStatement("refresh table tableh partition (pcol='val')");
         printStatement("refresh table tableh partition (pcol=?)");
         printStatement("refresh table tableh partition (pcol['nested'] = ?)");
+        printStatement("refresh materialized view v");
+        printStatement("create materialized view v as select day, count(*) as cnt from t group by day");
+        printStatement("create rollup r as select day, count(*) as cnt, sum(x) as sum_x from t group by day");
 
         printStatement("alter table t set (number_of_replicas=4)");
         printStatement("alter table schema.t set (number_of_replicas=4)");
@@ -315,6 +318,12 @@ public class TestStatementBuilder
         printStatement("reset global some_setting['nested'], other_setting");
     }
 
+    @Test
+    public void testKill() throws Exception {
+        printStatement("kill '6a3d6401-4333-933d-b38c-9322863a8e4e'");
+        printStatement("kill ?");
+    }
+
     @Test
     public void testParameterExpressionLimitOffset() throws Exception {
         // ORMs like SQLAlchemy generate these kind of queries.
@@ -91,16 +91,19 @@ public class DDLStatementDispatcher extends AnalyzedStatementVisitor<Void, Liste
     private final BlobIndices blobIndices;
     private final Provider<Executor> executorProvider;
     private final TransportActionProvider transportActionProvider;
+    private final MaterializedViews materializedViews;
 
     @Inject
     public DDLStatementDispatcher(ClusterService clusterService,
                                   BlobIndices blobIndices,
                                   Provider<Executor> executorProvider,
-                                  TransportActionProvider transportActionProvider) {
+                                  TransportActionProvider transportActionProvider,
+                                  MaterializedViews materializedViews) {
         this.clusterService = clusterService;
         this.blobIndices = blobIndices;
         this.executorProvider = executorProvider;
         this.transportActionProvider = transportActionProvider;
+        this.materializedViews = materializedViews;
     }
 
     @Override
@@ -338,6 +341,18 @@ public class DDLStatementDispatcher extends AnalyzedStatementVisitor<Void, Liste
         }
     }
 
+    @Override
+    public ListenableFuture<Long> visitCreateMaterializedViewStatement(CreateMaterializedViewAnalyzedStatement analysis,
+                                                                      Void context) {
+        return materializedViews.create(analysis);
+    }
+
+    @Override
+    public ListenableFuture<Long> visitRefreshMaterializedViewStatement(RefreshMaterializedViewAnalyzedStatement analysis,
+                                                                       Void context) {
+        return materializedViews.refresh(analysis.table().ident());
+    }
+
     private ListenableFuture<Long> wrapRowCountFuture(ListenableFuture<?> wrappedFuture, final Long rowCount) {
         final SettableFuture<Long> wrappingFuture = SettableFuture.create();
         Futures.addCallback(wrappedFuture, new FutureCallback<Object>() {
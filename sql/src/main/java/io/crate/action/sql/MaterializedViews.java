@@ -0,0 +1,839 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.action.sql;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Functions;
+import com.google.common.base.Joiner;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.FutureFallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import io.crate.Constants;
+import io.crate.analyze.Analysis;
+import io.crate.analyze.AnalyzedStatement;
+import io.crate.analyze.AnalyzedStatementVisitor;
+import io.crate.analyze.Analyzer;
+import io.crate.analyze.CopyAnalyzedStatement;
+import io.crate.analyze.CreateMaterializedViewAnalyzedStatement;
+import io.crate.analyze.DeleteAnalyzedStatement;
+import io.crate.analyze.InsertFromSubQueryAnalyzedStatement;
+import io.crate.analyze.InsertFromValuesAnalyzedStatement;
+import io.crate.analyze.QueriedTable;
+import io.crate.analyze.SelectAnalyzedStatement;
+import io.crate.analyze.UpdateAnalyzedStatement;
+import io.crate.analyze.relations.TableRelation;
+import io.crate.exceptions.ResourceUnknownException;
+import io.crate.exceptions.UnhandledServerException;
+import io.crate.executor.Executor;
+import io.crate.executor.Job;
+import io.crate.executor.TaskResult;
+import io.crate.executor.transport.TransportActionProvider;
+import io.crate.executor.transport.view.TransportViewUpkeepAction;
+import io.crate.executor.transport.view.ViewUpkeepRequest;
+import io.crate.metadata.PartitionName;
+import io.crate.metadata.ReferenceInfo;
+import io.crate.metadata.ReferenceInfos;
+import io.crate.metadata.TableIdent;
+import io.crate.metadata.doc.DocTableInfo;
+import io.crate.metadata.doc.RollupInfo;
+import io.crate.metadata.table.TableInfo;
+import io.crate.planner.IterablePlan;
+import io.crate.planner.Plan;
+import io.crate.planner.Planner;
+import io.crate.planner.node.ddl.CreateTableNode;
+import io.crate.sql.parser.SqlParser;
+import io.crate.sql.tree.*;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ShardOperationFailedException;
+import org.elasticsearch.action.admin.indices.alias.Alias;
+import org.elasticsearch.action.admin.indices.mapping.put.PutMappingRequest;
+import org.elasticsearch.action.admin.indices.mapping.put.PutMappingResponse;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.admin.indices.refresh.RefreshResponse;
+import org.elasticsearch.action.admin.indices.segments.*;
+import org.elasticsearch.action.admin.indices.template.put.PutIndexTemplateRequest;
+import org.elasticsearch.action.admin.indices.template.put.PutIndexTemplateResponse;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.IndexTemplateMetaData;
+import org.elasticsearch.cluster.metadata.MappingMetaData;
+import org.elasticsearch.common.hppc.cursors.ObjectCursor;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.inject.Provider;
+import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.index.engine.Segment;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Creates and refreshes materialized views.
+ *
+ * A refresh makes pending writes to the source table visible and fingerprints every index
+ * (partition) of the source table using the segments of its primary shards.
+ * If the view contains the partition columns of its source, only the rows of partitions
+ * whose fingerprint changed since the last refresh are deleted and recomputed, otherwise
+ * the whole view is recomputed as soon as any partition changed.
+ * Rows are written using <code>INSERT INTO view (...) SELECT ...</code>.
+ * Refreshes are sent to the master node which runs the refreshes of a view one after another,
+ * so the rows deleted and inserted by two refreshes of the same view never interleave.
+ * Queries on the view may miss the rows of a partition while it is recomputed.
+ *
+ * Rollups are materialized views which are registered at their source table and refreshed
+ * in the background after every write statement on it. Refreshes requested while another
+ * refresh of the same view is waiting to start are answered by the waiting one.
+ * A query is only answered by a rollup if the fingerprints recorded by its last refresh match
+ * the current fingerprints of its source table, see {@link #upToDateRollups(AnalyzedStatement)}.
+ */
+@Singleton
+public class MaterializedViews {
+
+    private static final Object[] EMPTY_ARGS = new Object[0];
+    private static final Object[][] EMPTY_BULK_ARGS = new Object[0][];
+    private static final WrittenTableVisitor WRITTEN_TABLE_VISITOR = new WrittenTableVisitor();
+
+    private final ESLogger logger = Loggers.getLogger(getClass());
+
+    private final ClusterService clusterService;
+    private final ReferenceInfos referenceInfos;
+    private final Provider<Analyzer> analyzerProvider;
+    private final Provider<Planner> plannerProvider;
+    private final Provider<Executor> executorProvider;
+    private final TransportActionProvider transportActionProvider;
+    private final Provider<TransportIndicesSegmentsAction> transportIndicesSegmentsActionProvider;
+    private final TransportViewUpkeepAction viewUpkeepAction;
+
+    /**
+     * completed once the last upkeep of a view started on this node is done, by view index name
+     */
+    private final ConcurrentMap<String, SettableFuture<Void>> lastUpkeep = new ConcurrentHashMap<>();
+
+    /**
+     * refreshes which wait for the previous upkeep of a view to finish, by view index name
+     */
+    private final ConcurrentMap<String, SettableFuture<Long>> queuedRefreshes = new ConcurrentHashMap<>();
+
+    @Inject
+    public MaterializedViews(ClusterService clusterService,
+                             ReferenceInfos referenceInfos,
+                             Provider<Analyzer> analyzerProvider,
+                             Provider<Planner> plannerProvider,
+                             Provider<Executor> executorProvider,
+                             TransportActionProvider transportActionProvider,
+                             Provider<TransportIndicesSegmentsAction> transportIndicesSegmentsActionProvider,
+                             TransportViewUpkeepAction viewUpkeepAction) {
+        this.clusterService = clusterService;
+        this.referenceInfos = referenceInfos;
+        this.analyzerProvider = analyzerProvider;
+        this.plannerProvider = plannerProvider;
+        this.executorProvider = executorProvider;
+        this.transportActionProvider = transportActionProvider;
+        this.transportIndicesSegmentsActionProvider = transportIndicesSegmentsActionProvider;
+        this.viewUpkeepAction = viewUpkeepAction;
+    }
+
+    /**
+     * creates the table of the view and populates it
+     *
+     * @return a future returning the number of rows written to the view
+     */
+    public ListenableFuture<Long> create(final CreateMaterializedViewAnalyzedStatement analysis) {
+        Plan plan = new IterablePlan(CreateTableNode.createTableNode(
+                analysis.tableIdent(),
+                analysis.tableParameter().settings(),
+                analysis.mapping()
+        ));
+        ListenableFuture<Long> rowCount = Futures.transform(execute(plan), new AsyncFunction<List<TaskResult>, Long>() {
+            @Override
+            public ListenableFuture<Long> apply(List<TaskResult> input) throws Exception {
+                return refresh(analysis.tableIdent());
+            }
+        });
+        final RollupInfo rollup = analysis.rollup();
+        if (rollup == null) {
+            return rowCount;
+        }
+        return Futures.transform(rowCount, new AsyncFunction<Long, Long>() {
+            @Override
+            public ListenableFuture<Long> apply(final Long viewRowCount) throws Exception {
+                ListenableFuture<Void> registered = register(analysis.source(), rollup);
+                return Futures.transform(registered, new AsyncFunction<Void, Long>() {
+                    @Override
+                    public ListenableFuture<Long> apply(Void input) throws Exception {
+                        // catch up with writes done before the rollup was registered
+                        return Futures.transform(refresh(rollup.ident()), Functions.constant(viewRowCount));
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Refreshes the rollups of the table written by the given statement in the background
+     * once the write is done, whether it succeeded or not.
+     * Failing refreshes are logged, until a later refresh succeeds queries aren't answered
+     * by the rollup.
+     */
+    public void maintainRollups(AnalyzedStatement statement, ListenableFuture<?> write) {
+        TableInfo table = WRITTEN_TABLE_VISITOR.process(statement, null);
+        if (!(table instanceof DocTableInfo) || ((DocTableInfo) table).rollups().isEmpty()) {
+            return;
+        }
+        final List<RollupInfo> rollups = ((DocTableInfo) table).rollups();
+        write.addListener(new Runnable() {
+            @Override
+            public void run() {
+                for (RollupInfo rollup : rollups) {
+                    if (rollupTable(rollup) != null) {
+                        refreshInBackground(rollup.ident());
+                    }
+                }
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Fingerprints the source table of a query which could be answered by one of its rollups.
+     * Rollups which are not up to date are refreshed in the background, so the rollup can be used
+     * again after the source table changed without a write, e.g. by merging segments.
+     *
+     * @return a future returning the idents of the rollups of the queried table whose recorded
+     *         fingerprints match the current ones of the table. Empty if the fingerprints
+     *         can't be retrieved.
+     */
+    public ListenableFuture<Set<TableIdent>> upToDateRollups(AnalyzedStatement statement) {
+        Set<TableIdent> none = Collections.emptySet();
+        if (!(statement instanceof SelectAnalyzedStatement)
+                || !(((SelectAnalyzedStatement) statement).relation() instanceof QueriedTable)) {
+            return Futures.immediateFuture(none);
+        }
+        QueriedTable relation = (QueriedTable) ((SelectAnalyzedStatement) statement).relation();
+        if (relation.querySpec().groupBy() == null && !relation.querySpec().hasAggregates()) {
+            return Futures.immediateFuture(none);
+        }
+        TableInfo source = relation.tableRelation().tableInfo();
+        if (!(source instanceof DocTableInfo) || ((DocTableInfo) source).rollups().isEmpty()) {
+            return Futures.immediateFuture(none);
+        }
+        final List<RollupInfo> rollups = ((DocTableInfo) source).rollups();
+        ListenableFuture<Set<TableIdent>> upToDate = Futures.transform(fingerprints(source.concreteIndices()),
+                new com.google.common.base.Function<Map<String, String>, Set<TableIdent>>() {
+                    @Override
+                    public Set<TableIdent> apply(Map<String, String> fingerprints) {
+                        Set<TableIdent> upToDate = new HashSet<>();
+                        for (RollupInfo rollup : rollups) {
+                            TableInfo view = rollupTable(rollup);
+                            if (view == null) {
+                                continue;
+                            }
+                            if (!fingerprints.containsValue(null) && fingerprints.equals(
+                                    viewMeta(view).get(CreateMaterializedViewAnalyzedStatement.META_FINGERPRINTS))) {
+                                upToDate.add(rollup.ident());
+                            } else {
+                                refreshInBackground(rollup.ident());
+                            }
+                        }
+                        return upToDate;
+                    }
+                });
+        return Futures.withFallback(upToDate, new FutureFallback<Set<TableIdent>>() {
+            @Override
+            public ListenableFuture<Set<TableIdent>> create(@Nonnull Throwable t) throws Exception {
+                logger.debug("Could not fingerprint the source table of rollups {}", t, rollups);
+                return Futures.<Set<TableIdent>>immediateFuture(Collections.<TableIdent>emptySet());
+            }
+        });
+    }
+
+    @Nullable
+    private TableInfo rollupTable(RollupInfo rollup) {
+        try {
+            return referenceInfos.getTableInfo(rollup.ident());
+        } catch (ResourceUnknownException e) {
+            // the rollup table was dropped
+            return null;
+        }
+    }
+
+    private void refreshInBackground(final TableIdent viewIdent) {
+        Futures.addCallback(refresh(viewIdent), new FutureCallback<Long>() {
+            @Override
+            public void onSuccess(@Nullable Long result) {
+            }
+
+            @Override
+            public void onFailure(@Nonnull Throwable t) {
+                logger.warn("Failed to refresh rollup {}", t, viewIdent.fqn());
+            }
+        });
+    }
+
+    /**
+     * stores the rollup definition in the <code>_meta</code> of the source table,
+     * the template and every partition if partitioned.
+     */
+    private ListenableFuture<Void> register(TableIdent sourceIdent, RollupInfo rollup) {
+        TableInfo source = referenceInfos.getTableInfoUnsafe(sourceIdent);
+        List<ListenableFuture<Void>> futures = new ArrayList<>();
+        if (source.isPartitioned()) {
+            futures.add(registerAtTemplate(
+                    PartitionName.templateName(sourceIdent.schema(), sourceIdent.name()), rollup));
+        }
+        for (String index : source.concreteIndices()) {
+            Map<String, Object> meta = meta(index);
+            addRollup(meta, rollup);
+            futures.add(putMeta(index, meta));
+        }
+        return Futures.transform(Futures.allAsList(futures), Functions.<Void>constant(null));
+    }
+
+    @SuppressWarnings("unchecked")
+    private ListenableFuture<Void> registerAtTemplate(String templateName, RollupInfo rollup) {
+        IndexTemplateMetaData template = clusterService.state().metaData().templates().get(templateName);
+        if (template == null) {
+            return Futures.immediateFailedFuture(new IllegalStateException(
+                    "Template " + templateName + " of partitioned table is missing"));
+        }
+        Map<String, Object> mapping;
+        try {
+            mapping = XContentHelper.convertToMap(
+                    template.mappings().get(Constants.DEFAULT_MAPPING_TYPE).uncompressed(), true).v2();
+        } catch (IOException e) {
+            return Futures.immediateFailedFuture(e);
+        }
+        if (mapping.size() == 1 && mapping.containsKey(Constants.DEFAULT_MAPPING_TYPE)) {
+            mapping = (Map<String, Object>) mapping.get(Constants.DEFAULT_MAPPING_TYPE);
+        }
+        Map<String, Object> meta = (Map<String, Object>) mapping.get("_meta");
+        if (meta == null) {
+            meta = new HashMap<>();
+            mapping.put("_meta", meta);
+        }
+        addRollup(meta, rollup);
+
+        PutIndexTemplateRequest request = new PutIndexTemplateRequest(templateName)
+                .mapping(Constants.DEFAULT_MAPPING_TYPE, mapping)
+                .create(false)
+                .order(template.order())
+                .settings(template.settings())
+                .template(template.template());
+        for (ObjectCursor<String> alias : template.aliases().keys()) {
+            request.alias(new Alias(alias.value));
+        }
+        final SettableFuture<Void> future = SettableFuture.create();
+        transportActionProvider.transportPutIndexTemplateAction().execute(request,
+                new ActionListener<PutIndexTemplateResponse>() {
+                    @Override
+                    public void onResponse(PutIndexTemplateResponse putIndexTemplateResponse) {
+                        future.set(null);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable e) {
+                        future.setException(e);
+                    }
+                });
+        return future;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void addRollup(Map<String, Object> meta, RollupInfo rollup) {
+        Map<String, Object> rollups = (Map<String, Object>) meta.get(RollupInfo.META_KEY);
+        if (rollups == null) {
+            rollups = new HashMap<>();
+            meta.put(RollupInfo.META_KEY, rollups);
+        }
+        rollups.put(rollup.key(), rollup.toMap());
+    }
+
+    /**
+     * refreshes the view on the master node
+     *
+     * @return a future returning the number of rows written to the view
+     */
+    public ListenableFuture<Long> refresh(TableIdent viewIdent) {
+        return viewUpkeepAction.execute(new ViewUpkeepRequest(viewIdent));
+    }
+
+    /**
+     * refreshes the view once all upkeep of the view started before on this node is done.
+     * If a refresh of the view is already waiting it is returned instead, it hasn't
+     * fingerprinted the source table yet so it includes all writes done until now.
+     *
+     * @return a future returning the number of rows written to the view
+     */
+    public ListenableFuture<Long> upkeep(final TableIdent viewIdent) {
+        final String key = viewIdent.esName();
+        final SettableFuture<Long> queued = SettableFuture.create();
+        SettableFuture<Long> waiting = queuedRefreshes.putIfAbsent(key, queued);
+        if (waiting != null) {
+            return waiting;
+        }
+        ListenableFuture<Long> rowCount = serialized(viewIdent, new Callable<ListenableFuture<Long>>() {
+            @Override
+            public ListenableFuture<Long> call() throws Exception {
+                queuedRefreshes.remove(key, queued);
+                return refreshView(viewIdent);
+            }
+        });
+        Futures.addCallback(rowCount, new FutureCallback<Long>() {
+            @Override
+            public void onSuccess(Long result) {
+                queued.set(result);
+            }
+
+            @Override
+            public void onFailure(@Nonnull Throwable t) {
+                queued.setException(t);
+            }
+        });
+        return queued;
+    }
+
+    private ListenableFuture<Long> serialized(TableIdent viewIdent, final Callable<ListenableFuture<Long>> upkeep) {
+        final String key = viewIdent.esName();
+        final SettableFuture<Void> done = SettableFuture.create();
+        SettableFuture<Void> previous = lastUpkeep.put(key, done);
+        ListenableFuture<Void> ready = previous == null ? Futures.<Void>immediateFuture(null) : previous;
+        ListenableFuture<Long> rowCount = Futures.transform(ready, new AsyncFunction<Void, Long>() {
+            @Override
+            public ListenableFuture<Long> apply(Void input) throws Exception {
+                return upkeep.call();
+            }
+        });
+        Futures.addCallback(rowCount, new FutureCallback<Long>() {
+            @Override
+            public void onSuccess(Long result) {
+                release();
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                release();
+            }
+
+            private void release() {
+                lastUpkeep.remove(key, done);
+                done.set(null);
+            }
+        });
+        return rowCount;
+    }
+
+    private ListenableFuture<Long> refreshView(TableIdent viewIdent) {
+        final TableInfo view = referenceInfos.getTableInfoUnsafe(viewIdent);
+        final Map<String, Object> viewMeta = viewMeta(view);
+        final TableInfo source = referenceInfos.getTableInfoUnsafe(new TableIdent(
+                (String) viewMeta.get(CreateMaterializedViewAnalyzedStatement.META_SOURCE_SCHEMA),
+                (String) viewMeta.get(CreateMaterializedViewAnalyzedStatement.META_SOURCE_TABLE)));
+        final String[] indices = source.concreteIndices();
+
+        ListenableFuture<Map<String, String>> fingerprints = Futures.transform(refreshIndices(indices),
+                new AsyncFunction<Void, Map<String, String>>() {
+                    @Override
+                    public ListenableFuture<Map<String, String>> apply(Void input) throws Exception {
+                        return fingerprints(indices);
+                    }
+                });
+        return Futures.transform(fingerprints, new AsyncFunction<Map<String, String>, Long>() {
+            @Override
+            public ListenableFuture<Long> apply(Map<String, String> fingerprints) throws Exception {
+                return update(view, viewMeta, source, fingerprints);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private ListenableFuture<Long> update(final TableInfo view,
+                                          Map<String, Object> viewMeta,
+                                          TableInfo source,
+                                          final Map<String, String> fingerprints) {
+        Map<String, Object> previous = (Map<String, Object>) viewMeta.get(
+                CreateMaterializedViewAnalyzedStatement.META_FINGERPRINTS);
+        if (previous == null) {
+            previous = ImmutableMap.of();
+        }
+        List<String> partitionColumns = (List<String>) viewMeta.get(
+                CreateMaterializedViewAnalyzedStatement.META_PARTITION_COLUMNS);
+        List<String> columns = (List<String>) viewMeta.get(CreateMaterializedViewAnalyzedStatement.META_COLUMNS);
+        Query query = (Query) SqlParser.createStatement(
+                (String) viewMeta.get(CreateMaterializedViewAnalyzedStatement.META_QUERY));
+        Table viewTable = viewTable(view);
+
+        List<Step> steps = new ArrayList<>();
+        if (partitionColumns == null || !source.isPartitioned()) {
+            if (!previous.equals(fingerprints) || fingerprints.containsValue(null)) {
+                steps.add(new Step(new Delete(viewTable, null), EMPTY_ARGS, false));
+                steps.add(new Step(new InsertFromSubquery(viewTable, query, columns, null), EMPTY_ARGS, true));
+            }
+        } else {
+            List<String> sourceColumns = new ArrayList<>(source.partitionedBy().size());
+            for (ReferenceInfo partitionColumn : source.partitionedByColumns()) {
+                sourceColumns.add(partitionColumn.ident().columnIdent().name());
+            }
+            Set<String> indices = new TreeSet<>(fingerprints.keySet());
+            indices.addAll(previous.keySet());
+            for (String index : indices) {
+                String fingerprint = fingerprints.get(index);
+                if (fingerprint != null && fingerprint.equals(previous.get(index))) {
+                    continue;
+                }
+                List<BytesRef> values = PartitionName.fromString(
+                        index, source.ident().schema(), source.ident().name()).values();
+                List<Object> args = new ArrayList<>();
+                Expression viewFilter = partitionFilter(partitionColumns, values, source.partitionedByColumns(), args);
+                steps.add(new Step(new Delete(viewTable, viewFilter), args.toArray(), false));
+                if (fingerprints.containsKey(index)) {
+                    args = new ArrayList<>();
+                    Expression sourceFilter = partitionFilter(sourceColumns, values, source.partitionedByColumns(), args);
+                    steps.add(new Step(
+                            new InsertFromSubquery(viewTable, restrict(query, sourceFilter), columns, null),
+                            args.toArray(),
+                            true));
+                }
+            }
+        }
+        if (steps.isEmpty()) {
+            return Futures.immediateFuture(0L);
+        }
+
+        final String viewIndex = view.ident().esName();
+        ListenableFuture<Long> rowCount = execute(steps.iterator(), 0L);
+        return Futures.transform(rowCount, new AsyncFunction<Long, Long>() {
+            @Override
+            public ListenableFuture<Long> apply(final Long rowCount) throws Exception {
+                ListenableFuture<Void> refreshed = refreshIndices(new String[]{viewIndex});
+                return Futures.transform(refreshed, new AsyncFunction<Void, Long>() {
+                    @Override
+                    public ListenableFuture<Long> apply(Void input) throws Exception {
+                        return storeFingerprints(view, fingerprints, rowCount);
+                    }
+                });
+            }
+        });
+    }
+
+    private ListenableFuture<Long> execute(final Iterator<Step> steps, final long rowCount) {
+        if (!steps.hasNext()) {
+            return Futures.immediateFuture(rowCount);
+        }
+        final Step step = steps.next();
+        Analysis analysis = analyzerProvider.get().analyze(step.statement, step.args, EMPTY_BULK_ARGS);
+        Plan plan = plannerProvider.get().plan(analysis);
+        return Futures.transform(execute(plan), new AsyncFunction<List<TaskResult>, Long>() {
+            @Override
+            public ListenableFuture<Long> apply(List<TaskResult> result) throws Exception {
+                long stepRowCount = 0L;
+                if (step.countRows && result.size() == 1) {
+                    Object[][] rows = result.get(0).rows();
+                    if (rows.length >= 1 && rows[0].length >= 1) {
+                        stepRowCount = Math.max(0L, ((Number) rows[0][0]).longValue());
+                    }
+                }
+                return execute(steps, rowCount + stepRowCount);
+            }
+        });
+    }
+
+    private ListenableFuture<List<TaskResult>> execute(Plan plan) {
+        Executor executor = executorProvider.get();
+        Job job = executor.newJob(plan);
+        return Futures.allAsList(executor.execute(job));
+    }
+
+    private ListenableFuture<Void> refreshIndices(String[] indices) {
+        if (indices.length == 0) {
+            return Futures.immediateFuture(null);
+        }
+        final SettableFuture<Void> future = SettableFuture.create();
+        transportActionProvider.transportRefreshAction().execute(new RefreshRequest(indices),
+                new ActionListener<RefreshResponse>() {
+                    @Override
+                    public void onResponse(RefreshResponse refreshResponse) {
+                        future.set(null);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable e) {
+                        future.setException(e);
+                    }
+                });
+        return future;
+    }
+
+    /**
+     * @return the fingerprint of every given index, <code>null</code>
+     *         if the segments of an index couldn't be retrieved completely.
+     */
+    private ListenableFuture<Map<String, String>> fingerprints(final String[] indices) {
+        if (indices.length == 0) {
+            return Futures.immediateFuture(Collections.<String, String>emptyMap());
+        }
+        final SettableFuture<Map<String, String>> future = SettableFuture.create();
+        transportIndicesSegmentsActionProvider.get().execute(new IndicesSegmentsRequest(indices),
+                new ActionListener<IndicesSegmentResponse>() {
+                    @Override
+                    public void onResponse(IndicesSegmentResponse response) {
+                        Set<String> failedIndices = new HashSet<>();
+                        for (ShardOperationFailedException failure : response.getShardFailures()) {
+                            failedIndices.add(failure.index());
+                        }
+                        Map<String, String> fingerprints = new HashMap<>(indices.length);
+                        for (String index : indices) {
+                            IndexSegments indexSegments = response.getIndices().get(index);
+                            if (indexSegments == null || failedIndices.contains(index)) {
+                                fingerprints.put(index, null);
+                            } else {
+                                fingerprints.put(index, fingerprint(indexSegments));
+                            }
+                        }
+                        future.set(fingerprints);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable e) {
+                        future.setException(e);
+                    }
+                });
+        return future;
+    }
+
+    /**
+     * Every write to an index ends up in a new segment or changes the deleted docs of an existing one
+     * once it is visible, so the searchable segments of the primary shards identify its content.
+     * Merges change the fingerprint as well, which only causes an unnecessary recomputation.
+     */
+    static String fingerprint(IndexSegments indexSegments) {
+        List<String> segments = new ArrayList<>();
+        for (IndexShardSegments indexShardSegments : indexSegments) {
+            for (ShardSegments shardSegments : indexShardSegments) {
+                if (!shardSegments.getShardRouting().primary()) {
+                    continue;
+                }
+                for (Segment segment : shardSegments) {
+                    if (segment.isSearch()) {
+                        segments.add(shardSegments.getShardRouting().id() + ":" + segment.getName() + ":"
+                                + segment.getNumDocs() + ":" + segment.getDeletedDocs());
+                    }
+                }
+            }
+        }
+        Collections.sort(segments);
+        return Hashing.md5().hashString(Joiner.on(',').join(segments), Charsets.UTF_8).toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private ListenableFuture<Long> storeFingerprints(TableInfo view,
+                                                     Map<String, String> fingerprints,
+                                                     final Long rowCount) {
+        Map<String, Object> meta = meta(view);
+        Map<String, Object> knownFingerprints = new HashMap<>(fingerprints.size());
+        for (Map.Entry<String, String> entry : fingerprints.entrySet()) {
+            if (entry.getValue() != null) {
+                knownFingerprints.put(entry.getKey(), entry.getValue());
+            }
+        }
+        ((Map<String, Object>) meta.get(CreateMaterializedViewAnalyzedStatement.META_KEY)).put(
+                CreateMaterializedViewAnalyzedStatement.META_FINGERPRINTS, knownFingerprints);
+
+        return Futures.transform(putMeta(view.ident().esName(), meta), Functions.constant(rowCount));
+    }
+
+    private ListenableFuture<Void> putMeta(String index, Map<String, Object> meta) {
+        PutMappingRequest request = new PutMappingRequest(index);
+        request.type(Constants.DEFAULT_MAPPING_TYPE);
+        request.source(ImmutableMap.<String, Object>of("_meta", meta));
+        final SettableFuture<Void> future = SettableFuture.create();
+        transportActionProvider.transportPutMappingAction().execute(request, new ActionListener<PutMappingResponse>() {
+            @Override
+            public void onResponse(PutMappingResponse putMappingResponse) {
+                future.set(null);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                future.setException(e);
+            }
+        });
+        return future;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> viewMeta(TableInfo view) {
+        Map<String, Object> viewMeta = (Map<String, Object>) meta(view).get(
+                CreateMaterializedViewAnalyzedStatement.META_KEY);
+        if (viewMeta == null) {
+            throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                    "Table '%s' is not a materialized view", view.ident().fqn()));
+        }
+        return viewMeta;
+    }
+
+    private Map<String, Object> meta(TableInfo view) {
+        return meta(view.ident().esName());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> meta(String index) {
+        IndexMetaData indexMetaData = clusterService.state().metaData().index(index);
+        MappingMetaData mappingMetaData = indexMetaData == null ? null :
+                indexMetaData.mapping(Constants.DEFAULT_MAPPING_TYPE);
+        Map<String, Object> meta = null;
+        if (mappingMetaData != null) {
+            try {
+                meta = (Map<String, Object>) mappingMetaData.getSourceAsMap().get("_meta");
+            } catch (IOException e) {
+                throw new UnhandledServerException("Could not read the mapping of " + index, e);
+            }
+        }
+        return Objects.firstNonNull(meta, new HashMap<String, Object>());
+    }
+
+    private static Expression partitionFilter(List<String> columns,
+                                              List<BytesRef> values,
+                                              List<ReferenceInfo> partitionedByColumns,
+                                              List<Object> args) {
+        List<Object> typedValues = new ArrayList<>(values.size());
+        for (int i = 0; i < values.size(); i++) {
+            typedValues.add(partitionedByColumns.get(i).type().value(values.get(i)));
+        }
+        return filter(columns, typedValues, args);
+    }
+
+    private static Expression filter(List<String> columns, List<Object> values, List<Object> args) {
+        Expression filter = null;
+        for (int i = 0; i < columns.size(); i++) {
+            Expression column = new QualifiedNameReference(new QualifiedName(columns.get(i)));
+            Expression condition;
+            Object value = values.get(i);
+            if (value == null) {
+                condition = new IsNullPredicate(column);
+            } else {
+                if (value instanceof BytesRef) {
+                    value = ((BytesRef) value).utf8ToString();
+                }
+                args.add(value);
+                condition = new ComparisonExpression(
+                        ComparisonExpression.Type.EQUAL, column, new ParameterExpression(args.size()));
+            }
+            filter = filter == null ? condition : LogicalBinaryExpression.and(filter, condition);
+        }
+        return filter;
+    }
+
+    private static Table viewTable(TableInfo view) {
+        return new Table(view.ident().schema() == null
+                ? new QualifiedName(view.ident().name())
+                : QualifiedName.of(view.ident().schema(), view.ident().name()));
+    }
+
+    private static Query restrict(Query query, Expression filter) {
+        QuerySpecification spec = (QuerySpecification) query.getQueryBody();
+        Expression where = filter;
+        if (spec.getWhere().isPresent()) {
+            where = LogicalBinaryExpression.and(spec.getWhere().get(), filter);
+        }
+        return new Query(
+                query.getWith(),
+                new QuerySpecification(
+                        spec.getSelect(),
+                        spec.getFrom(),
+                        Optional.of(where),
+                        spec.getGroupBy(),
+                        spec.getHaving(),
+                        spec.getOrderBy(),
+                        spec.getLimit(),
+                        spec.getOffset()),
+                query.getOrderBy(),
+                query.getLimit(),
+                query.getOffset());
+    }
+
+    /**
+     * resolves the table whose rows are written by a statement
+     */
+    private static class WrittenTableVisitor extends AnalyzedStatementVisitor<Void, TableInfo> {
+
+        @Override
+        protected TableInfo visitAnalyzedStatement(AnalyzedStatement analyzedStatement, Void context) {
+            return null;
+        }
+
+        @Override
+        protected TableInfo visitInsertFromValuesStatement(InsertFromValuesAnalyzedStatement analysis, Void context) {
+            return analysis.tableInfo();
+        }
+
+        @Override
+        protected TableInfo visitInsertFromSubQueryStatement(InsertFromSubQueryAnalyzedStatement analysis, Void context) {
+            return analysis.tableInfo();
+        }
+
+        @Override
+        protected TableInfo visitUpdateStatement(UpdateAnalyzedStatement analysis, Void context) {
+            if (analysis.sourceRelation() instanceof TableRelation) {
+                return ((TableRelation) analysis.sourceRelation()).tableInfo();
+            }
+            return null;
+        }
+
+        @Override
+        protected TableInfo visitDeleteStatement(DeleteAnalyzedStatement analysis, Void context) {
+            return analysis.analyzedRelation().tableInfo();
+        }
+
+        @Override
+        protected TableInfo visitCopyStatement(CopyAnalyzedStatement analysis, Void context) {
+            return analysis.mode() == CopyAnalyzedStatement.Mode.FROM ? analysis.table() : null;
+        }
+    }
+
+    private static class Step {
+
+        private final Statement statement;
+        private final Object[] args;
+        private final boolean countRows;
+
+        private Step(Statement statement, Object[] args, boolean countRows) {
+            this.statement = statement;
+            this.args = args;
+            this.countRows = countRows;
+        }
+    }
+}
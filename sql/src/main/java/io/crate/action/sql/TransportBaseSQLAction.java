@@ -34,9 +34,16 @@ import io.crate.exceptions.*;
 import io.crate.executor.Executor;
 import io.crate.executor.Job;
 import io.crate.executor.TaskResult;
+import io.crate.executor.transport.kill.TransportKillJobAction;
 import io.crate.metadata.PartitionName;
 import io.crate.metadata.TableIdent;
+import io.crate.metadata.settings.CrateSettings;
+import io.crate.operation.admission.AdmissionController;
+import io.crate.operation.admission.QueryClass;
+import io.crate.operation.admission.QueryClassifier;
 import io.crate.operation.collect.StatsTables;
+import io.crate.operation.kill.JobKillRegistry;
+import io.crate.operation.kill.Killable;
 import io.crate.planner.Plan;
 import io.crate.planner.PlanPrinter;
 import io.crate.planner.Planner;
@@ -52,12 +59,15 @@ import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.inject.Provider;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.index.engine.DocumentAlreadyExistsException;
 import org.elasticsearch.index.mapper.MapperParsingException;
 import org.elasticsearch.indices.IndexAlreadyExistsException;
 import org.elasticsearch.indices.IndexMissingException;
 import org.elasticsearch.indices.InvalidIndexNameException;
 import org.elasticsearch.indices.InvalidIndexTemplateException;
+import org.elasticsearch.node.settings.NodeSettingsService;
 import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.NodeDisconnectedException;
@@ -67,7 +77,11 @@ import javax.annotation.Nullable;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.google.common.base.MoreObjects.firstNonNull;
 
@@ -94,7 +108,12 @@ public abstract class TransportBaseSQLAction<TRequest extends SQLBaseRequest, TR
     protected final Planner planner;
     private final Provider<Executor> executorProvider;
     private final StatsTables statsTables;
+    private final JobKillRegistry jobKillRegistry;
+    private final TransportKillJobAction killJobAction;
+    private final AdmissionController admissionController;
+    private final MaterializedViews materializedViews;
     private volatile boolean disabled;
+    private volatile TimeValue statementTimeout;
 
     public TransportBaseSQLAction(ClusterService clusterService,
                                   Settings settings,
@@ -104,6 +123,11 @@ public abstract class TransportBaseSQLAction<TRequest extends SQLBaseRequest, TR
                                   Planner planner,
                                   Provider<Executor> executorProvider,
                                   StatsTables statsTables,
+                                  JobKillRegistry jobKillRegistry,
+                                  TransportKillJobAction killJobAction,
+                                  AdmissionController admissionController,
+                                  MaterializedViews materializedViews,
+                                  NodeSettingsService nodeSettingsService,
                                   ActionFilters actionFilters) {
         super(settings, actionName, threadPool, actionFilters);
         this.clusterService = clusterService;
@@ -111,6 +135,22 @@ public abstract class TransportBaseSQLAction<TRequest extends SQLBaseRequest, TR
         this.planner = planner;
         this.executorProvider = executorProvider;
         this.statsTables = statsTables;
+        this.jobKillRegistry = jobKillRegistry;
+        this.killJobAction = killJobAction;
+        this.admissionController = admissionController;
+        this.materializedViews = materializedViews;
+        this.statementTimeout = extractStatementTimeout(settings);
+        nodeSettingsService.addListener(new NodeSettingsService.Listener() {
+            @Override
+            public void onRefreshSettings(Settings settings) {
+                statementTimeout = extractStatementTimeout(settings);
+            }
+        });
+    }
+
+    private static TimeValue extractStatementTimeout(Settings settings) {
+        return settings.getAsTime(CrateSettings.STATEMENT_TIMEOUT.settingName(),
+                CrateSettings.STATEMENT_TIMEOUT.defaultValue());
     }
 
     public abstract Analysis getAnalysis(Statement statement, TRequest request);
@@ -201,48 +241,179 @@ public abstract class TransportBaseSQLAction<TRequest extends SQLBaseRequest, TR
         statsTables.activeRequestsDec();
     }
 
-    private void processAnalysis(Analysis analysis, TRequest request, ActionListener<TResponse> listener) {
-        final Plan plan = planner.plan(analysis);
-        tracePlan(plan);
-        executePlan(analysis, plan, listener, request);
+    private void processAnalysis(final Analysis analysis,
+                                 final TRequest request,
+                                 final ActionListener<TResponse> listener) {
+        Futures.addCallback(materializedViews.upToDateRollups(analysis.analyzedStatement()),
+                new FutureCallback<Set<TableIdent>>() {
+                    @Override
+                    public void onSuccess(@Nullable Set<TableIdent> upToDateRollups) {
+                        try {
+                            if (upToDateRollups != null) {
+                                analysis.upToDateRollups(upToDateRollups);
+                            }
+                            final Plan plan = planner.plan(analysis);
+                            tracePlan(plan);
+                            executePlan(analysis, plan, listener, request);
+                        } catch (Throwable e) {
+                            logger.debug("Error executing SQLRequest", e);
+                            sendResponse(listener, buildSQLActionException(e));
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(@Nonnull Throwable t) {
+                        logger.debug("Error executing SQLRequest", t);
+                        sendResponse(listener, buildSQLActionException(t));
+                    }
+                });
     }
 
     private void executePlan(final Analysis analysis,
                              final Plan plan,
                              final ActionListener<TResponse> listener,
                              final TRequest request) {
-        Executor executor = executorProvider.get();
-        Job job = executor.newJob(plan);
+        final Executor executor = executorProvider.get();
+        final Job job = executor.newJob(plan);
 
         final UUID jobId = job.id();
         assert jobId != null;
         statsTables.jobStarted(jobId, request.stmt());
+
+        QueryClass queryClass = QueryClassifier.classify(plan);
+        if (queryClass == null) {
+            KillableJobListener jobListener = new KillableJobListener(jobId, listener, null);
+            executeJob(executor, job, jobListener, analysis, request);
+            return;
+        }
+        AdmissionController.Ticket ticket = admissionController.ticket(queryClass);
+        final KillableJobListener jobListener = new KillableJobListener(jobId, listener, ticket);
+        try {
+            admissionController.admit(ticket, new Runnable() {
+                @Override
+                public void run() {
+                    if (jobListener.isDone()) {
+                        // killed or timed out while waiting for admission
+                        return;
+                    }
+                    try {
+                        executeJob(executor, job, jobListener, analysis, request);
+                    } catch (Throwable t) {
+                        logger.debug("Error executing SQLRequest", t);
+                        jobListener.onFailure(t);
+                    }
+                }
+            });
+        } catch (EsRejectedExecutionException e) {
+            jobListener.onFailure(e);
+        }
+    }
+
+    private void executeJob(Executor executor,
+                            Job job,
+                            final KillableJobListener jobListener,
+                            final Analysis analysis,
+                            final TRequest request) {
         List<ListenableFuture<TaskResult>> resultFutureList = executor.execute(job);
-        Futures.addCallback(Futures.allAsList(resultFutureList), new FutureCallback<List<TaskResult>>() {
+        ListenableFuture<List<TaskResult>> resultFuture = Futures.allAsList(resultFutureList);
+        materializedViews.maintainRollups(analysis.analyzedStatement(), resultFuture);
+        Futures.addCallback(resultFuture, new FutureCallback<List<TaskResult>>() {
                     @Override
                     public void onSuccess(@Nullable List<TaskResult> result) {
                         TResponse response;
                         try {
                             response = createResponseFromResult(result, analysis, request);
                         } catch (Throwable e) {
-                            sendResponse(listener, buildSQLActionException(e));
+                            jobListener.onFailure(e);
                             return;
                         }
-                        statsTables.jobFinished(jobId, null);
-                        sendResponse(listener, response);
+                        jobListener.onResponse(response);
                     }
 
                     @Override
                     public void onFailure(@Nonnull Throwable t) {
                         logger.debug("Error processing SQLRequest", t);
-                        statsTables.jobFinished(jobId, Exceptions.messageOf(t));
-                        sendResponse(listener, buildSQLActionException(t));
+                        jobListener.onFailure(t);
                     }
                 }
 
         );
     }
 
+    /**
+     * Sends exactly one response for a job: either the result, the failure or,
+     * if the job is killed or runs into the statement timeout, a {@link JobKilledException}
+     * without waiting for the operations of the job to finish.
+     */
+    private class KillableJobListener implements Killable {
+
+        private final UUID jobId;
+        private final ActionListener<TResponse> listener;
+        private final AtomicBoolean done = new AtomicBoolean(false);
+        private final ScheduledFuture<?> timeoutFuture;
+        private final AdmissionController.Ticket ticket;
+
+        private KillableJobListener(final UUID jobId,
+                                    ActionListener<TResponse> listener,
+                                    @Nullable AdmissionController.Ticket ticket) {
+            this.jobId = jobId;
+            this.listener = listener;
+            this.ticket = ticket;
+            jobKillRegistry.register(jobId, this);
+
+            final TimeValue timeout = statementTimeout;
+            if (timeout.millis() > 0) {
+                timeoutFuture = threadPool.schedule(timeout, ThreadPool.Names.GENERIC, new Runnable() {
+                    @Override
+                    public void run() {
+                        onFailure(new JobKilledException(jobId,
+                                String.format(Locale.ENGLISH, "statement timeout of %s exceeded", timeout)));
+                        killJobAction.execute(jobId);
+                    }
+                });
+            } else {
+                timeoutFuture = null;
+            }
+        }
+
+        private boolean finish() {
+            if (!done.compareAndSet(false, true)) {
+                return false;
+            }
+            jobKillRegistry.unregister(jobId, this);
+            if (timeoutFuture != null) {
+                timeoutFuture.cancel(false);
+            }
+            if (ticket != null) {
+                admissionController.release(ticket);
+            }
+            return true;
+        }
+
+        private boolean isDone() {
+            return done.get();
+        }
+
+        public void onResponse(TResponse response) {
+            if (finish()) {
+                statsTables.jobFinished(jobId, null);
+                sendResponse(listener, response);
+            }
+        }
+
+        public void onFailure(Throwable t) {
+            if (finish()) {
+                statsTables.jobFinished(jobId, Exceptions.messageOf(t));
+                sendResponse(listener, buildSQLActionException(t));
+            }
+        }
+
+        @Override
+        public void kill() {
+            onFailure(new JobKilledException(jobId));
+        }
+    }
+
     private void tracePlan(Plan plan) {
         if (logger.isTraceEnabled()) {
             PlanPrinter printer = new PlanPrinter();
@@ -27,7 +27,10 @@ import io.crate.executor.Executor;
 import io.crate.executor.RowCountResult;
 import io.crate.executor.TaskResult;
 import io.crate.executor.transport.ResponseForwarder;
+import io.crate.executor.transport.kill.TransportKillJobAction;
+import io.crate.operation.admission.AdmissionController;
 import io.crate.operation.collect.StatsTables;
+import io.crate.operation.kill.JobKillRegistry;
 import io.crate.planner.Planner;
 import io.crate.sql.tree.Statement;
 import io.crate.types.DataType;
@@ -37,6 +40,7 @@ import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Provider;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.node.settings.NodeSettingsService;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.BaseTransportRequestHandler;
 import org.elasticsearch.transport.TransportChannel;
@@ -56,9 +60,15 @@ public class TransportSQLBulkAction extends TransportBaseSQLAction<SQLBulkReques
                                   Provider<Executor> executor,
                                   TransportService transportService,
                                   StatsTables statsTables,
+                                  JobKillRegistry jobKillRegistry,
+                                  TransportKillJobAction killJobAction,
+                                  AdmissionController admissionController,
+                                  MaterializedViews materializedViews,
+                                  NodeSettingsService nodeSettingsService,
                                   ActionFilters actionFilters) {
         super(clusterService, settings, SQLBulkAction.NAME, threadPool, analyzer,
-                planner, executor, statsTables, actionFilters);
+                planner, executor, statsTables,
+                jobKillRegistry, killJobAction, admissionController, materializedViews, nodeSettingsService, actionFilters);
         transportService.registerHandler(SQLBulkAction.NAME, new TransportHandler());
     }
 
@@ -23,6 +23,7 @@ package io.crate.action.sql.query;
 
 import com.google.common.base.Optional;
 import org.apache.lucene.util.Counter;
+import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.cache.recycler.CacheRecycler;
 import org.elasticsearch.cache.recycler.PageCacheRecycler;
@@ -38,11 +39,14 @@ import org.elasticsearch.search.SearchShardTarget;
 import org.elasticsearch.search.internal.DefaultSearchContext;
 import org.elasticsearch.search.internal.ShardSearchRequest;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.Map;
 
 public class CrateSearchContext extends DefaultSearchContext {
 
+    private ScrollLookahead scrollLookahead;
+
     public CrateSearchContext(long id,
                               final int numShards,
                               final String[] types,
@@ -68,6 +72,23 @@ public class CrateSearchContext extends DefaultSearchContext {
         keepAlive(keepAlive);
     }
 
+    @Nullable
+    ScrollLookahead scrollLookahead() {
+        return scrollLookahead;
+    }
+
+    void scrollLookahead(ScrollLookahead scrollLookahead) {
+        this.scrollLookahead = scrollLookahead;
+    }
+
+    @Override
+    public void doClose() throws ElasticsearchException {
+        if (scrollLookahead != null) {
+            scrollLookahead.clear();
+        }
+        super.doClose();
+    }
+
     private static class CrateSearchShardRequest implements ShardSearchRequest {
 
         private final int numShards;
@@ -24,7 +24,10 @@ package io.crate.action.sql.query;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
 import io.crate.Constants;
+import io.crate.breaker.CrateCircuitBreakerService;
 import io.crate.core.StringUtils;
+import io.crate.exceptions.JobKilledException;
+import io.crate.executor.transport.task.elasticsearch.ESFieldExtractor;
 import io.crate.executor.transport.task.elasticsearch.SortOrder;
 import io.crate.lucene.LuceneQueryBuilder;
 import io.crate.metadata.ColumnIdent;
@@ -33,6 +36,8 @@ import io.crate.metadata.ReferenceInfo;
 import io.crate.metadata.doc.DocSysColumns;
 import io.crate.operation.Input;
 import io.crate.operation.collect.CollectInputSymbolVisitor;
+import io.crate.operation.kill.JobKillRegistry;
+import io.crate.operation.kill.Killable;
 import io.crate.operation.reference.doc.lucene.CollectorContext;
 import io.crate.operation.reference.doc.lucene.LuceneCollectorExpression;
 import io.crate.operation.reference.doc.lucene.LuceneDocLevelReferenceResolver;
@@ -42,15 +47,21 @@ import io.crate.types.DataTypes;
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.search.FieldComparator;
 import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopDocs;
 import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.cache.recycler.CacheRecycler;
 import org.elasticsearch.cache.recycler.PageCacheRecycler;
 import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.fielddata.IndexFieldData;
 import org.elasticsearch.index.mapper.FieldMapper;
@@ -67,6 +78,7 @@ import org.elasticsearch.search.MultiValueMode;
 import org.elasticsearch.search.SearchShardTarget;
 import org.elasticsearch.search.dfs.DfsPhase;
 import org.elasticsearch.search.fetch.FetchPhase;
+import org.elasticsearch.search.fetch.fielddata.FieldDataFieldsContext;
 import org.elasticsearch.search.fetch.source.FetchSourceContext;
 import org.elasticsearch.search.internal.SearchContext;
 import org.elasticsearch.search.query.QueryPhase;
@@ -81,11 +93,29 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
 
 public class CrateSearchService extends InternalSearchService {
 
+    /**
+     * number of docs a shard queries in addition to the page size of a scroll request
+     */
+    public static final String SCROLL_LOOKAHEAD_SETTING = "node.search.scroll_lookahead";
+    public static final int DEFAULT_SCROLL_LOOKAHEAD = 1000;
+
     private final SortSymbolVisitor sortSymbolVisitor;
     private final Functions functions;
+    private final CircuitBreaker queryBreaker;
+    private final int scrollLookahead;
+    private final JobKillRegistry jobKillRegistry;
+
+    /**
+     * the job and the killable of the search contexts created for {@link QueryShardRequest}s,
+     * killing the job frees the context
+     */
+    private final ConcurrentMap<Long, Tuple<UUID, Killable>> contextKillables =
+            ConcurrentCollections.newConcurrentMap();
 
     @Inject
     public CrateSearchService(Settings settings,
@@ -102,7 +132,9 @@ public class CrateSearchService extends InternalSearchService {
                               QueryPhase queryPhase,
                               FetchPhase fetchPhase,
                               Functions functions,
-                              IndicesQueryCache indicesQueryCache) {
+                              IndicesQueryCache indicesQueryCache,
+                              CrateCircuitBreakerService breakerService,
+                              JobKillRegistry jobKillRegistry) {
         super(settings, clusterService, indicesService, indicesLifecycle,
                 indicesWarmer,
                 threadPool,
@@ -111,6 +143,9 @@ public class CrateSearchService extends InternalSearchService {
                 pageCacheRecycler,
                 bigArrays, dfsPhase, queryPhase, fetchPhase, indicesQueryCache);
         this.functions = functions;
+        this.queryBreaker = breakerService.getBreaker(CrateCircuitBreakerService.QUERY_BREAKER);
+        this.scrollLookahead = settings.getAsInt(SCROLL_LOOKAHEAD_SETTING, DEFAULT_SCROLL_LOOKAHEAD);
+        this.jobKillRegistry = jobKillRegistry;
         CollectInputSymbolVisitor<LuceneCollectorExpression<?>> inputSymbolVisitor =
                 new CollectInputSymbolVisitor<>(functions, LuceneDocLevelReferenceResolver.INSTANCE);
         sortSymbolVisitor = new SortSymbolVisitor(inputSymbolVisitor);
@@ -124,7 +159,11 @@ public class CrateSearchService extends InternalSearchService {
             long time = System.nanoTime();
             contextProcessing(context);
             processScroll(request, context);
-            queryPhase.execute(context);
+            if (context instanceof CrateSearchContext) {
+                executeScrollQuery((CrateSearchContext) context, request.limit());
+            } else {
+                queryPhase.execute(context);
+            }
             contextProcessedSuccessfully(context);
             context.indexShard().searchService().onQueryPhase(context, System.nanoTime() - time);
             return new ScrollQuerySearchResult(context.queryResult(), context.shardTarget());
@@ -150,6 +189,53 @@ public class CrateSearchService extends InternalSearchService {
         }
     }
 
+    /**
+     * runs the query for {@link #SCROLL_LOOKAHEAD_SETTING} more docs than requested,
+     * the following pages are served from the {@link ScrollLookahead} of the context as long as it covers them.
+     */
+    private void executeScrollQuery(CrateSearchContext context, int size) {
+        ScoreDoc lastEmittedDoc = context.lastEmittedDoc();
+        ScrollLookahead lookahead = context.scrollLookahead();
+        if (lookahead != null) {
+            TopDocs page = lookahead.page(lastEmittedDoc, size);
+            if (page != null) {
+                QuerySearchResult queryResult = context.queryResult();
+                queryResult.searchTimedOut(false);
+                queryResult.from(context.from());
+                queryResult.size(size);
+                queryResult.topDocs(page);
+                return;
+            }
+        }
+        if (scrollLookahead <= 0 || (lookahead != null && lookahead.tripped())) {
+            queryPhase.execute(context);
+            return;
+        }
+
+        int numDocs = size + scrollLookahead;
+        context.size(numDocs);
+        try {
+            queryPhase.execute(context);
+        } finally {
+            context.size(size);
+        }
+        QuerySearchResult queryResult = context.queryResult();
+        queryResult.size(size);
+        TopDocs topDocs = queryResult.topDocs();
+
+        if (lookahead == null) {
+            lookahead = new ScrollLookahead("scroll-lookahead-" + context.id(), queryBreaker);
+            context.scrollLookahead(lookahead);
+        }
+        try {
+            lookahead.fill(lastEmittedDoc, topDocs, numDocs);
+        } catch (CircuitBreakingException e) {
+            logger.debug("not enough memory to buffer {} docs of scroll {}, disabled the lookahead",
+                    topDocs.scoreDocs.length, context.id());
+        }
+        queryResult.topDocs(ScrollLookahead.slice(topDocs, 0, Math.min(size, topDocs.scoreDocs.length)));
+    }
+
     public QuerySearchResult executeQueryPhase(QueryShardRequest request) {
         SearchContext context = createAndPutContext(request);
         try {
@@ -176,11 +262,15 @@ public class CrateSearchService extends InternalSearchService {
 
 
     private SearchContext createAndPutContext(QueryShardRequest request) {
+        if (jobKillRegistry.isKilled(request.jobId())) {
+            throw new JobKilledException(request.jobId());
+        }
         SearchContext context = createContext(request, null);
         boolean success = false;
         try {
             activeContexts.put(context.id(), context);
             context.indexShard().searchService().onNewContext(context);
+            registerKillable(request.jobId(), context.id());
             success = true;
             return context;
         } finally {
@@ -190,6 +280,36 @@ public class CrateSearchService extends InternalSearchService {
         }
     }
 
+    private void registerKillable(UUID jobId, final long contextId) {
+        Killable killable = new Killable() {
+            @Override
+            public void kill() {
+                logger.trace("freeing search context {} of killed job", contextId);
+                freeContext(contextId);
+            }
+        };
+        contextKillables.put(contextId, new Tuple<>(jobId, killable));
+        jobKillRegistry.register(jobId, killable);
+    }
+
+    /**
+     * frees the context and removes it from the {@link JobKillRegistry}.
+     * All contexts are freed through this method, no matter if freed by a request,
+     * after their last fetch, by the keep alive reaper or by a kill.
+     */
+    @Override
+    public boolean freeContext(long id) {
+        Tuple<UUID, Killable> killable = contextKillables.remove(id);
+        if (killable != null) {
+            jobKillRegistry.unregister(killable.v1(), killable.v2());
+        }
+        return super.freeContext(id);
+    }
+
+    public int numberOfActiveContexts() {
+        return activeContexts.size();
+    }
+
     /**
      * Creates a new SearchContext. <br />
      * <p>
@@ -242,7 +362,7 @@ public class CrateSearchService extends InternalSearchService {
             }
 
             // the OUTPUTS_VISITOR sets the sourceFetchContext / version / minScore onto the SearchContext
-            OutputContext outputContext = new OutputContext(context, request.partitionBy());
+            OutputContext outputContext = new OutputContext(context, request.partitionBy(), request.fetchFromDocValues());
             OUTPUTS_VISITOR.process(request.outputs(), outputContext);
 
             context.sort(generateLuceneSort(
@@ -268,12 +388,16 @@ public class CrateSearchService extends InternalSearchService {
     private static class OutputContext {
         private final SearchContext searchContext;
         private final List<ReferenceInfo> partitionBy;
+        private final boolean fetchFromDocValues;
         private final List<String> fields = new ArrayList<>();
         public boolean needWholeSource = false;
 
-        private OutputContext(SearchContext searchContext, List<ReferenceInfo> partitionBy) {
+        private OutputContext(SearchContext searchContext,
+                              List<ReferenceInfo> partitionBy,
+                              boolean fetchFromDocValues) {
             this.searchContext = searchContext;
             this.partitionBy = partitionBy;
+            this.fetchFromDocValues = fetchFromDocValues;
         }
     }
 
@@ -304,11 +428,30 @@ public class CrateSearchService extends InternalSearchService {
                     context.needWholeSource = true;
                 }
             } else if (!context.partitionBy.contains(symbol.info())) {
-                context.fields.add(columnIdent.fqn());
+                if (!fetchFromDocValues(symbol.info(), context)) {
+                    context.fields.add(columnIdent.fqn());
+                }
             }
             return null;
         }
 
+        /**
+         * adds the column as field data field if it has doc values on this shard,
+         * the value is then read by {@link ESFieldExtractor.DocValues}
+         */
+        private boolean fetchFromDocValues(ReferenceInfo info, OutputContext context) {
+            if (!context.fetchFromDocValues || !ESFieldExtractor.DocValues.supports(info)) {
+                return false;
+            }
+            String fqn = info.ident().columnIdent().fqn();
+            FieldMapper mapper = context.searchContext.smartNameFieldMapper(fqn);
+            if (mapper == null || !mapper.hasDocValues()) {
+                return false;
+            }
+            context.searchContext.fieldDataFields().add(new FieldDataFieldsContext.FieldDataField(fqn));
+            return true;
+        }
+
         @Override
         public Void visitDynamicReference(DynamicReference symbol, OutputContext context) {
             return visitReference(symbol, context);
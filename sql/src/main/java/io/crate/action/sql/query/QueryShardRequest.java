@@ -36,9 +36,11 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.UUID;
 
 public class QueryShardRequest extends ActionRequest<QueryShardRequest> {
 
+    private UUID jobId;
     private String index;
     private Integer shard;
     private List<? extends Symbol> outputs;
@@ -49,13 +51,15 @@ public class QueryShardRequest extends ActionRequest<QueryShardRequest> {
     private int offset;
     private WhereClause whereClause;
     private List<ReferenceInfo> partitionBy;
+    private boolean fetchFromDocValues;
 
     // used for paged QTF queries
     private Optional<Scroll> scroll;
 
     public QueryShardRequest() {}
 
-    public QueryShardRequest(String index,
+    public QueryShardRequest(UUID jobId,
+                             String index,
                              int shard,
                              List<? extends Symbol> outputs,
                              List<Symbol> orderBy,
@@ -65,8 +69,10 @@ public class QueryShardRequest extends ActionRequest<QueryShardRequest> {
                              int offset,
                              WhereClause whereClause,
                              List<ReferenceInfo> partitionBy,
+                             boolean fetchFromDocValues,
                              Optional<TimeValue> keepAlive
     ) {
+        this.jobId = jobId;
         this.index = index;
         this.shard = shard;
         this.outputs = outputs;
@@ -77,6 +83,7 @@ public class QueryShardRequest extends ActionRequest<QueryShardRequest> {
         this.offset = offset;
         this.whereClause = whereClause;
         this.partitionBy = partitionBy;
+        this.fetchFromDocValues = fetchFromDocValues;
 
         if (keepAlive.isPresent()) {
             this.scroll = Optional.of(new Scroll(keepAlive.get()));
@@ -94,6 +101,7 @@ public class QueryShardRequest extends ActionRequest<QueryShardRequest> {
     @Override
     public void readFrom(StreamInput in) throws IOException {
         super.readFrom(in);
+        jobId = new UUID(in.readLong(), in.readLong());
         index = in.readString();
         shard = in.readVInt();
 
@@ -134,6 +142,7 @@ public class QueryShardRequest extends ActionRequest<QueryShardRequest> {
             referenceInfo.readFrom(in);
             partitionBy.add(referenceInfo);
         }
+        fetchFromDocValues = in.readBoolean();
         if (in.readBoolean()) {
             scroll = Optional.of(Scroll.readScroll(in));
         } else {
@@ -144,6 +153,8 @@ public class QueryShardRequest extends ActionRequest<QueryShardRequest> {
     @Override
     public void writeTo(StreamOutput out) throws IOException {
         super.writeTo(out);
+        out.writeLong(jobId.getMostSignificantBits());
+        out.writeLong(jobId.getLeastSignificantBits());
         out.writeString(index);
         out.writeVInt(shard);
 
@@ -176,6 +187,7 @@ public class QueryShardRequest extends ActionRequest<QueryShardRequest> {
         for (ReferenceInfo referenceInfo : partitionBy) {
             referenceInfo.writeTo(out);
         }
+        out.writeBoolean(fetchFromDocValues);
 
         out.writeBoolean(scroll.isPresent());
         if (scroll.isPresent()) {
@@ -183,6 +195,10 @@ public class QueryShardRequest extends ActionRequest<QueryShardRequest> {
         }
     }
 
+    public UUID jobId() {
+        return jobId;
+    }
+
     public String index() {
         return index;
     }
@@ -223,6 +239,10 @@ public class QueryShardRequest extends ActionRequest<QueryShardRequest> {
         return partitionBy;
     }
 
+    public boolean fetchFromDocValues() {
+        return fetchFromDocValues;
+    }
+
     public Optional<Scroll> scroll() {
         return scroll;
     }
@@ -236,6 +256,8 @@ public class QueryShardRequest extends ActionRequest<QueryShardRequest> {
 
         if (limit != request.limit) return false;
         if (offset != request.offset) return false;
+        if (fetchFromDocValues != request.fetchFromDocValues) return false;
+        if (!jobId.equals(request.jobId)) return false;
         if (!index.equals(request.index)) return false;
         if (!Arrays.equals(nullsFirst, request.nullsFirst)) return false;
         if (!orderBy.equals(request.orderBy)) return false;
@@ -257,7 +279,8 @@ public class QueryShardRequest extends ActionRequest<QueryShardRequest> {
 
     @Override
     public int hashCode() {
-        int result = index.hashCode();
+        int result = jobId.hashCode();
+        result = 31 * result + index.hashCode();
         result = 31 * result + shard.hashCode();
         result = 31 * result + outputs.hashCode();
         result = 31 * result + orderBy.hashCode();
@@ -267,6 +290,7 @@ public class QueryShardRequest extends ActionRequest<QueryShardRequest> {
         result = 31 * result + offset;
         result = 31 * result + whereClause.hashCode();
         result = 31 * result + partitionBy.hashCode();
+        result = 31 * result + (fetchFromDocValues ? 1 : 0);
         result = 31 * result + scroll.hashCode(); // delegated by Optional
         return result;
     }
@@ -0,0 +1,182 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.action.sql.query;
+
+import io.crate.breaker.RamAccountingContext;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * Holds the sorted docs of a scrolled shard query which follow the doc that was emitted last
+ * when they were queried.
+ *
+ * The query is run for more docs than the page size, the following pages are then served
+ * from these docs as long as they cover them, instead of running the query again for every page.
+ * The memory used by the docs is added to the breaker right away, as a buffer is usually much smaller
+ * than what a {@link RamAccountingContext} collects before it reaches the breaker.
+ * Once the buffered docs exceeded the breaker limit the lookahead is disabled.
+ */
+class ScrollLookahead {
+
+    private static final long SCORE_DOC_SIZE = 32L;
+    private static final long FIELD_VALUE_SIZE = 24L;
+
+    private final String contextId;
+    private final CircuitBreaker breaker;
+
+    private long bytes = 0;
+    private boolean tripped = false;
+    private ScoreDoc after;
+    private TopDocs topDocs;
+    private boolean exhausted;
+    private int position = 0;
+
+    ScrollLookahead(String contextId, CircuitBreaker breaker) {
+        this.contextId = contextId;
+        this.breaker = breaker;
+    }
+
+    /**
+     * @param lastEmittedDoc the doc after which the page starts, null for the first page
+     * @return the docs of the page or null if they aren't covered by the buffered docs
+     */
+    @Nullable
+    TopDocs page(@Nullable ScoreDoc lastEmittedDoc, int size) {
+        if (topDocs == null) {
+            return null;
+        }
+        int start = startOf(lastEmittedDoc);
+        if (start < 0) {
+            return null;
+        }
+        int end = start + size;
+        if (end > topDocs.scoreDocs.length) {
+            if (!exhausted) {
+                return null;
+            }
+            end = topDocs.scoreDocs.length;
+        }
+        position = start;
+        return slice(topDocs, start, end);
+    }
+
+    /**
+     * buffers the result of a query which returned the docs following <code>lastEmittedDoc</code>
+     *
+     * @param numDocs the number of docs the query has been executed for
+     * @throws CircuitBreakingException if the docs exceed the breaker limit,
+     *         nothing is buffered then and the lookahead is disabled
+     */
+    void fill(@Nullable ScoreDoc lastEmittedDoc, TopDocs topDocs, int numDocs) throws CircuitBreakingException {
+        clear();
+        long size = ramBytesUsed(topDocs.scoreDocs);
+        try {
+            breaker.addEstimateBytesAndMaybeBreak(size, contextId);
+        } catch (CircuitBreakingException e) {
+            tripped = true;
+            throw e;
+        }
+        this.bytes = size;
+        this.after = lastEmittedDoc;
+        this.topDocs = topDocs;
+        this.exhausted = topDocs.scoreDocs.length < numDocs;
+        this.position = 0;
+    }
+
+    /**
+     * @return true if buffered docs exceeded the breaker limit once,
+     *         the query shouldn't be run for more docs than requested then
+     */
+    boolean tripped() {
+        return tripped;
+    }
+
+    void clear() {
+        if (bytes > 0) {
+            breaker.addWithoutBreaking(-bytes);
+            bytes = 0;
+        }
+        after = null;
+        topDocs = null;
+    }
+
+    /**
+     * @return the index of the doc following <code>lastEmittedDoc</code> or -1 if it isn't buffered
+     */
+    private int startOf(@Nullable ScoreDoc lastEmittedDoc) {
+        if (lastEmittedDoc == null) {
+            return after == null ? 0 : -1;
+        }
+        if (after != null && after.doc == lastEmittedDoc.doc) {
+            return 0;
+        }
+        // the last emitted doc is usually part of the page served last
+        ScoreDoc[] docs = topDocs.scoreDocs;
+        for (int i = position; i < docs.length; i++) {
+            if (docs[i].doc == lastEmittedDoc.doc) {
+                return i + 1;
+            }
+        }
+        for (int i = 0; i < position && i < docs.length; i++) {
+            if (docs[i].doc == lastEmittedDoc.doc) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    static TopDocs slice(TopDocs topDocs, int from, int to) {
+        ScoreDoc[] docs = Arrays.copyOfRange(topDocs.scoreDocs, from, to);
+        if (topDocs instanceof TopFieldDocs) {
+            return new TopFieldDocs(topDocs.totalHits, docs, ((TopFieldDocs) topDocs).fields, topDocs.getMaxScore());
+        }
+        return new TopDocs(topDocs.totalHits, docs, topDocs.getMaxScore());
+    }
+
+    static long ramBytesUsed(ScoreDoc[] scoreDocs) {
+        long bytes = RamAccountingContext.roundUp(16L + 8L * scoreDocs.length);
+        for (ScoreDoc scoreDoc : scoreDocs) {
+            bytes += SCORE_DOC_SIZE;
+            if (scoreDoc instanceof FieldDoc) {
+                Object[] fields = ((FieldDoc) scoreDoc).fields;
+                bytes += RamAccountingContext.roundUp(16L + 8L * fields.length);
+                for (Object field : fields) {
+                    if (field instanceof BytesRef) {
+                        bytes += RamAccountingContext.roundUp(FIELD_VALUE_SIZE + 16L + ((BytesRef) field).length);
+                    } else if (field != null) {
+                        bytes += FIELD_VALUE_SIZE;
+                    }
+                }
+            }
+        }
+        return bytes;
+    }
+}
@@ -23,6 +23,7 @@ package io.crate.action.sql.query;
 
 import io.crate.executor.transport.DefaultTransportResponseHandler;
 import io.crate.executor.transport.ResponseForwarder;
+import io.crate.operation.routing.ReplicaSelector;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.cluster.ClusterService;
@@ -47,13 +48,16 @@ public class TransportQueryShardAction {
     private final Executor executor;
     private final CrateSearchService searchService;
     private final TransportService transportService;
+    private final ReplicaSelector replicaSelector;
 
     @Inject
     public TransportQueryShardAction(ClusterService clusterService,
                                      ThreadPool threadPool,
                                      CrateSearchService searchService,
-                                     TransportService transportService) {
+                                     TransportService transportService,
+                                     ReplicaSelector replicaSelector) {
         this.searchService = searchService;
+        this.replicaSelector = replicaSelector;
         this.transportService = transportService;
         this.clusterService = clusterService;
         executor = threadPool.executor(executorName);
@@ -80,7 +84,16 @@ public class TransportQueryShardAction {
 
     }
 
-    public void executeQuery(String node, final QueryShardRequest request, final ActionListener<QuerySearchResult> listener) {
+    private String resolveNodeId(String node) {
+        if (node.equals("_local")) {
+            return clusterService.state().nodes().localNodeId();
+        }
+        return node;
+    }
+
+    public void executeQuery(String node, final QueryShardRequest request, ActionListener<QuerySearchResult> queryListener) {
+        final ActionListener<QuerySearchResult> listener =
+                new ReplicaSelectorListener<>(resolveNodeId(node), queryListener);
         Runnable localRunnable = new Runnable() {
             @Override
             public void run() {
@@ -105,6 +118,34 @@ public class TransportQueryShardAction {
         }
     }
 
+    /**
+     * reports the response time of the node to the {@link ReplicaSelector}
+     */
+    private class ReplicaSelectorListener<T> implements ActionListener<T> {
+
+        private final String nodeId;
+        private final ActionListener<T> delegate;
+        private final long startedNanos;
+
+        private ReplicaSelectorListener(String nodeId, ActionListener<T> delegate) {
+            this.nodeId = nodeId;
+            this.delegate = delegate;
+            this.startedNanos = replicaSelector.requestStarted(nodeId);
+        }
+
+        @Override
+        public void onResponse(T response) {
+            replicaSelector.requestFinished(nodeId, startedNanos, -1);
+            delegate.onResponse(response);
+        }
+
+        @Override
+        public void onFailure(Throwable e) {
+            replicaSelector.requestFinished(nodeId, startedNanos, -1);
+            delegate.onFailure(e);
+        }
+    }
+
     private class QueryTransportHandler extends BaseTransportRequestHandler<QueryShardRequest> {
 
         @Override
@@ -124,7 +165,9 @@ public class TransportQueryShardAction {
         }
     }
 
-    public void executeScrollQuery(String node, final QueryShardScrollRequest request, final ActionListener<ScrollQuerySearchResult> listener) {
+    public void executeScrollQuery(String node, final QueryShardScrollRequest request, ActionListener<ScrollQuerySearchResult> scrollListener) {
+        final ActionListener<ScrollQuerySearchResult> listener =
+                new ReplicaSelectorListener<>(resolveNodeId(node), scrollListener);
         Runnable localRunnable = new Runnable() {
             @Override
             public void run() {
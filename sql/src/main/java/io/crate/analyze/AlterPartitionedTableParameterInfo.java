@@ -30,6 +30,7 @@ public class AlterPartitionedTableParameterInfo extends TableParameterInfo {
                     .add(NUMBER_OF_REPLICAS)
                     .add(NUMBER_OF_SHARDS)
                     .add(REFRESH_INTERVAL)
+                    .add(HOT_COLUMNS)
                     .build();
 
     protected static final TableParameterInfo PARTITION_TABLE_PARAMETER_INFO = new TablePartitionParameterInfo();
@@ -22,6 +22,10 @@
 package io.crate.analyze;
 
 import io.crate.analyze.relations.AnalyzedRelation;
+import io.crate.metadata.TableIdent;
+
+import java.util.Collections;
+import java.util.Set;
 
 public class Analysis {
 
@@ -29,6 +33,7 @@ public class Analysis {
     private AnalyzedStatement analyzedStatement;
     private boolean expectsAffectedRows = false;
     private AnalyzedRelation rootRelation;
+    private Set<TableIdent> upToDateRollups = Collections.emptySet();
 
     public Analysis(ParameterContext parameterContext) {
         this.parameterContext = parameterContext;
@@ -62,4 +67,15 @@ public class Analysis {
         return rootRelation;
     }
 
+    /**
+     * @param upToDateRollups the rollups which may be used to answer the statement
+     */
+    public void upToDateRollups(Set<TableIdent> upToDateRollups) {
+        this.upToDateRollups = upToDateRollups;
+    }
+
+    public Set<TableIdent> upToDateRollups() {
+        return upToDateRollups;
+    }
+
 }
@@ -65,6 +65,9 @@ public class Analyzer {
         private final SelectStatementAnalyzer selectStatementAnalyzer;
         private final UpdateStatementAnalyzer updateStatementAnalyzer;
         private final DeleteStatementAnalyzer deleteStatementAnalyzer;
+        private final KillStatementAnalyzer killStatementAnalyzer;
+        private final CreateMaterializedViewAnalyzer createMaterializedViewAnalyzer;
+        private final RefreshMaterializedViewAnalyzer refreshMaterializedViewAnalyzer;
 
 
         @Inject
@@ -83,7 +86,10 @@ public class Analyzer {
                                   InsertFromSubQueryAnalyzer insertFromSubQueryAnalyzer,
                                   CopyStatementAnalyzer copyStatementAnalyzer,
                                   UpdateStatementAnalyzer updateStatementAnalyzer,
-                                  DeleteStatementAnalyzer deleteStatementAnalyzer) {
+                                  DeleteStatementAnalyzer deleteStatementAnalyzer,
+                                  KillStatementAnalyzer killStatementAnalyzer,
+                                  CreateMaterializedViewAnalyzer createMaterializedViewAnalyzer,
+                                  RefreshMaterializedViewAnalyzer refreshMaterializedViewAnalyzer) {
             this.selectStatementAnalyzer = selectStatementAnalyzer;
             this.dropTableStatementAnalyzer = dropTableStatementAnalyzer;
             this.createTableStatementAnalyzer = createTableStatementAnalyzer;
@@ -100,6 +106,9 @@ public class Analyzer {
             this.copyStatementAnalyzer = copyStatementAnalyzer;
             this.updateStatementAnalyzer = updateStatementAnalyzer;
             this.deleteStatementAnalyzer = deleteStatementAnalyzer;
+            this.killStatementAnalyzer = killStatementAnalyzer;
+            this.createMaterializedViewAnalyzer = createMaterializedViewAnalyzer;
+            this.refreshMaterializedViewAnalyzer = refreshMaterializedViewAnalyzer;
         }
 
         @Override
@@ -192,6 +201,21 @@ public class Analyzer {
             return setStatementAnalyzer.analyze(node, context);
         }
 
+        @Override
+        public AnalyzedStatement visitKillStatement(KillStatement node, Analysis context) {
+            return killStatementAnalyzer.analyze(node, context);
+        }
+
+        @Override
+        public AnalyzedStatement visitCreateMaterializedView(CreateMaterializedView node, Analysis context) {
+            return createMaterializedViewAnalyzer.analyze(node, context);
+        }
+
+        @Override
+        public AnalyzedStatement visitRefreshMaterializedView(RefreshMaterializedView node, Analysis context) {
+            return refreshMaterializedViewAnalyzer.analyze(node, context);
+        }
+
         @Override
         protected AnalyzedStatement visitNode(Node node, Analysis context) {
             throw new UnsupportedOperationException(String.format("cannot analyze statement: '%s'", node));
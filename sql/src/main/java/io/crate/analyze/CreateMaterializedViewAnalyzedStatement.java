@@ -0,0 +1,134 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.analyze;
+
+import io.crate.metadata.FulltextAnalyzerResolver;
+import io.crate.metadata.ReferenceInfos;
+import io.crate.metadata.TableIdent;
+import io.crate.metadata.doc.RollupInfo;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A materialized view is created as a regular table whose columns are derived from the
+ * outputs of the view query. The query and the state of the last refresh are stored
+ * in the <code>_meta</code> section of the table mapping.
+ */
+public class CreateMaterializedViewAnalyzedStatement extends CreateTableAnalyzedStatement {
+
+    public static final String META_KEY = "materialized_view";
+    public static final String META_QUERY = "query";
+    public static final String META_COLUMNS = "columns";
+    public static final String META_SOURCE_SCHEMA = "source_schema";
+    public static final String META_SOURCE_TABLE = "source_table";
+    public static final String META_PARTITION_COLUMNS = "partition_columns";
+    public static final String META_FINGERPRINTS = "fingerprints";
+
+    private String query;
+    private TableIdent source;
+    private List<String> partitionColumns;
+    private RollupInfo rollup;
+    private Map<String, Object> mapping;
+
+    public CreateMaterializedViewAnalyzedStatement(ReferenceInfos referenceInfos,
+                                                   FulltextAnalyzerResolver fulltextAnalyzerResolver) {
+        super(referenceInfos, fulltextAnalyzerResolver);
+    }
+
+    public void query(String query) {
+        this.query = query;
+    }
+
+    public String query() {
+        return query;
+    }
+
+    public void source(TableIdent source) {
+        this.source = source;
+    }
+
+    public TableIdent source() {
+        return source;
+    }
+
+    /**
+     * the view columns holding the values of the source partition columns,
+     * in the order of the partitioned by columns of the source table.
+     * If set, the view can be refreshed partition by partition.
+     */
+    public void partitionColumns(@Nullable List<String> partitionColumns) {
+        this.partitionColumns = partitionColumns;
+    }
+
+    @Nullable
+    public List<String> partitionColumns() {
+        return partitionColumns;
+    }
+
+    public boolean isIncremental() {
+        return partitionColumns != null;
+    }
+
+    /**
+     * the rollup definition registered at the source table, only set for <code>CREATE ROLLUP</code>
+     */
+    public void rollup(@Nullable RollupInfo rollup) {
+        this.rollup = rollup;
+    }
+
+    @Nullable
+    public RollupInfo rollup() {
+        return rollup;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> mapping() {
+        if (mapping == null) {
+            mapping = super.mapping();
+            Map<String, Object> viewMeta = new HashMap<>();
+            viewMeta.put(META_QUERY, query);
+            List<String> columns = new ArrayList<>(analyzedTableElements().columns().size());
+            for (AnalyzedColumnDefinition column : analyzedTableElements().columns()) {
+                columns.add(column.name());
+            }
+            viewMeta.put(META_COLUMNS, columns);
+            viewMeta.put(META_SOURCE_SCHEMA, source.schema());
+            viewMeta.put(META_SOURCE_TABLE, source.name());
+            if (partitionColumns != null) {
+                viewMeta.put(META_PARTITION_COLUMNS, partitionColumns);
+            }
+            viewMeta.put(META_FINGERPRINTS, new HashMap<String, Object>());
+            ((Map<String, Object>) mapping.get("_meta")).put(META_KEY, viewMeta);
+        }
+        return mapping;
+    }
+
+    @Override
+    public <C, R> R accept(AnalyzedStatementVisitor<C, R> analyzedStatementVisitor, C context) {
+        return analyzedStatementVisitor.visitCreateMaterializedViewStatement(this, context);
+    }
+}
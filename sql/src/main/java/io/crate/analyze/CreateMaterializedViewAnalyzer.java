@@ -0,0 +1,268 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.analyze;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.crate.analyze.relations.AnalyzedRelation;
+import io.crate.analyze.relations.RelationAnalyzer;
+import io.crate.exceptions.UnsupportedFeatureException;
+import io.crate.metadata.ColumnIdent;
+import io.crate.metadata.FulltextAnalyzerResolver;
+import io.crate.metadata.FunctionInfo;
+import io.crate.metadata.ReferenceInfos;
+import io.crate.metadata.TableIdent;
+import io.crate.metadata.blob.BlobTableInfo;
+import io.crate.metadata.doc.DocTableInfo;
+import io.crate.metadata.doc.RollupInfo;
+import io.crate.metadata.table.TableInfo;
+import io.crate.operation.aggregation.impl.CountAggregation;
+import io.crate.operation.aggregation.impl.MaximumAggregation;
+import io.crate.operation.aggregation.impl.MinimumAggregation;
+import io.crate.operation.aggregation.impl.SumAggregation;
+import io.crate.planner.symbol.Field;
+import io.crate.planner.symbol.Function;
+import io.crate.planner.symbol.Reference;
+import io.crate.planner.symbol.Symbol;
+import io.crate.sql.SqlFormatter;
+import io.crate.sql.tree.CreateMaterializedView;
+import io.crate.sql.tree.DefaultTraversalVisitor;
+import io.crate.sql.tree.GenericProperties;
+import io.crate.sql.tree.Node;
+import io.crate.sql.tree.Table;
+import io.crate.types.ArrayType;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.inject.Singleton;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+@Singleton
+public class CreateMaterializedViewAnalyzer extends DefaultTraversalVisitor<CreateMaterializedViewAnalyzedStatement, Analysis> {
+
+    private static final TablePropertiesAnalyzer TABLE_PROPERTIES_ANALYZER = new TablePropertiesAnalyzer();
+    private static final Set<String> ROLLUP_AGGREGATES = ImmutableSet.of(
+            CountAggregation.NAME, SumAggregation.NAME, MinimumAggregation.NAME, MaximumAggregation.NAME);
+
+    private final ReferenceInfos referenceInfos;
+    private final FulltextAnalyzerResolver fulltextAnalyzerResolver;
+    private final RelationAnalyzer relationAnalyzer;
+
+    @Inject
+    public CreateMaterializedViewAnalyzer(ReferenceInfos referenceInfos,
+                                          FulltextAnalyzerResolver fulltextAnalyzerResolver,
+                                          RelationAnalyzer relationAnalyzer) {
+        this.referenceInfos = referenceInfos;
+        this.fulltextAnalyzerResolver = fulltextAnalyzerResolver;
+        this.relationAnalyzer = relationAnalyzer;
+    }
+
+    public CreateMaterializedViewAnalyzedStatement analyze(Node node, Analysis analysis) {
+        analysis.expectsAffectedRows(true);
+        return super.process(node, analysis);
+    }
+
+    @Override
+    public CreateMaterializedViewAnalyzedStatement visitCreateMaterializedView(CreateMaterializedView node,
+                                                                              Analysis analysis) {
+        if (node.getRefresh().isPresent()) {
+            throw new UnsupportedFeatureException("Periodic refresh of materialized views is not supported");
+        }
+        if (analysis.parameterContext().parameters().length > 0) {
+            throw new UnsupportedFeatureException("Parameters are not supported in materialized view definitions");
+        }
+        CreateMaterializedViewAnalyzedStatement statement =
+                new CreateMaterializedViewAnalyzedStatement(referenceInfos, fulltextAnalyzerResolver);
+        statement.table(TableIdent.of(new Table(node.getName())));
+
+        AnalyzedRelation relation = relationAnalyzer.analyze(node.getTableDefinition(), analysis);
+        if (!(relation instanceof QueriedTable)) {
+            throw new UnsupportedFeatureException("Materialized views must select from exactly one table");
+        }
+        QueriedTable queriedTable = (QueriedTable) relation;
+        TableInfo sourceTable = queriedTable.tableRelation().tableInfo();
+        if (sourceTable.schemaInfo().systemSchema() || sourceTable instanceof BlobTableInfo) {
+            throw new UnsupportedFeatureException(String.format(Locale.ENGLISH,
+                    "Cannot create a materialized view on table \"%s\"", sourceTable.ident().fqn()));
+        }
+        QuerySpec querySpec = queriedTable.querySpec();
+        if (querySpec.isLimited() || querySpec.orderBy() != null) {
+            throw new UnsupportedFeatureException(
+                    "Using limit, offset or order by is not supported in materialized view definitions");
+        }
+
+        TABLE_PROPERTIES_ANALYZER.analyze(statement.tableParameter(), new TableParameterInfo(),
+                Optional.<GenericProperties>absent(), analysis.parameterContext().parameters(), true);
+        statement.analyzedTableElements(tableElements(queriedTable.fields()));
+        statement.analyzedTableElements().finalizeAndValidate();
+        statement.tableParameter().settingsBuilder().put(statement.analyzedTableElements().settings());
+
+        statement.query(SqlFormatter.formatSql(node.getTableDefinition()));
+        statement.source(sourceTable.ident());
+        statement.partitionColumns(partitionColumns(sourceTable, queriedTable));
+        if (node.isRollup()) {
+            statement.rollup(rollup(statement.tableIdent(), sourceTable, queriedTable));
+        }
+        return statement;
+    }
+
+    /**
+     * A rollup groups by plain top level columns of a doc table, selects every grouped column
+     * and stores aggregates which can be combined again: count, sum, min and max
+     * of plain top level columns.
+     */
+    private static RollupInfo rollup(TableIdent ident, TableInfo sourceTable, QueriedTable queriedTable) {
+        if (!(sourceTable instanceof DocTableInfo) || ((DocTableInfo) sourceTable).isAlias()) {
+            throw new UnsupportedFeatureException(String.format(Locale.ENGLISH,
+                    "Cannot create a rollup on table \"%s\"", sourceTable.ident().fqn()));
+        }
+        QuerySpec querySpec = queriedTable.querySpec();
+        if (querySpec.groupBy() == null) {
+            throw new IllegalArgumentException("A rollup must use GROUP BY");
+        }
+        if ((querySpec.where() != null && (querySpec.where().hasQuery() || querySpec.where().noMatch()))
+                || querySpec.having() != null) {
+            throw new UnsupportedFeatureException("Using where or having is not supported in rollup definitions");
+        }
+        List<ColumnIdent> groupBy = new ArrayList<>(querySpec.groupBy().size());
+        for (Symbol symbol : querySpec.groupBy()) {
+            groupBy.add(rollupColumn(symbol, "GROUP BY"));
+        }
+        String[] groupByColumns = new String[groupBy.size()];
+        List<RollupInfo.Aggregate> aggregates = new ArrayList<>();
+        for (int i = 0; i < querySpec.outputs().size(); i++) {
+            Symbol output = querySpec.outputs().get(i);
+            String column = queriedTable.fields().get(i).path().outputName();
+            if (output instanceof Reference) {
+                int idx = groupBy.indexOf(((Reference) output).info().ident().columnIdent());
+                assert idx >= 0 : "selected columns must be grouped by";
+                groupByColumns[idx] = column;
+            } else if (output instanceof Function
+                    && ((Function) output).info().type() == FunctionInfo.Type.AGGREGATE
+                    && ROLLUP_AGGREGATES.contains(((Function) output).info().ident().name())) {
+                Function function = (Function) output;
+                List<Symbol> arguments = function.arguments();
+                if (arguments.size() > 1 || (arguments.isEmpty() && !function.info().ident().name().equals(
+                        CountAggregation.NAME))) {
+                    throw new UnsupportedFeatureException(String.format(Locale.ENGLISH,
+                            "Rollup column \"%s\" is not supported", column));
+                }
+                ColumnIdent argument = arguments.isEmpty() ? null : rollupColumn(arguments.get(0), column);
+                aggregates.add(new RollupInfo.Aggregate(function.info().ident().name(), argument, column));
+            } else {
+                throw new UnsupportedFeatureException(String.format(Locale.ENGLISH,
+                        "Rollup column \"%s\" must be a grouped column or one of %s of a column",
+                        column, ROLLUP_AGGREGATES));
+            }
+        }
+        for (int i = 0; i < groupByColumns.length; i++) {
+            if (groupByColumns[i] == null) {
+                throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                        "Grouped column \"%s\" must be selected in a rollup", groupBy.get(i).sqlFqn()));
+            }
+        }
+        return new RollupInfo(ident, ImmutableList.copyOf(groupBy), ImmutableList.copyOf(groupByColumns),
+                ImmutableList.copyOf(aggregates));
+    }
+
+    private static ColumnIdent rollupColumn(Symbol symbol, String usage) {
+        if (symbol instanceof Reference) {
+            ColumnIdent columnIdent = ((Reference) symbol).info().ident().columnIdent();
+            if (columnIdent.isColumn() && !columnIdent.isSystemColumn()
+                    && DataTypes.PRIMITIVE_TYPES.contains(symbol.valueType())) {
+                return columnIdent;
+            }
+        }
+        throw new UnsupportedFeatureException(String.format(Locale.ENGLISH,
+                "Only top level columns of a primitive type can be used in %s of a rollup", usage));
+    }
+
+    private static AnalyzedTableElements tableElements(List<Field> fields) {
+        AnalyzedTableElements tableElements = new AnalyzedTableElements();
+        Set<String> names = new HashSet<>(fields.size());
+        for (Field field : fields) {
+            String name = field.path().outputName();
+            if (name.contains(".") || name.contains("(")) {
+                throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                        "Materialized view column \"%s\" must be named using an alias", name));
+            }
+            if (!names.add(name)) {
+                throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                        "Materialized view column \"%s\" is defined more than once", name));
+            }
+            AnalyzedColumnDefinition column = new AnalyzedColumnDefinition(null);
+            column.name(name);
+            DataType type = field.valueType();
+            if (type instanceof ArrayType) {
+                column.collectionType("array");
+                type = ((ArrayType) type).innerType();
+            }
+            if (!DataTypes.PRIMITIVE_TYPES.contains(type) && !type.equals(DataTypes.GEO_POINT)) {
+                throw new UnsupportedFeatureException(String.format(Locale.ENGLISH,
+                        "Materialized view column \"%s\" has unsupported type %s", name, field.valueType()));
+            }
+            column.dataType(type.getName());
+            tableElements.add(column);
+        }
+        return tableElements;
+    }
+
+    /**
+     * A view can be refreshed per partition of its source table if every source row only
+     * contributes to view rows which contain the partition values of that row:
+     * all partition columns are selected and the query is either grouped or doesn't aggregate.
+     *
+     * @return the view columns holding the source partition columns or null
+     */
+    private static List<String> partitionColumns(TableInfo sourceTable, QueriedTable queriedTable) {
+        QuerySpec querySpec = queriedTable.querySpec();
+        if (!sourceTable.isPartitioned() || (querySpec.hasAggregates() && querySpec.groupBy() == null)) {
+            return null;
+        }
+        List<String> partitionColumns = new ArrayList<>(sourceTable.partitionedBy().size());
+        for (ColumnIdent partitionColumn : sourceTable.partitionedBy()) {
+            if (!partitionColumn.isColumn()) {
+                return null;
+            }
+            String viewColumn = null;
+            for (int i = 0; i < querySpec.outputs().size(); i++) {
+                Symbol output = querySpec.outputs().get(i);
+                if (output instanceof Reference
+                        && ((Reference) output).info().ident().columnIdent().equals(partitionColumn)) {
+                    viewColumn = queriedTable.fields().get(i).path().outputName();
+                    break;
+                }
+            }
+            if (viewColumn == null) {
+                return null;
+            }
+            partitionColumns.add(viewColumn);
+        }
+        return partitionColumns;
+    }
+}
@@ -33,15 +33,14 @@ import io.crate.metadata.ColumnIdent;
 import io.crate.metadata.TableIdent;
 import io.crate.metadata.table.TableInfo;
 import io.crate.operation.Input;
+import io.crate.planner.symbol.DynamicReference;
 import io.crate.planner.symbol.Field;
 import io.crate.planner.symbol.Literal;
 import io.crate.planner.symbol.Reference;
 import io.crate.planner.symbol.Symbol;
-import io.crate.sql.tree.Assignment;
-import io.crate.sql.tree.Expression;
-import io.crate.sql.tree.InsertFromValues;
-import io.crate.sql.tree.ValuesList;
+import io.crate.sql.tree.*;
 import io.crate.types.DataType;
+import io.crate.types.DataTypes;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Singleton;
@@ -142,76 +141,167 @@ public class InsertFromValuesAnalyzer extends AbstractInsertAnalyzer {
                     statement.columns().size(), node.values().size()));
         }
         try {
-            int numPks = statement.tableInfo().primaryKey().size();
+            ValueExtractor[] extractors = valueExtractors(node, statement);
             if (parameterContext.bulkParameters.length > 0) {
                 for (int i = 0; i < parameterContext.bulkParameters.length; i++) {
                     parameterContext.setBulkIdx(i);
-                    addValues(tableRelation, node, assignments, statement, numPks);
+                    addValues(tableRelation, extractors, assignments, statement, parameterContext);
                 }
             } else {
-                addValues(tableRelation, node, assignments, statement, numPks);
+                addValues(tableRelation, extractors, assignments, statement, parameterContext);
             }
         } catch (IOException e) {
             throw new RuntimeException(e); // can't throw IOException directly because of visitor interface
         }
     }
 
+    /**
+     * Everything about a value of the VALUES list which doesn't depend on the parameters.
+     * Computed once and used for all rows of a bulk request.
+     */
+    private static class ValueExtractor {
+
+        static final int NO_PRIMARY_KEY = -1;
+        static final int NESTED_PRIMARY_KEY = -2;
+
+        final Expression expression;
+        final Reference column;
+        final ColumnIdent columnIdent;
+        final int primaryKeyIdx;
+        final boolean isRouting;
+        final boolean isPartitionedBy;
+
+        /**
+         * index of the parameter if the value is a single parameter, otherwise -1
+         */
+        final int parameterIdx;
+
+        /**
+         * true if the value is a literal whose converted value can be re-used for all rows
+         */
+        final boolean isConstant;
+        boolean constantResolved = false;
+        Object constant;
+
+        ValueExtractor(Expression expression,
+                       Reference column,
+                       int primaryKeyIdx,
+                       boolean isRouting,
+                       boolean isPartitionedBy) {
+            this.expression = expression;
+            this.column = column;
+            this.columnIdent = column.info().ident().columnIdent();
+            this.primaryKeyIdx = primaryKeyIdx;
+            this.isRouting = isRouting;
+            this.isPartitionedBy = isPartitionedBy;
+            this.parameterIdx = expression instanceof ParameterExpression
+                    ? ((ParameterExpression) expression).index()
+                    : -1;
+            DataType type = column.valueType();
+            // object and array values are mutable and dynamic columns change their type depending on the value
+            this.isConstant = !(column instanceof DynamicReference)
+                              && type != DataTypes.OBJECT
+                              && !DataTypes.isCollectionType(type)
+                              && (expression instanceof StringLiteral
+                                  || expression instanceof LongLiteral
+                                  || expression instanceof DoubleLiteral
+                                  || expression instanceof BooleanLiteral
+                                  || expression instanceof NullLiteral);
+        }
+    }
+
+    private ValueExtractor[] valueExtractors(ValuesList node, InsertFromValuesAnalyzedStatement context) {
+        List<ColumnIdent> primaryKey = context.tableInfo().primaryKey();
+        ValueExtractor[] extractors = new ValueExtractor[node.values().size()];
+        for (int i = 0; i < extractors.length; i++) {
+            Reference column = context.columns().get(i);
+            int primaryKeyIdx = ValueExtractor.NO_PRIMARY_KEY;
+            if (context.primaryKeyColumnIndices().contains(i)) {
+                primaryKeyIdx = primaryKey.indexOf(column.info().ident().columnIdent());
+                if (primaryKeyIdx < 0) {
+                    primaryKeyIdx = ValueExtractor.NESTED_PRIMARY_KEY;
+                }
+            }
+            extractors[i] = new ValueExtractor(
+                    node.values().get(i),
+                    column,
+                    primaryKeyIdx,
+                    i == context.routingColumnIndex(),
+                    context.partitionedByIndices().contains(i));
+        }
+        return extractors;
+    }
+
+    private Object value(ValueExtractor extractor, ParameterContext parameterContext) {
+        if (extractor.constantResolved) {
+            return extractor.constant;
+        }
+        Symbol valuesSymbol;
+        if (extractor.parameterIdx >= 0) {
+            // skip the expression analysis, it would result in the same literal
+            valuesSymbol = parameterContext.getAsSymbol(extractor.parameterIdx);
+        } else {
+            valuesSymbol = expressionAnalyzer.convert(extractor.expression, expressionAnalysisContext);
+        }
+
+        // implicit type conversion
+        Object value;
+        try {
+            valuesSymbol = expressionAnalyzer.normalizeInputForReference(valuesSymbol, extractor.column, expressionAnalysisContext);
+            value = ((Input) valuesSymbol).value();
+        } catch (IllegalArgumentException | UnsupportedOperationException e) {
+            throw new ColumnValidationException(extractor.columnIdent.sqlFqn(), e);
+        } catch (ClassCastException e) {
+            // symbol is no Input
+            throw new ColumnValidationException(extractor.columnIdent.name(),
+                    String.format("Invalid value of type '%s' in insert statement", valuesSymbol.symbolType().name()));
+        }
+        if (extractor.isConstant) {
+            extractor.constant = value;
+            extractor.constantResolved = true;
+        }
+        return value;
+    }
+
     private void addValues(TableRelation tableRelation,
-                           ValuesList node,
+                           ValueExtractor[] extractors,
                            List<Assignment> assignments,
                            InsertFromValuesAnalyzedStatement context,
-                           int numPrimaryKeys) throws IOException {
+                           ParameterContext parameterContext) throws IOException {
         if (context.tableInfo().isPartitioned()) {
             context.newPartitionMap();
         }
-        List<BytesRef> primaryKeyValues = new ArrayList<>(numPrimaryKeys);
-        String routingValue = null;
         List<ColumnIdent> primaryKey = context.tableInfo().primaryKey();
-        Object[] insertValues = new Object[node.values().size()];
-
-        for (int i = 0, valuesSize = node.values().size(); i < valuesSize; i++) {
-            Expression expression = node.values().get(i);
-            Symbol valuesSymbol = expressionAnalyzer.convert(expression, expressionAnalysisContext);
+        List<BytesRef> primaryKeyValues = new ArrayList<>(primaryKey.size());
+        String routingValue = null;
+        Object[] insertValues = new Object[extractors.length];
 
-            // implicit type conversion
-            Reference column = context.columns().get(i);
-            final ColumnIdent columnIdent = column.info().ident().columnIdent();
-            Object value;
-            try {
-                valuesSymbol = expressionAnalyzer.normalizeInputForReference(valuesSymbol, column, expressionAnalysisContext);
-                value = ((Input) valuesSymbol).value();
-            } catch (IllegalArgumentException | UnsupportedOperationException e) {
-                throw new ColumnValidationException(columnIdent.sqlFqn(), e);
-            } catch (ClassCastException e) {
-                // symbol is no Input
-                throw new ColumnValidationException(columnIdent.name(),
-                        String.format("Invalid value of type '%s' in insert statement", valuesSymbol.symbolType().name()));
-            }
+        for (int i = 0; i < extractors.length; i++) {
+            ValueExtractor extractor = extractors[i];
+            final ColumnIdent columnIdent = extractor.columnIdent;
+            Object value = value(extractor, parameterContext);
 
-            if (context.primaryKeyColumnIndices().contains(i)) {
+            if (extractor.primaryKeyIdx == ValueExtractor.NESTED_PRIMARY_KEY) {
                 if (value == null) {
                     throw new IllegalArgumentException("Primary key value must not be NULL");
                 }
-                int idx = primaryKey.indexOf(columnIdent);
-                if (idx < 0) {
-                    // oh look, one or more nested primary keys!
-                    assert value instanceof Map;
-                    for (ColumnIdent pkIdent : primaryKey) {
-                        if (!pkIdent.getRoot().equals(columnIdent)) {
-                            continue;
-                        }
-                        int pkIdx = primaryKey.indexOf(pkIdent);
-                        Object nestedValue = StringObjectMaps.fromMapByPath((Map) value, pkIdent.path());
-                        addPrimaryKeyValue(pkIdx, nestedValue, primaryKeyValues);
+                // oh look, one or more nested primary keys!
+                assert value instanceof Map;
+                for (ColumnIdent pkIdent : primaryKey) {
+                    if (!pkIdent.getRoot().equals(columnIdent)) {
+                        continue;
                     }
-                } else {
-                    addPrimaryKeyValue(idx, value, primaryKeyValues);
+                    int pkIdx = primaryKey.indexOf(pkIdent);
+                    Object nestedValue = StringObjectMaps.fromMapByPath((Map) value, pkIdent.path());
+                    addPrimaryKeyValue(pkIdx, nestedValue, primaryKeyValues);
                 }
+            } else if (extractor.primaryKeyIdx >= 0) {
+                addPrimaryKeyValue(extractor.primaryKeyIdx, value, primaryKeyValues);
             }
-            if (i == context.routingColumnIndex()) {
+            if (extractor.isRouting) {
                 routingValue = extractRoutingValue(columnIdent, value, context);
             }
-            if (context.partitionedByIndices().contains(i)) {
+            if (extractor.isPartitionedBy) {
                 Object rest = processPartitionedByValues(columnIdent, value, context);
                 if (rest != null) {
                     insertValues[i] = rest;
@@ -220,7 +310,6 @@ public class InsertFromValuesAnalyzer extends AbstractInsertAnalyzer {
                 insertValues[i] = value;
             }
         }
-
         if (!assignments.isEmpty()) {
             Symbol[] onDupKeyAssignments = new Symbol[assignments.size()];
             valuesResolver.insertValues = insertValues;
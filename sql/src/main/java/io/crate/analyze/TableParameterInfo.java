@@ -35,6 +35,7 @@ public class TableParameterInfo {
     public static final String REFRESH_INTERVAL = InternalIndexShard.INDEX_REFRESH_INTERVAL;
     public static final String NUMBER_OF_SHARDS = IndexMetaData.SETTING_NUMBER_OF_SHARDS;
     public static final String BLOBS_PATH = BlobIndices.SETTING_INDEX_BLOBS_PATH;
+    public static final String HOT_COLUMNS = "index.warmer.hot_columns";
 
     // all available table mapping keys
     public static final String COLUMN_POLICY = ColumnPolicy.ES_MAPPING_NAME;
@@ -43,6 +44,7 @@ public class TableParameterInfo {
             ImmutableList.<String>builder()
                     .add(NUMBER_OF_REPLICAS)
                     .add(REFRESH_INTERVAL)
+                    .add(HOT_COLUMNS)
                     .build();
 
     protected static final ImmutableList<String> SUPPORTED_INTERNAL_SETTINGS =
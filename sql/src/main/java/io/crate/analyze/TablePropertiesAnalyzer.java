@@ -21,6 +21,7 @@
 
 package io.crate.analyze;
 
+import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableBiMap;
@@ -46,6 +47,7 @@ public class TablePropertiesAnalyzer {
                     .put(stripIndexPrefix(TableParameterInfo.REFRESH_INTERVAL), TableParameterInfo.REFRESH_INTERVAL)
                     .put(stripIndexPrefix(TableParameterInfo.NUMBER_OF_SHARDS), TableParameterInfo.NUMBER_OF_SHARDS)
                     .put("blobs_path", TableParameterInfo.BLOBS_PATH)
+                    .put("hot_columns", TableParameterInfo.HOT_COLUMNS)
                     .build();
 
     private static final ImmutableBiMap<String, String> ES_TO_CRATE_SETTINGS_MAP =
@@ -66,6 +68,7 @@ public class TablePropertiesAnalyzer {
                     .put(TableParameterInfo.REFRESH_INTERVAL, new RefreshIntervalSettingApplier())
                     .put(TableParameterInfo.NUMBER_OF_SHARDS, new NumberOfShardsSettingsApplier())
                     .put(TableParameterInfo.BLOBS_PATH, new BlobPathSettingApplier())
+                    .put(TableParameterInfo.HOT_COLUMNS, new HotColumnsSettingApplier())
                     .build();
 
     private static final ImmutableMap<String, MappingsApplier> MAPPINGS_APPLIER =
@@ -297,6 +300,55 @@ public class TablePropertiesAnalyzer {
         }
     }
 
+    private static class HotColumnsSettingApplier extends SettingsAppliers.AbstractSettingsApplier {
+
+        public static final Settings DEFAULT = ImmutableSettings.builder()
+                .put(TableParameterInfo.HOT_COLUMNS, "").build();
+
+        private HotColumnsSettingApplier() {
+            super(ES_TO_CRATE_SETTINGS_MAP.get(TableParameterInfo.HOT_COLUMNS), DEFAULT);
+        }
+
+        @Override
+        public void apply(ImmutableSettings.Builder settingsBuilder,
+                          Object[] parameters,
+                          Expression expression) {
+            Object value;
+            try {
+                value = ExpressionToObjectVisitor.convert(expression, parameters);
+            } catch (IllegalArgumentException e) {
+                throw invalidException(e);
+            }
+            if (value instanceof List) {
+                value = ((List) value).toArray();
+            }
+            List<String> hotColumns = new ArrayList<>();
+            if (value instanceof Object[]) {
+                for (Object column : (Object[]) value) {
+                    if (!(column instanceof String)) {
+                        throw invalidException();
+                    }
+                    hotColumns.add((String) column);
+                }
+            } else if (value instanceof String) {
+                hotColumns.add((String) value);
+            } else if (value != null) {
+                throw invalidException();
+            }
+            settingsBuilder.put(TableParameterInfo.HOT_COLUMNS, Joiner.on(',').join(hotColumns));
+        }
+
+        @Override
+        public Settings getDefault() {
+            return DEFAULT;
+        }
+
+        @Override
+        public void applyValue(ImmutableSettings.Builder settingsBuilder, Object value) {
+            throw new UnsupportedOperationException("Not supported");
+        }
+    }
+
     private static class ColumnPolicyMappingApplier extends MappingsApplier {
 
         private ColumnPolicyMappingApplier() {
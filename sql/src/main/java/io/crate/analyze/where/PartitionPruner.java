@@ -0,0 +1,177 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.analyze.where;
+
+import io.crate.metadata.doc.PartitionIndex;
+import io.crate.operation.operator.*;
+import io.crate.planner.symbol.*;
+import io.crate.types.DataType;
+import io.crate.types.SetType;
+
+import javax.annotation.Nullable;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Resolves the partitions which can match a query using the {@link PartitionIndex}.
+ *
+ * Comparisons and IN predicates of partitioned by columns with literals are resolved using a binary search,
+ * AND and OR combine the resolved partitions. All other conditions might match any partition and are
+ * resolved to null.
+ *
+ * The result is a superset of the matching partitions, the query still has to be evaluated for each of them.
+ */
+public class PartitionPruner extends SymbolVisitor<PartitionIndex, BitSet> {
+
+    public static final PartitionPruner INSTANCE = new PartitionPruner();
+
+    private PartitionPruner() {
+    }
+
+    /**
+     * @return the partitions which can match the query or null if all partitions can match
+     */
+    @Nullable
+    public BitSet prune(Symbol query, PartitionIndex partitionIndex) {
+        return process(query, partitionIndex);
+    }
+
+    @Override
+    public BitSet visitFunction(Function function, PartitionIndex partitionIndex) {
+        String name = function.info().ident().name();
+        List<Symbol> arguments = function.arguments();
+        switch (name) {
+            case AndOperator.NAME: {
+                BitSet left = process(arguments.get(0), partitionIndex);
+                BitSet right = process(arguments.get(1), partitionIndex);
+                if (left == null) {
+                    return right;
+                }
+                if (right != null) {
+                    left.and(right);
+                }
+                return left;
+            }
+            case OrOperator.NAME: {
+                BitSet left = process(arguments.get(0), partitionIndex);
+                if (left == null) {
+                    return null;
+                }
+                BitSet right = process(arguments.get(1), partitionIndex);
+                if (right == null) {
+                    return null;
+                }
+                left.or(right);
+                return left;
+            }
+            case InOperator.NAME:
+                return in(arguments, partitionIndex);
+            case EqOperator.NAME:
+            case GtOperator.NAME:
+            case GteOperator.NAME:
+            case LtOperator.NAME:
+            case LteOperator.NAME:
+                return compare(name, arguments, partitionIndex);
+            default:
+                return null;
+        }
+    }
+
+    @Nullable
+    private BitSet in(List<Symbol> arguments, PartitionIndex partitionIndex) {
+        if (!(arguments.get(0) instanceof Reference) || !(arguments.get(1) instanceof Literal)) {
+            return null;
+        }
+        int columnIndex = partitionIndex.columnIndex(((Reference) arguments.get(0)).info());
+        Literal literal = (Literal) arguments.get(1);
+        if (columnIndex < 0 || literal.valueType().id() != SetType.ID
+                || !((SetType) literal.valueType()).innerType().equals(partitionIndex.columnType(columnIndex))) {
+            return null;
+        }
+        BitSet bitSet = new BitSet(partitionIndex.partitions().size());
+        for (Object value : (Collection) literal.value()) {
+            if (value != null) {
+                bitSet.or(partitionIndex.equalTo(columnIndex, value));
+            }
+        }
+        return bitSet;
+    }
+
+    @Nullable
+    private BitSet compare(String name, List<Symbol> arguments, PartitionIndex partitionIndex) {
+        Symbol left = arguments.get(0);
+        Symbol right = arguments.get(1);
+        if (left instanceof Literal && right instanceof Reference) {
+            name = swap(name);
+            Symbol tmp = left;
+            left = right;
+            right = tmp;
+        }
+        if (!(left instanceof Reference) || !(right instanceof Literal)) {
+            return null;
+        }
+        int columnIndex = partitionIndex.columnIndex(((Reference) left).info());
+        if (columnIndex < 0) {
+            return null;
+        }
+        DataType columnType = partitionIndex.columnType(columnIndex);
+        Literal literal = (Literal) right;
+        if (!literal.valueType().equals(columnType)) {
+            return null;
+        }
+        Object value = literal.value();
+        if (value == null) {
+            // comparisons with null never match
+            return new BitSet();
+        }
+        switch (name) {
+            case EqOperator.NAME:
+                return partitionIndex.equalTo(columnIndex, value);
+            case GtOperator.NAME:
+                return partitionIndex.range(columnIndex, value, false, null, false);
+            case GteOperator.NAME:
+                return partitionIndex.range(columnIndex, value, true, null, false);
+            case LtOperator.NAME:
+                return partitionIndex.range(columnIndex, null, false, value, false);
+            case LteOperator.NAME:
+                return partitionIndex.range(columnIndex, null, false, value, true);
+            default:
+                return null;
+        }
+    }
+
+    private static String swap(String name) {
+        switch (name) {
+            case GtOperator.NAME:
+                return LtOperator.NAME;
+            case GteOperator.NAME:
+                return LteOperator.NAME;
+            case LtOperator.NAME:
+                return GtOperator.NAME;
+            case LteOperator.NAME:
+                return GteOperator.NAME;
+            default:
+                return name;
+        }
+    }
+}
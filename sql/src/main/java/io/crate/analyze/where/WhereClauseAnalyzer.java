@@ -29,6 +29,8 @@ import io.crate.metadata.PartitionName;
 import io.crate.metadata.PartitionReferenceResolver;
 import io.crate.metadata.ReferenceInfo;
 import io.crate.metadata.ReferenceResolver;
+import io.crate.metadata.doc.DocTableInfo;
+import io.crate.metadata.doc.PartitionIndex;
 import io.crate.metadata.table.TableInfo;
 import io.crate.operation.reference.partitioned.PartitionExpression;
 import io.crate.planner.RowGranularity;
@@ -155,7 +157,7 @@ public class WhereClauseAnalyzer {
         Symbol normalized = null;
         Map<Symbol, List<Literal>> queryPartitionMap = new HashMap<>();
 
-        for (PartitionName partitionName : tableInfo.partitions()) {
+        for (PartitionName partitionName : candidatePartitions(whereClause.query())) {
             for (PartitionExpression partitionExpression : partitionReferenceResolver.expressions()) {
                 partitionExpression.setNextRow(partitionName);
             }
@@ -190,6 +192,22 @@ public class WhereClauseAnalyzer {
         }
     }
 
+    /**
+     * uses the partition index to skip partitions which can't match the query.
+     * Conditions the index can't resolve are evaluated for every partition.
+     */
+    private List<PartitionName> candidatePartitions(Symbol query) {
+        if (!(tableInfo instanceof DocTableInfo)) {
+            return tableInfo.partitions();
+        }
+        PartitionIndex partitionIndex = ((DocTableInfo) tableInfo).partitionIndex();
+        BitSet candidates = PartitionPruner.INSTANCE.prune(query, partitionIndex);
+        if (candidates == null) {
+            return tableInfo.partitions();
+        }
+        return partitionIndex.partitions(candidates);
+    }
+
     private WhereClause tieBreakPartitionQueries(EvaluatingNormalizer normalizer,
                                                  Map<Symbol, List<Literal>> queryPartitionMap,
                                                  WhereClause whereClause) throws UnsupportedOperationException{
@@ -44,11 +44,21 @@ public class CrateCircuitBreakerService extends CircuitBreakerService {
 
     public static final CircuitBreaker.Name QUERY_BREAKER = CircuitBreaker.Name.register(3, "query");
 
+    public static final String HOT_COLUMNS_CIRCUIT_BREAKER_LIMIT_SETTING = "node.breaker.hot_columns.limit";
+    public static final String HOT_COLUMNS_CIRCUIT_BREAKER_OVERHEAD_SETTING = "node.breaker.hot_columns.overhead";
+    public static final String HOT_COLUMNS_CIRCUIT_BREAKER_TYPE_SETTING = "node.breaker.hot_columns.type";
+    public static final String DEFAULT_HOT_COLUMNS_CIRCUIT_BREAKER_LIMIT = "10%";
+    public static final double DEFAULT_HOT_COLUMNS_CIRCUIT_BREAKER_OVERHEAD_CONSTANT = 1.0;
+    public static final String DEFAULT_HOT_COLUMNS_CIRCUIT_BREAKER_TYPE = "memory";
+
+    public static final CircuitBreaker.Name HOT_COLUMNS_BREAKER = CircuitBreaker.Name.register(4, "hot_columns");
+
     public static final String BREAKING_EXCEPTION_MESSAGE =
             "[query] Data too large, data for [%s] would be larger than limit of [%d/%s]";
 
     private final CircuitBreakerService esCircuitBreakerService;
     private BreakerSettings queryBreakerSettings;
+    private BreakerSettings hotColumnsBreakerSettings;
 
     @Inject
     public CrateCircuitBreakerService(Settings settings,
@@ -70,6 +80,19 @@ public class CrateCircuitBreakerService extends CircuitBreakerService {
                         DEFAULT_QUERY_CIRCUIT_BREAKER_TYPE)));
 
         registerBreaker(queryBreakerSettings);
+
+        hotColumnsBreakerSettings = new BreakerSettings(HOT_COLUMNS_BREAKER,
+                settings.getAsMemory(
+                        HOT_COLUMNS_CIRCUIT_BREAKER_LIMIT_SETTING,
+                        DEFAULT_HOT_COLUMNS_CIRCUIT_BREAKER_LIMIT).bytes(),
+                settings.getAsDouble(
+                        HOT_COLUMNS_CIRCUIT_BREAKER_OVERHEAD_SETTING,
+                        DEFAULT_HOT_COLUMNS_CIRCUIT_BREAKER_OVERHEAD_CONSTANT),
+                CircuitBreaker.Type.parseValue(
+                        settings.get(HOT_COLUMNS_CIRCUIT_BREAKER_TYPE_SETTING,
+                        DEFAULT_HOT_COLUMNS_CIRCUIT_BREAKER_TYPE)));
+
+        registerBreaker(hotColumnsBreakerSettings);
         nodeSettingsService.addListener(new ApplySettings());
     }
 
@@ -124,6 +147,29 @@ public class CrateCircuitBreakerService extends CircuitBreakerService {
                         CrateCircuitBreakerService.this.queryBreakerSettings.getType());
                 registerBreaker(newQuerySettings);
             }
+
+            // Hot columns breaker settings
+            long newHotColumnsMax = settings.getAsMemory(
+                    HOT_COLUMNS_CIRCUIT_BREAKER_LIMIT_SETTING,
+                    CrateCircuitBreakerService.this.settings.getAsMemory(
+                            HOT_COLUMNS_CIRCUIT_BREAKER_LIMIT_SETTING,
+                            DEFAULT_HOT_COLUMNS_CIRCUIT_BREAKER_LIMIT
+                    ).toString()).bytes();
+            Double newHotColumnsOverhead = settings.getAsDouble(
+                    HOT_COLUMNS_CIRCUIT_BREAKER_OVERHEAD_SETTING,
+                    CrateCircuitBreakerService.this.settings.getAsDouble(
+                            HOT_COLUMNS_CIRCUIT_BREAKER_OVERHEAD_SETTING,
+                            DEFAULT_HOT_COLUMNS_CIRCUIT_BREAKER_OVERHEAD_CONSTANT
+                    ));
+            if (newHotColumnsMax != CrateCircuitBreakerService.this.hotColumnsBreakerSettings.getLimit()
+                    || newHotColumnsOverhead != CrateCircuitBreakerService.this.hotColumnsBreakerSettings.getOverhead()) {
+
+                BreakerSettings newHotColumnsSettings = new BreakerSettings(
+                        HOT_COLUMNS_BREAKER, newHotColumnsMax, newHotColumnsOverhead,
+                        CrateCircuitBreakerService.this.hotColumnsBreakerSettings.getType());
+                registerBreaker(newHotColumnsSettings);
+                CrateCircuitBreakerService.this.hotColumnsBreakerSettings = newHotColumnsSettings;
+            }
         }
     }
 
@@ -21,12 +21,13 @@
 
 package io.crate.breaker;
 
+import io.crate.operation.kill.Killable;
 import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.breaker.CircuitBreakingException;
 
 import java.util.concurrent.atomic.AtomicLong;
 
-public class RamAccountingContext {
+public class RamAccountingContext implements Killable {
 
     // Flush every 2mb
     public static long FLUSH_BUFFER_SIZE = 1024 * 1024 * 2;
@@ -38,6 +39,7 @@ public class RamAccountingContext {
     private final AtomicLong flushBuffer = new AtomicLong(0);
     private volatile boolean closed = false;
     private volatile boolean tripped = false;
+    private volatile boolean killed = false;
 
     public RamAccountingContext(String contextId, CircuitBreaker breaker) {
         this.contextId = contextId;
@@ -119,6 +121,23 @@ public class RamAccountingContext {
         return tripped;
     }
 
+    /**
+     * Mark the job this context belongs to as killed.
+     * Collectors check {@link #killed()} and stop as soon as possible.
+     * The accounted bytes are released once the operation closes the context.
+     */
+    @Override
+    public void kill() {
+        killed = true;
+    }
+
+    /**
+     * Returns true if the job this context belongs to was killed
+     */
+    public boolean killed() {
+        return killed;
+    }
+
     /**
      * Returns the configured bytes limit of the breaker
      */
@@ -0,0 +1,101 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.executor;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+import org.apache.lucene.util.BytesRef;
+
+import java.util.Iterator;
+
+/**
+ * a page of {@link ColumnarRows}.
+ *
+ * Values can be read without boxing them using the typed getters, which must not be used
+ * for null values. Iterating over the page creates a new row per row.
+ */
+public class ColumnarPage implements Page {
+
+    private final ColumnarRows rows;
+    private final long start;
+    private final long size;
+
+    public ColumnarPage(ColumnarRows rows) {
+        this(rows, 0, rows.size());
+    }
+
+    public ColumnarPage(ColumnarRows rows, long start, long size) {
+        Preconditions.checkArgument(start <= rows.size(), "start exceeds page");
+        this.rows = rows;
+        this.start = start;
+        this.size = Math.min(size, rows.size() - start);
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    public int numColumns() {
+        return rows.numColumns();
+    }
+
+    public boolean isNull(long row, int column) {
+        return rows.isNull(start + row, column);
+    }
+
+    public Object get(long row, int column) {
+        return rows.get(start + row, column);
+    }
+
+    public long getLong(long row, int column) {
+        return rows.getLong(start + row, column);
+    }
+
+    public double getDouble(long row, int column) {
+        return rows.getDouble(start + row, column);
+    }
+
+    /**
+     * @see ColumnarRows#getBytesRef(long, int, BytesRef)
+     */
+    public BytesRef getBytesRef(long row, int column, BytesRef spare) {
+        return rows.getBytesRef(start + row, column, spare);
+    }
+
+    @Override
+    public Iterator<Object[]> iterator() {
+        return new AbstractIterator<Object[]>() {
+
+            private long position = start;
+
+            @Override
+            protected Object[] computeNext() {
+                if (position >= start + size) {
+                    return endOfData();
+                }
+                return rows.get(position++);
+            }
+        };
+    }
+}
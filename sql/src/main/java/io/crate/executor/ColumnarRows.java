@@ -0,0 +1,419 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.executor;
+
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.ByteArray;
+import org.elasticsearch.common.util.DoubleArray;
+import org.elasticsearch.common.util.IntArray;
+import org.elasticsearch.common.util.LongArray;
+import org.elasticsearch.common.util.ObjectArray;
+
+import java.util.List;
+
+/**
+ * Rows stored column by column in big arrays.
+ *
+ * Numeric values are stored in long and double arrays and strings as utf8 bytes in a
+ * byte slab, so neither the rows nor the values are kept as objects.
+ * Values which don't have the java type expected for the column type
+ * (e.g. values read from the source of documents indexed using the ES API)
+ * are kept as objects.
+ *
+ * {@link #get(long)} creates a new row, use {@link ColumnarPage} to read
+ * single values without boxing them.
+ */
+public class ColumnarRows implements ObjectArray<Object[]> {
+
+    private static final byte NULL = 0;
+    private static final byte TYPED = 1;
+    private static final byte OTHER = 2;
+
+    private final long size;
+    private final Column[] columns;
+
+    public ColumnarRows(BigArrays bigArrays, List<DataType> columnTypes, long size) {
+        this.size = size;
+        this.columns = new Column[columnTypes.size()];
+        boolean success = false;
+        try {
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = column(bigArrays, columnTypes.get(i), size);
+            }
+            success = true;
+        } finally {
+            if (!success) {
+                Releasables.close(columns);
+            }
+        }
+    }
+
+    private static Column column(BigArrays bigArrays, DataType type, long size) {
+        if (type.equals(DataTypes.LONG) || type.equals(DataTypes.TIMESTAMP)) {
+            return new LongColumn(bigArrays, size, Long.class);
+        } else if (type.equals(DataTypes.INTEGER)) {
+            return new LongColumn(bigArrays, size, Integer.class);
+        } else if (type.equals(DataTypes.SHORT)) {
+            return new LongColumn(bigArrays, size, Short.class);
+        } else if (type.equals(DataTypes.BYTE)) {
+            return new LongColumn(bigArrays, size, Byte.class);
+        } else if (type.equals(DataTypes.DOUBLE)) {
+            return new DoubleColumn(bigArrays, size, Double.class);
+        } else if (type.equals(DataTypes.FLOAT)) {
+            return new DoubleColumn(bigArrays, size, Float.class);
+        } else if (type.equals(DataTypes.STRING) || type.equals(DataTypes.IP)) {
+            return new BytesColumn(bigArrays, size);
+        }
+        return new Column(bigArrays, size);
+    }
+
+    public int numColumns() {
+        return columns.length;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return a new row containing the values of the given row
+     */
+    @Override
+    public Object[] get(long index) {
+        Object[] row = new Object[columns.length];
+        for (int c = 0; c < columns.length; c++) {
+            row[c] = columns[c].get(index);
+        }
+        return row;
+    }
+
+    /**
+     * stores the values of the row, the row itself isn't referenced afterwards
+     *
+     * @return always null, the previous row isn't materialized
+     */
+    @Override
+    public Object[] set(long index, Object[] row) {
+        for (int c = 0; c < columns.length; c++) {
+            set(index, c, row[c]);
+        }
+        return null;
+    }
+
+    public void set(long row, int column, Object value) {
+        columns[column].set(row, value);
+    }
+
+    public Object get(long row, int column) {
+        return columns[column].get(row);
+    }
+
+    public boolean isNull(long row, int column) {
+        return columns[column].state.get(row) == NULL;
+    }
+
+    /**
+     * must not be used for null values, see {@link #isNull(long, int)}
+     */
+    public long getLong(long row, int column) {
+        assert !isNull(row, column) : "value is null";
+        Column col = columns[column];
+        if (col instanceof LongColumn && col.state.get(row) == TYPED) {
+            return ((LongColumn) col).values.get(row);
+        }
+        return ((Number) col.get(row)).longValue();
+    }
+
+    /**
+     * must not be used for null values, see {@link #isNull(long, int)}
+     */
+    public double getDouble(long row, int column) {
+        assert !isNull(row, column) : "value is null";
+        Column col = columns[column];
+        if (col instanceof DoubleColumn && col.state.get(row) == TYPED) {
+            return ((DoubleColumn) col).values.get(row);
+        }
+        return ((Number) col.get(row)).doubleValue();
+    }
+
+    /**
+     * must not be used for null values, see {@link #isNull(long, int)}
+     *
+     * @param spare filled with the value if possible without copying it
+     * @return the value, which is only valid until the rows are closed
+     */
+    public BytesRef getBytesRef(long row, int column, BytesRef spare) {
+        assert !isNull(row, column) : "value is null";
+        Column col = columns[column];
+        if (col instanceof BytesColumn && col.state.get(row) == TYPED) {
+            ((BytesColumn) col).bytesRef(row, spare);
+            return spare;
+        }
+        Object value = col.get(row);
+        if (value instanceof BytesRef) {
+            return (BytesRef) value;
+        }
+        spare.copyChars(value.toString());
+        return spare;
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        long used = 0;
+        for (Column column : columns) {
+            used += column.ramBytesUsed();
+        }
+        return used;
+    }
+
+    @Override
+    public void close() throws ElasticsearchException {
+        Releasables.close(columns);
+    }
+
+    /**
+     * stores all values as objects, base class of the typed columns
+     * which use it for values of an unexpected type
+     */
+    private static class Column implements Releasable {
+
+        protected final BigArrays bigArrays;
+        protected final ByteArray state;
+        private final long size;
+        private ObjectArray<Object> others;
+
+        Column(BigArrays bigArrays, long size) {
+            this.bigArrays = bigArrays;
+            this.size = size;
+            this.state = bigArrays.newByteArray(size, true);
+        }
+
+        void set(long row, Object value) {
+            if (value == null) {
+                state.set(row, NULL);
+            } else if (!setTyped(row, value)) {
+                if (others == null) {
+                    others = bigArrays.newObjectArray(size);
+                }
+                others.set(row, value);
+                state.set(row, OTHER);
+            }
+        }
+
+        Object get(long row) {
+            switch (state.get(row)) {
+                case TYPED:
+                    return getTyped(row);
+                case OTHER:
+                    return others.get(row);
+                default:
+                    return null;
+            }
+        }
+
+        boolean setTyped(long row, Object value) {
+            return false;
+        }
+
+        Object getTyped(long row) {
+            throw new UnsupportedOperationException("column has no typed values");
+        }
+
+        long ramBytesUsed() {
+            return state.ramBytesUsed() + (others == null ? 0 : others.ramBytesUsed());
+        }
+
+        @Override
+        public void close() throws ElasticsearchException {
+            Releasables.close(state, others);
+        }
+    }
+
+    private static class LongColumn extends Column {
+
+        private final LongArray values;
+        private final Class<?> valueClass;
+
+        LongColumn(BigArrays bigArrays, long size, Class<?> valueClass) {
+            super(bigArrays, size);
+            this.values = bigArrays.newLongArray(size, false);
+            this.valueClass = valueClass;
+        }
+
+        @Override
+        boolean setTyped(long row, Object value) {
+            if (value.getClass() != valueClass) {
+                return false;
+            }
+            values.set(row, ((Number) value).longValue());
+            state.set(row, TYPED);
+            return true;
+        }
+
+        @Override
+        Object getTyped(long row) {
+            long value = values.get(row);
+            if (valueClass == Long.class) {
+                return value;
+            } else if (valueClass == Integer.class) {
+                return (int) value;
+            } else if (valueClass == Short.class) {
+                return (short) value;
+            }
+            return (byte) value;
+        }
+
+        @Override
+        long ramBytesUsed() {
+            return super.ramBytesUsed() + values.ramBytesUsed();
+        }
+
+        @Override
+        public void close() throws ElasticsearchException {
+            Releasables.close(values);
+            super.close();
+        }
+    }
+
+    private static class DoubleColumn extends Column {
+
+        private final DoubleArray values;
+        private final Class<?> valueClass;
+
+        DoubleColumn(BigArrays bigArrays, long size, Class<?> valueClass) {
+            super(bigArrays, size);
+            this.values = bigArrays.newDoubleArray(size, false);
+            this.valueClass = valueClass;
+        }
+
+        @Override
+        boolean setTyped(long row, Object value) {
+            if (value.getClass() != valueClass) {
+                return false;
+            }
+            values.set(row, ((Number) value).doubleValue());
+            state.set(row, TYPED);
+            return true;
+        }
+
+        @Override
+        Object getTyped(long row) {
+            double value = values.get(row);
+            if (valueClass == Double.class) {
+                return value;
+            }
+            return (float) value;
+        }
+
+        @Override
+        long ramBytesUsed() {
+            return super.ramBytesUsed() + values.ramBytesUsed();
+        }
+
+        @Override
+        public void close() throws ElasticsearchException {
+            Releasables.close(values);
+            super.close();
+        }
+    }
+
+    /**
+     * stores BytesRef or String values as utf8 bytes in a slab, depending on the class of the
+     * first value the column returns either BytesRefs or Strings
+     */
+    private static class BytesColumn extends Column {
+
+        private final LongArray offsets;
+        private final IntArray lengths;
+        private ByteArray slab;
+        private long slabSize = 0;
+        private Class<?> valueClass;
+        private BytesRef spare;
+
+        BytesColumn(BigArrays bigArrays, long size) {
+            super(bigArrays, size);
+            this.offsets = bigArrays.newLongArray(size, false);
+            this.lengths = bigArrays.newIntArray(size, false);
+            this.slab = bigArrays.newByteArray(size * 16, false);
+        }
+
+        @Override
+        boolean setTyped(long row, Object value) {
+            if (valueClass == null && (value instanceof BytesRef || value instanceof String)) {
+                valueClass = value.getClass();
+            }
+            if (value.getClass() != valueClass) {
+                return false;
+            }
+            BytesRef bytes;
+            if (value instanceof BytesRef) {
+                bytes = (BytesRef) value;
+            } else {
+                if (spare == null) {
+                    spare = new BytesRef();
+                }
+                spare.copyChars((String) value);
+                bytes = spare;
+            }
+            slab = bigArrays.grow(slab, slabSize + bytes.length);
+            slab.set(slabSize, bytes.bytes, bytes.offset, bytes.length);
+            offsets.set(row, slabSize);
+            lengths.set(row, bytes.length);
+            slabSize += bytes.length;
+            state.set(row, TYPED);
+            return true;
+        }
+
+        void bytesRef(long row, BytesRef ref) {
+            slab.get(offsets.get(row), lengths.get(row), ref);
+        }
+
+        @Override
+        Object getTyped(long row) {
+            BytesRef ref = new BytesRef();
+            bytesRef(row, ref);
+            if (valueClass == String.class) {
+                return ref.utf8ToString();
+            }
+            return BytesRef.deepCopyOf(ref);
+        }
+
+        @Override
+        long ramBytesUsed() {
+            return super.ramBytesUsed() + offsets.ramBytesUsed() + lengths.ramBytesUsed() + slab.ramBytesUsed();
+        }
+
+        @Override
+        public void close() throws ElasticsearchException {
+            Releasables.close(offsets, lengths, slab);
+            super.close();
+        }
+    }
+}
@@ -26,10 +26,13 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import io.crate.breaker.RamAccountingContext;
+import io.crate.exceptions.JobKilledException;
 import io.crate.executor.QueryResult;
 import io.crate.executor.JobTask;
 import io.crate.executor.TaskResult;
 import io.crate.operation.collect.CollectOperation;
+import io.crate.operation.kill.JobKillRegistry;
+import io.crate.operation.kill.Killable;
 import io.crate.planner.node.dql.CollectNode;
 import org.elasticsearch.common.breaker.CircuitBreaker;
 
@@ -50,11 +53,14 @@ public class LocalCollectTask extends JobTask {
     private final List<ListenableFuture<TaskResult>> resultList;
     private final SettableFuture<TaskResult> result;
     private final RamAccountingContext ramAccountingContext;
+    private final JobKillRegistry jobKillRegistry;
 
     public LocalCollectTask(UUID jobId,
                             CollectOperation<Object[][]> collectOperation, CollectNode collectNode,
-                            CircuitBreaker circuitBreaker) {
+                            CircuitBreaker circuitBreaker,
+                            JobKillRegistry jobKillRegistry) {
         super(jobId);
+        this.jobKillRegistry = jobKillRegistry;
         this.collectNode = collectNode;
         this.collectOperation = collectOperation;
         this.resultList = new ArrayList<>(1);
@@ -67,14 +73,28 @@ public class LocalCollectTask extends JobTask {
 
     @Override
     public void start() {
+        final Killable killable = new Killable() {
+            @Override
+            public void kill() {
+                ramAccountingContext.kill();
+                result.setException(new JobKilledException(jobId()));
+            }
+        };
+        jobKillRegistry.register(jobId(), killable);
+        if (result.isDone()) {
+            // killed before it started
+            return;
+        }
         Futures.addCallback(collectOperation.collect(collectNode, ramAccountingContext), new FutureCallback<Object[][]>() {
             @Override
             public void onSuccess(@Nullable Object[][] rows) {
+                jobKillRegistry.unregister(jobId(), killable);
                 result.set(new QueryResult(rows));
             }
 
             @Override
             public void onFailure(@Nonnull Throwable t) {
+                jobKillRegistry.unregister(jobId(), killable);
                 result.setException(t);
             }
         });
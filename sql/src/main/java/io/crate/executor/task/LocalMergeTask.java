@@ -30,12 +30,15 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import io.crate.breaker.RamAccountingContext;
 import io.crate.exceptions.Exceptions;
+import io.crate.exceptions.JobKilledException;
 import io.crate.executor.JobTask;
 import io.crate.executor.QueryResult;
 import io.crate.executor.TaskResult;
 import io.crate.executor.transport.TransportActionProvider;
 import io.crate.operation.ImplementationSymbolVisitor;
 import io.crate.operation.collect.StatsTables;
+import io.crate.operation.kill.JobKillRegistry;
+import io.crate.operation.kill.Killable;
 import io.crate.operation.merge.MergeOperation;
 import io.crate.planner.node.dql.MergeNode;
 import org.elasticsearch.cluster.ClusterService;
@@ -69,6 +72,7 @@ public class LocalMergeTask extends JobTask {
     private final SettableFuture<TaskResult> result;
     private final List<ListenableFuture<TaskResult>> resultList;
     private final CircuitBreaker circuitBreaker;
+    private final JobKillRegistry jobKillRegistry;
 
     private List<ListenableFuture<TaskResult>> upstreamResults;
 
@@ -84,7 +88,8 @@ public class LocalMergeTask extends JobTask {
                           ImplementationSymbolVisitor implementationSymbolVisitor,
                           MergeNode mergeNode,
                           StatsTables statsTables,
-                          CircuitBreaker circuitBreaker) {
+                          CircuitBreaker circuitBreaker,
+                          JobKillRegistry jobKillRegistry) {
         super(jobId);
         this.threadPool = threadPool;
         this.clusterService = clusterService;
@@ -94,6 +99,7 @@ public class LocalMergeTask extends JobTask {
         this.mergeNode = mergeNode;
         this.statsTables = statsTables;
         this.circuitBreaker = circuitBreaker;
+        this.jobKillRegistry = jobKillRegistry;
         this.result = SettableFuture.create();
         this.resultList = Arrays.<ListenableFuture<TaskResult>>asList(this.result);
     }
@@ -120,10 +126,19 @@ public class LocalMergeTask extends JobTask {
                 ramAccountingContext);
         final AtomicInteger countdown = new AtomicInteger(upstreamResults.size());
         statsTables.operationStarted(operationId, mergeNode.contextId(), mergeNode.id());
+        final Killable killable = new Killable() {
+            @Override
+            public void kill() {
+                ramAccountingContext.kill();
+                result.setException(new JobKilledException(jobId()));
+            }
+        };
+        jobKillRegistry.register(jobId(), killable);
 
         Futures.addCallback(mergeOperation.result(), new FutureCallback<Object[][]>() {
             @Override
             public void onSuccess(@Nullable Object[][] rows) {
+                jobKillRegistry.unregister(jobId(), killable);
                 ramAccountingContext.close();
                 statsTables.operationFinished(operationId, null, ramAccountingContext.totalBytes());
                 result.set(new QueryResult(rows));
@@ -131,6 +146,7 @@ public class LocalMergeTask extends JobTask {
 
             @Override
             public void onFailure(@Nonnull Throwable t) {
+                jobKillRegistry.unregister(jobId(), killable);
                 ramAccountingContext.close();
                 statsTables.operationFinished(operationId, Exceptions.messageOf(t),
                         ramAccountingContext.totalBytes());
@@ -149,6 +165,7 @@ public class LocalMergeTask extends JobTask {
                     try {
                         shouldContinue = mergeOperation.addRows(rows.rows());
                     } catch (Throwable ex) {
+                        jobKillRegistry.unregister(jobId(), killable);
                         ramAccountingContext.close();
                         statsTables.operationFinished(operationId, Exceptions.messageOf(ex),
                                 ramAccountingContext.totalBytes());
@@ -164,6 +181,7 @@ public class LocalMergeTask extends JobTask {
 
                 @Override
                 public void onFailure(@Nonnull Throwable t) {
+                    jobKillRegistry.unregister(jobId(), killable);
                     ramAccountingContext.close();
                     statsTables.operationFinished(operationId, Exceptions.messageOf(t),
                             ramAccountingContext.totalBytes());
@@ -0,0 +1,193 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.executor.transport;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.action.get.TransportMultiGetAction;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Executes primary key lookups.
+ *
+ * Lookups are sent as realtime multi-get requests. While the maximum number of multi-get requests
+ * is in flight, new lookups are queued and all queued lookups are sent together as one multi-get
+ * once a request finishes. Concurrent lookups are merged that way without adding latency
+ * to a node which isn't busy. The multi-get action groups the items of a batch per shard.
+ */
+public class KeyLookupExecutor extends AbstractComponent {
+
+    public static final String SETTING_MAX_CONCURRENT_REQUESTS = "lookup.max_concurrent_requests";
+    public static final String SETTING_MAX_BATCH_SIZE = "lookup.max_batch_size";
+
+    static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+    static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+
+    private final TransportMultiGetAction multiGetAction;
+    private final int maxConcurrentRequests;
+    private final int maxBatchSize;
+
+    private final Object mutex = new Object();
+    private final List<Lookup> pendingLookups = new ArrayList<>();
+    private int inFlightRequests = 0;
+
+    @Inject
+    public KeyLookupExecutor(Settings settings, TransportActionProvider transportActionProvider) {
+        this(settings, transportActionProvider.transportMultiGetAction());
+    }
+
+    KeyLookupExecutor(Settings settings, TransportMultiGetAction multiGetAction) {
+        super(settings);
+        this.multiGetAction = multiGetAction;
+        this.maxConcurrentRequests = Math.max(1,
+                settings.getAsInt(SETTING_MAX_CONCURRENT_REQUESTS, DEFAULT_MAX_CONCURRENT_REQUESTS));
+        this.maxBatchSize = Math.max(1, settings.getAsInt(SETTING_MAX_BATCH_SIZE, DEFAULT_MAX_BATCH_SIZE));
+    }
+
+    /**
+     * looks up the given items. The listener receives a response containing
+     * one item response for each of the given items in the same order.
+     */
+    public void lookup(List<MultiGetRequest.Item> items, ActionListener<MultiGetResponse> listener) {
+        assert !items.isEmpty() : "lookup requires at least one item";
+        List<Lookup> batch = null;
+        synchronized (mutex) {
+            pendingLookups.add(new Lookup(items, listener));
+            if (inFlightRequests < maxConcurrentRequests) {
+                inFlightRequests++;
+                batch = nextBatch();
+            }
+        }
+        if (batch != null) {
+            execute(batch);
+        }
+    }
+
+    /**
+     * takes pending lookups until the batch size is reached. A single lookup exceeding the batch size
+     * is never split.
+     */
+    private List<Lookup> nextBatch() {
+        assert Thread.holdsLock(mutex);
+        List<Lookup> batch = new ArrayList<>();
+        int numItems = 0;
+        while (!pendingLookups.isEmpty()) {
+            Lookup lookup = pendingLookups.get(0);
+            if (!batch.isEmpty() && numItems + lookup.items.size() > maxBatchSize) {
+                break;
+            }
+            pendingLookups.remove(0);
+            batch.add(lookup);
+            numItems += lookup.items.size();
+        }
+        return batch;
+    }
+
+    private void execute(final List<Lookup> batch) {
+        MultiGetRequest request = new MultiGetRequest();
+        request.realtime(true);
+        for (Lookup lookup : batch) {
+            for (MultiGetRequest.Item item : lookup.items) {
+                request.add(item);
+            }
+        }
+        try {
+            executeMultiGet(request, new ActionListener<MultiGetResponse>() {
+                @Override
+                public void onResponse(MultiGetResponse response) {
+                    MultiGetItemResponse[] responses = response.getResponses();
+                    int offset = 0;
+                    for (Lookup lookup : batch) {
+                        MultiGetItemResponse[] lookupResponses = new MultiGetItemResponse[lookup.items.size()];
+                        System.arraycopy(responses, offset, lookupResponses, 0, lookupResponses.length);
+                        offset += lookupResponses.length;
+                        lookup.onResponse(new MultiGetResponse(lookupResponses));
+                    }
+                    batchFinished();
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    for (Lookup lookup : batch) {
+                        lookup.onFailure(e);
+                    }
+                    batchFinished();
+                }
+            });
+        } catch (Throwable e) {
+            for (Lookup lookup : batch) {
+                lookup.onFailure(e);
+            }
+            batchFinished();
+        }
+    }
+
+    void executeMultiGet(MultiGetRequest request, ActionListener<MultiGetResponse> listener) {
+        multiGetAction.execute(request, listener);
+    }
+
+    private void batchFinished() {
+        List<Lookup> batch;
+        synchronized (mutex) {
+            if (pendingLookups.isEmpty()) {
+                inFlightRequests--;
+                return;
+            }
+            batch = nextBatch();
+        }
+        execute(batch);
+    }
+
+    private class Lookup {
+
+        private final List<MultiGetRequest.Item> items;
+        private final ActionListener<MultiGetResponse> listener;
+
+        Lookup(List<MultiGetRequest.Item> items, ActionListener<MultiGetResponse> listener) {
+            this.items = items;
+            this.listener = listener;
+        }
+
+        void onResponse(MultiGetResponse response) {
+            try {
+                listener.onResponse(response);
+            } catch (Throwable e) {
+                logger.error("error while handling key lookup response", e);
+            }
+        }
+
+        void onFailure(Throwable e) {
+            try {
+                listener.onFailure(e);
+            } catch (Throwable t) {
+                logger.error("error while handling key lookup failure", t);
+            }
+        }
+    }
+}
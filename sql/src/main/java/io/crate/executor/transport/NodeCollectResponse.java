@@ -31,6 +31,7 @@ import java.io.IOException;
 public class NodeCollectResponse extends TransportResponse {
 
     private Object[][] rows;
+    private int searchQueueSize = -1;
     private final Streamer<?>[] streamers;
 
 
@@ -46,6 +47,17 @@ public class NodeCollectResponse extends TransportResponse {
         return rows;
     }
 
+    /**
+     * the size of the search queue on the node which sent the response, -1 if unknown
+     */
+    public int searchQueueSize() {
+        return searchQueueSize;
+    }
+
+    public void searchQueueSize(int searchQueueSize) {
+        this.searchQueueSize = searchQueueSize;
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         super.readFrom(in);
@@ -56,6 +68,10 @@ public class NodeCollectResponse extends TransportResponse {
                 rows[r][c] = streamers[c].readValueFrom(in);
             }
         }
+        // the queue size is appended to the rows, responses of older nodes end after the rows
+        if (in.available() > 0) {
+            searchQueueSize = in.readInt();
+        }
     }
 
     @Override
@@ -67,5 +83,6 @@ public class NodeCollectResponse extends TransportResponse {
                 streamers[c].writeValueTo(out, row[c]);
             }
         }
+        out.writeInt(searchQueueSize);
     }
 }
@@ -0,0 +1,174 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.executor.transport;
+
+import com.google.common.base.Splitter;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.compress.CompressorFactory;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentType;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Applies changes to a serialized document source by streaming it into a new source
+ * of the same content type. Fields which aren't changed are copied token by token,
+ * so neither the source nor the changed values are converted into maps.
+ */
+class SourcePatcher {
+
+    private static final Splitter PATH_SPLITTER = Splitter.on('.');
+
+    /**
+     * changes of one object level, leaves are kept separately from nested objects
+     * to be able to tell them apart from changed values which are maps themselves
+     */
+    private static class Changes {
+        private final Map<String, Object> values = new HashMap<>();
+        private final Map<String, Changes> children = new HashMap<>();
+
+        boolean isEmpty() {
+            return values.isEmpty() && children.isEmpty();
+        }
+    }
+
+    private static class NotPatchableException extends Exception {
+    }
+
+    /**
+     * Overwrite the values of the given paths in the source, missing paths are added.
+     * Values of changed object fields are replaced, not merged.
+     *
+     * @return the patched source or null if the changes can't be applied by patching,
+     *         e.g. because a path runs through a field which isn't an object
+     */
+    @Nullable
+    static BytesReference patch(BytesReference source, Map<String, Object> changesByPath) throws IOException {
+        Changes changes = new Changes();
+        for (Map.Entry<String, Object> entry : changesByPath.entrySet()) {
+            if (!add(changes, PATH_SPLITTER.splitToList(entry.getKey()), entry.getValue())) {
+                return null;
+            }
+        }
+        source = CompressorFactory.uncompressIfNeeded(source);
+        XContentType contentType = XContentFactory.xContentType(source);
+        if (contentType == null) {
+            return null;
+        }
+        try (XContentParser parser = XContentFactory.xContent(contentType).createParser(source)) {
+            if (parser.nextToken() != XContentParser.Token.START_OBJECT) {
+                return null;
+            }
+            XContentBuilder builder = XContentFactory.contentBuilder(contentType);
+            copyObject(parser, builder, changes);
+            return builder.bytes();
+        } catch (NotPatchableException e) {
+            return null;
+        }
+    }
+
+    private static boolean add(Changes changes, List<String> path, Object value) {
+        for (int i = 0; i < path.size() - 1; i++) {
+            String key = path.get(i);
+            if (changes.values.containsKey(key)) {
+                // a parent object is overwritten as a whole
+                return false;
+            }
+            Changes child = changes.children.get(key);
+            if (child == null) {
+                child = new Changes();
+                changes.children.put(key, child);
+            }
+            changes = child;
+        }
+        String key = path.get(path.size() - 1);
+        if (changes.children.containsKey(key)) {
+            return false;
+        }
+        changes.values.put(key, value);
+        return true;
+    }
+
+    /**
+     * copies the object the parser is positioned at into the builder while applying the changes
+     */
+    private static void copyObject(XContentParser parser, XContentBuilder builder, Changes changes)
+            throws IOException, NotPatchableException {
+        builder.startObject();
+        Set<String> applied = changes.isEmpty() ? null : new HashSet<String>();
+        XContentParser.Token token;
+        while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+            assert token == XContentParser.Token.FIELD_NAME : "expected a field name";
+            String name = parser.currentName();
+            token = parser.nextToken();
+            if (applied == null) {
+                builder.field(name);
+                builder.copyCurrentStructure(parser);
+                continue;
+            }
+            Changes childChanges = changes.children.get(name);
+            if (childChanges != null) {
+                if (token != XContentParser.Token.START_OBJECT) {
+                    throw new NotPatchableException();
+                }
+                builder.field(name);
+                copyObject(parser, builder, childChanges);
+                applied.add(name);
+            } else if (changes.values.containsKey(name)) {
+                builder.field(name).value(changes.values.get(name));
+                parser.skipChildren();
+                applied.add(name);
+            } else {
+                builder.field(name);
+                builder.copyCurrentStructure(parser);
+            }
+        }
+        if (applied != null) {
+            writeMissing(builder, changes, applied);
+        }
+        builder.endObject();
+    }
+
+    private static void writeMissing(XContentBuilder builder, Changes changes, Set<String> applied) throws IOException {
+        for (Map.Entry<String, Object> entry : changes.values.entrySet()) {
+            if (!applied.contains(entry.getKey())) {
+                builder.field(entry.getKey()).value(entry.getValue());
+            }
+        }
+        for (Map.Entry<String, Changes> entry : changes.children.entrySet()) {
+            if (!applied.contains(entry.getKey())) {
+                builder.startObject(entry.getKey());
+                writeMissing(builder, entry.getValue(), new HashSet<String>(0));
+                builder.endObject();
+            }
+        }
+    }
+}
@@ -22,6 +22,7 @@
 package io.crate.executor.transport;
 
 import io.crate.action.sql.query.TransportQueryShardAction;
+import io.crate.executor.transport.kill.TransportKillJobAction;
 import io.crate.executor.transport.merge.TransportMergeNodeAction;
 import org.elasticsearch.action.admin.cluster.settings.TransportClusterUpdateSettingsAction;
 import org.elasticsearch.action.admin.indices.create.TransportCreateIndexAction;
@@ -72,6 +73,7 @@ public class TransportActionProvider {
     private final Provider<TransportPutMappingAction> transportPutMappingActionProvider;
     private final Provider<TransportRefreshAction> transportRefreshActionProvider;
     private final Provider<TransportUpdateSettingsAction> transportUpdateSettingsActionProvider;
+    private final Provider<TransportKillJobAction> transportKillJobActionProvider;
 
     @Inject
     public TransportActionProvider(Provider<TransportCollectNodeAction> transportCollectNodeActionProvider,
@@ -95,7 +97,8 @@ public class TransportActionProvider {
                                    Provider<SearchServiceTransportAction> searchServiceTransportActionProvider,
                                    Provider<TransportPutMappingAction> transportPutMappingActionProvider,
                                    Provider<TransportRefreshAction> transportRefreshActionProvider,
-                                   Provider<TransportUpdateSettingsAction> transportUpdateSettingsActionProvider) {
+                                   Provider<TransportUpdateSettingsAction> transportUpdateSettingsActionProvider,
+                                   Provider<TransportKillJobAction> transportKillJobActionProvider) {
         this.transportCreateIndexActionProvider = transportCreateIndexActionProvider;
         this.transportDeleteIndexActionProvider = transportDeleteIndexActionProvider;
         this.transportPutIndexTemplateActionProvider = transportPutIndexTemplateActionProvider;
@@ -118,6 +121,7 @@ public class TransportActionProvider {
         this.transportPutMappingActionProvider = transportPutMappingActionProvider;
         this.transportRefreshActionProvider = transportRefreshActionProvider;
         this.transportUpdateSettingsActionProvider = transportUpdateSettingsActionProvider;
+        this.transportKillJobActionProvider = transportKillJobActionProvider;
     }
 
 
@@ -212,4 +216,8 @@ public class TransportActionProvider {
     public TransportUpdateSettingsAction transportUpdateSettingsAction() {
         return transportUpdateSettingsActionProvider.get();
     }
+
+    public TransportKillJobAction transportKillJobAction() {
+        return transportKillJobActionProvider.get();
+    }
 }
@@ -32,6 +32,8 @@ import io.crate.exceptions.Exceptions;
 import io.crate.operation.collect.DistributingCollectOperation;
 import io.crate.operation.collect.MapSideDataCollectOperation;
 import io.crate.operation.collect.StatsTables;
+import io.crate.operation.kill.JobKillRegistry;
+import io.crate.operation.routing.ReplicaSelector;
 import io.crate.planner.node.PlanNodeStreamerVisitor;
 import io.crate.planner.node.dql.CollectNode;
 import org.elasticsearch.action.ActionListener;
@@ -50,6 +52,8 @@ import org.elasticsearch.transport.TransportService;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 
 public class TransportCollectNodeAction {
 
@@ -64,6 +68,8 @@ public class TransportCollectNodeAction {
     private final String executor = ThreadPool.Names.SEARCH;
     private final DistributingCollectOperation distributingCollectOperation;
     private final StatsTables statsTables;
+    private final JobKillRegistry jobKillRegistry;
+    private final ReplicaSelector replicaSelector;
     private final CircuitBreaker circuitBreaker;
 
     @Inject
@@ -74,6 +80,8 @@ public class TransportCollectNodeAction {
                                       DistributingCollectOperation distributingCollectOperation,
                                       PlanNodeStreamerVisitor planNodeStreamerVisitor,
                                       StatsTables statsTables,
+                                      JobKillRegistry jobKillRegistry,
+                                      ReplicaSelector replicaSelector,
                                       CrateCircuitBreakerService breakerService) {
         this.threadPool = threadPool;
         this.transportService = transportService;
@@ -82,6 +90,8 @@ public class TransportCollectNodeAction {
         this.distributingCollectOperation = distributingCollectOperation;
         this.planNodeStreamerVisitor = planNodeStreamerVisitor;
         this.statsTables = statsTables;
+        this.jobKillRegistry = jobKillRegistry;
+        this.replicaSelector = replicaSelector;
         this.circuitBreaker = breakerService.getBreaker(CrateCircuitBreakerService.QUERY_BREAKER);
 
         transportService.registerHandler(transportAction, new TransportHandler());
@@ -109,6 +119,9 @@ public class TransportCollectNodeAction {
         String ramAccountingContextId = String.format("%s: %s", node.id(), operationId);
         final RamAccountingContext ramAccountingContext =
                 new RamAccountingContext(ramAccountingContextId, circuitBreaker);
+        if (node.jobId().isPresent()) {
+            jobKillRegistry.register(node.jobId().get(), ramAccountingContext);
+        }
 
         try {
             if (node.hasDownstreams()) {
@@ -121,7 +134,7 @@ public class TransportCollectNodeAction {
             collectResponse.onFailure(e);
             statsTables.operationFinished(operationId, Exceptions.messageOf(e),
                     ramAccountingContext.totalBytes());
-            ramAccountingContext.close();
+            closeContext(node, ramAccountingContext);
             return;
         }
 
@@ -132,10 +145,11 @@ public class TransportCollectNodeAction {
                 NodeCollectResponse response = new NodeCollectResponse(
                         planNodeStreamerVisitor.process(node, ramAccountingContext).outputStreamers());
                 response.rows(result);
+                response.searchQueueSize(searchQueueSize());
 
                 collectResponse.onResponse(response);
                 statsTables.operationFinished(operationId, null, ramAccountingContext.totalBytes());
-                ramAccountingContext.close();
+                closeContext(node, ramAccountingContext);
             }
 
             @Override
@@ -143,11 +157,26 @@ public class TransportCollectNodeAction {
                 collectResponse.onFailure(t);
                 statsTables.operationFinished(operationId, Exceptions.messageOf(t),
                         ramAccountingContext.totalBytes());
-                ramAccountingContext.close();
+                closeContext(node, ramAccountingContext);
             }
         });
     }
 
+    private int searchQueueSize() {
+        Executor searchExecutor = threadPool.executor(executor);
+        if (searchExecutor instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) searchExecutor).getQueue().size();
+        }
+        return -1;
+    }
+
+    private void closeContext(CollectNode node, RamAccountingContext ramAccountingContext) {
+        if (node.jobId().isPresent()) {
+            jobKillRegistry.unregister(node.jobId().get(), ramAccountingContext);
+        }
+        ramAccountingContext.close();
+    }
+
     private class AsyncAction {
 
         private final NodeCollectRequest request;
@@ -165,7 +194,7 @@ public class TransportCollectNodeAction {
 
             this.nodeId = nodeId;
             this.request = request;
-            this.listener = listener;
+            this.listener = new ReplicaSelectorListener(node.id(), listener);
             PlanNodeStreamerVisitor.Context streamerContext = planNodeStreamerVisitor.process(
                     request.collectNode(),
                     new RamAccountingContext("dummy", circuitBreaker));
@@ -197,6 +226,34 @@ public class TransportCollectNodeAction {
 
     }
 
+    /**
+     * reports the response time and search queue size of the node to the {@link ReplicaSelector}
+     */
+    private class ReplicaSelectorListener implements ActionListener<NodeCollectResponse> {
+
+        private final String nodeId;
+        private final ActionListener<NodeCollectResponse> delegate;
+        private final long startedNanos;
+
+        private ReplicaSelectorListener(String nodeId, ActionListener<NodeCollectResponse> delegate) {
+            this.nodeId = nodeId;
+            this.delegate = delegate;
+            this.startedNanos = replicaSelector.requestStarted(nodeId);
+        }
+
+        @Override
+        public void onResponse(NodeCollectResponse response) {
+            replicaSelector.requestFinished(nodeId, startedNanos, response.searchQueueSize());
+            delegate.onResponse(response);
+        }
+
+        @Override
+        public void onFailure(Throwable e) {
+            replicaSelector.requestFinished(nodeId, startedNanos, -1);
+            delegate.onFailure(e);
+        }
+    }
+
     private class TransportHandler extends BaseTransportRequestHandler<NodeCollectRequest> {
 
         @Override
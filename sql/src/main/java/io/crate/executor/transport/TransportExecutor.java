@@ -39,6 +39,7 @@ import io.crate.metadata.ReferenceResolver;
 import io.crate.operation.ImplementationSymbolVisitor;
 import io.crate.operation.collect.HandlerSideDataCollectOperation;
 import io.crate.operation.collect.StatsTables;
+import io.crate.operation.kill.JobKillRegistry;
 import io.crate.operation.projectors.ProjectionToProjectorVisitor;
 import io.crate.operation.qtf.QueryThenFetchOperation;
 import io.crate.planner.*;
@@ -89,6 +90,10 @@ public class TransportExecutor implements Executor, TaskExecutor {
 
     private final QueryThenFetchOperation queryThenFetchOperation;
 
+    private final KeyLookupExecutor keyLookupExecutor;
+
+    private final JobKillRegistry jobKillRegistry;
+
     @Inject
     public TransportExecutor(Settings settings,
                              TransportActionProvider transportActionProvider,
@@ -103,7 +108,9 @@ public class TransportExecutor implements Executor, TaskExecutor {
                              CrateCircuitBreakerService breakerService,
                              CrateResultSorter crateResultSorter,
                              BigArrays bigArrays,
-                             QueryThenFetchOperation queryThenFetchOperation) {
+                             QueryThenFetchOperation queryThenFetchOperation,
+                             KeyLookupExecutor keyLookupExecutor,
+                             JobKillRegistry jobKillRegistry) {
         this.settings = settings;
         this.transportActionProvider = transportActionProvider;
         this.handlerSideDataCollectOperation = handlerSideDataCollectOperation;
@@ -116,6 +123,8 @@ public class TransportExecutor implements Executor, TaskExecutor {
         this.crateResultSorter = crateResultSorter;
         this.bigArrays = bigArrays;
         this.queryThenFetchOperation = queryThenFetchOperation;
+        this.keyLookupExecutor = keyLookupExecutor;
+        this.jobKillRegistry = jobKillRegistry;
         this.nodeVisitor = new NodeVisitor();
         this.planVisitor = new TaskCollectingVisitor();
         this.circuitBreaker = breakerService.getBreaker(CrateCircuitBreakerService.QUERY_BREAKER);
@@ -237,13 +246,15 @@ public class TransportExecutor implements Executor, TaskExecutor {
                         transportActionProvider.transportCollectNodeAction(),
                         handlerSideDataCollectOperation,
                         statsTables,
-                        circuitBreaker));
+                        circuitBreaker,
+                        jobKillRegistry));
             } else {
                 return singleTask(new LocalCollectTask(
                         jobId,
                         handlerSideDataCollectOperation,
                         node,
-                        circuitBreaker));
+                        circuitBreaker,
+                        jobKillRegistry));
             }
 
         }
@@ -266,7 +277,8 @@ public class TransportExecutor implements Executor, TaskExecutor {
                         globalImplementationSymbolVisitor,
                         node,
                         statsTables,
-                        circuitBreaker));
+                        circuitBreaker,
+                        jobKillRegistry));
             } else {
                 return singleTask(new DistributedMergeTask(
                         jobId,
@@ -307,7 +319,7 @@ public class TransportExecutor implements Executor, TaskExecutor {
                     jobId,
                     functions,
                     globalProjectionToProjectionVisitor,
-                    transportActionProvider.transportMultiGetAction(),
+                    keyLookupExecutor,
                     transportActionProvider.transportGetAction(),
                     node));
         }
@@ -386,6 +398,11 @@ public class TransportExecutor implements Executor, TaskExecutor {
                     node));
         }
 
+        @Override
+        public ImmutableList<Task> visitKillNode(KillNode node, UUID jobId) {
+            return singleTask(new KillTask(jobId, transportActionProvider.transportKillJobAction(), node));
+        }
+
         @Override
         protected ImmutableList<Task> visitPlanNode(PlanNode node, UUID jobId) {
             throw new UnsupportedOperationException(
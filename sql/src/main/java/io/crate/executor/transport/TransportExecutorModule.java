@@ -25,7 +25,9 @@ import io.crate.action.sql.query.CrateResultSorter;
 import io.crate.action.sql.query.CrateSearchService;
 import io.crate.action.sql.query.TransportQueryShardAction;
 import io.crate.executor.Executor;
+import io.crate.executor.transport.kill.TransportKillJobAction;
 import io.crate.executor.transport.merge.TransportMergeNodeAction;
+import io.crate.executor.transport.view.TransportViewUpkeepAction;
 import org.elasticsearch.common.inject.AbstractModule;
 import org.elasticsearch.search.SearchService;
 
@@ -39,6 +41,9 @@ public class TransportExecutorModule extends AbstractModule {
         bind(TransportMergeNodeAction.class).asEagerSingleton();
         bind(TransportQueryShardAction.class).asEagerSingleton();
         bind(TransportShardUpsertAction.class).asEagerSingleton();
+        bind(KeyLookupExecutor.class).asEagerSingleton();
+        bind(TransportKillJobAction.class).asEagerSingleton();
+        bind(TransportViewUpkeepAction.class).asEagerSingleton();
 
         bind(CrateResultSorter.class).asEagerSingleton();
 
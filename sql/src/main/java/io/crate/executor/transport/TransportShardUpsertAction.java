@@ -32,6 +32,7 @@ import io.crate.metadata.doc.DocSysColumns;
 import io.crate.planner.symbol.Reference;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ElasticsearchParseException;
 import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexResponse;
@@ -45,6 +46,7 @@ import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.cluster.action.shard.ShardStateAction;
 import org.elasticsearch.cluster.routing.ShardIterator;
 import org.elasticsearch.cluster.routing.operation.plain.Preference;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.Settings;
@@ -240,14 +242,9 @@ public class TransportShardUpsertAction extends TransportShardReplicationOperati
             throw new DocumentSourceMissingException(new ShardId(request.index(), request.shardId()), request.type(), item.id());
         }
 
-        Tuple<XContentType, Map<String, Object>> sourceAndContent = XContentHelper.convertToMap(getResult.internalSourceRef(), true);
-        final Map<String, Object> updatedSourceAsMap;
-        final XContentType updateSourceContentType = sourceAndContent.v1();
         String routing = getResult.getFields().containsKey(RoutingFieldMapper.NAME) ? getResult.field(RoutingFieldMapper.NAME).getValue().toString() : null;
         String parent = getResult.getFields().containsKey(ParentFieldMapper.NAME) ? getResult.field(ParentFieldMapper.NAME).getValue().toString() : null;
 
-        updatedSourceAsMap = sourceAndContent.v2();
-
         final SymbolToFieldExtractor.Context ctx = new SymbolToFieldExtractor.Context(functions, item.updateAssignments().length);
         Map<String, FieldExtractor> extractors = new HashMap<>(item.updateAssignments().length);
         for (int i = 0; i < request.updateColumns().length; i++) {
@@ -263,15 +260,28 @@ public class TransportShardUpsertAction extends TransportShardReplicationOperati
             pathsToUpdate.put(entry.getKey(), entry.getValue().extract(getResult));
         }
 
-        updateSourceByPaths(updatedSourceAsMap, pathsToUpdate);
-
         final IndexRequest indexRequest = Requests.indexRequest(request.index())
                 .type(request.type())
                 .id(item.id())
                 .routing(routing)
                 .parent(parent)
-                .source(updatedSourceAsMap, updateSourceContentType)
                 .version(getResult.getVersion());
+
+        // patch the serialized source, only assignments referencing columns need the source as map
+        BytesReference patchedSource;
+        try {
+            patchedSource = SourcePatcher.patch(getResult.internalSourceRef(), pathsToUpdate);
+        } catch (IOException e) {
+            throw new ElasticsearchParseException("failed to parse the source of document " + item.id(), e);
+        }
+        if (patchedSource != null) {
+            indexRequest.source(patchedSource, false);
+        } else {
+            Tuple<XContentType, Map<String, Object>> sourceAndContent = XContentHelper.convertToMap(getResult.internalSourceRef(), true);
+            final Map<String, Object> updatedSourceAsMap = sourceAndContent.v2();
+            updateSourceByPaths(updatedSourceAsMap, pathsToUpdate);
+            indexRequest.source(updatedSourceAsMap, sourceAndContent.v1());
+        }
         indexRequest.operationThreaded(false);
         return indexRequest;
     }
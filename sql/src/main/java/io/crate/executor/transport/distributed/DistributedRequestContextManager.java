@@ -31,6 +31,8 @@ import io.crate.executor.transport.merge.NodeMergeResponse;
 import io.crate.metadata.Functions;
 import io.crate.operation.DownstreamOperationFactory;
 import io.crate.operation.collect.StatsTables;
+import io.crate.operation.kill.JobKillRegistry;
+import io.crate.operation.kill.Killable;
 import io.crate.planner.node.PlanNodeStreamerVisitor;
 import io.crate.planner.node.dql.MergeNode;
 import org.elasticsearch.action.ActionListener;
@@ -72,14 +74,17 @@ public class DistributedRequestContextManager {
     private final DownstreamOperationFactory downstreamOperationFactory;
     private final PlanNodeStreamerVisitor planNodeStreamerVisitor;
     private final StatsTables statsTables;
+    private final JobKillRegistry jobKillRegistry;
     private final CircuitBreaker circuitBreaker;
 
     public DistributedRequestContextManager(DownstreamOperationFactory downstreamOperationFactory,
                                             Functions functions,
                                             StatsTables statsTables,
+                                            JobKillRegistry jobKillRegistry,
                                             CircuitBreaker circuitBreaker) {
         this.downstreamOperationFactory = downstreamOperationFactory;
         this.statsTables = statsTables;
+        this.jobKillRegistry = jobKillRegistry;
         this.circuitBreaker = circuitBreaker;
         this.planNodeStreamerVisitor = new PlanNodeStreamerVisitor(functions);
     }
@@ -101,6 +106,16 @@ public class DistributedRequestContextManager {
         statsTables.operationStarted(operationId, mergeNode.contextId(), mergeNode.id());
         PlanNodeStreamerVisitor.Context streamerContext = planNodeStreamerVisitor.process(mergeNode, ramAccountingContext);
         SettableFuture<Object[][]> settableFuture = wrapActionListener(streamerContext.outputStreamers(), listener);
+        final Killable killable = new Killable() {
+            @Override
+            public void kill() {
+                DownstreamOperationContext context = activeMergeOperations.get(mergeNode.contextId());
+                if (context != null) {
+                    context.kill();
+                }
+                ramAccountingContext.kill();
+            }
+        };
         DownstreamOperationContext downstreamOperationContext = new DownstreamOperationContext(
                 downstreamOperationFactory.create(mergeNode, ramAccountingContext),
                 settableFuture,
@@ -110,6 +125,7 @@ public class DistributedRequestContextManager {
                     public void finished() {
                         logger.trace("DoneCallback.finished: {} {}", mergeNode.contextId());
                         activeMergeOperations.remove(mergeNode.contextId());
+                        jobKillRegistry.unregister(mergeNode.contextId(), killable);
                         statsTables.operationFinished(operationId, null, ramAccountingContext.totalBytes());
                         ramAccountingContext.close();
                     }
@@ -117,6 +133,7 @@ public class DistributedRequestContextManager {
         );
         logger.trace("createContext.put: {} {}", this, mergeNode.contextId(), downstreamOperationContext);
         put(mergeNode.contextId(), downstreamOperationContext);
+        jobKillRegistry.register(mergeNode.contextId(), killable);
     }
 
 
@@ -24,6 +24,7 @@ package io.crate.executor.transport.distributed;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.SettableFuture;
+import io.crate.exceptions.JobKilledException;
 import io.crate.exceptions.UnknownUpstreamFailure;
 import io.crate.operation.DownstreamOperation;
 import io.crate.Streamer;
@@ -85,6 +86,17 @@ public class DownstreamOperationContext {
         }
     }
 
+    /**
+     * fail the merge because the job was killed.
+     * rows of upstreams that are still running are ignored from now on.
+     */
+    public void kill() {
+        synchronized (lock) {
+            needsMoreRows = false;
+        }
+        listener.setException(new JobKilledException());
+    }
+
     public void add(Object[][] rows) {
         assert rows != null;
         logger.trace("add rows.size: {}", rows.length);
@@ -0,0 +1,137 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.executor.transport.kill;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.crate.executor.transport.DefaultTransportResponseHandler;
+import io.crate.executor.transport.ResponseForwarder;
+import io.crate.operation.kill.JobKillRegistry;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.BaseTransportRequestHandler;
+import org.elasticsearch.transport.TransportChannel;
+import org.elasticsearch.transport.TransportService;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * broadcasts a kill request for a job to all nodes of the cluster.
+ * Every node kills the operations it has registered for the job in its {@link JobKillRegistry}.
+ */
+public class TransportKillJobAction {
+
+    private final ESLogger logger = Loggers.getLogger(getClass());
+
+    private final String transportAction = "crate/sql/job/kill";
+    private final String executor = ThreadPool.Names.GENERIC;
+    private final ClusterService clusterService;
+    private final TransportService transportService;
+    private final JobKillRegistry jobKillRegistry;
+
+    @Inject
+    public TransportKillJobAction(ClusterService clusterService,
+                                  TransportService transportService,
+                                  JobKillRegistry jobKillRegistry) {
+        this.clusterService = clusterService;
+        this.transportService = transportService;
+        this.jobKillRegistry = jobKillRegistry;
+
+        transportService.registerHandler(transportAction, new TransportHandler());
+    }
+
+    /**
+     * kill the job on all nodes
+     *
+     * @return a future containing the number of killed operations.
+     *         Nodes that could not be reached are logged and ignored.
+     */
+    public ListenableFuture<Long> execute(final UUID jobId) {
+        final SettableFuture<Long> result = SettableFuture.create();
+        DiscoveryNodes nodes = clusterService.state().nodes();
+        final AtomicInteger pending = new AtomicInteger(nodes.size());
+        final AtomicLong numKilled = new AtomicLong(jobKillRegistry.kill(jobId));
+        NodeKillJobRequest request = new NodeKillJobRequest(jobId);
+
+        for (final DiscoveryNode node : nodes) {
+            if (node.id().equals(nodes.localNodeId())) {
+                if (pending.decrementAndGet() == 0) {
+                    result.set(numKilled.get());
+                }
+                continue;
+            }
+            transportService.sendRequest(node, transportAction, request,
+                    new DefaultTransportResponseHandler<NodeKillJobResponse>(new ActionListener<NodeKillJobResponse>() {
+                        @Override
+                        public void onResponse(NodeKillJobResponse response) {
+                            numKilled.addAndGet(response.numKilled());
+                            countDown();
+                        }
+
+                        @Override
+                        public void onFailure(Throwable e) {
+                            logger.warn("failed to kill job {} on node {}", e, jobId, node.id());
+                            countDown();
+                        }
+
+                        private void countDown() {
+                            if (pending.decrementAndGet() == 0) {
+                                result.set(numKilled.get());
+                            }
+                        }
+                    }, executor) {
+                        @Override
+                        public NodeKillJobResponse newInstance() {
+                            return new NodeKillJobResponse();
+                        }
+                    });
+        }
+        return result;
+    }
+
+    private class TransportHandler extends BaseTransportRequestHandler<NodeKillJobRequest> {
+
+        @Override
+        public NodeKillJobRequest newInstance() {
+            return new NodeKillJobRequest();
+        }
+
+        @Override
+        public void messageReceived(NodeKillJobRequest request, TransportChannel channel) throws Exception {
+            ActionListener<NodeKillJobResponse> listener = ResponseForwarder.forwardTo(channel);
+            listener.onResponse(new NodeKillJobResponse(jobKillRegistry.kill(request.jobId())));
+        }
+
+        @Override
+        public String executor() {
+            return executor;
+        }
+    }
+}
@@ -36,6 +36,7 @@ import io.crate.operation.DownstreamOperation;
 import io.crate.operation.DownstreamOperationFactory;
 import io.crate.operation.ImplementationSymbolVisitor;
 import io.crate.operation.collect.StatsTables;
+import io.crate.operation.kill.JobKillRegistry;
 import io.crate.operation.merge.MergeOperation;
 import io.crate.planner.RowGranularity;
 import io.crate.planner.node.PlanNodeStreamerVisitor;
@@ -75,6 +76,7 @@ public class TransportMergeNodeAction {
                                     Functions functions,
                                     final ThreadPool threadPool,
                                     StatsTables statsTables,
+                                    JobKillRegistry jobKillRegistry,
                                     CrateCircuitBreakerService breakerService) {
         this.transportService = transportService;
         this.clusterService = clusterService;
@@ -98,7 +100,7 @@ public class TransportMergeNodeAction {
                         ramAccountingContext
                 );
             }
-        }, functions, statsTables, circuitBreaker);
+        }, functions, statsTables, jobKillRegistry, circuitBreaker);
 
         transportService.registerHandler(startMergeAction, new StartMergeHandler());
         transportService.registerHandler(failAction, new FailureHandler(contextManager));
@@ -0,0 +1,84 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.executor.transport.task;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.crate.executor.JobTask;
+import io.crate.executor.RowCountResult;
+import io.crate.executor.TaskResult;
+import io.crate.executor.transport.kill.TransportKillJobAction;
+import io.crate.planner.node.ddl.KillNode;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * kills a job on all nodes, the row count is the number of killed operations
+ */
+public class KillTask extends JobTask {
+
+    private final TransportKillJobAction transportKillJobAction;
+    private final KillNode node;
+    private final SettableFuture<TaskResult> result = SettableFuture.create();
+    private final List<ListenableFuture<TaskResult>> results;
+
+    public KillTask(UUID jobId, TransportKillJobAction transportKillJobAction, KillNode node) {
+        super(jobId);
+        this.transportKillJobAction = transportKillJobAction;
+        this.node = node;
+        this.results = Arrays.<ListenableFuture<TaskResult>>asList(result);
+    }
+
+    @Override
+    public void start() {
+        Futures.addCallback(transportKillJobAction.execute(node.jobId()), new FutureCallback<Long>() {
+            @Override
+            public void onSuccess(@Nullable Long numKilled) {
+                result.set(new RowCountResult(numKilled == null ? 0L : numKilled));
+            }
+
+            @Override
+            public void onFailure(@Nonnull Throwable t) {
+                result.setException(t);
+            }
+        });
+    }
+
+    @Override
+    public List<ListenableFuture<TaskResult>> result() {
+        return results;
+    }
+
+    @Override
+    public void upstreamResult(List<ListenableFuture<TaskResult>> result) {
+        throw new UnsupportedOperationException(
+                String.format(Locale.ENGLISH, "upstreamResult not supported on %s",
+                        getClass().getSimpleName()));
+    }
+}
@@ -28,6 +28,7 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import io.crate.breaker.RamAccountingContext;
 import io.crate.exceptions.Exceptions;
+import io.crate.exceptions.JobKilledException;
 import io.crate.executor.JobTask;
 import io.crate.executor.QueryResult;
 import io.crate.executor.TaskResult;
@@ -36,6 +37,8 @@ import io.crate.executor.transport.NodeCollectResponse;
 import io.crate.executor.transport.TransportCollectNodeAction;
 import io.crate.operation.collect.HandlerSideDataCollectOperation;
 import io.crate.operation.collect.StatsTables;
+import io.crate.operation.kill.JobKillRegistry;
+import io.crate.operation.kill.Killable;
 import io.crate.planner.node.dql.CollectNode;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.common.breaker.CircuitBreaker;
@@ -55,18 +58,21 @@ public class RemoteCollectTask extends JobTask {
     private final HandlerSideDataCollectOperation handlerSideDataCollectOperation;
     private final StatsTables statsTables;
     private final CircuitBreaker circuitBreaker;
+    private final JobKillRegistry jobKillRegistry;
 
     public RemoteCollectTask(UUID jobId,
                              CollectNode collectNode,
                              TransportCollectNodeAction transportCollectNodeAction,
                              HandlerSideDataCollectOperation handlerSideDataCollectOperation,
-                             StatsTables statsTables, CircuitBreaker circuitBreaker) {
+                             StatsTables statsTables, CircuitBreaker circuitBreaker,
+                             JobKillRegistry jobKillRegistry) {
         super(jobId);
         this.collectNode = collectNode;
         this.transportCollectNodeAction = transportCollectNodeAction;
         this.handlerSideDataCollectOperation = handlerSideDataCollectOperation;
         this.statsTables = statsTables;
         this.circuitBreaker = circuitBreaker;
+        this.jobKillRegistry = jobKillRegistry;
 
         Preconditions.checkArgument(collectNode.isRouted(),
                 "RemoteCollectTask currently only works for plans with routing"
@@ -123,11 +129,20 @@ public class RemoteCollectTask extends JobTask {
         String ramAccountingContextId = String.format("%s: %s", collectNode.id(), operationId);
         final RamAccountingContext ramAccountingContext =
                 new RamAccountingContext(ramAccountingContextId, circuitBreaker);
+        final Killable killable = new Killable() {
+            @Override
+            public void kill() {
+                ramAccountingContext.kill();
+                ((SettableFuture<TaskResult>) result.get(resultIdx)).setException(new JobKilledException(jobId()));
+            }
+        };
+        jobKillRegistry.register(jobId(), killable);
         ListenableFuture<Object[][]> future = handlerSideDataCollectOperation.collect(collectNode,
                 ramAccountingContext);
         Futures.addCallback(future, new FutureCallback<Object[][]>() {
             @Override
             public void onSuccess(@Nullable Object[][] rows) {
+                jobKillRegistry.unregister(jobId(), killable);
                 ramAccountingContext.close();
                 ((SettableFuture<TaskResult>) result.get(resultIdx)).set(new QueryResult(rows));
                 statsTables.operationFinished(operationId, null, ramAccountingContext.totalBytes());
@@ -135,6 +150,7 @@ public class RemoteCollectTask extends JobTask {
 
             @Override
             public void onFailure(@Nonnull Throwable t) {
+                jobKillRegistry.unregister(jobId(), killable);
                 ramAccountingContext.close();
                 ((SettableFuture<TaskResult>)result.get(resultIdx)).setException(t);
                 statsTables.operationFinished(operationId, Exceptions.messageOf(t),
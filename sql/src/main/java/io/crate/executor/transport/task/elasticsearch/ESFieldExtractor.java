@@ -21,18 +21,23 @@
 
 package io.crate.executor.transport.task.elasticsearch;
 
+import com.google.common.collect.ImmutableSet;
 import io.crate.metadata.PartitionName;
 import io.crate.metadata.ColumnIdent;
 import io.crate.metadata.ReferenceInfo;
 import io.crate.planner.symbol.Reference;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHitField;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public abstract class ESFieldExtractor implements FieldExtractor<SearchHit> {
 
@@ -102,6 +107,57 @@ public abstract class ESFieldExtractor implements FieldExtractor<SearchHit> {
         }
     }
 
+    /**
+     * extracts a column which the shard loaded from doc values as a field data field.
+     * Hits without such a field (e.g. the column has no doc values on the shard) are resolved from the source.
+     */
+    public static class DocValues extends Source {
+
+        private static final Set<DataType> SUPPORTED_TYPES = ImmutableSet.<DataType>of(
+                DataTypes.BYTE,
+                DataTypes.SHORT,
+                DataTypes.INTEGER,
+                DataTypes.LONG,
+                DataTypes.FLOAT,
+                DataTypes.DOUBLE,
+                DataTypes.TIMESTAMP,
+                DataTypes.STRING
+        );
+
+        private final String fqn;
+        private final DataType type;
+
+        public DocValues(ReferenceInfo info) {
+            super(info.ident().columnIdent());
+            this.fqn = info.ident().columnIdent().fqn();
+            this.type = info.type();
+        }
+
+        /**
+         * @return true if the values of the column can be read from doc values
+         *         without changing the result compared to reading them from the source.
+         *         Whether the column really has doc values is decided per shard.
+         */
+        public static boolean supports(ReferenceInfo info) {
+            return info.ident().columnIdent().isColumn()
+                    && info.indexType() == ReferenceInfo.IndexType.NOT_ANALYZED
+                    && SUPPORTED_TYPES.contains(info.type());
+        }
+
+        @Override
+        public Object extract(SearchHit hit) {
+            SearchHitField field = hit.field(fqn);
+            if (field == null) {
+                return super.extract(hit);
+            }
+            Object value = field.getValue();
+            if (value == null || type.equals(DataTypes.STRING)) {
+                return value;
+            }
+            return type.value(value);
+        }
+    }
+
     public static class PartitionedByColumnExtractor extends ESFieldExtractor {
 
         private final Reference reference;
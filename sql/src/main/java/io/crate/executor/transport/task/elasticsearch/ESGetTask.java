@@ -30,6 +30,7 @@ import io.crate.Constants;
 import io.crate.executor.JobTask;
 import io.crate.executor.QueryResult;
 import io.crate.executor.TaskResult;
+import io.crate.executor.transport.KeyLookupExecutor;
 import io.crate.metadata.Functions;
 import io.crate.metadata.PartitionName;
 import io.crate.metadata.ReferenceInfo;
@@ -44,9 +45,7 @@ import io.crate.planner.symbol.InputColumn;
 import io.crate.planner.symbol.Reference;
 import io.crate.planner.symbol.Symbol;
 import org.elasticsearch.action.ActionListener;
-import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.get.*;
-import org.elasticsearch.action.support.TransportAction;
 import org.elasticsearch.common.xcontent.support.XContentMapValues;
 import org.elasticsearch.search.fetch.source.FetchSourceContext;
 
@@ -59,19 +58,19 @@ public class ESGetTask extends JobTask {
     private final static SymbolToFieldExtractor SYMBOL_TO_FIELD_EXTRACTOR =
             new SymbolToFieldExtractor<>(new GetResponseFieldExtractorFactory());
     private final List<ListenableFuture<TaskResult>> results;
-    private final TransportAction transportAction;
-    private final ActionRequest request;
-    private final ActionListener listener;
+    private final KeyLookupExecutor keyLookupExecutor;
+    private final List<MultiGetRequest.Item> items;
+    private final ActionListener<MultiGetResponse> listener;
 
     public ESGetTask(UUID jobId,
                      Functions functions,
                      ProjectionToProjectorVisitor projectionToProjectorVisitor,
-                     TransportMultiGetAction multiGetAction,
+                     KeyLookupExecutor keyLookupExecutor,
                      TransportGetAction getAction,
                      ESGetNode node) {
         super(jobId);
 
-        assert multiGetAction != null;
+        assert keyLookupExecutor != null;
         assert getAction != null;
         assert node != null;
         assert node.ids().size() > 0;
@@ -91,17 +90,14 @@ public class ESGetTask extends JobTask {
         final FetchSourceContext fsc = new FetchSourceContext(ctx.referenceNames());
         final SettableFuture<TaskResult> result = SettableFuture.create();
         results = Arrays.<ListenableFuture<TaskResult>>asList(result);
+        this.keyLookupExecutor = keyLookupExecutor;
+        items = prepareItems(node, fsc);
         if (node.ids().size() > 1) {
-            MultiGetRequest multiGetRequest = prepareMultiGetRequest(node, fsc);
-            transportAction = multiGetAction;
-            request = multiGetRequest;
             FlatProjectorChain projectorChain = getFlatProjectorChain(projectionToProjectorVisitor, node);
             listener = new MultiGetResponseListener(result, extractors, projectorChain);
         } else {
-            GetRequest getRequest = prepareGetRequest(node, fsc);
-            transportAction = getAction;
-            request = getRequest;
-            listener = new GetResponseListener(result, extractors);
+            listener = new SingleItemResponseListener(
+                    getAction, prepareGetRequest(node, fsc), new GetResponseListener(result, extractors));
         }
     }
 
@@ -132,17 +128,16 @@ public class ESGetTask extends JobTask {
         return getRequest;
     }
 
-    private MultiGetRequest prepareMultiGetRequest(ESGetNode node, FetchSourceContext fsc) {
-        MultiGetRequest multiGetRequest = new MultiGetRequest();
+    private List<MultiGetRequest.Item> prepareItems(ESGetNode node, FetchSourceContext fsc) {
+        List<MultiGetRequest.Item> items = new ArrayList<>(node.ids().size());
         for (int i = 0; i < node.ids().size(); i++) {
             String id = node.ids().get(i);
             MultiGetRequest.Item item = new MultiGetRequest.Item(node.index(), Constants.DEFAULT_MAPPING_TYPE, id);
             item.fetchSourceContext(fsc);
             item.routing(node.routingValues().get(i));
-            multiGetRequest.add(item);
+            items.add(item);
         }
-        multiGetRequest.realtime(true);
-        return multiGetRequest;
+        return items;
     }
 
     private FlatProjectorChain getFlatProjectorChain(ProjectionToProjectorVisitor projectionToProjectorVisitor,
@@ -269,6 +264,40 @@ public class ESGetTask extends JobTask {
         }
     }
 
+    /**
+     * Unwraps the response of a lookup with a single item.
+     * A failed item is retried with a get request so that the original exception is reported.
+     */
+    static class SingleItemResponseListener implements ActionListener<MultiGetResponse> {
+
+        private final TransportGetAction getAction;
+        private final GetRequest getRequest;
+        private final GetResponseListener listener;
+
+        public SingleItemResponseListener(TransportGetAction getAction,
+                                          GetRequest getRequest,
+                                          GetResponseListener listener) {
+            this.getAction = getAction;
+            this.getRequest = getRequest;
+            this.listener = listener;
+        }
+
+        @Override
+        public void onResponse(MultiGetResponse responses) {
+            MultiGetItemResponse response = responses.getResponses()[0];
+            if (response.isFailed()) {
+                getAction.execute(getRequest, listener);
+            } else {
+                listener.onResponse(response.getResponse());
+            }
+        }
+
+        @Override
+        public void onFailure(Throwable e) {
+            listener.onFailure(e);
+        }
+    }
+
     static class GetResponseListener implements ActionListener<GetResponse> {
 
         private final SettableFuture<TaskResult> result;
@@ -307,9 +336,8 @@ public class ESGetTask extends JobTask {
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public void start() {
-        transportAction.execute(request, listener);
+        keyLookupExecutor.lookup(items, listener);
     }
 
     @Override
@@ -100,6 +100,7 @@ class QueryThenFetchPageableTaskResult implements PageableTaskResult {
         QueryThenFetchNode oldNode = ctx.searchNode();
         Futures.addCallback(
                 operation.execute(
+                        ctx.jobId(),
                         oldNode,
                         ctx.outputs(),
                         Optional.of(pageInfo)
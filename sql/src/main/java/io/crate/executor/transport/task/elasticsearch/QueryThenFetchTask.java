@@ -71,7 +71,8 @@ public class QueryThenFetchTask extends JobTask implements PageableTask {
         this.operation = operation;
         this.searchNode = searchNode;
 
-        SearchHitExtractorContext context = new SearchHitExtractorContext(functions, searchNode.outputs().size(), searchNode.partitionBy());
+        SearchHitExtractorContext context = new SearchHitExtractorContext(functions,
+                searchNode.outputs().size(), searchNode.partitionBy(), searchNode.fetchFromDocValues());
         extractors = new ArrayList<>(searchNode.outputs().size());
         for (Symbol symbol : searchNode.outputs()) {
             extractors.add(SYMBOL_TO_FIELD_EXTRACTOR.convert(symbol, context));
@@ -94,7 +95,7 @@ public class QueryThenFetchTask extends JobTask implements PageableTask {
 
     private void doStart(final Optional<PageInfo> pageInfo) {
         Futures.addCallback(
-            operation.execute(searchNode, references, pageInfo),
+            operation.execute(jobId(), searchNode, references, pageInfo),
             new FutureCallback<QueryThenFetchOperation.QueryThenFetchContext>() {
                 @Override
                 public void onSuccess(@Nullable final QueryThenFetchOperation.QueryThenFetchContext context) {
@@ -153,10 +154,15 @@ public class QueryThenFetchTask extends JobTask implements PageableTask {
 
     static class SearchHitExtractorContext extends SymbolToFieldExtractor.Context {
         private final List<ReferenceInfo> partitionBy;
+        private final boolean fetchFromDocValues;
 
-        public SearchHitExtractorContext(Functions functions, int size, List<ReferenceInfo> partitionBy) {
+        public SearchHitExtractorContext(Functions functions,
+                                         int size,
+                                         List<ReferenceInfo> partitionBy,
+                                         boolean fetchFromDocValues) {
             super(functions, size);
             this.partitionBy = partitionBy;
+            this.fetchFromDocValues = fetchFromDocValues;
         }
     }
 
@@ -207,6 +213,8 @@ public class QueryThenFetchTask extends JobTask implements PageableTask {
                 }
             } else if (context.partitionBy.contains(field.info())) {
                 return new ESFieldExtractor.PartitionedByColumnExtractor(field, context.partitionBy);
+            } else if (context.fetchFromDocValues && ESFieldExtractor.DocValues.supports(field.info())) {
+                return new ESFieldExtractor.DocValues(field.info());
             } else {
                 return new ESFieldExtractor.Source(columnIdent);
             }
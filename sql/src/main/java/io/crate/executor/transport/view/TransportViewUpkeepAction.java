@@ -0,0 +1,135 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.executor.transport.view;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.crate.action.sql.MaterializedViews;
+import io.crate.executor.transport.DefaultTransportResponseHandler;
+import io.crate.executor.transport.ResponseForwarder;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.inject.Provider;
+import org.elasticsearch.discovery.MasterNotDiscoveredException;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.BaseTransportRequestHandler;
+import org.elasticsearch.transport.TransportChannel;
+import org.elasticsearch.transport.TransportService;
+
+/**
+ * runs the upkeep of a materialized view on the master node.
+ *
+ * Refreshing a view deletes rows of the view and inserts them
+ * again, so the upkeep of the same view must not interleave. {@link MaterializedViews} runs the upkeep of a view one after another,
+ * sending it to the master node makes this hold for upkeep started on any node of the cluster.
+ */
+public class TransportViewUpkeepAction {
+
+    private final String transportAction = "crate/sql/view/upkeep";
+    private final String executor = ThreadPool.Names.GENERIC;
+    private final ClusterService clusterService;
+    private final TransportService transportService;
+    private final Provider<MaterializedViews> materializedViewsProvider;
+
+    @Inject
+    public TransportViewUpkeepAction(ClusterService clusterService,
+                                     TransportService transportService,
+                                     Provider<MaterializedViews> materializedViewsProvider) {
+        this.clusterService = clusterService;
+        this.transportService = transportService;
+        this.materializedViewsProvider = materializedViewsProvider;
+
+        transportService.registerHandler(transportAction, new TransportHandler());
+    }
+
+    /**
+     * @return a future returning the number of rows written to the view
+     */
+    public ListenableFuture<Long> execute(ViewUpkeepRequest request) {
+        DiscoveryNodes nodes = clusterService.state().nodes();
+        DiscoveryNode masterNode = nodes.masterNode();
+        if (masterNode == null) {
+            return Futures.immediateFailedFuture(new MasterNotDiscoveredException(
+                    "upkeep of materialized view " + request.viewIdent().fqn()));
+        }
+        if (masterNode.id().equals(nodes.localNodeId())) {
+            return upkeep(request);
+        }
+        final SettableFuture<Long> result = SettableFuture.create();
+        transportService.sendRequest(masterNode, transportAction, request,
+                new DefaultTransportResponseHandler<ViewUpkeepResponse>(new ActionListener<ViewUpkeepResponse>() {
+                    @Override
+                    public void onResponse(ViewUpkeepResponse response) {
+                        result.set(response.rowCount());
+                    }
+
+                    @Override
+                    public void onFailure(Throwable e) {
+                        result.setException(e);
+                    }
+                }, executor) {
+                    @Override
+                    public ViewUpkeepResponse newInstance() {
+                        return new ViewUpkeepResponse();
+                    }
+                });
+        return result;
+    }
+
+    private ListenableFuture<Long> upkeep(ViewUpkeepRequest request) {
+        return materializedViewsProvider.get().upkeep(request.viewIdent());
+    }
+
+    private class TransportHandler extends BaseTransportRequestHandler<ViewUpkeepRequest> {
+
+        @Override
+        public ViewUpkeepRequest newInstance() {
+            return new ViewUpkeepRequest();
+        }
+
+        @Override
+        public void messageReceived(ViewUpkeepRequest request, TransportChannel channel) throws Exception {
+            final ActionListener<ViewUpkeepResponse> listener = ResponseForwarder.forwardTo(channel);
+            Futures.addCallback(upkeep(request), new FutureCallback<Long>() {
+                @Override
+                public void onSuccess(Long rowCount) {
+                    listener.onResponse(new ViewUpkeepResponse(rowCount));
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    listener.onFailure(t);
+                }
+            });
+        }
+
+        @Override
+        public String executor() {
+            return executor;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.lucene;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.crate.types.*;
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.util.NumericUtils;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * min/max value and null count of a numeric or timestamp column within a segment.
+ *
+ * The values are read from the terms dictionary of the field: the smallest and the largest
+ * full precision term are the min and max value and every document without a term is null.
+ * Synopses are computed once per segment and column and cached until the segment is garbage collected.
+ */
+public class ColumnSynopsis {
+
+    private static final Cache<Object, ConcurrentMap<String, ColumnSynopsis>> SEGMENT_SYNOPSES =
+            CacheBuilder.newBuilder().weakKeys().build();
+
+    private final Number min;
+    private final Number max;
+    private final long nullCount;
+
+    private ColumnSynopsis(@Nullable Number min, @Nullable Number max, long nullCount) {
+        this.min = min;
+        this.max = max;
+        this.nullCount = nullCount;
+    }
+
+    /**
+     * smallest value of the column or null if all values are null
+     */
+    @Nullable
+    public Number min() {
+        return min;
+    }
+
+    /**
+     * largest value of the column or null if all values are null
+     */
+    @Nullable
+    public Number max() {
+        return max;
+    }
+
+    /**
+     * number of documents without a value, deleted documents are included. -1 if unknown
+     */
+    public long nullCount() {
+        return nullCount;
+    }
+
+    public static boolean supportsType(DataType type) {
+        return type.equals(DataTypes.LONG) || type.equals(DataTypes.TIMESTAMP)
+                || type.equals(DataTypes.INTEGER) || type.equals(DataTypes.SHORT) || type.equals(DataTypes.BYTE)
+                || type.equals(DataTypes.DOUBLE) || type.equals(DataTypes.FLOAT);
+    }
+
+    /**
+     * @return the synopsis of the column within the segment or null if it isn't available,
+     * e.g. because the column isn't indexed
+     */
+    @Nullable
+    public static ColumnSynopsis of(AtomicReader reader, String field, DataType type) throws IOException {
+        assert supportsType(type) : "synopses are only available for numeric and timestamp columns";
+        Object coreCacheKey = reader.getCoreCacheKey();
+        ConcurrentMap<String, ColumnSynopsis> synopses = SEGMENT_SYNOPSES.getIfPresent(coreCacheKey);
+        if (synopses == null) {
+            synopses = new ConcurrentHashMap<>();
+            ConcurrentMap<String, ColumnSynopsis> existing = SEGMENT_SYNOPSES.asMap().putIfAbsent(coreCacheKey, synopses);
+            if (existing != null) {
+                synopses = existing;
+            }
+        }
+        String key = field + ':' + type.id();
+        ColumnSynopsis synopsis = synopses.get(key);
+        if (synopsis == null) {
+            synopsis = load(reader, field, type);
+            if (synopsis == null) {
+                return null;
+            }
+            synopses.put(key, synopsis);
+        }
+        return synopsis;
+    }
+
+    @Nullable
+    private static ColumnSynopsis load(AtomicReader reader, String field, DataType type) throws IOException {
+        FieldInfo fieldInfo = reader.getFieldInfos().fieldInfo(field);
+        if (fieldInfo == null || !fieldInfo.isIndexed()) {
+            return null;
+        }
+        Terms terms = reader.terms(field);
+        if (terms == null) {
+            return new ColumnSynopsis(null, null, reader.maxDoc());
+        }
+        int docCount = terms.getDocCount();
+        long nullCount = docCount < 0 ? -1 : reader.maxDoc() - docCount;
+        switch (type.id()) {
+            case LongType.ID:
+            case TimestampType.ID:
+                return new ColumnSynopsis(NumericUtils.getMinLong(terms), NumericUtils.getMaxLong(terms), nullCount);
+            case IntegerType.ID:
+            case ShortType.ID:
+            case ByteType.ID:
+                return new ColumnSynopsis(NumericUtils.getMinInt(terms), NumericUtils.getMaxInt(terms), nullCount);
+            case DoubleType.ID:
+                return new ColumnSynopsis(
+                        NumericUtils.sortableLongToDouble(NumericUtils.getMinLong(terms)),
+                        NumericUtils.sortableLongToDouble(NumericUtils.getMaxLong(terms)),
+                        nullCount);
+            case FloatType.ID:
+                return new ColumnSynopsis(
+                        NumericUtils.sortableIntToFloat(NumericUtils.getMinInt(terms)),
+                        NumericUtils.sortableIntToFloat(NumericUtils.getMaxInt(terms)),
+                        nullCount);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * compares two numbers of the same column, integral values are compared as long to avoid precision loss
+     */
+    public static int compare(Number n1, Number n2) {
+        if ((n1 instanceof Double || n1 instanceof Float) || (n2 instanceof Double || n2 instanceof Float)) {
+            return Double.compare(n1.doubleValue(), n2.doubleValue());
+        }
+        return Long.compare(n1.longValue(), n2.longValue());
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnSynopsis{min=" + min + ", max=" + max + ", nullCount=" + nullCount + '}';
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.lucene;
+
+import org.apache.lucene.index.AtomicReader;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.lucene.SegmentReaderUtils;
+import org.elasticsearch.index.fielddata.AtomicFieldData;
+import org.elasticsearch.index.shard.ShardId;
+
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * field data of hot columns which is loaded while a new segment is warmed and kept until the segment is closed.
+ *
+ * Pinned field data is referenced independently of the field data cache, so it is still available
+ * after the cache evicted its entry. The memory of pinned field data is accounted on the
+ * hot columns circuit breaker, field data which would exceed its limit isn't pinned.
+ */
+public class PinnedFieldData {
+
+    private static final ConcurrentMap<Object, Segment> SEGMENTS = new ConcurrentHashMap<>();
+
+    /**
+     * @return the pinned field data of the field within the segment or null if it hasn't been pinned
+     */
+    @Nullable
+    public static AtomicFieldData get(AtomicReader reader, String indexName) {
+        Segment segment = SEGMENTS.get(reader.getCoreCacheKey());
+        if (segment == null) {
+            return null;
+        }
+        return segment.fields.get(indexName);
+    }
+
+    /**
+     * pins the field data of a field within a segment until the segment is closed.
+     *
+     * @return false if the field data hasn't been pinned, either because it already is,
+     * the limit of the breaker would be exceeded or the segment can't be tracked
+     */
+    public static boolean pin(ShardId shardId,
+                              AtomicReader reader,
+                              String indexName,
+                              AtomicFieldData fieldData,
+                              CircuitBreaker breaker) {
+        Object coreCacheKey = reader.getCoreCacheKey();
+        Segment segment = SEGMENTS.get(coreCacheKey);
+        if (segment == null) {
+            segment = new Segment(shardId, breaker);
+            Segment existing = SEGMENTS.putIfAbsent(coreCacheKey, segment);
+            if (existing != null) {
+                segment = existing;
+            } else if (!SegmentReaderUtils.registerCoreListener(reader, segment)) {
+                SEGMENTS.remove(coreCacheKey, segment);
+                return false;
+            }
+        }
+        return segment.pin(indexName, fieldData);
+    }
+
+    /**
+     * releases the pinned field data of all fields of the index except the given ones,
+     * used once columns are removed from the hot columns of a table
+     */
+    public static void retain(String index, Set<String> indexNames) {
+        for (Segment segment : SEGMENTS.values()) {
+            if (segment.shardId.getIndex().equals(index)) {
+                segment.retain(indexNames);
+            }
+        }
+    }
+
+    /**
+     * @return the memory used by the pinned field data of all segments of the shard
+     */
+    public static long ramBytesUsed(ShardId shardId) {
+        long bytes = 0;
+        for (Segment segment : SEGMENTS.values()) {
+            if (segment.shardId.equals(shardId)) {
+                bytes += segment.ramBytesUsed();
+            }
+        }
+        return bytes;
+    }
+
+    private static class Segment implements AtomicReader.CoreClosedListener {
+
+        private final ShardId shardId;
+        private final CircuitBreaker breaker;
+        private final Map<String, AtomicFieldData> fields = new ConcurrentHashMap<>();
+        private final Map<String, Long> sizes = new HashMap<>();
+        private long bytes = 0;
+        private boolean closed = false;
+
+        private Segment(ShardId shardId, CircuitBreaker breaker) {
+            this.shardId = shardId;
+            this.breaker = breaker;
+        }
+
+        private synchronized boolean pin(String indexName, AtomicFieldData fieldData) {
+            if (closed || fields.containsKey(indexName)) {
+                return false;
+            }
+            long size = fieldData.ramBytesUsed();
+            try {
+                breaker.addEstimateBytesAndMaybeBreak(size, "hot column [" + indexName + "]");
+            } catch (CircuitBreakingException e) {
+                return false;
+            }
+            fields.put(indexName, fieldData);
+            sizes.put(indexName, size);
+            bytes += size;
+            return true;
+        }
+
+        private synchronized void retain(Set<String> indexNames) {
+            Iterator<Map.Entry<String, Long>> it = sizes.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Long> entry = it.next();
+                if (!indexNames.contains(entry.getKey())) {
+                    fields.remove(entry.getKey());
+                    breaker.addWithoutBreaking(-entry.getValue());
+                    bytes -= entry.getValue();
+                    it.remove();
+                }
+            }
+        }
+
+        private synchronized long ramBytesUsed() {
+            return bytes;
+        }
+
+        @Override
+        public synchronized void onClose(Object ownerCoreCacheKey) {
+            SEGMENTS.remove(ownerCoreCacheKey, this);
+            closed = true;
+            fields.clear();
+            sizes.clear();
+            breaker.addWithoutBreaking(-bytes);
+            bytes = 0;
+        }
+    }
+}
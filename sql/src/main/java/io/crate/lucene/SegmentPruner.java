@@ -0,0 +1,224 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.lucene;
+
+import io.crate.analyze.WhereClause;
+import io.crate.operation.operator.*;
+import io.crate.operation.predicate.IsNullPredicate;
+import io.crate.operation.predicate.NotPredicate;
+import io.crate.planner.symbol.Function;
+import io.crate.planner.symbol.Literal;
+import io.crate.planner.symbol.Reference;
+import io.crate.planner.symbol.Symbol;
+import io.crate.types.DataType;
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.IndexReader;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decides whether a segment can contain matching documents based on the {@link ColumnSynopsis}
+ * of the columns used in the query.
+ *
+ * Only comparisons of numeric and timestamp columns with literals and IS [NOT] NULL conditions
+ * which are part of the top level conjunction of the query are considered.
+ * Segments which can't be pruned are processed as usual, so the query is still evaluated for every document.
+ */
+public class SegmentPruner {
+
+    private final List<Condition> conditions;
+
+    private SegmentPruner(List<Condition> conditions) {
+        this.conditions = conditions;
+    }
+
+    /**
+     * @return a pruner for the whereClause or null if the whereClause doesn't contain any conditions
+     * that can be checked against the column synopses
+     */
+    @Nullable
+    public static SegmentPruner create(WhereClause whereClause) {
+        if (!whereClause.hasQuery() || whereClause.noMatch()) {
+            return null;
+        }
+        List<Condition> conditions = new ArrayList<>();
+        addConditions(whereClause.query(), conditions);
+        if (conditions.isEmpty()) {
+            return null;
+        }
+        return new SegmentPruner(conditions);
+    }
+
+    private static void addConditions(Symbol symbol, List<Condition> conditions) {
+        if (!(symbol instanceof Function)) {
+            return;
+        }
+        Function function = (Function) symbol;
+        String name = function.info().ident().name();
+        List<Symbol> arguments = function.arguments();
+        switch (name) {
+            case AndOperator.NAME:
+                addConditions(arguments.get(0), conditions);
+                addConditions(arguments.get(1), conditions);
+                break;
+            case IsNullPredicate.NAME:
+                addNullCondition(arguments.get(0), true, conditions);
+                break;
+            case NotPredicate.NAME:
+                Symbol argument = arguments.get(0);
+                if (argument instanceof Function
+                        && ((Function) argument).info().ident().name().equals(IsNullPredicate.NAME)) {
+                    addNullCondition(((Function) argument).arguments().get(0), false, conditions);
+                }
+                break;
+            case EqOperator.NAME:
+            case GtOperator.NAME:
+            case GteOperator.NAME:
+            case LtOperator.NAME:
+            case LteOperator.NAME:
+                addComparison(name, arguments.get(0), arguments.get(1), conditions);
+                break;
+        }
+    }
+
+    private static void addNullCondition(Symbol symbol, boolean isNull, List<Condition> conditions) {
+        if (symbol instanceof Reference && ColumnSynopsis.supportsType(symbol.valueType())) {
+            conditions.add(new Condition((Reference) symbol, isNull ? Op.IS_NULL : Op.IS_NOT_NULL, null));
+        }
+    }
+
+    private static void addComparison(String name, Symbol left, Symbol right, List<Condition> conditions) {
+        boolean swapped = false;
+        if (left instanceof Literal && right instanceof Reference) {
+            Symbol tmp = left;
+            left = right;
+            right = tmp;
+            swapped = true;
+        }
+        if (!(left instanceof Reference) || !(right instanceof Literal)) {
+            return;
+        }
+        DataType type = left.valueType();
+        Object value = ((Literal) right).value();
+        if (!ColumnSynopsis.supportsType(type) || !right.valueType().equals(type) || !(value instanceof Number)) {
+            return;
+        }
+        Op op;
+        switch (name) {
+            case EqOperator.NAME:
+                op = Op.EQ;
+                break;
+            case GtOperator.NAME:
+                op = swapped ? Op.LT : Op.GT;
+                break;
+            case GteOperator.NAME:
+                op = swapped ? Op.LTE : Op.GTE;
+                break;
+            case LtOperator.NAME:
+                op = swapped ? Op.GT : Op.LT;
+                break;
+            case LteOperator.NAME:
+                op = swapped ? Op.GTE : Op.LTE;
+                break;
+            default:
+                return;
+        }
+        conditions.add(new Condition((Reference) left, op, (Number) value));
+    }
+
+    /**
+     * @return false if no document of the segment can match the query
+     */
+    public boolean canMatch(AtomicReader reader) throws IOException {
+        for (Condition condition : conditions) {
+            ColumnSynopsis synopsis = ColumnSynopsis.of(reader, condition.field, condition.type);
+            if (synopsis != null && !condition.canMatch(synopsis)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return false if no segment of the index can contain a document matching the query
+     */
+    public boolean canMatch(IndexReader indexReader) throws IOException {
+        for (AtomicReaderContext context : indexReader.leaves()) {
+            if (canMatch(context.reader())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private enum Op {
+        EQ, GT, GTE, LT, LTE, IS_NULL, IS_NOT_NULL
+    }
+
+    private static class Condition {
+
+        private final String field;
+        private final DataType type;
+        private final Op op;
+        private final Number value;
+
+        Condition(Reference reference, Op op, @Nullable Number value) {
+            this.field = reference.info().ident().columnIdent().fqn();
+            this.type = reference.valueType();
+            this.op = op;
+            this.value = value;
+        }
+
+        boolean canMatch(ColumnSynopsis synopsis) {
+            Number min = synopsis.min();
+            Number max = synopsis.max();
+            switch (op) {
+                case IS_NULL:
+                    return synopsis.nullCount() != 0;
+                case IS_NOT_NULL:
+                    return max != null;
+            }
+            if (min == null || max == null) {
+                // all values are null, comparisons never match
+                return false;
+            }
+            switch (op) {
+                case EQ:
+                    return ColumnSynopsis.compare(min, value) <= 0 && ColumnSynopsis.compare(max, value) >= 0;
+                case GT:
+                    return ColumnSynopsis.compare(max, value) > 0;
+                case GTE:
+                    return ColumnSynopsis.compare(max, value) >= 0;
+                case LT:
+                    return ColumnSynopsis.compare(min, value) < 0;
+                case LTE:
+                    return ColumnSynopsis.compare(min, value) <= 0;
+                default:
+                    return true;
+            }
+        }
+    }
+}
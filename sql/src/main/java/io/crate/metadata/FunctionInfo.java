@@ -77,6 +77,10 @@ public class FunctionInfo implements Comparable<FunctionInfo>, Streamable {
         return returnType;
     }
 
+    public boolean deterministic() {
+        return deterministic;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) {
@@ -32,6 +32,7 @@ import io.crate.metadata.information.InformationSchemaInfo;
 import io.crate.metadata.sys.SysSchemaInfo;
 import io.crate.metadata.table.SchemaInfo;
 import io.crate.metadata.table.TableInfo;
+import io.crate.operation.routing.ReplicaSelector;
 import org.elasticsearch.action.admin.indices.template.put.TransportPutIndexTemplateAction;
 import org.elasticsearch.cluster.ClusterChangedEvent;
 import org.elasticsearch.cluster.ClusterService;
@@ -56,14 +57,17 @@ public class ReferenceInfos implements Iterable<SchemaInfo>, ClusterStateListene
     private final SchemaInfo defaultSchemaInfo;
     private final ClusterService clusterService;
     private final TransportPutIndexTemplateAction transportPutIndexTemplateAction;
+    private final ReplicaSelector replicaSelector;
 
     private volatile Map<String, SchemaInfo> schemas = new HashMap<>();
 
     @Inject
     public ReferenceInfos(Map<String, SchemaInfo> builtInSchemas,
                           ClusterService clusterService,
-                          TransportPutIndexTemplateAction transportPutIndexTemplateAction) {
+                          TransportPutIndexTemplateAction transportPutIndexTemplateAction,
+                          ReplicaSelector replicaSelector) {
         this.builtInSchemas = builtInSchemas;
+        this.replicaSelector = replicaSelector;
         this.defaultSchemaInfo = builtInSchemas.get(DEFAULT_SCHEMA_NAME);
         this.clusterService = clusterService;
         this.transportPutIndexTemplateAction = transportPutIndexTemplateAction;
@@ -151,7 +155,7 @@ public class ReferenceInfos implements Iterable<SchemaInfo>, ClusterStateListene
      * @return an instance of SchemaInfo for the given name
      */
     private SchemaInfo getCustomSchemaInfo(final String name) {
-        return new DocSchemaInfo(clusterService, transportPutIndexTemplateAction) {
+        return new DocSchemaInfo(clusterService, transportPutIndexTemplateAction, replicaSelector) {
             @Override
             public String name() {
                 return name;
@@ -85,6 +85,7 @@ public class DocIndexMetaData {
     private ImmutableList<ColumnIdent> primaryKey;
     private ColumnIdent routingCol;
     private ImmutableList<ColumnIdent> partitionedBy;
+    private List<RollupInfo> rollups;
     private final boolean isAlias;
     private final Set<String> aliases;
     private boolean hasAutoGeneratedPrimaryKey = false;
@@ -434,6 +435,7 @@ public class DocIndexMetaData {
         references = referencesBuilder.build();
         primaryKey = getPrimaryKey();
         routingCol = getRoutingCol();
+        rollups = RollupInfo.fromMeta(metaMap);
         return this;
     }
 
@@ -548,6 +550,10 @@ public class DocIndexMetaData {
         return partitionedBy;
     }
 
+    public List<RollupInfo> rollups() {
+        return rollups;
+    }
+
     public ColumnPolicy columnPolicy() {
         return columnPolicy;
     }
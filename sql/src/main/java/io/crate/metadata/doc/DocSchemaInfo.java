@@ -46,6 +46,7 @@ import io.crate.metadata.ReferenceInfos;
 import io.crate.metadata.TableIdent;
 import io.crate.metadata.table.SchemaInfo;
 import io.crate.metadata.table.TableInfo;
+import io.crate.operation.routing.ReplicaSelector;
 import org.elasticsearch.action.admin.indices.template.put.TransportPutIndexTemplateAction;
 import org.elasticsearch.cluster.ClusterChangedEvent;
 import org.elasticsearch.cluster.ClusterService;
@@ -61,6 +62,7 @@ public class DocSchemaInfo implements SchemaInfo, ClusterStateListener {
 
     private final ClusterService clusterService;
     private final TransportPutIndexTemplateAction transportPutIndexTemplateAction;
+    private final ReplicaSelector replicaSelector;
 
     private final Predicate<String> tablesFilter = new Predicate<String>() {
         @Override
@@ -90,8 +92,10 @@ public class DocSchemaInfo implements SchemaInfo, ClusterStateListener {
 
     @Inject
     public DocSchemaInfo(ClusterService clusterService,
-                         TransportPutIndexTemplateAction transportPutIndexTemplateAction) {
+                         TransportPutIndexTemplateAction transportPutIndexTemplateAction,
+                         ReplicaSelector replicaSelector) {
         this.clusterService = clusterService;
+        this.replicaSelector = replicaSelector;
         clusterService.add(this);
         this.transportPutIndexTemplateAction = transportPutIndexTemplateAction;
         this.tableInfoFunction = new Function<String, TableInfo>() {
@@ -106,6 +110,10 @@ public class DocSchemaInfo implements SchemaInfo, ClusterStateListener {
         };
     }
 
+    public ReplicaSelector replicaSelector() {
+        return replicaSelector;
+    }
+
     private DocTableInfo innerGetTableInfo(String name) {
         boolean checkAliasSchema = clusterService.state().metaData().settings().getAsBoolean("crate.table_alias.schema_check", true);
         DocTableInfoBuilder builder = new DocTableInfoBuilder(
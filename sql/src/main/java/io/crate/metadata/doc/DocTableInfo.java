@@ -29,6 +29,7 @@ import io.crate.exceptions.UnavailableShardsException;
 import io.crate.metadata.*;
 import io.crate.metadata.table.AbstractDynamicTableInfo;
 import io.crate.metadata.table.ColumnPolicy;
+import io.crate.operation.routing.ReplicaSelector;
 import io.crate.planner.RowGranularity;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.cluster.ClusterService;
@@ -55,6 +56,7 @@ public class DocTableInfo extends AbstractDynamicTableInfo {
     private final List<ColumnIdent> partitionedBy;
     private final int numberOfShards;
     private final BytesRef numberOfReplicas;
+    private final DocSchemaInfo docSchemaInfo;
     private final ClusterService clusterService;
     private final TableParameterInfo tableParameterInfo;
 
@@ -66,6 +68,9 @@ public class DocTableInfo extends AbstractDynamicTableInfo {
     private final boolean isPartitioned;
 
     private final ColumnPolicy columnPolicy;
+    private final List<RollupInfo> rollups;
+
+    private volatile PartitionIndex partitionIndex;
 
     public DocTableInfo(DocSchemaInfo schemaInfo,
                         TableIdent ident,
@@ -83,8 +88,10 @@ public class DocTableInfo extends AbstractDynamicTableInfo {
                         BytesRef numberOfReplicas,
                         List<ColumnIdent> partitionedBy,
                         List<PartitionName> partitions,
-                        ColumnPolicy columnPolicy) {
+                        ColumnPolicy columnPolicy,
+                        List<RollupInfo> rollups) {
         super(schemaInfo);
+        this.docSchemaInfo = schemaInfo;
         this.clusterService = clusterService;
         this.columns = columns;
         this.partitionedByColumns = partitionedByColumns;
@@ -103,6 +110,7 @@ public class DocTableInfo extends AbstractDynamicTableInfo {
         this.partitionedBy = partitionedBy;
         this.partitions = partitions;
         this.columnPolicy = columnPolicy;
+        this.rollups = rollups;
         if (isPartitioned) {
             tableParameterInfo = new AlterPartitionedTableParameterInfo();
         } else {
@@ -186,9 +194,14 @@ public class DocTableInfo extends AbstractDynamicTableInfo {
         } catch (IndexMissingException e) {
             return new Routing();
         }
+        ReplicaSelector replicaSelector = preference == null ? docSchemaInfo.replicaSelector() : null;
         ShardRouting shardRouting;
         for (ShardIterator shardIterator : shardIterators) {
-            shardRouting = shardIterator.nextOrNull();
+            if (replicaSelector == null) {
+                shardRouting = shardIterator.nextOrNull();
+            } else {
+                shardRouting = replicaSelector.select(shardIterator);
+            }
             if (shardRouting != null && shardRouting.active()) {
                 processShardRouting(locations, shardRouting);
             } else {
@@ -258,6 +271,20 @@ public class DocTableInfo extends AbstractDynamicTableInfo {
         return partitions;
     }
 
+    /**
+     * index over the values of the partitions, built on first use.
+     * A new DocTableInfo is created by the {@link DocSchemaInfo} whenever partitions are added or removed,
+     * so the index is always up to date.
+     */
+    public PartitionIndex partitionIndex() {
+        PartitionIndex index = partitionIndex;
+        if (index == null) {
+            index = new PartitionIndex(partitionedByColumns, partitions);
+            partitionIndex = index;
+        }
+        return index;
+    }
+
     @Override
     public boolean isPartitioned() {
         return isPartitioned;
@@ -278,6 +305,16 @@ public class DocTableInfo extends AbstractDynamicTableInfo {
         return columnPolicy;
     }
 
+    /**
+     * rollups created for this table using <code>CREATE ROLLUP</code>.
+     * The rollup tables might have been dropped in the meantime.
+     *
+     * @return always a list, never null
+     */
+    public List<RollupInfo> rollups() {
+        return rollups;
+    }
+
     @Override
     public TableParameterInfo tableParameterInfo () {
         return tableParameterInfo;
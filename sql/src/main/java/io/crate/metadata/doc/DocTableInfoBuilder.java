@@ -168,7 +168,8 @@ public class DocTableInfoBuilder {
                 md.numberOfShards(), md.numberOfReplicas(),
                 md.partitionedBy(),
                 partitions,
-                md.columnPolicy());
+                md.columnPolicy(),
+                md.rollups());
     }
 
 }
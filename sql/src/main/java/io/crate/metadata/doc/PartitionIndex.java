@@ -0,0 +1,177 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.metadata.doc;
+
+import io.crate.metadata.PartitionName;
+import io.crate.metadata.ReferenceInfo;
+import io.crate.types.DataType;
+
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * Index over the partition values of a partitioned table.
+ *
+ * For every partitioned by column the non-null values are kept sorted together with
+ * the ordinal of their partition, so the partitions matching an equality or range condition
+ * are found with a binary search instead of evaluating the condition for every partition.
+ *
+ * Partitions are referenced by their ordinal in {@link #partitions()}, sets of partitions
+ * are represented as {@link BitSet}.
+ */
+public class PartitionIndex {
+
+    private final List<PartitionName> partitions;
+    private final List<ReferenceInfo> partitionedByColumns;
+    private final ColumnValues[] columnValues;
+
+    public PartitionIndex(List<ReferenceInfo> partitionedByColumns, List<PartitionName> partitions) {
+        this.partitions = partitions;
+        this.partitionedByColumns = partitionedByColumns;
+        this.columnValues = new ColumnValues[partitionedByColumns.size()];
+        for (int i = 0; i < columnValues.length; i++) {
+            columnValues[i] = new ColumnValues(partitionedByColumns.get(i).type(), i, partitions);
+        }
+    }
+
+    public List<PartitionName> partitions() {
+        return partitions;
+    }
+
+    /**
+     * @return the index of the column within the partitioned by columns or -1
+     */
+    public int columnIndex(ReferenceInfo info) {
+        for (int i = 0; i < partitionedByColumns.size(); i++) {
+            if (partitionedByColumns.get(i).ident().columnIdent().equals(info.ident().columnIdent())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public DataType columnType(int columnIndex) {
+        return columnValues[columnIndex].type;
+    }
+
+    /**
+     * @return all partitions
+     */
+    public BitSet all() {
+        BitSet bitSet = new BitSet(partitions.size());
+        bitSet.set(0, partitions.size());
+        return bitSet;
+    }
+
+    /**
+     * @return the partitions whose value of the given column equals the given value
+     */
+    public BitSet equalTo(int columnIndex, Object value) {
+        return range(columnIndex, value, true, value, true);
+    }
+
+    /**
+     * @return the partitions whose value of the given column lies within the given bounds.
+     * A bound which is null is unbounded. Partitions with a null value never match.
+     */
+    public BitSet range(int columnIndex,
+                        @Nullable Object from, boolean fromInclusive,
+                        @Nullable Object to, boolean toInclusive) {
+        return columnValues[columnIndex].range(from, fromInclusive, to, toInclusive, partitions.size());
+    }
+
+    /**
+     * @return the partitions contained in the given set in their original order
+     */
+    public List<PartitionName> partitions(BitSet bitSet) {
+        List<PartitionName> result = new ArrayList<>(bitSet.cardinality());
+        for (int i = bitSet.nextSetBit(0); i >= 0; i = bitSet.nextSetBit(i + 1)) {
+            result.add(partitions.get(i));
+        }
+        return result;
+    }
+
+    private static class ColumnValues {
+
+        private final DataType type;
+        private final Object[] values;
+        private final int[] ordinals;
+
+        @SuppressWarnings("unchecked")
+        ColumnValues(final DataType type, int columnIndex, List<PartitionName> partitions) {
+            this.type = type;
+            final List<Object> columnValues = new ArrayList<>(partitions.size());
+            List<Integer> nonNullOrdinals = new ArrayList<>(partitions.size());
+            for (int i = 0; i < partitions.size(); i++) {
+                Object value = type.value(partitions.get(i).values().get(columnIndex));
+                columnValues.add(value);
+                if (value != null) {
+                    nonNullOrdinals.add(i);
+                }
+            }
+            Collections.sort(nonNullOrdinals, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer o1, Integer o2) {
+                    return type.compareValueTo(columnValues.get(o1), columnValues.get(o2));
+                }
+            });
+            values = new Object[nonNullOrdinals.size()];
+            ordinals = new int[nonNullOrdinals.size()];
+            for (int i = 0; i < ordinals.length; i++) {
+                ordinals[i] = nonNullOrdinals.get(i);
+                values[i] = columnValues.get(ordinals[i]);
+            }
+        }
+
+        BitSet range(@Nullable Object from, boolean fromInclusive,
+                     @Nullable Object to, boolean toInclusive,
+                     int numPartitions) {
+            int start = from == null ? 0 : lowerBound(from, !fromInclusive);
+            int end = to == null ? values.length : lowerBound(to, toInclusive);
+            BitSet bitSet = new BitSet(numPartitions);
+            for (int i = start; i < end; i++) {
+                bitSet.set(ordinals[i]);
+            }
+            return bitSet;
+        }
+
+        /**
+         * @return the position of the first value which is greater than or equal to the given value,
+         * or strictly greater if {@code skipEqual} is true
+         */
+        @SuppressWarnings("unchecked")
+        private int lowerBound(Object value, boolean skipEqual) {
+            int low = 0;
+            int high = values.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int cmp = type.compareValueTo(values[mid], value);
+                if (cmp < 0 || (skipEqual && cmp == 0)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
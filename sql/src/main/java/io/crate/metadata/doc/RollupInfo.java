@@ -0,0 +1,258 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.metadata.doc;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import io.crate.metadata.ColumnIdent;
+import io.crate.metadata.TableIdent;
+
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * A rollup of a doc table: a materialized view holding the result of a
+ * <code>GROUP BY</code> over top level columns of the table which is kept up to date on write.
+ *
+ * The definition is stored in the <code>_meta</code> of the source table under {@link #META_KEY}
+ * so that the planner can answer matching aggregations using the rollup instead.
+ */
+public class RollupInfo {
+
+    public static final String META_KEY = "rollups";
+
+    private static final String SCHEMA = "schema";
+    private static final String NAME = "name";
+    private static final String GROUP_BY = "group_by";
+    private static final String GROUP_BY_COLUMNS = "group_by_columns";
+    private static final String AGGREGATES = "aggregates";
+    private static final String FUNCTION = "function";
+    private static final String ARGUMENT = "argument";
+    private static final String COLUMN = "column";
+
+    private final TableIdent ident;
+    private final List<ColumnIdent> groupBy;
+    private final List<String> groupByColumns;
+    private final List<Aggregate> aggregates;
+
+    /**
+     * @param ident          ident of the rollup table
+     * @param groupBy        the grouped columns of the source table
+     * @param groupByColumns the rollup column of each grouped column, same order as <code>groupBy</code>
+     * @param aggregates     the aggregated values stored in the rollup
+     */
+    public RollupInfo(TableIdent ident,
+                      List<ColumnIdent> groupBy,
+                      List<String> groupByColumns,
+                      List<Aggregate> aggregates) {
+        assert groupBy.size() == groupByColumns.size() : "every grouped column needs a rollup column";
+        this.ident = ident;
+        this.groupBy = groupBy;
+        this.groupByColumns = groupByColumns;
+        this.aggregates = aggregates;
+    }
+
+    public TableIdent ident() {
+        return ident;
+    }
+
+    public List<ColumnIdent> groupBy() {
+        return groupBy;
+    }
+
+    public List<String> groupByColumns() {
+        return groupByColumns;
+    }
+
+    public List<Aggregate> aggregates() {
+        return aggregates;
+    }
+
+    /**
+     * @return the rollup column containing the values of the given grouped column
+     *         or null if the column isn't grouped by
+     */
+    @Nullable
+    public String groupByColumn(ColumnIdent column) {
+        int idx = groupBy.indexOf(column);
+        return idx < 0 ? null : groupByColumns.get(idx);
+    }
+
+    /**
+     * @param argument the aggregated column, null for <code>count(*)</code>
+     * @return the rollup column containing the aggregated values or null if not part of the rollup
+     */
+    @Nullable
+    public String aggregateColumn(String function, @Nullable ColumnIdent argument) {
+        for (Aggregate aggregate : aggregates) {
+            if (aggregate.function.equals(function) && Objects.equal(aggregate.argument, argument)) {
+                return aggregate.column;
+            }
+        }
+        return null;
+    }
+
+    public String key() {
+        return ident.fqn();
+    }
+
+    public Map<String, Object> toMap() {
+        List<String> groupByNames = new ArrayList<>(groupBy.size());
+        for (ColumnIdent columnIdent : groupBy) {
+            groupByNames.add(columnIdent.fqn());
+        }
+        List<Map<String, Object>> aggregatesList = new ArrayList<>(aggregates.size());
+        for (Aggregate aggregate : aggregates) {
+            Map<String, Object> aggregateMap = new HashMap<>();
+            aggregateMap.put(FUNCTION, aggregate.function);
+            aggregateMap.put(ARGUMENT, aggregate.argument == null ? null : aggregate.argument.fqn());
+            aggregateMap.put(COLUMN, aggregate.column);
+            aggregatesList.add(aggregateMap);
+        }
+        Map<String, Object> map = new HashMap<>();
+        map.put(SCHEMA, ident.schema());
+        map.put(NAME, ident.name());
+        map.put(GROUP_BY, groupByNames);
+        map.put(GROUP_BY_COLUMNS, groupByColumns);
+        map.put(AGGREGATES, aggregatesList);
+        return map;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static RollupInfo fromMap(Map<String, Object> map) {
+        List<ColumnIdent> groupBy = new ArrayList<>();
+        for (String name : (List<String>) map.get(GROUP_BY)) {
+            groupBy.add(ColumnIdent.fromPath(name));
+        }
+        List<Aggregate> aggregates = new ArrayList<>();
+        for (Map<String, Object> aggregateMap : (List<Map<String, Object>>) map.get(AGGREGATES)) {
+            String argument = (String) aggregateMap.get(ARGUMENT);
+            aggregates.add(new Aggregate(
+                    (String) aggregateMap.get(FUNCTION),
+                    argument == null ? null : ColumnIdent.fromPath(argument),
+                    (String) aggregateMap.get(COLUMN)));
+        }
+        return new RollupInfo(
+                new TableIdent((String) map.get(SCHEMA), (String) map.get(NAME)),
+                ImmutableList.copyOf(groupBy),
+                ImmutableList.copyOf((List<String>) map.get(GROUP_BY_COLUMNS)),
+                ImmutableList.copyOf(aggregates));
+    }
+
+    /**
+     * reads the rollups from the <code>_meta</code> of a source table
+     */
+    @SuppressWarnings("unchecked")
+    public static List<RollupInfo> fromMeta(@Nullable Map<String, Object> metaMap) {
+        if (metaMap == null) {
+            return ImmutableList.of();
+        }
+        Map<String, Object> rollups = (Map<String, Object>) metaMap.get(META_KEY);
+        if (rollups == null || rollups.isEmpty()) {
+            return ImmutableList.of();
+        }
+        ImmutableList.Builder<RollupInfo> builder = ImmutableList.builder();
+        for (Object rollup : new TreeMap<>(rollups).values()) {
+            builder.add(fromMap((Map<String, Object>) rollup));
+        }
+        return builder.build();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RollupInfo that = (RollupInfo) o;
+        return ident.equals(that.ident)
+                && groupBy.equals(that.groupBy)
+                && groupByColumns.equals(that.groupByColumns)
+                && aggregates.equals(that.aggregates);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(ident, groupBy, groupByColumns, aggregates);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("ident", ident)
+                .add("groupBy", groupBy)
+                .add("aggregates", aggregates)
+                .toString();
+    }
+
+    public static class Aggregate {
+
+        private final String function;
+        private final ColumnIdent argument;
+        private final String column;
+
+        public Aggregate(String function, @Nullable ColumnIdent argument, String column) {
+            this.function = function;
+            this.argument = argument;
+            this.column = column;
+        }
+
+        public String function() {
+            return function;
+        }
+
+        /**
+         * @return the aggregated column of the source table, null for <code>count(*)</code>
+         */
+        @Nullable
+        public ColumnIdent argument() {
+            return argument;
+        }
+
+        /**
+         * @return the column of the rollup table containing the aggregated value
+         */
+        public String column() {
+            return column;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Aggregate that = (Aggregate) o;
+            return function.equals(that.function)
+                    && Objects.equal(argument, that.argument)
+                    && column.equals(that.column);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(function, argument, column);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ENGLISH, "%s(%s) as %s",
+                    function, argument == null ? "*" : argument.fqn(), column);
+        }
+    }
+}
@@ -119,7 +119,7 @@ public class CrateSettings {
 
         @Override
         public List<Setting> children() {
-            return ImmutableList.<Setting>of(GRACEFUL_STOP, ROUTING, CLUSTER_INFO);
+            return ImmutableList.<Setting>of(GRACEFUL_STOP, ROUTING, CLUSTER_INFO, STATEMENT_TIMEOUT);
         }
     };
 
@@ -295,7 +295,7 @@ public class CrateSettings {
 
         @Override
         public List<Setting> children() {
-            return ImmutableList.<Setting>of(ROUTING_ALLOCATION);
+            return ImmutableList.<Setting>of(ROUTING_ALLOCATION, ROUTING_SHARD_SELECTION);
         }
 
         @Override
@@ -304,6 +304,21 @@ public class CrateSettings {
         }
     };
 
+    public static final StringSetting ROUTING_SHARD_SELECTION = new StringSetting(
+            Sets.newHashSet("default", "adaptive")
+    ) {
+        @Override
+        public String name() { return "shard_selection"; }
+
+        @Override
+        public String defaultValue() { return "default"; }
+
+        @Override
+        public Setting parent() {
+            return ROUTING;
+        }
+    };
+
     public static final NestedSetting ROUTING_ALLOCATION = new NestedSetting() {
         @Override
         public String name() { return "allocation"; }
@@ -979,6 +994,24 @@ public class CrateSettings {
         }
     };
 
+    public static final TimeSetting STATEMENT_TIMEOUT = new TimeSetting() {
+        @Override
+        public String name() {
+            return "statement_timeout";
+        }
+
+        @Override
+        public TimeValue defaultValue() {
+            // disabled
+            return new TimeValue(0);
+        }
+
+        @Override
+        public Setting parent() {
+            return CLUSTER;
+        }
+    };
+
     public static final ImmutableList<Setting> CRATE_SETTINGS = ImmutableList.<Setting>of(STATS, CLUSTER, DISCOVERY, INDICES);
 
     public static final Map<String, SettingsApplier> SUPPORTED_SETTINGS = ImmutableMap.<String, SettingsApplier>builder()
@@ -1018,6 +1051,8 @@ public class CrateSettings {
                     new SettingsAppliers.ObjectSettingsApplier(CrateSettings.ROUTING_ALLOCATION))
             .put(CrateSettings.ROUTING_ALLOCATION_ENABLE.settingName(),
                     new SettingsAppliers.StringSettingsApplier(CrateSettings.ROUTING_ALLOCATION_ENABLE))
+            .put(CrateSettings.ROUTING_SHARD_SELECTION.settingName(),
+                    new SettingsAppliers.StringSettingsApplier(CrateSettings.ROUTING_SHARD_SELECTION))
             .put(CrateSettings.ROUTING_ALLOCATION_ALLOW_REBALANCE.settingName(),
                     new SettingsAppliers.StringSettingsApplier(CrateSettings.ROUTING_ALLOCATION_ALLOW_REBALANCE))
             .put(CrateSettings.ROUTING_ALLOCATION_CLUSTER_CONCURRENT_REBALANCE.settingName(),
@@ -1114,6 +1149,8 @@ public class CrateSettings {
                     new SettingsAppliers.ObjectSettingsApplier(CrateSettings.CLUSTER_INFO_UPDATE))
             .put(CrateSettings.CLUSTER_INFO_UPDATE_INTERVAL.settingName(),
                     new SettingsAppliers.TimeSettingsApplier(CrateSettings.CLUSTER_INFO_UPDATE_INTERVAL))
+            .put(CrateSettings.STATEMENT_TIMEOUT.settingName(),
+                    new SettingsAppliers.TimeSettingsApplier(CrateSettings.STATEMENT_TIMEOUT))
             .build();
 
     @Nullable
@@ -242,6 +242,9 @@ public class SysClusterTableInfo extends SysTableInfo {
                 CrateSettings.ROUTING_ALLOCATION_DISK.name(),
                 CrateSettings.ROUTING_ALLOCATION_DISK_WATERMARK.name(),
                 CrateSettings.ROUTING_ALLOCATION_DISK_WATERMARK_HIGH.name()));
+        register("settings", DataTypes.STRING, ImmutableList.of(CrateSettings.CLUSTER.name(),
+                CrateSettings.ROUTING.name(),
+                CrateSettings.ROUTING_SHARD_SELECTION.name()));
 
         register("settings", DataTypes.OBJECT, ImmutableList.of(CrateSettings.INDICES.name()));
         register("settings", DataTypes.OBJECT, ImmutableList.of(CrateSettings.INDICES.name(),
@@ -302,6 +305,8 @@ public class SysClusterTableInfo extends SysTableInfo {
                 CrateSettings.CLUSTER_INFO.name(),
                 CrateSettings.CLUSTER_INFO_UPDATE.name(),
                 CrateSettings.CLUSTER_INFO_UPDATE_INTERVAL.name()));
+        register("settings", DataTypes.LONG, ImmutableList.of(CrateSettings.CLUSTER.name(),
+                CrateSettings.STATEMENT_TIMEOUT.name()));
     }
 
     @Inject
@@ -85,6 +85,25 @@ public class SysNodesTableInfo extends SysTableInfo {
         register("thread_pools", LongType.INSTANCE, ImmutableList.of("completed"));
         register("thread_pools", IntegerType.INSTANCE, ImmutableList.of("threads"));
         register("thread_pools", IntegerType.INSTANCE, ImmutableList.of("queue"));
+        register("admission", objectArrayType, null);
+        register("admission", StringType.INSTANCE, ImmutableList.of("name"));
+        register("admission", IntegerType.INSTANCE, ImmutableList.of("running"));
+        register("admission", IntegerType.INSTANCE, ImmutableList.of("queued"));
+        register("admission", LongType.INSTANCE, ImmutableList.of("admitted"));
+        register("admission", LongType.INSTANCE, ImmutableList.of("rejected"));
+        register("admission", LongType.INSTANCE, ImmutableList.of("wait_time"));
+        register("replica_selection", objectArrayType, null);
+        register("replica_selection", StringType.INSTANCE, ImmutableList.of("node_id"));
+        register("replica_selection", DoubleType.INSTANCE, ImmutableList.of("response_time"));
+        register("replica_selection", DoubleType.INSTANCE, ImmutableList.of("queue_size"));
+        register("replica_selection", IntegerType.INSTANCE, ImmutableList.of("outstanding"));
+        register("result_cache", DataTypes.OBJECT, null);
+        register("result_cache", DataTypes.LONG, ImmutableList.of("size"));
+        register("result_cache", DataTypes.LONG, ImmutableList.of("max_size"));
+        register("result_cache", DataTypes.LONG, ImmutableList.of("entries"));
+        register("result_cache", DataTypes.LONG, ImmutableList.of("hits"));
+        register("result_cache", DataTypes.LONG, ImmutableList.of("misses"));
+        register("result_cache", DataTypes.LONG, ImmutableList.of("evictions"));
 
         register("network", DataTypes.OBJECT, null);
         register("network", DataTypes.OBJECT, ImmutableList.of("tcp"));
@@ -59,6 +59,7 @@ public class SysShardsTableInfo extends SysTableInfo {
         register("size", LongType.INSTANCE, null);
         register("state", StringType.INSTANCE, null);
         register("orphan_partition", BooleanType.INSTANCE, null);
+        register("hot_columns_size", LongType.INSTANCE, null);
 
         INFOS.put(SysNodesTableInfo.SYS_COL_IDENT, SysNodesTableInfo.tableColumnInfo(IDENT));
     }
@@ -35,6 +35,7 @@ public abstract class AbstractImplementationSymbolVisitor<C extends AbstractImpl
         extends SymbolVisitor<C, Input<?>> {
 
     protected final Functions functions;
+    private final ExpressionCompiler expressionCompiler;
 
     public abstract static class Context {
 
@@ -80,6 +81,7 @@ public abstract class AbstractImplementationSymbolVisitor<C extends AbstractImpl
 
     public AbstractImplementationSymbolVisitor(Functions functions) {
         this.functions = functions;
+        this.expressionCompiler = new ExpressionCompiler(functions);
     }
 
     public Functions functions() {
@@ -87,7 +89,15 @@ public abstract class AbstractImplementationSymbolVisitor<C extends AbstractImpl
     }
 
     @Override
-    public Input<?> visitFunction(Function function, C context) {
+    public Input<?> visitFunction(Function function, final C context) {
+        if (expressionCompiler.canCompile(function)) {
+            return expressionCompiler.compile(function, new ExpressionCompiler.Leaves() {
+                @Override
+                public Input<?> input(Symbol symbol) {
+                    return process(symbol, context);
+                }
+            });
+        }
         final FunctionImplementation functionImplementation = functions.get(function.info().ident());
         if (functionImplementation != null && functionImplementation instanceof Scalar<?, ?>) {
             List<Symbol> arguments = function.arguments();
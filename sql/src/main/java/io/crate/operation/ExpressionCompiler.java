@@ -0,0 +1,778 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionImplementation;
+import io.crate.metadata.Functions;
+import io.crate.operation.operator.*;
+import io.crate.operation.predicate.IsNullPredicate;
+import io.crate.operation.predicate.NotPredicate;
+import io.crate.operation.scalar.arithmetic.*;
+import io.crate.operation.scalar.cast.ToDoubleFunction;
+import io.crate.operation.scalar.cast.ToLongFunction;
+import io.crate.planner.symbol.Function;
+import io.crate.planner.symbol.Literal;
+import io.crate.planner.symbol.Symbol;
+import io.crate.planner.symbol.SymbolType;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import javax.annotation.Nullable;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compiles trees of arithmetic, comparison, boolean and cast functions on numeric
+ * and boolean values into generated classes using ASM.
+ *
+ * Compared to a tree of {@link io.crate.operation.aggregation.FunctionExpression}s the whole
+ * tree is evaluated by a single method which passes values as primitives in local variables
+ * instead of boxed objects, every argument is evaluated exactly once and <code>AND</code> /
+ * <code>OR</code> skip their right argument if the left one already determines the result.
+ *
+ * Arguments which can't be compiled, like references, input columns or other functions,
+ * are turned into inputs by the caller and become the leaves of the compiled tree.
+ *
+ * Generated classes are cached by the structure of the tree. Leaves and numeric literals are
+ * passed to the constructor of the generated class, so trees which only differ in their
+ * leaves or literal values, like the same statement executed with different parameters,
+ * share the generated class.
+ */
+public class ExpressionCompiler {
+
+    /**
+     * creates the inputs of the arguments which aren't compiled
+     */
+    public interface Leaves {
+        Input<?> input(Symbol symbol);
+    }
+
+    /**
+     * base class of the generated classes, must be public as they are defined by their own class loader
+     */
+    public abstract static class CompiledInput implements Input<Object> {
+
+        protected final Input<?>[] leaves;
+        protected final long[] longs;
+        protected final double[] doubles;
+
+        public CompiledInput(Input<?>[] leaves, long[] longs, double[] doubles) {
+            this.leaves = leaves;
+            this.longs = longs;
+            this.doubles = doubles;
+        }
+    }
+
+    private enum Type {
+        LONG, DOUBLE, BOOLEAN
+    }
+
+    private static final Set<DataType> LONG_TYPES = ImmutableSet.<DataType>of(
+            DataTypes.LONG, DataTypes.INTEGER, DataTypes.SHORT, DataTypes.BYTE, DataTypes.TIMESTAMP);
+    private static final Set<DataType> DOUBLE_TYPES = ImmutableSet.<DataType>of(DataTypes.DOUBLE, DataTypes.FLOAT);
+
+    private static final Set<String> ARITHMETIC = ImmutableSet.of(
+            AddFunction.NAME, SubtractFunction.NAME, MultiplyFunction.NAME, DivideFunction.NAME, ModulusFunction.NAME);
+    private static final Set<String> COMPARISON = ImmutableSet.of(
+            EqOperator.NAME, LtOperator.NAME, LteOperator.NAME, GtOperator.NAME, GteOperator.NAME);
+
+    private static final String COMPILED_INPUT = org.objectweb.asm.Type.getInternalName(CompiledInput.class);
+    private static final String INPUT = org.objectweb.asm.Type.getInternalName(Input.class);
+    private static final String CONSTRUCTOR_DESCRIPTOR = "([L" + INPUT + ";[J[D)V";
+
+    private static final AtomicInteger CLASS_COUNTER = new AtomicInteger();
+
+    /**
+     * generated classes by the structure of the compiled tree, shared by all compilers
+     */
+    private static final Cache<String, Constructor<? extends CompiledInput>> COMPILED = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .build();
+
+    private final Functions functions;
+
+    public ExpressionCompiler(Functions functions) {
+        this.functions = functions;
+    }
+
+    /**
+     * @return true if {@link #compile(Function, Leaves)} can compile the given function
+     */
+    public boolean canCompile(Function function) {
+        FunctionIdent ident = function.info().ident();
+        String name = ident.name();
+        List<DataType> argumentTypes = ident.argumentTypes();
+        if (ARITHMETIC.contains(name)) {
+            return argumentTypes.size() == 2
+                    && isNumeric(argumentTypes.get(0))
+                    && isNumeric(argumentTypes.get(1))
+                    && type(function.info().returnType()) != null
+                    && isImplementedBy(ident, AddFunction.class, SubtractFunction.class, MultiplyFunction.class,
+                        DivideFunction.class, ModulusFunction.class);
+        }
+        if (COMPARISON.contains(name)) {
+            return argumentTypes.size() == 2
+                    && isNumeric(argumentTypes.get(0))
+                    && argumentTypes.get(0).equals(argumentTypes.get(1))
+                    && isImplementedBy(ident, CmpOperator.class);
+        }
+        switch (name) {
+            case AndOperator.NAME:
+            case OrOperator.NAME:
+                return argumentTypes.size() == 2
+                        && type(argumentTypes.get(0)) == Type.BOOLEAN
+                        && type(argumentTypes.get(1)) == Type.BOOLEAN
+                        && isImplementedBy(ident, AndOperator.class, OrOperator.class);
+            case NotPredicate.NAME:
+                return argumentTypes.size() == 1
+                        && type(argumentTypes.get(0)) == Type.BOOLEAN
+                        && isImplementedBy(ident, NotPredicate.class);
+            case IsNullPredicate.NAME:
+                return argumentTypes.size() == 1
+                        && type(argumentTypes.get(0)) != null
+                        && isImplementedBy(ident, IsNullPredicate.class);
+            case ToLongFunction.NAME:
+            case ToDoubleFunction.NAME:
+                return argumentTypes.size() == 1
+                        && isNumeric(argumentTypes.get(0))
+                        && isImplementedBy(ident, ToLongFunction.class, ToDoubleFunction.class);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * compiles the given function into an input, the function must be normalized.
+     *
+     * @return the compiled input or null if the function can't be compiled
+     */
+    @Nullable
+    public Input<?> compile(Function function, Leaves leaves) {
+        if (!canCompile(function)) {
+            return null;
+        }
+        Arguments arguments = new Arguments(leaves);
+        final Node node = compileFunction(function, arguments);
+        Constructor<? extends CompiledInput> constructor;
+        try {
+            constructor = COMPILED.get(node.toString(), new Callable<Constructor<? extends CompiledInput>>() {
+                @Override
+                public Constructor<? extends CompiledInput> call() throws Exception {
+                    return generate(node);
+                }
+            });
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+        try {
+            return constructor.newInstance(arguments.leaves(), arguments.longs(), arguments.doubles());
+        } catch (ReflectiveOperationException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private boolean isImplementedBy(FunctionIdent ident, Class<?>... classes) {
+        FunctionImplementation implementation = functions.get(ident);
+        for (Class<?> clazz : classes) {
+            if (clazz.isInstance(implementation)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    private static Type type(DataType dataType) {
+        if (LONG_TYPES.contains(dataType)) {
+            return Type.LONG;
+        }
+        if (DOUBLE_TYPES.contains(dataType)) {
+            return Type.DOUBLE;
+        }
+        if (dataType.equals(DataTypes.BOOLEAN)) {
+            return Type.BOOLEAN;
+        }
+        return null;
+    }
+
+    private static boolean isNumeric(DataType dataType) {
+        return LONG_TYPES.contains(dataType) || DOUBLE_TYPES.contains(dataType);
+    }
+
+    /**
+     * the values passed to the constructor of the generated class
+     */
+    private static class Arguments {
+
+        private final Leaves leaves;
+        private final List<Input<?>> inputs = new ArrayList<>();
+        private final List<Long> longs = new ArrayList<>();
+        private final List<Double> doubles = new ArrayList<>();
+
+        Arguments(Leaves leaves) {
+            this.leaves = leaves;
+        }
+
+        int addLeaf(Symbol symbol) {
+            inputs.add(leaves.input(symbol));
+            return inputs.size() - 1;
+        }
+
+        int addLong(long value) {
+            longs.add(value);
+            return longs.size() - 1;
+        }
+
+        int addDouble(double value) {
+            doubles.add(value);
+            return doubles.size() - 1;
+        }
+
+        Input<?>[] leaves() {
+            return inputs.toArray(new Input<?>[inputs.size()]);
+        }
+
+        long[] longs() {
+            long[] result = new long[longs.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = longs.get(i);
+            }
+            return result;
+        }
+
+        double[] doubles() {
+            double[] result = new double[doubles.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = doubles.get(i);
+            }
+            return result;
+        }
+    }
+
+    private enum Operation {
+        LEAF, CONSTANT, NULL,
+        ADD, SUBTRACT, MULTIPLY, DIVIDE, MODULUS,
+        EQ, LT, LTE, GT, GTE,
+        AND, OR, NOT, IS_NULL,
+        TO_LONG, TO_DOUBLE;
+
+        static Operation of(String name) {
+            switch (name) {
+                case AddFunction.NAME:
+                    return ADD;
+                case SubtractFunction.NAME:
+                    return SUBTRACT;
+                case MultiplyFunction.NAME:
+                    return MULTIPLY;
+                case DivideFunction.NAME:
+                    return DIVIDE;
+                case ModulusFunction.NAME:
+                    return MODULUS;
+                case EqOperator.NAME:
+                    return EQ;
+                case LtOperator.NAME:
+                    return LT;
+                case LteOperator.NAME:
+                    return LTE;
+                case GtOperator.NAME:
+                    return GT;
+                case GteOperator.NAME:
+                    return GTE;
+                case AndOperator.NAME:
+                    return AND;
+                case OrOperator.NAME:
+                    return OR;
+                case NotPredicate.NAME:
+                    return NOT;
+                case IsNullPredicate.NAME:
+                    return IS_NULL;
+                default:
+                    throw new IllegalArgumentException("Cannot compile function " + name);
+            }
+        }
+    }
+
+    /**
+     * a node of the compiled tree, its string representation describes the structure
+     * of the tree and is the key of the generated class
+     */
+    private static class Node {
+
+        private final Operation operation;
+        private final Type type;
+        private final List<Node> arguments;
+        /**
+         * position of the leaf or the constant in the constructor arguments,
+         * or the value of a boolean constant
+         */
+        private final int index;
+
+        Node(Operation operation, Type type, int index, Node... arguments) {
+            this.operation = operation;
+            this.type = type;
+            this.index = index;
+            this.arguments = ImmutableList.copyOf(arguments);
+        }
+
+        Node(Operation operation, Type type, Node... arguments) {
+            this(operation, type, -1, arguments);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append(operation).append(':').append(type);
+            if (operation == Operation.CONSTANT && type == Type.BOOLEAN) {
+                builder.append(':').append(index);
+            }
+            if (!arguments.isEmpty()) {
+                builder.append('(');
+                for (int i = 0; i < arguments.size(); i++) {
+                    if (i > 0) {
+                        builder.append(',');
+                    }
+                    builder.append(arguments.get(i));
+                }
+                builder.append(')');
+            }
+            return builder.toString();
+        }
+    }
+
+    private Node compileFunction(Function function, Arguments constructorArguments) {
+        String name = function.info().ident().name();
+        List<DataType> argumentTypes = function.info().ident().argumentTypes();
+        List<Symbol> arguments = function.arguments();
+        if (ARITHMETIC.contains(name)) {
+            Type type = type(function.info().returnType()) == Type.LONG ? Type.LONG : Type.DOUBLE;
+            return new Node(Operation.of(name), type,
+                    compile(arguments.get(0), argumentTypes.get(0), type, constructorArguments),
+                    compile(arguments.get(1), argumentTypes.get(1), type, constructorArguments));
+        }
+        if (COMPARISON.contains(name)) {
+            Type type = type(argumentTypes.get(0));
+            return new Node(Operation.of(name), Type.BOOLEAN,
+                    compile(arguments.get(0), argumentTypes.get(0), type, constructorArguments),
+                    compile(arguments.get(1), argumentTypes.get(1), type, constructorArguments));
+        }
+        switch (name) {
+            case AndOperator.NAME:
+            case OrOperator.NAME:
+                return new Node(Operation.of(name), Type.BOOLEAN,
+                        compile(arguments.get(0), argumentTypes.get(0), Type.BOOLEAN, constructorArguments),
+                        compile(arguments.get(1), argumentTypes.get(1), Type.BOOLEAN, constructorArguments));
+            case NotPredicate.NAME:
+                return new Node(Operation.NOT, Type.BOOLEAN,
+                        compile(arguments.get(0), argumentTypes.get(0), Type.BOOLEAN, constructorArguments));
+            case IsNullPredicate.NAME:
+                return new Node(Operation.IS_NULL, Type.BOOLEAN,
+                        compile(arguments.get(0), argumentTypes.get(0), type(argumentTypes.get(0)), constructorArguments));
+            case ToLongFunction.NAME:
+                return compile(arguments.get(0), argumentTypes.get(0), Type.LONG, constructorArguments);
+            case ToDoubleFunction.NAME:
+                return compile(arguments.get(0), argumentTypes.get(0), Type.DOUBLE, constructorArguments);
+            default:
+                throw new IllegalArgumentException("Cannot compile function " + name);
+        }
+    }
+
+    /**
+     * compiles an argument of the given type into a node returning the wanted type
+     */
+    private Node compile(Symbol argument, DataType argumentType, Type wanted, Arguments constructorArguments) {
+        if (argument.symbolType() == SymbolType.LITERAL) {
+            return constant(((Literal) argument).value(), wanted, constructorArguments);
+        }
+        Type type = type(argumentType);
+        Node node;
+        if (argument.symbolType() == SymbolType.FUNCTION && canCompile((Function) argument)) {
+            node = compileFunction((Function) argument, constructorArguments);
+        } else {
+            node = new Node(Operation.LEAF, type, constructorArguments.addLeaf(argument));
+        }
+        if (type == wanted) {
+            return node;
+        }
+        if (type == Type.LONG && wanted == Type.DOUBLE) {
+            return new Node(Operation.TO_DOUBLE, Type.DOUBLE, node);
+        }
+        if (type == Type.DOUBLE && wanted == Type.LONG) {
+            return new Node(Operation.TO_LONG, Type.LONG, node);
+        }
+        throw new IllegalArgumentException("Cannot convert " + argumentType + " to " + wanted);
+    }
+
+    private static Node constant(@Nullable Object value, Type type, Arguments constructorArguments) {
+        if (value == null) {
+            return new Node(Operation.NULL, type);
+        }
+        switch (type) {
+            case LONG:
+                return new Node(Operation.CONSTANT, type, constructorArguments.addLong(((Number) value).longValue()));
+            case DOUBLE:
+                return new Node(Operation.CONSTANT, type, constructorArguments.addDouble(((Number) value).doubleValue()));
+            default:
+                return new Node(Operation.CONSTANT, type, (Boolean) value ? 1 : 0);
+        }
+    }
+
+    /**
+     * generates a subclass of {@link CompiledInput} evaluating the given tree in its <code>value()</code> method
+     */
+    private static Constructor<? extends CompiledInput> generate(Node node) throws NoSuchMethodException {
+        String className = "io/crate/operation/CompiledExpression" + CLASS_COUNTER.incrementAndGet();
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        classWriter.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER,
+                className, null, COMPILED_INPUT, null);
+
+        MethodVisitor constructor = classWriter.visitMethod(
+                Opcodes.ACC_PUBLIC, "<init>", CONSTRUCTOR_DESCRIPTOR, null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(Opcodes.ALOAD, 0);
+        constructor.visitVarInsn(Opcodes.ALOAD, 1);
+        constructor.visitVarInsn(Opcodes.ALOAD, 2);
+        constructor.visitVarInsn(Opcodes.ALOAD, 3);
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, COMPILED_INPUT, "<init>", CONSTRUCTOR_DESCRIPTOR);
+        constructor.visitInsn(Opcodes.RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        MethodVisitor value = classWriter.visitMethod(
+                Opcodes.ACC_PUBLIC, "value", "()Ljava/lang/Object;", null, null);
+        value.visitCode();
+        Label isNull = new Label();
+        int result = new Generator(value).generate(node, isNull);
+        switch (node.type) {
+            case LONG:
+                value.visitVarInsn(Opcodes.LLOAD, result);
+                value.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Long", "valueOf", "(J)Ljava/lang/Long;");
+                break;
+            case DOUBLE:
+                value.visitVarInsn(Opcodes.DLOAD, result);
+                value.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Double", "valueOf", "(D)Ljava/lang/Double;");
+                break;
+            default:
+                value.visitVarInsn(Opcodes.ILOAD, result);
+                value.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;");
+        }
+        value.visitInsn(Opcodes.ARETURN);
+        value.visitLabel(isNull);
+        value.visitInsn(Opcodes.ACONST_NULL);
+        value.visitInsn(Opcodes.ARETURN);
+        value.visitMaxs(0, 0);
+        value.visitEnd();
+        classWriter.visitEnd();
+
+        Class<? extends CompiledInput> clazz = new Loader().define(className.replace('/', '.'), classWriter.toByteArray());
+        return clazz.getConstructor(Input[].class, long[].class, double[].class);
+    }
+
+    /**
+     * defines a single generated class, so that it can be unloaded once it has been evicted from the cache
+     */
+    private static class Loader extends ClassLoader {
+
+        Loader() {
+            super(ExpressionCompiler.class.getClassLoader());
+        }
+
+        Class<? extends CompiledInput> define(String name, byte[] bytecode) {
+            return defineClass(name, bytecode, 0, bytecode.length).asSubclass(CompiledInput.class);
+        }
+    }
+
+    /**
+     * generates the code of a tree. The value of every node is stored in its own local variable,
+     * so that the operand stack is empty whenever the code jumps to the label of a null value.
+     */
+    private static class Generator {
+
+        private final MethodVisitor method;
+        private int nextLocal = 1;
+
+        Generator(MethodVisitor method) {
+            this.method = method;
+        }
+
+        private int newLocal(Type type) {
+            int local = nextLocal;
+            nextLocal += type == Type.BOOLEAN ? 1 : 2;
+            return local;
+        }
+
+        private void load(Type type, int local) {
+            method.visitVarInsn(type == Type.LONG ? Opcodes.LLOAD : type == Type.DOUBLE ? Opcodes.DLOAD : Opcodes.ILOAD, local);
+        }
+
+        private int store(Type type) {
+            int local = newLocal(type);
+            method.visitVarInsn(type == Type.LONG ? Opcodes.LSTORE : type == Type.DOUBLE ? Opcodes.DSTORE : Opcodes.ISTORE, local);
+            return local;
+        }
+
+        /**
+         * generates the code of the given node which jumps to <code>isNull</code> if the value is null
+         *
+         * @return the local variable holding the value
+         */
+        int generate(Node node, Label isNull) {
+            switch (node.operation) {
+                case LEAF:
+                    return leaf(node, isNull);
+                case CONSTANT:
+                    return constant(node);
+                case NULL:
+                    method.visitJumpInsn(Opcodes.GOTO, isNull);
+                    return newLocal(node.type);
+                case ADD:
+                case SUBTRACT:
+                case MULTIPLY:
+                case DIVIDE:
+                case MODULUS:
+                    return arithmetic(node, isNull);
+                case EQ:
+                case LT:
+                case LTE:
+                case GT:
+                case GTE:
+                    return comparison(node, isNull);
+                case AND:
+                    return andOr(node, isNull, true);
+                case OR:
+                    return andOr(node, isNull, false);
+                case NOT: {
+                    int argument = generate(node.arguments.get(0), isNull);
+                    method.visitVarInsn(Opcodes.ILOAD, argument);
+                    method.visitInsn(Opcodes.ICONST_1);
+                    method.visitInsn(Opcodes.IXOR);
+                    return store(Type.BOOLEAN);
+                }
+                case IS_NULL:
+                    return isNull(node);
+                case TO_LONG: {
+                    int argument = generate(node.arguments.get(0), isNull);
+                    method.visitVarInsn(Opcodes.DLOAD, argument);
+                    method.visitInsn(Opcodes.D2L);
+                    return store(Type.LONG);
+                }
+                case TO_DOUBLE: {
+                    int argument = generate(node.arguments.get(0), isNull);
+                    method.visitVarInsn(Opcodes.LLOAD, argument);
+                    method.visitInsn(Opcodes.L2D);
+                    return store(Type.DOUBLE);
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown operation " + node.operation);
+            }
+        }
+
+        private int leaf(Node node, Label isNull) {
+            Label notNull = new Label();
+            method.visitVarInsn(Opcodes.ALOAD, 0);
+            method.visitFieldInsn(Opcodes.GETFIELD, COMPILED_INPUT, "leaves", "[L" + INPUT + ";");
+            method.visitLdcInsn(node.index);
+            method.visitInsn(Opcodes.AALOAD);
+            method.visitMethodInsn(Opcodes.INVOKEINTERFACE, INPUT, "value", "()Ljava/lang/Object;");
+            method.visitInsn(Opcodes.DUP);
+            method.visitJumpInsn(Opcodes.IFNONNULL, notNull);
+            method.visitInsn(Opcodes.POP);
+            method.visitJumpInsn(Opcodes.GOTO, isNull);
+            method.visitLabel(notNull);
+            switch (node.type) {
+                case LONG:
+                    method.visitTypeInsn(Opcodes.CHECKCAST, "java/lang/Number");
+                    method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/Number", "longValue", "()J");
+                    break;
+                case DOUBLE:
+                    method.visitTypeInsn(Opcodes.CHECKCAST, "java/lang/Number");
+                    method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/Number", "doubleValue", "()D");
+                    break;
+                default:
+                    method.visitTypeInsn(Opcodes.CHECKCAST, "java/lang/Boolean");
+                    method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/Boolean", "booleanValue", "()Z");
+            }
+            return store(node.type);
+        }
+
+        private int constant(Node node) {
+            switch (node.type) {
+                case LONG:
+                    method.visitVarInsn(Opcodes.ALOAD, 0);
+                    method.visitFieldInsn(Opcodes.GETFIELD, COMPILED_INPUT, "longs", "[J");
+                    method.visitLdcInsn(node.index);
+                    method.visitInsn(Opcodes.LALOAD);
+                    break;
+                case DOUBLE:
+                    method.visitVarInsn(Opcodes.ALOAD, 0);
+                    method.visitFieldInsn(Opcodes.GETFIELD, COMPILED_INPUT, "doubles", "[D");
+                    method.visitLdcInsn(node.index);
+                    method.visitInsn(Opcodes.DALOAD);
+                    break;
+                default:
+                    method.visitInsn(node.index == 1 ? Opcodes.ICONST_1 : Opcodes.ICONST_0);
+            }
+            return store(node.type);
+        }
+
+        private int arithmetic(Node node, Label isNull) {
+            int left = generate(node.arguments.get(0), isNull);
+            int right = generate(node.arguments.get(1), isNull);
+            boolean isLong = node.type == Type.LONG;
+            load(node.type, left);
+            load(node.type, right);
+            switch (node.operation) {
+                case ADD:
+                    method.visitInsn(isLong ? Opcodes.LADD : Opcodes.DADD);
+                    break;
+                case SUBTRACT:
+                    method.visitInsn(isLong ? Opcodes.LSUB : Opcodes.DSUB);
+                    break;
+                case MULTIPLY:
+                    method.visitInsn(isLong ? Opcodes.LMUL : Opcodes.DMUL);
+                    break;
+                case DIVIDE:
+                    method.visitInsn(isLong ? Opcodes.LDIV : Opcodes.DDIV);
+                    break;
+                default:
+                    method.visitInsn(isLong ? Opcodes.LREM : Opcodes.DREM);
+            }
+            return store(node.type);
+        }
+
+        private int comparison(Node node, Label isNull) {
+            Node leftNode = node.arguments.get(0);
+            int left = generate(leftNode, isNull);
+            int right = generate(node.arguments.get(1), isNull);
+            load(leftNode.type, left);
+            load(leftNode.type, right);
+            if (leftNode.type == Type.LONG) {
+                method.visitInsn(Opcodes.LCMP);
+            } else {
+                // same ordering as Double.compareTo, which is used by the operators
+                method.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Double", "compare", "(DD)I");
+            }
+            int doesNotMatch;
+            switch (node.operation) {
+                case EQ:
+                    doesNotMatch = Opcodes.IFNE;
+                    break;
+                case LT:
+                    doesNotMatch = Opcodes.IFGE;
+                    break;
+                case LTE:
+                    doesNotMatch = Opcodes.IFGT;
+                    break;
+                case GT:
+                    doesNotMatch = Opcodes.IFLE;
+                    break;
+                default:
+                    doesNotMatch = Opcodes.IFLT;
+            }
+            Label isFalse = new Label();
+            Label end = new Label();
+            method.visitJumpInsn(doesNotMatch, isFalse);
+            method.visitInsn(Opcodes.ICONST_1);
+            method.visitJumpInsn(Opcodes.GOTO, end);
+            method.visitLabel(isFalse);
+            method.visitInsn(Opcodes.ICONST_0);
+            method.visitLabel(end);
+            return store(Type.BOOLEAN);
+        }
+
+        /**
+         * three valued AND and OR, see {@link AndOperator} and {@link OrOperator}.
+         * The left value decides the result if it is false for AND or true for OR.
+         */
+        private int andOr(Node node, Label isNull, boolean and) {
+            int deciding = and ? Opcodes.ICONST_0 : Opcodes.ICONST_1;
+            int notDeciding = and ? Opcodes.ICONST_1 : Opcodes.ICONST_0;
+            int ifNotDeciding = and ? Opcodes.IFNE : Opcodes.IFEQ;
+            int leftIsNull = newLocal(Type.BOOLEAN);
+            int result = newLocal(Type.BOOLEAN);
+            Label leftNull = new Label();
+            Label evaluateRight = new Label();
+            Label rightNotDeciding = new Label();
+            Label end = new Label();
+
+            method.visitInsn(Opcodes.ICONST_0);
+            method.visitVarInsn(Opcodes.ISTORE, leftIsNull);
+            int left = generate(node.arguments.get(0), leftNull);
+            method.visitVarInsn(Opcodes.ILOAD, left);
+            method.visitJumpInsn(ifNotDeciding, evaluateRight);
+            method.visitInsn(deciding);
+            method.visitVarInsn(Opcodes.ISTORE, result);
+            method.visitJumpInsn(Opcodes.GOTO, end);
+
+            method.visitLabel(leftNull);
+            method.visitInsn(Opcodes.ICONST_1);
+            method.visitVarInsn(Opcodes.ISTORE, leftIsNull);
+
+            method.visitLabel(evaluateRight);
+            int right = generate(node.arguments.get(1), isNull);
+            method.visitVarInsn(Opcodes.ILOAD, right);
+            method.visitJumpInsn(ifNotDeciding, rightNotDeciding);
+            method.visitInsn(deciding);
+            method.visitVarInsn(Opcodes.ISTORE, result);
+            method.visitJumpInsn(Opcodes.GOTO, end);
+
+            // neither argument decides the result, it is null if the left one is null
+            method.visitLabel(rightNotDeciding);
+            method.visitVarInsn(Opcodes.ILOAD, leftIsNull);
+            method.visitJumpInsn(Opcodes.IFNE, isNull);
+            method.visitInsn(notDeciding);
+            method.visitVarInsn(Opcodes.ISTORE, result);
+
+            method.visitLabel(end);
+            return result;
+        }
+
+        private int isNull(Node node) {
+            Label argumentIsNull = new Label();
+            Label end = new Label();
+            int result = newLocal(Type.BOOLEAN);
+            generate(node.arguments.get(0), argumentIsNull);
+            method.visitInsn(Opcodes.ICONST_0);
+            method.visitVarInsn(Opcodes.ISTORE, result);
+            method.visitJumpInsn(Opcodes.GOTO, end);
+            method.visitLabel(argumentIsNull);
+            method.visitInsn(Opcodes.ICONST_1);
+            method.visitVarInsn(Opcodes.ISTORE, result);
+            method.visitLabel(end);
+            return result;
+        }
+    }
+}
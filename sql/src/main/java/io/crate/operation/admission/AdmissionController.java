@@ -0,0 +1,349 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.admission;
+
+import io.crate.breaker.CrateCircuitBreakerService;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.RatioValue;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of statements which are executed concurrently by this node.
+ *
+ * Statements which can't be admitted right away are queued per {@link QueryClass}.
+ * Free slots are handed out by weighted fair queuing so that cheap statements
+ * aren't stuck behind a burst of expensive ones.
+ *
+ * Key lookups have their own slots and ignore the memory budget.
+ * All other classes share the remaining slots and are held back while the memory
+ * used by the query circuit breaker exceeds the memory budget.
+ * A statement is always admitted if no other (non key lookup) statement is running,
+ * so the node keeps making progress even if the memory is used up by something else.
+ */
+@ThreadSafe
+public class AdmissionController extends AbstractComponent {
+
+    public static final String MAX_CONCURRENT_JOBS_SETTING = "node.admission.max_concurrent_jobs";
+    public static final String QUEUE_SIZE_SETTING = "node.admission.queue_size";
+    public static final String MEMORY_BUDGET_SETTING = "node.admission.memory_budget";
+
+    public static final int DEFAULT_QUEUE_SIZE = 1000;
+    public static final String DEFAULT_MEMORY_BUDGET = "80%";
+
+    private enum State {
+        NEW, QUEUED, RUNNING, DONE
+    }
+
+    /**
+     * A statement that is scheduled by the AdmissionController.
+     * Every ticket that was passed to {@link #admit(Ticket, Runnable)}
+     * must be released using {@link #release(Ticket)}.
+     */
+    public static class Ticket {
+
+        private final QueryClass queryClass;
+        private Runnable task;
+        private State state = State.NEW;
+        private long enqueuedNanos;
+        private double virtualStart;
+        private double virtualFinish;
+
+        private Ticket(QueryClass queryClass) {
+            this.queryClass = queryClass;
+        }
+
+        public QueryClass queryClass() {
+            return queryClass;
+        }
+    }
+
+    private static final QueryClass[] QUERY_CLASSES = QueryClass.values();
+
+    private final int maxConcurrentJobs;
+    private final int queueSize;
+    private final double memoryBudget;
+    private final CrateCircuitBreakerService breakerService;
+    private final Executor executor;
+
+    private final Object lock = new Object();
+    private final ArrayDeque<Ticket>[] queues;
+    private final double[] lastVirtualFinish = new double[QUERY_CLASSES.length];
+    private final int[] running = new int[QUERY_CLASSES.length];
+    private final long[] admitted = new long[QUERY_CLASSES.length];
+    private final long[] rejected = new long[QUERY_CLASSES.length];
+    private final long[] waitNanos = new long[QUERY_CLASSES.length];
+    private int queued = 0;
+    private int runningShared = 0;
+    private double virtualTime = 0;
+
+    @Inject
+    public AdmissionController(Settings settings,
+                               ThreadPool threadPool,
+                               CrateCircuitBreakerService breakerService) {
+        this(settings,
+                settings.getAsInt(MAX_CONCURRENT_JOBS_SETTING,
+                        ((EsExecutors.boundedNumberOfProcessors(settings) * 3) / 2) + 1),
+                settings.getAsInt(QUEUE_SIZE_SETTING, DEFAULT_QUEUE_SIZE),
+                RatioValue.parseRatioValue(settings.get(MEMORY_BUDGET_SETTING, DEFAULT_MEMORY_BUDGET)).getAsRatio(),
+                breakerService,
+                threadPool.generic());
+    }
+
+    @SuppressWarnings("unchecked")
+    public AdmissionController(Settings settings,
+                               int maxConcurrentJobs,
+                               int queueSize,
+                               double memoryBudget,
+                               CrateCircuitBreakerService breakerService,
+                               Executor executor) {
+        super(settings);
+        this.maxConcurrentJobs = Math.max(1, maxConcurrentJobs);
+        this.queueSize = queueSize;
+        this.memoryBudget = memoryBudget;
+        this.breakerService = breakerService;
+        this.executor = executor;
+        this.queues = new ArrayDeque[QUERY_CLASSES.length];
+        for (int i = 0; i < queues.length; i++) {
+            queues[i] = new ArrayDeque<>();
+        }
+    }
+
+    public Ticket ticket(QueryClass queryClass) {
+        return new Ticket(queryClass);
+    }
+
+    /**
+     * run the task of the statement once it is admitted.
+     *
+     * If the statement can be admitted right away the task is run on the calling thread,
+     * otherwise it is queued and later run on the generic thread pool.
+     *
+     * @throws EsRejectedExecutionException if the queue is full
+     */
+    public void admit(Ticket ticket, Runnable task) throws EsRejectedExecutionException {
+        List<Ticket> toRun;
+        boolean queueFull = false;
+        synchronized (lock) {
+            if (ticket.state != State.NEW) {
+                throw new IllegalStateException("ticket was already admitted or released");
+            }
+            int idx = ticket.queryClass.ordinal();
+            double previousVirtualFinish = lastVirtualFinish[idx];
+            ticket.task = task;
+            enqueue(ticket);
+            toRun = dispatch();
+            if (ticket.state == State.QUEUED && queued > queueSize) {
+                queues[idx].removeLast();
+                queued--;
+                lastVirtualFinish[idx] = previousVirtualFinish;
+                ticket.state = State.DONE;
+                ticket.task = null;
+                rejected[idx]++;
+                queueFull = true;
+            }
+        }
+        run(toRun, ticket);
+        if (queueFull) {
+            throw new EsRejectedExecutionException(String.format(Locale.ENGLISH,
+                    "rejected execution of %s statement, admission queue with %d statements is full",
+                    ticket.queryClass.displayName(), queueSize));
+        }
+    }
+
+    /**
+     * release the slot of an admitted statement or remove a
+     * statement which is still waiting from the queue.
+     *
+     * Releasing a ticket more than once has no effect.
+     */
+    public void release(Ticket ticket) {
+        List<Ticket> toRun;
+        synchronized (lock) {
+            switch (ticket.state) {
+                case QUEUED:
+                    queues[ticket.queryClass.ordinal()].remove(ticket);
+                    queued--;
+                    ticket.state = State.DONE;
+                    ticket.task = null;
+                    return;
+                case RUNNING:
+                    running[ticket.queryClass.ordinal()]--;
+                    if (ticket.queryClass != QueryClass.KEY_LOOKUP) {
+                        runningShared--;
+                    }
+                    ticket.state = State.DONE;
+                    toRun = dispatch();
+                    break;
+                default:
+                    ticket.state = State.DONE;
+                    return;
+            }
+        }
+        run(toRun, null);
+    }
+
+    private void enqueue(Ticket ticket) {
+        int idx = ticket.queryClass.ordinal();
+        ticket.state = State.QUEUED;
+        ticket.enqueuedNanos = System.nanoTime();
+        ticket.virtualStart = Math.max(virtualTime, lastVirtualFinish[idx]);
+        ticket.virtualFinish = ticket.virtualStart + 1.0d / ticket.queryClass.weight();
+        lastVirtualFinish[idx] = ticket.virtualFinish;
+        queues[idx].add(ticket);
+        queued++;
+    }
+
+    /**
+     * admit waiting statements as long as there are free slots,
+     * always choosing the eligible statement with the smallest virtual finish time.
+     */
+    private List<Ticket> dispatch() {
+        List<Ticket> admittedTickets = null;
+        Boolean memoryAvailable = null;
+        while (queued > 0) {
+            Ticket next = null;
+            for (QueryClass queryClass : QUERY_CLASSES) {
+                Ticket head = queues[queryClass.ordinal()].peekFirst();
+                if (head == null || (next != null && head.virtualFinish >= next.virtualFinish)) {
+                    continue;
+                }
+                if (queryClass == QueryClass.KEY_LOOKUP) {
+                    if (running[queryClass.ordinal()] >= maxConcurrentJobs) {
+                        continue;
+                    }
+                } else {
+                    if (runningShared >= maxConcurrentJobs) {
+                        continue;
+                    }
+                    if (runningShared > 0) {
+                        if (memoryAvailable == null) {
+                            memoryAvailable = memoryAvailable();
+                        }
+                        if (!memoryAvailable) {
+                            continue;
+                        }
+                    }
+                }
+                next = head;
+            }
+            if (next == null) {
+                break;
+            }
+            int idx = next.queryClass.ordinal();
+            queues[idx].pollFirst();
+            queued--;
+            virtualTime = Math.max(virtualTime, next.virtualStart);
+            next.state = State.RUNNING;
+            running[idx]++;
+            if (next.queryClass != QueryClass.KEY_LOOKUP) {
+                runningShared++;
+            }
+            admitted[idx]++;
+            waitNanos[idx] += System.nanoTime() - next.enqueuedNanos;
+            if (admittedTickets == null) {
+                admittedTickets = new ArrayList<>(1);
+            }
+            admittedTickets.add(next);
+        }
+        if (admittedTickets == null) {
+            return Collections.emptyList();
+        }
+        return admittedTickets;
+    }
+
+    private boolean memoryAvailable() {
+        CircuitBreaker breaker = breakerService.getBreaker(CrateCircuitBreakerService.QUERY_BREAKER);
+        long limit = breaker.getLimit();
+        return limit <= 0 || breaker.getUsed() < limit * memoryBudget;
+    }
+
+    /**
+     * run the tasks of the admitted tickets.
+     * The task of the ticket of the current caller is run on the calling thread.
+     */
+    private void run(List<Ticket> admittedTickets, Ticket callerTicket) {
+        Runnable callerTask = null;
+        for (Ticket ticket : admittedTickets) {
+            Runnable task = ticket.task;
+            ticket.task = null;
+            if (ticket == callerTicket) {
+                callerTask = task;
+            } else {
+                executor.execute(task);
+            }
+        }
+        if (callerTask != null) {
+            callerTask.run();
+        }
+    }
+
+    public int maxConcurrentJobs() {
+        return maxConcurrentJobs;
+    }
+
+    public int queued(QueryClass queryClass) {
+        synchronized (lock) {
+            return queues[queryClass.ordinal()].size();
+        }
+    }
+
+    public int running(QueryClass queryClass) {
+        synchronized (lock) {
+            return running[queryClass.ordinal()];
+        }
+    }
+
+    public long admitted(QueryClass queryClass) {
+        synchronized (lock) {
+            return admitted[queryClass.ordinal()];
+        }
+    }
+
+    public long rejected(QueryClass queryClass) {
+        synchronized (lock) {
+            return rejected[queryClass.ordinal()];
+        }
+    }
+
+    /**
+     * the total time in milliseconds the admitted statements of the given class had to wait
+     */
+    public long waitTime(QueryClass queryClass) {
+        synchronized (lock) {
+            return TimeUnit.NANOSECONDS.toMillis(waitNanos[queryClass.ordinal()]);
+        }
+    }
+}
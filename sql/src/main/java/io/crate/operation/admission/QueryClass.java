@@ -0,0 +1,52 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.admission;
+
+import java.util.Locale;
+
+/**
+ * Classes of statements which are scheduled by the {@link AdmissionController}.
+ *
+ * The weight defines the share of admission slots a class gets
+ * if statements of several classes are waiting.
+ */
+public enum QueryClass {
+
+    KEY_LOOKUP(8),
+    SMALL_SCAN(4),
+    WRITE(2),
+    HEAVY_AGGREGATION(1);
+
+    private final int weight;
+
+    QueryClass(int weight) {
+        this.weight = weight;
+    }
+
+    public int weight() {
+        return weight;
+    }
+
+    public String displayName() {
+        return name().toLowerCase(Locale.ENGLISH);
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.admission;
+
+import io.crate.planner.*;
+import io.crate.planner.node.PlanNode;
+import io.crate.planner.node.PlanNodeVisitor;
+import io.crate.planner.node.dml.*;
+import io.crate.planner.node.dql.*;
+import io.crate.planner.node.dql.join.NestedLoopNode;
+import io.crate.planner.projection.*;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Determines the {@link QueryClass} of a plan.
+ *
+ * Plans which consist of DDL statements, SET or KILL don't have a query class
+ * and aren't subject to admission control so that the cluster can
+ * still be administrated if a node is overloaded.
+ */
+public class QueryClassifier {
+
+    private static final PlanClassifier PLAN_CLASSIFIER = new PlanClassifier();
+    private static final NodeClassifier NODE_CLASSIFIER = new NodeClassifier();
+    private static final ProjectionClassifier PROJECTION_CLASSIFIER = new ProjectionClassifier();
+
+    @Nullable
+    public static QueryClass classify(Plan plan) {
+        return PLAN_CLASSIFIER.process(plan, null);
+    }
+
+    /**
+     * the most expensive of both classes, null is treated as cheapest
+     */
+    private static QueryClass max(@Nullable QueryClass a, @Nullable QueryClass b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null || a.ordinal() >= b.ordinal()) {
+            return a;
+        }
+        return b;
+    }
+
+    private static QueryClass classifyProjections(QueryClass queryClass, List<Projection> projections) {
+        for (Projection projection : projections) {
+            queryClass = max(queryClass, PROJECTION_CLASSIFIER.process(projection, null));
+        }
+        return queryClass;
+    }
+
+    private static class PlanClassifier extends PlanVisitor<Void, QueryClass> {
+
+        @Override
+        public QueryClass visitIterablePlan(IterablePlan plan, Void context) {
+            QueryClass queryClass = null;
+            for (PlanNode planNode : plan) {
+                queryClass = max(queryClass, NODE_CLASSIFIER.process(planNode, null));
+            }
+            return queryClass;
+        }
+
+        @Override
+        public QueryClass visitGlobalAggregate(GlobalAggregate plan, Void context) {
+            return QueryClass.HEAVY_AGGREGATION;
+        }
+
+        @Override
+        public QueryClass visitNonDistributedGroupBy(NonDistributedGroupBy node, Void context) {
+            return QueryClass.HEAVY_AGGREGATION;
+        }
+
+        @Override
+        public QueryClass visitDistributedGroupBy(DistributedGroupBy node, Void context) {
+            return QueryClass.HEAVY_AGGREGATION;
+        }
+
+        @Override
+        public QueryClass visitQueryAndFetch(QueryAndFetch node, Void context) {
+            return max(NODE_CLASSIFIER.process(node.collectNode(), null),
+                    NODE_CLASSIFIER.process(node.localMergeNode(), null));
+        }
+
+        @Override
+        public QueryClass visitUpsert(Upsert node, Void context) {
+            return QueryClass.WRITE;
+        }
+    }
+
+    private static class NodeClassifier extends PlanNodeVisitor<Void, QueryClass> {
+
+        @Override
+        public QueryClass visitESGetNode(ESGetNode node, Void context) {
+            return QueryClass.KEY_LOOKUP;
+        }
+
+        @Override
+        public QueryClass visitESCountNode(ESCountNode node, Void context) {
+            return QueryClass.SMALL_SCAN;
+        }
+
+        @Override
+        public QueryClass visitQueryThenFetchNode(QueryThenFetchNode node, Void context) {
+            return QueryClass.SMALL_SCAN;
+        }
+
+        @Override
+        public QueryClass visitCollectNode(CollectNode node, Void context) {
+            return classifyProjections(QueryClass.SMALL_SCAN, node.projections());
+        }
+
+        @Override
+        public QueryClass visitMergeNode(MergeNode node, Void context) {
+            return classifyProjections(null, node.projections());
+        }
+
+        @Override
+        public QueryClass visitNestedLoopNode(NestedLoopNode node, Void context) {
+            return QueryClass.HEAVY_AGGREGATION;
+        }
+
+        @Override
+        public QueryClass visitESDeleteNode(ESDeleteNode node, Void context) {
+            return QueryClass.WRITE;
+        }
+
+        @Override
+        public QueryClass visitESDeleteByQueryNode(ESDeleteByQueryNode node, Void context) {
+            return QueryClass.WRITE;
+        }
+
+        @Override
+        public QueryClass visitUpsertByIdNode(UpsertByIdNode node, Void context) {
+            return QueryClass.WRITE;
+        }
+    }
+
+    private static class ProjectionClassifier extends ProjectionVisitor<Void, QueryClass> {
+
+        @Override
+        public QueryClass visitGroupProjection(GroupProjection projection, Void context) {
+            return QueryClass.HEAVY_AGGREGATION;
+        }
+
+        @Override
+        public QueryClass visitAggregationProjection(AggregationProjection projection, Void context) {
+            return QueryClass.HEAVY_AGGREGATION;
+        }
+
+        @Override
+        public QueryClass visitWriterProjection(WriterProjection projection, Void context) {
+            // COPY TO exports the whole table
+            return QueryClass.HEAVY_AGGREGATION;
+        }
+
+        @Override
+        public QueryClass visitSourceIndexWriterProjection(SourceIndexWriterProjection projection, Void context) {
+            return QueryClass.WRITE;
+        }
+
+        @Override
+        public QueryClass visitColumnIndexWriterProjection(ColumnIndexWriterProjection projection, Void context) {
+            return QueryClass.WRITE;
+        }
+
+        @Override
+        public QueryClass visitUpdateProjection(UpdateProjection projection, Void context) {
+            return QueryClass.WRITE;
+        }
+    }
+}
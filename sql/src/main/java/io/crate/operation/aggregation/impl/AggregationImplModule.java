@@ -53,6 +53,8 @@ public class AggregationImplModule extends AbstractModule {
         SumAggregation.register(this);
         CountAggregation.register(this);
         CollectSetAggregation.register(this);
+        HyperLogLogDistinctAggregation.register(this);
+        PercentileAggregation.register(this);
 
         VarianceAggregation.register(this);
         GeometricMeanAggregation.register(this);
@@ -0,0 +1,471 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.aggregation.impl;
+
+import com.carrotsearch.hppc.IntByteOpenHashMap;
+import com.carrotsearch.hppc.cursors.IntByteCursor;
+import com.google.common.base.Preconditions;
+import io.crate.Streamer;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.metadata.DynamicFunctionResolver;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionImplementation;
+import io.crate.metadata.FunctionInfo;
+import io.crate.operation.Input;
+import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.planner.symbol.Function;
+import io.crate.planner.symbol.Symbol;
+import io.crate.types.DataType;
+import io.crate.types.DataTypeFactory;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.hash.MurmurHash3;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Streamable;
+import org.elasticsearch.common.util.ByteUtils;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Approximate count of distinct values using the HyperLogLog algorithm.
+ *
+ * The state starts with a sparse representation which only contains the registers
+ * that have been set and switches to a dense register array once that is smaller.
+ * Both representations can be merged, so partial states of shards and nodes are
+ * combined in {@link #reduce(RamAccountingContext, HllState, HllState)}.
+ *
+ * <pre>
+ *     hyperloglog_distinct(column [, precision])
+ * </pre>
+ *
+ * The precision defines the number of registers (2^precision) and with it
+ * the accuracy and the memory used per group.
+ */
+public class HyperLogLogDistinctAggregation extends AggregationFunction<HyperLogLogDistinctAggregation.HllState, Long> {
+
+    public static final String NAME = "hyperloglog_distinct";
+
+    public static final int DEFAULT_PRECISION = 14;
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 18;
+
+    public static void register(AggregationImplModule mod) {
+        mod.register(NAME, new HyperLogLogDistinctFunctionResolver());
+    }
+
+    static class HyperLogLogDistinctFunctionResolver implements DynamicFunctionResolver {
+
+        @Override
+        public FunctionImplementation<Function> getForTypes(List<DataType> dataTypes) throws IllegalArgumentException {
+            Preconditions.checkArgument(dataTypes.size() == 1 || dataTypes.size() == 2,
+                    "%s requires one or two arguments", NAME);
+            Preconditions.checkArgument(DataTypes.PRIMITIVE_TYPES.contains(dataTypes.get(0)),
+                    "%s cannot be used on columns of type %s", NAME, dataTypes.get(0));
+            if (dataTypes.size() == 2) {
+                DataType precisionType = dataTypes.get(1);
+                Preconditions.checkArgument(precisionType.equals(DataTypes.LONG)
+                                || precisionType.equals(DataTypes.INTEGER)
+                                || precisionType.equals(DataTypes.SHORT)
+                                || precisionType.equals(DataTypes.BYTE),
+                        "precision of %s must be an integer", NAME);
+            }
+            return new HyperLogLogDistinctAggregation(new FunctionInfo(
+                    new FunctionIdent(NAME, dataTypes), DataTypes.LONG, FunctionInfo.Type.AGGREGATE));
+        }
+    }
+
+    public static class HllState implements Comparable<HllState>, Streamable {
+
+        /**
+         * estimated bytes used by one entry of the sparse representation,
+         * including the free slots of the hash map
+         */
+        static final int SPARSE_ENTRY_BYTES = 8;
+
+        /**
+         * 0 until the precision is known, which is on the first value or merge
+         */
+        private int precision;
+        private IntByteOpenHashMap sparse;
+        private byte[] registers;
+
+        public HllState() {
+        }
+
+        HllState(int precision) {
+            init(precision);
+        }
+
+        private void init(int precision) {
+            this.precision = precision;
+            this.sparse = new IntByteOpenHashMap();
+        }
+
+        boolean isInitialized() {
+            return precision > 0;
+        }
+
+        boolean isSparse() {
+            return registers == null;
+        }
+
+        /**
+         * @return the number of bytes the state has grown by
+         */
+        long add(long hash) {
+            int index = (int) (hash >>> (64 - precision));
+            // the bit below the precision bits limits the run length to 64 - precision + 1
+            int runLength = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+            return setRegister(index, (byte) runLength);
+        }
+
+        private long setRegister(int index, byte runLength) {
+            if (registers != null) {
+                if (registers[index] < runLength) {
+                    registers[index] = runLength;
+                }
+                return 0L;
+            }
+            byte previous = sparse.get(index);
+            if (previous >= runLength) {
+                return 0L;
+            }
+            sparse.put(index, runLength);
+            if (previous > 0) {
+                return 0L;
+            }
+            if ((long) sparse.size() * SPARSE_ENTRY_BYTES >= (1 << precision)) {
+                return toDense();
+            }
+            return SPARSE_ENTRY_BYTES;
+        }
+
+        /**
+         * @return the additional bytes used by the dense representation
+         */
+        private long toDense() {
+            int accountedEntries = sparse.size() - 1;
+            registers = new byte[1 << precision];
+            for (IntByteCursor cursor : sparse) {
+                registers[cursor.key] = cursor.value;
+            }
+            sparse = null;
+            return registers.length - (long) accountedEntries * SPARSE_ENTRY_BYTES;
+        }
+
+        /**
+         * @return the number of bytes the state has grown by
+         */
+        long merge(HllState other) {
+            Preconditions.checkArgument(precision == other.precision,
+                    "cannot merge states with precision %s and %s", precision, other.precision);
+            long bytes = 0;
+            if (other.registers != null) {
+                if (registers == null) {
+                    bytes += toDense();
+                }
+                for (int i = 0; i < registers.length; i++) {
+                    if (registers[i] < other.registers[i]) {
+                        registers[i] = other.registers[i];
+                    }
+                }
+            } else {
+                for (IntByteCursor cursor : other.sparse) {
+                    bytes += setRegister(cursor.key, cursor.value);
+                }
+            }
+            return bytes;
+        }
+
+        long sizeInBytes() {
+            if (registers != null) {
+                return registers.length;
+            }
+            return sparse == null ? 0L : (long) sparse.size() * SPARSE_ENTRY_BYTES;
+        }
+
+        long cardinality() {
+            if (!isInitialized()) {
+                return 0L;
+            }
+            int m = 1 << precision;
+            if (registers == null) {
+                // the sparse representation is only used for small cardinalities
+                // where linear counting is the more accurate estimate
+                return linearCounting(m, m - sparse.size());
+            }
+            double sum = 0;
+            int zeros = 0;
+            for (byte runLength : registers) {
+                sum += 1.0 / (1L << runLength);
+                if (runLength == 0) {
+                    zeros++;
+                }
+            }
+            double estimate = alpha(m) * m * m / sum;
+            if (zeros > 0 && estimate <= 2.5 * m) {
+                return linearCounting(m, zeros);
+            }
+            return Math.round(estimate);
+        }
+
+        private static long linearCounting(int m, int zeros) {
+            return Math.round(m * Math.log((double) m / zeros));
+        }
+
+        private static double alpha(int m) {
+            switch (m) {
+                case 16:
+                    return 0.673;
+                case 32:
+                    return 0.697;
+                case 64:
+                    return 0.709;
+                default:
+                    return 0.7213 / (1 + 1.079 / m);
+            }
+        }
+
+        @Override
+        public int compareTo(HllState o) {
+            return Long.compare(cardinality(), o.cardinality());
+        }
+
+        @Override
+        public void readFrom(StreamInput in) throws IOException {
+            int precision = in.readVInt();
+            if (precision == 0) {
+                return;
+            }
+            init(precision);
+            if (in.readBoolean()) {
+                registers = new byte[1 << precision];
+                in.readBytes(registers, 0, registers.length);
+                sparse = null;
+            } else {
+                int size = in.readVInt();
+                int index = 0;
+                for (int i = 0; i < size; i++) {
+                    index += in.readVInt();
+                    sparse.put(index, in.readByte());
+                }
+            }
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeVInt(precision);
+            if (precision == 0) {
+                return;
+            }
+            out.writeBoolean(registers != null);
+            if (registers != null) {
+                out.writeBytes(registers);
+            } else {
+                // sorted indices are written as deltas to keep the partial state small
+                int[] indices = sparse.keys().toArray();
+                Arrays.sort(indices);
+                out.writeVInt(indices.length);
+                int previous = 0;
+                for (int index : indices) {
+                    out.writeVInt(index - previous);
+                    out.writeByte(sparse.get(index));
+                    previous = index;
+                }
+            }
+        }
+    }
+
+    public static class HllStateType extends DataType<HllState>
+            implements Streamer<HllState>, DataTypeFactory {
+
+        public static final int ID = 16384;
+        public static final HllStateType INSTANCE = new HllStateType();
+
+        private HllStateType() {
+            DataTypes.register(ID, this);
+        }
+
+        @Override
+        public int id() {
+            return ID;
+        }
+
+        @Override
+        public String getName() {
+            return "hyperloglog_state";
+        }
+
+        @Override
+        public Streamer<?> streamer() {
+            return this;
+        }
+
+        @Override
+        public HllState value(Object value) throws IllegalArgumentException, ClassCastException {
+            return (HllState) value;
+        }
+
+        @Override
+        public int compareValueTo(HllState val1, HllState val2) {
+            if (val1 == null) return -1;
+            return val1.compareTo(val2);
+        }
+
+        @Override
+        public DataType<?> create() {
+            return INSTANCE;
+        }
+
+        @Override
+        public HllState readValueFrom(StreamInput in) throws IOException {
+            HllState state = new HllState();
+            state.readFrom(in);
+            return state;
+        }
+
+        @Override
+        public void writeValueTo(StreamOutput out, Object v) throws IOException {
+            ((HllState) v).writeTo(out);
+        }
+    }
+
+    /**
+     * bytes of the state object itself without any registers
+     */
+    private static final long STATE_BYTES = 32L;
+
+    private final FunctionInfo info;
+
+    HyperLogLogDistinctAggregation(FunctionInfo info) {
+        this.info = info;
+    }
+
+    @Override
+    public FunctionInfo info() {
+        return info;
+    }
+
+    @Override
+    public Symbol normalizeSymbol(Function symbol) {
+        if (symbol.arguments().size() == 2) {
+            Symbol precision = symbol.arguments().get(1);
+            if (!precision.symbolType().isValueSymbol()) {
+                throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                        "precision of %s must be a literal", NAME));
+            }
+            precision(((Input) precision).value());
+        }
+        return symbol;
+    }
+
+    private static int precision(Object value) {
+        if (value == null) {
+            throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                    "NULL precision not supported for %s", NAME));
+        }
+        int precision = ((Number) value).intValue();
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                    "precision of %s must be between %d and %d", NAME, MIN_PRECISION, MAX_PRECISION));
+        }
+        return precision;
+    }
+
+    static long hash(Object value) {
+        if (value instanceof BytesRef) {
+            return hash((BytesRef) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            return hash(Double.doubleToLongBits(((Number) value).doubleValue()));
+        } else if (value instanceof Number) {
+            return hash(((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            return hash((Boolean) value ? 1L : 0L);
+        } else if (value instanceof String) {
+            return hash(new BytesRef((String) value));
+        }
+        throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                "%s cannot be used on values of type %s", NAME, value.getClass().getSimpleName()));
+    }
+
+    private static long hash(BytesRef bytes) {
+        return MurmurHash3.hash128(bytes.bytes, bytes.offset, bytes.length, 0, new MurmurHash3.Hash128()).h1;
+    }
+
+    private static long hash(long value) {
+        byte[] bytes = new byte[8];
+        ByteUtils.writeLongLE(value, bytes, 0);
+        return MurmurHash3.hash128(bytes, 0, bytes.length, 0, new MurmurHash3.Hash128()).h1;
+    }
+
+    @Override
+    public HllState newState(RamAccountingContext ramAccountingContext) {
+        ramAccountingContext.addBytes(STATE_BYTES);
+        return new HllState();
+    }
+
+    @Override
+    public HllState iterate(RamAccountingContext ramAccountingContext, HllState state, Input... args)
+            throws CircuitBreakingException {
+        Object value = args[0].value();
+        if (value == null) {
+            return state;
+        }
+        if (!state.isInitialized()) {
+            state.init(args.length > 1 ? precision(args[1].value()) : DEFAULT_PRECISION);
+        }
+        ramAccountingContext.addBytes(state.add(hash(value)));
+        return state;
+    }
+
+    @Override
+    public HllState reduce(RamAccountingContext ramAccountingContext, HllState state1, HllState state2) {
+        if (state1 == null || !state1.isInitialized()) {
+            if (state2 != null) {
+                // state2 is usually a partial state received from another node
+                ramAccountingContext.addBytes(state2.sizeInBytes());
+            }
+            return state2;
+        }
+        if (state2 == null || !state2.isInitialized()) {
+            return state1;
+        }
+        ramAccountingContext.addBytes(state1.merge(state2));
+        return state1;
+    }
+
+    @Override
+    public Long terminatePartial(RamAccountingContext ramAccountingContext, HllState state) {
+        return state.cardinality();
+    }
+
+    @Override
+    public DataType partialType() {
+        return HllStateType.INSTANCE;
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.aggregation.impl;
+
+import com.google.common.base.Preconditions;
+import io.crate.Streamer;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.metadata.DynamicFunctionResolver;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionImplementation;
+import io.crate.metadata.FunctionInfo;
+import io.crate.operation.Input;
+import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.planner.symbol.Function;
+import io.crate.planner.symbol.Symbol;
+import io.crate.types.ArrayType;
+import io.crate.types.DataType;
+import io.crate.types.DataTypeFactory;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Streamable;
+import org.elasticsearch.search.aggregations.metrics.percentiles.tdigest.TDigestState;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Approximate percentiles using a t-digest.
+ *
+ * <pre>
+ *     percentile(column, fraction)
+ *     percentile(column, [fraction, ...])
+ * </pre>
+ *
+ * The digest keeps a number of centroids bounded by its compression, no matter
+ * how many values are added, and digests of different shards and nodes are merged
+ * in {@link #reduce(RamAccountingContext, PercentileState, PercentileState)}.
+ */
+public class PercentileAggregation extends AggregationFunction<PercentileAggregation.PercentileState, Object> {
+
+    public static final String NAME = "percentile";
+
+    public static final double DEFAULT_COMPRESSION = 100.0;
+
+    public static void register(AggregationImplModule mod) {
+        mod.register(NAME, new PercentileFunctionResolver());
+    }
+
+    static class PercentileFunctionResolver implements DynamicFunctionResolver {
+
+        @Override
+        public FunctionImplementation<Function> getForTypes(List<DataType> dataTypes) throws IllegalArgumentException {
+            Preconditions.checkArgument(dataTypes.size() == 2, "%s requires two arguments", NAME);
+            DataType valueType = dataTypes.get(0);
+            Preconditions.checkArgument(DataTypes.NUMERIC_PRIMITIVE_TYPES.contains(valueType)
+                            || valueType.equals(DataTypes.TIMESTAMP),
+                    "%s cannot be used on columns of type %s", NAME, valueType);
+
+            DataType fractionsType = dataTypes.get(1);
+            if (fractionsType instanceof ArrayType) {
+                Preconditions.checkArgument(
+                        DataTypes.NUMERIC_PRIMITIVE_TYPES.contains(((ArrayType) fractionsType).innerType()),
+                        "fractions of %s must be numeric", NAME);
+                return new PercentileAggregation(new FunctionInfo(
+                        new FunctionIdent(NAME, dataTypes), new ArrayType(DataTypes.DOUBLE),
+                        FunctionInfo.Type.AGGREGATE));
+            }
+            Preconditions.checkArgument(DataTypes.NUMERIC_PRIMITIVE_TYPES.contains(fractionsType),
+                    "fraction of %s must be numeric", NAME);
+            return new PercentileAggregation(new FunctionInfo(
+                    new FunctionIdent(NAME, dataTypes), DataTypes.DOUBLE, FunctionInfo.Type.AGGREGATE));
+        }
+    }
+
+    public static class PercentileState implements Comparable<PercentileState>, Streamable {
+
+        /**
+         * estimated bytes used per centroid of the digest
+         */
+        static final int CENTROID_BYTES = 32;
+
+        /**
+         * null until the first value has been added
+         */
+        private double[] fractions;
+        private TDigestState digest;
+
+        public PercentileState() {
+        }
+
+        boolean isInitialized() {
+            return digest != null;
+        }
+
+        private void init(double[] fractions) {
+            this.fractions = fractions;
+            this.digest = new TDigestState(DEFAULT_COMPRESSION);
+        }
+
+        /**
+         * @return the number of bytes the state has grown by
+         */
+        private long add(double value) {
+            int centroids = digest.centroidCount();
+            digest.add(value);
+            return (long) (digest.centroidCount() - centroids) * CENTROID_BYTES;
+        }
+
+        /**
+         * @return the number of bytes the state has grown by
+         */
+        private long merge(PercentileState other) {
+            int centroids = digest.centroidCount();
+            digest.add(other.digest);
+            return (long) (digest.centroidCount() - centroids) * CENTROID_BYTES;
+        }
+
+        long sizeInBytes() {
+            return digest == null ? 0L : (long) digest.centroidCount() * CENTROID_BYTES;
+        }
+
+        double[] percentiles() {
+            double[] percentiles = new double[fractions.length];
+            for (int i = 0; i < fractions.length; i++) {
+                percentiles[i] = digest.quantile(fractions[i]);
+            }
+            return percentiles;
+        }
+
+        @Override
+        public int compareTo(PercentileState o) {
+            long size = digest == null ? 0 : digest.size();
+            long otherSize = o.digest == null ? 0 : o.digest.size();
+            return Long.compare(size, otherSize);
+        }
+
+        @Override
+        public void readFrom(StreamInput in) throws IOException {
+            if (in.readBoolean()) {
+                fractions = new double[in.readVInt()];
+                for (int i = 0; i < fractions.length; i++) {
+                    fractions[i] = in.readDouble();
+                }
+                digest = TDigestState.read(in);
+            }
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeBoolean(digest != null);
+            if (digest != null) {
+                out.writeVInt(fractions.length);
+                for (double fraction : fractions) {
+                    out.writeDouble(fraction);
+                }
+                TDigestState.write(digest, out);
+            }
+        }
+    }
+
+    public static class PercentileStateType extends DataType<PercentileState>
+            implements Streamer<PercentileState>, DataTypeFactory {
+
+        public static final int ID = 32768;
+        public static final PercentileStateType INSTANCE = new PercentileStateType();
+
+        private PercentileStateType() {
+            DataTypes.register(ID, this);
+        }
+
+        @Override
+        public int id() {
+            return ID;
+        }
+
+        @Override
+        public String getName() {
+            return "percentile_state";
+        }
+
+        @Override
+        public Streamer<?> streamer() {
+            return this;
+        }
+
+        @Override
+        public PercentileState value(Object value) throws IllegalArgumentException, ClassCastException {
+            return (PercentileState) value;
+        }
+
+        @Override
+        public int compareValueTo(PercentileState val1, PercentileState val2) {
+            if (val1 == null) return -1;
+            return val1.compareTo(val2);
+        }
+
+        @Override
+        public DataType<?> create() {
+            return INSTANCE;
+        }
+
+        @Override
+        public PercentileState readValueFrom(StreamInput in) throws IOException {
+            PercentileState state = new PercentileState();
+            state.readFrom(in);
+            return state;
+        }
+
+        @Override
+        public void writeValueTo(StreamOutput out, Object v) throws IOException {
+            ((PercentileState) v).writeTo(out);
+        }
+    }
+
+    /**
+     * bytes of the state and the empty digest
+     */
+    private static final long STATE_BYTES = 64L;
+
+    private final FunctionInfo info;
+    private final boolean multipleFractions;
+
+    PercentileAggregation(FunctionInfo info) {
+        this.info = info;
+        this.multipleFractions = info.returnType() instanceof ArrayType;
+    }
+
+    @Override
+    public FunctionInfo info() {
+        return info;
+    }
+
+    @Override
+    public Symbol normalizeSymbol(Function symbol) {
+        Symbol fractions = symbol.arguments().get(1);
+        if (!fractions.symbolType().isValueSymbol()) {
+            throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                    "fraction of %s must be a literal", NAME));
+        }
+        fractions(((Input) fractions).value());
+        return symbol;
+    }
+
+    private static double[] fractions(Object value) {
+        if (value == null) {
+            throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                    "NULL fraction not supported for %s", NAME));
+        }
+        double[] fractions;
+        if (value instanceof Object[]) {
+            Object[] values = (Object[]) value;
+            if (values.length == 0) {
+                throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                        "no fractions given for %s", NAME));
+            }
+            fractions = new double[values.length];
+            for (int i = 0; i < values.length; i++) {
+                fractions[i] = fraction(values[i]);
+            }
+        } else {
+            fractions = new double[]{fraction(value)};
+        }
+        return fractions;
+    }
+
+    private static double fraction(Object value) {
+        if (value == null) {
+            throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                    "NULL fraction not supported for %s", NAME));
+        }
+        double fraction = ((Number) value).doubleValue();
+        if (fraction < 0.0 || fraction > 1.0) {
+            throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                    "fraction of %s must be between 0 and 1, got %s", NAME, value));
+        }
+        return fraction;
+    }
+
+    @Override
+    public PercentileState newState(RamAccountingContext ramAccountingContext) {
+        ramAccountingContext.addBytes(STATE_BYTES);
+        return new PercentileState();
+    }
+
+    @Override
+    public PercentileState iterate(RamAccountingContext ramAccountingContext, PercentileState state, Input... args)
+            throws CircuitBreakingException {
+        Number value = (Number) args[0].value();
+        if (value == null) {
+            return state;
+        }
+        if (!state.isInitialized()) {
+            state.init(fractions(args[1].value()));
+        }
+        ramAccountingContext.addBytes(state.add(value.doubleValue()));
+        return state;
+    }
+
+    @Override
+    public PercentileState reduce(RamAccountingContext ramAccountingContext, PercentileState state1, PercentileState state2) {
+        if (state2 == null || !state2.isInitialized()) {
+            return state1;
+        }
+        if (state1 == null || !state1.isInitialized()) {
+            // the digest of state2 is kept as it is, all of its centroids are accounted from now on
+            ramAccountingContext.addBytes(state2.sizeInBytes());
+            return state2;
+        }
+        // the centroids of state2 are inserted into the digest of state1, which absorbs most of them
+        // into its own centroids. Only the centroids that are added to the digest are accounted.
+        ramAccountingContext.addBytes(state1.merge(state2));
+        return state1;
+    }
+
+    @Nullable
+    @Override
+    public Object terminatePartial(RamAccountingContext ramAccountingContext, PercentileState state) {
+        if (state == null || !state.isInitialized()) {
+            return null;
+        }
+        double[] percentiles = state.percentiles();
+        if (!multipleFractions) {
+            return percentiles[0];
+        }
+        Double[] result = new Double[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            result[i] = percentiles[i];
+        }
+        return result;
+    }
+
+    @Override
+    public DataType partialType() {
+        return PercentileStateType.INSTANCE;
+    }
+}
@@ -21,6 +21,9 @@
 
 package io.crate.operation.collect;
 
+import io.crate.operation.admission.AdmissionController;
+import io.crate.operation.kill.JobKillRegistry;
+import io.crate.operation.routing.ReplicaSelector;
 import org.elasticsearch.common.inject.AbstractModule;
 
 public class CollectOperationModule extends AbstractModule {
@@ -32,6 +35,11 @@ public class CollectOperationModule extends AbstractModule {
         bind(UnassignedShardsCollectService.class).asEagerSingleton();
 
         bind(StatsTables.class).asEagerSingleton();
+        bind(JobKillRegistry.class).asEagerSingleton();
+        bind(AdmissionController.class).asEagerSingleton();
+        bind(ReplicaSelector.class).asEagerSingleton();
+        bind(ShardResultCache.class).asEagerSingleton();
+        bind(HotColumnsWarmer.class).asEagerSingleton();
         bind(SystemCollectService.class).asEagerSingleton();
     }
 }
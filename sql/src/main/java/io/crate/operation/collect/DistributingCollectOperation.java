@@ -236,10 +236,11 @@ public class DistributingCollectOperation extends MapSideDataCollectOperation {
                                         TransportService transportService,
                                         PlanNodeStreamerVisitor streamerVisitor,
                                         CollectServiceResolver collectServiceResolver,
-                                        CrateCircuitBreakerService breakerService) {
+                                        CrateCircuitBreakerService breakerService,
+                                        ShardResultCache resultCache) {
         super(clusterService, settings, transportActionProvider,
                 functions, referenceResolver, indicesService,
-                threadPool, collectServiceResolver);
+                threadPool, collectServiceResolver, resultCache);
         this.transportService = transportService;
         this.streamerVisitor = streamerVisitor;
         this.circuitBreaker = breakerService.getBreaker(CrateCircuitBreakerService.QUERY_BREAKER);
@@ -0,0 +1,246 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect;
+
+import io.crate.Constants;
+import io.crate.analyze.TableParameterInfo;
+import io.crate.breaker.CrateCircuitBreakerService;
+import io.crate.lucene.PinnedFieldData;
+import org.apache.lucene.index.*;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.ClusterStateListener;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.fielddata.AtomicFieldData;
+import org.elasticsearch.index.fielddata.IndexFieldData;
+import org.elasticsearch.index.mapper.FieldMapper;
+import org.elasticsearch.index.service.IndexService;
+import org.elasticsearch.index.shard.service.IndexShard;
+import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.indices.warmer.IndicesWarmer;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+/**
+ * Warms the hot columns of a table on every new segment before the segment is exposed to searchers.
+ *
+ * The hot columns are set using the {@value io.crate.analyze.TableParameterInfo#HOT_COLUMNS} setting.
+ * The field data of hot columns without doc values is loaded and pinned, see {@link PinnedFieldData}.
+ * The doc values of the other hot columns are read once, so that they are cached by the file system.
+ *
+ * If columns are removed from the setting their pinned field data is released. Columns which are
+ * added are only warmed on segments which are created afterwards.
+ */
+public class HotColumnsWarmer extends AbstractComponent {
+
+    private static final String[] DEFAULT_MAPPING_TYPES = new String[]{Constants.DEFAULT_MAPPING_TYPE};
+
+    private final CircuitBreaker breaker;
+    private final IndicesService indicesService;
+
+    @Inject
+    public HotColumnsWarmer(Settings settings,
+                            ClusterService clusterService,
+                            IndicesService indicesService,
+                            IndicesWarmer indicesWarmer,
+                            CrateCircuitBreakerService breakerService) {
+        super(settings);
+        this.indicesService = indicesService;
+        this.breaker = breakerService.getBreaker(CrateCircuitBreakerService.HOT_COLUMNS_BREAKER);
+        indicesWarmer.addListener(new Listener());
+        clusterService.add(new HotColumnsChangedListener());
+    }
+
+    private void warm(IndexShard indexShard, FieldMapper<?> mapper, List<AtomicReaderContext> leaves) throws IOException {
+        String indexName = mapper.names().indexName();
+        if (mapper.hasDocValues()) {
+            for (AtomicReaderContext leaf : leaves) {
+                readDocValues(leaf.reader(), indexName);
+            }
+            return;
+        }
+        IndexFieldData<?> indexFieldData = indexShard.indexFieldDataService().getForField(mapper);
+        for (AtomicReaderContext leaf : leaves) {
+            AtomicFieldData fieldData = indexFieldData.load(leaf);
+            if (!PinnedFieldData.pin(indexShard.shardId(), leaf.reader(), indexName, fieldData, breaker)) {
+                logger.debug("[{}] field data of hot column [{}] wasn't pinned", indexShard.shardId(), indexName);
+            }
+        }
+    }
+
+    /**
+     * reads the doc values of every document of the segment
+     */
+    private static void readDocValues(AtomicReader reader, String field) throws IOException {
+        FieldInfo fieldInfo = reader.getFieldInfos().fieldInfo(field);
+        if (fieldInfo == null || !fieldInfo.hasDocValues()) {
+            return;
+        }
+        int maxDoc = reader.maxDoc();
+        switch (fieldInfo.getDocValuesType()) {
+            case NUMERIC:
+                NumericDocValues numericDocValues = reader.getNumericDocValues(field);
+                for (int doc = 0; doc < maxDoc; doc++) {
+                    numericDocValues.get(doc);
+                }
+                break;
+            case BINARY:
+                BinaryDocValues binaryDocValues = reader.getBinaryDocValues(field);
+                for (int doc = 0; doc < maxDoc; doc++) {
+                    binaryDocValues.get(doc);
+                }
+                break;
+            case SORTED:
+                SortedDocValues sortedDocValues = reader.getSortedDocValues(field);
+                for (int doc = 0; doc < maxDoc; doc++) {
+                    sortedDocValues.getOrd(doc);
+                }
+                break;
+            case SORTED_NUMERIC:
+                SortedNumericDocValues sortedNumericDocValues = reader.getSortedNumericDocValues(field);
+                for (int doc = 0; doc < maxDoc; doc++) {
+                    sortedNumericDocValues.setDocument(doc);
+                    for (int i = 0; i < sortedNumericDocValues.count(); i++) {
+                        sortedNumericDocValues.valueAt(i);
+                    }
+                }
+                break;
+            case SORTED_SET:
+                SortedSetDocValues sortedSetDocValues = reader.getSortedSetDocValues(field);
+                for (int doc = 0; doc < maxDoc; doc++) {
+                    sortedSetDocValues.setDocument(doc);
+                    while (sortedSetDocValues.nextOrd() != SortedSetDocValues.NO_MORE_ORDS) {
+                        // only read
+                    }
+                }
+                break;
+        }
+    }
+
+    /**
+     * releases the pinned field data of the columns which aren't hot columns of the index anymore
+     */
+    private void unpinRemovedColumns(String index, String[] hotColumns) {
+        IndexService indexService = indicesService.indexService(index);
+        if (indexService == null) {
+            // no shards of the index on this node
+            return;
+        }
+        Set<String> indexNames = new HashSet<>(hotColumns.length);
+        for (String hotColumn : hotColumns) {
+            FieldMapper<?> mapper = indexService.mapperService().smartNameFieldMapper(hotColumn, DEFAULT_MAPPING_TYPES);
+            if (mapper != null) {
+                indexNames.add(mapper.names().indexName());
+            }
+        }
+        PinnedFieldData.retain(index, indexNames);
+    }
+
+    private class HotColumnsChangedListener implements ClusterStateListener {
+
+        @Override
+        public void clusterChanged(ClusterChangedEvent event) {
+            if (!event.metaDataChanged()) {
+                return;
+            }
+            for (IndexMetaData indexMetaData : event.state().metaData()) {
+                IndexMetaData previous = event.previousState().metaData().index(indexMetaData.index());
+                if (previous == null) {
+                    continue;
+                }
+                String[] hotColumns = indexMetaData.settings().getAsArray(TableParameterInfo.HOT_COLUMNS);
+                if (!Arrays.equals(hotColumns, previous.settings().getAsArray(TableParameterInfo.HOT_COLUMNS))) {
+                    unpinRemovedColumns(indexMetaData.index(), hotColumns);
+                }
+            }
+        }
+    }
+
+    private class Listener extends IndicesWarmer.Listener {
+
+        @Override
+        public TerminationHandle warmNewReaders(final IndexShard indexShard,
+                                                IndexMetaData indexMetaData,
+                                                IndicesWarmer.WarmerContext context,
+                                                ThreadPool threadPool) {
+            String[] hotColumns = indexMetaData.settings().getAsArray(TableParameterInfo.HOT_COLUMNS);
+            if (hotColumns.length == 0) {
+                return TerminationHandle.NO_WAIT;
+            }
+            List<FieldMapper<?>> mappers = new ArrayList<>(hotColumns.length);
+            for (String hotColumn : hotColumns) {
+                FieldMapper<?> mapper = indexShard.mapperService().smartNameFieldMapper(hotColumn, DEFAULT_MAPPING_TYPES);
+                if (mapper == null) {
+                    logger.trace("[{}] hot column [{}] doesn't exist", indexShard.shardId(), hotColumn);
+                    continue;
+                }
+                mappers.add(mapper);
+            }
+            final List<AtomicReaderContext> leaves = context.searcher().reader().leaves();
+            final CountDownLatch latch = new CountDownLatch(mappers.size());
+            Executor executor = threadPool.executor(executor());
+            for (final FieldMapper<?> mapper : mappers) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            warm(indexShard, mapper, leaves);
+                        } catch (Throwable t) {
+                            logger.warn("[{}] failed to warm hot column [{}]", t,
+                                    indexShard.shardId(), mapper.names().fullName());
+                        } finally {
+                            latch.countDown();
+                        }
+                    }
+                });
+            }
+            return new TerminationHandle() {
+                @Override
+                public void awaitTermination() throws InterruptedException {
+                    latch.await();
+                }
+            };
+        }
+
+        @Override
+        public TerminationHandle warmTopReader(IndexShard indexShard,
+                                               IndexMetaData indexMetaData,
+                                               IndicesWarmer.WarmerContext context,
+                                               ThreadPool threadPool) {
+            // hot columns are read per segment, there are no global structures to warm
+            return TerminationHandle.NO_WAIT;
+        }
+    }
+}
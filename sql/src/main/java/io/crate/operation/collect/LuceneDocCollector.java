@@ -26,7 +26,9 @@ import io.crate.Constants;
 import io.crate.analyze.WhereClause;
 import io.crate.breaker.CrateCircuitBreakerService;
 import io.crate.breaker.RamAccountingContext;
+import io.crate.exceptions.JobKilledException;
 import io.crate.lucene.LuceneQueryBuilder;
+import io.crate.lucene.SegmentPruner;
 import io.crate.metadata.Functions;
 import io.crate.operation.Input;
 import io.crate.operation.projectors.Projector;
@@ -53,6 +55,7 @@ import org.elasticsearch.search.internal.SearchContext;
 import org.elasticsearch.search.internal.ShardSearchLocalRequest;
 import org.elasticsearch.threadpool.ThreadPool;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.HashSet;
 import java.util.List;
@@ -102,6 +105,8 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
     private Projector downstream;
     private final List<Input<?>> topLevelInputs;
     private final List<LuceneCollectorExpression<?>> collectorExpressions;
+    @Nullable
+    private final SegmentPruner segmentPruner;
 
     public LuceneDocCollector(ThreadPool threadPool,
                               ClusterService clusterService,
@@ -146,6 +151,14 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
         if (minScore != null) {
             searchContext.minimumScore(minScore);
         }
+        segmentPruner = SegmentPruner.create(whereClause);
+    }
+
+    /**
+     * @return the version of the index reader used by this collector or -1 if it is unknown
+     */
+    public long readerVersion() {
+        return ShardResultCache.readerVersion(searchContext.searcher().getIndexReader());
     }
 
     @Override
@@ -159,6 +172,9 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
 
     @Override
     public void collect(int doc) throws IOException {
+        if (ramAccountingContext != null && ramAccountingContext.killed()) {
+            throw new JobKilledException();
+        }
         if (ramAccountingContext != null && ramAccountingContext.trippedBreaker()) {
             // stop collecting because breaker limit was reached
             throw new UnexpectedCollectionTerminatedException(
@@ -185,6 +201,10 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
 
     @Override
     public void setNextReader(AtomicReaderContext context) throws IOException {
+        if (segmentPruner != null && !segmentPruner.canMatch(context.reader())) {
+            // the segment can't contain any matching document, continue with the next one
+            throw new CollectionTerminatedException();
+        }
         this.currentReader = context.reader();
         for (LuceneCollectorExpression expr : collectorExpressions) {
             expr.setNextReader(context);
@@ -215,7 +235,14 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
 
         // do the lucene search
         try {
-            searchContext.searcher().search(query, this);
+            if (ramAccountingContext != null && ramAccountingContext.killed()) {
+                // job was killed while this collector was queued, only release the search context
+                throw new JobKilledException();
+            }
+            // skip the whole shard if none of its segments can contain a matching document
+            if (segmentPruner == null || segmentPruner.canMatch(searchContext.searcher().getIndexReader())) {
+                searchContext.searcher().search(query, this);
+            }
             downstream.upstreamFinished();
         } catch (CollectionAbortedException e) {
             // yeah, that's ok! :)
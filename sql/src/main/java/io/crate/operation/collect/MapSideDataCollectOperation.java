@@ -72,6 +72,7 @@ public class MapSideDataCollectOperation implements CollectOperation<Object[][]>
     private final CollectServiceResolver collectServiceResolver;
     private final ProjectionToProjectorVisitor projectorVisitor;
     private final ThreadPoolExecutor executor;
+    private final ShardResultCache resultCache;
     private final int poolSize;
     private ESLogger logger = Loggers.getLogger(getClass());
 
@@ -110,13 +111,15 @@ public class MapSideDataCollectOperation implements CollectOperation<Object[][]>
                                        ReferenceResolver referenceResolver,
                                        IndicesService indicesService,
                                        ThreadPool threadPool,
-                                       CollectServiceResolver collectServiceResolver) {
+                                       CollectServiceResolver collectServiceResolver,
+                                       ShardResultCache resultCache) {
         executor = (ThreadPoolExecutor) threadPool.executor(ThreadPool.Names.SEARCH);
         poolSize = executor.getPoolSize();
         this.clusterService = clusterService;
         this.indicesService = indicesService;
         this.nodeNormalizer = new EvaluatingNormalizer(functions, RowGranularity.NODE, referenceResolver);
         this.collectServiceResolver = collectServiceResolver;
+        this.resultCache = resultCache;
         this.nodeImplementationSymbolVisitor = new ImplementationSymbolVisitor(
                 referenceResolver,
                 functions,
@@ -241,7 +244,7 @@ public class MapSideDataCollectOperation implements CollectOperation<Object[][]>
 
         collectNode = collectNode.normalize(nodeNormalizer);
         ShardProjectorChain projectorChain = new ShardProjectorChain(numShards,
-                collectNode.projections(), projectorVisitor, ramAccountingContext);
+                collectNode.projections(), projectorVisitor, ramAccountingContext, resultCache.enabled());
 
         final ShardCollectFuture result = getShardCollectFuture(numShards, projectorChain, collectNode);
 
@@ -48,6 +48,7 @@ import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.service.IndexService;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.script.ScriptService;
@@ -73,6 +74,7 @@ public class ShardCollectService {
     private final Functions functions;
     private final BlobIndices blobIndices;
     private final CircuitBreaker circuitBreaker;
+    private final ShardResultCache resultCache;
 
     @Inject
     public ShardCollectService(ThreadPool threadPool,
@@ -89,7 +91,8 @@ public class ShardCollectService {
                                ShardReferenceResolver referenceResolver,
                                BlobIndices blobIndices,
                                BlobShardReferenceResolver blobShardReferenceResolver,
-                               CrateCircuitBreakerService breakerService) {
+                               CrateCircuitBreakerService breakerService,
+                               ShardResultCache resultCache) {
         this.threadPool = threadPool;
         this.clusterService = clusterService;
         this.shardId = shardId;
@@ -102,6 +105,7 @@ public class ShardCollectService {
         this.functions = functions;
         this.blobIndices = blobIndices;
         this.circuitBreaker = breakerService.getBreaker(CrateCircuitBreakerService.QUERY_BREAKER);
+        this.resultCache = resultCache;
         isBlobShard = BlobIndices.isBlobShard(this.shardId);
 
         DocLevelReferenceResolver<? extends Input<?>> resolver = (isBlobShard ? BlobReferenceResolver.INSTANCE : LuceneDocLevelReferenceResolver.INSTANCE);
@@ -140,7 +144,20 @@ public class ShardCollectService {
     public CrateCollector getCollector(CollectNode collectNode,
                                        ShardProjectorChain projectorChain) throws Exception {
         CollectNode normalizedCollectNode = collectNode.normalize(shardNormalizer);
-        Projector downstream = projectorChain.newShardDownstreamProjector(projectorVisitor);
+        ShardResultCache.Recorder recorder = null;
+        if (!isBlobShard && !normalizedCollectNode.whereClause().noMatch()) {
+            ShardResultCache.Request cacheRequest = resultCache.request(
+                    indexService.indexUUID(), shardId, normalizedCollectNode, projectorChain);
+            if (cacheRequest != null) {
+                CrateCollector cachedCollector = cacheRequest.cachedCollector(
+                        readerVersion(), projectorChain.shardOutputDownstream());
+                if (cachedCollector != null) {
+                    return cachedCollector;
+                }
+                recorder = cacheRequest.newRecorder();
+            }
+        }
+        Projector downstream = projectorChain.newShardDownstreamProjector(projectorVisitor, recorder);
 
         if (normalizedCollectNode.whereClause().noMatch()) {
             return CrateCollector.NOOP;
@@ -150,7 +167,11 @@ public class ShardCollectService {
                 if (isBlobShard) {
                     return getBlobIndexCollector(normalizedCollectNode, downstream);
                 } else {
-                    return getLuceneIndexCollector(normalizedCollectNode, downstream);
+                    LuceneDocCollector collector = getLuceneIndexCollector(normalizedCollectNode, downstream);
+                    if (recorder != null) {
+                        recorder.readerVersion(collector.readerVersion());
+                    }
+                    return collector;
                 }
             } else if (granularity == RowGranularity.SHARD) {
                 ImplementationSymbolVisitor.Context shardCtx = shardImplementationSymbolVisitor.process(normalizedCollectNode);
@@ -177,7 +198,16 @@ public class ShardCollectService {
         );
     }
 
-    private CrateCollector getLuceneIndexCollector(CollectNode collectNode, Projector downstream) throws Exception {
+    private long readerVersion() {
+        Engine.Searcher searcher = indexService.shardSafe(shardId.id()).acquireSearcher("result_cache");
+        try {
+            return ShardResultCache.readerVersion(searcher.reader());
+        } finally {
+            searcher.close();
+        }
+    }
+
+    private LuceneDocCollector getLuceneIndexCollector(CollectNode collectNode, Projector downstream) throws Exception {
         CollectInputSymbolVisitor.Context docCtx = docInputSymbolVisitor.process(collectNode);
         return new LuceneDocCollector(
                 threadPool,
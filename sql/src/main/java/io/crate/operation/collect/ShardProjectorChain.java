@@ -31,7 +31,9 @@ import io.crate.operation.projectors.Projector;
 import io.crate.operation.projectors.ResultProvider;
 import io.crate.planner.RowGranularity;
 import io.crate.planner.projection.Projection;
+import io.crate.planner.projection.ProjectionType;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -65,10 +67,13 @@ import java.util.List;
  *     <li> feed data to the shard projectors
  *     <li> get your result from {@linkplain #result()}
  *
+ * If the {@link ShardResultCache} is enabled a partial aggregation which would run on the node
+ * is executed on every shard instead, so that the output of every shard can be cached.
  */
 public class ShardProjectorChain implements ResultProvider {
 
     private final List<Projection> projections;
+    private final boolean shardOutputCacheable;
     private final RamAccountingContext ramAccountingContext;
     protected final List<Projector> shardProjectors;
     protected final List<Projector> nodeProjectors;
@@ -81,11 +86,25 @@ public class ShardProjectorChain implements ResultProvider {
                                List<Projection> projections,
                                ProjectionToProjectorVisitor nodeProjectorVisitor,
                                RamAccountingContext ramAccountingContext) {
-        this.projections = projections;
+        this(numShards, projections, nodeProjectorVisitor, ramAccountingContext, false);
+    }
+
+    /**
+     * @param cacheShardOutput if true and no projection has to run on the shards,
+     *                         a leading partial aggregation is pushed down to the shards
+     *                         so that their output can be cached
+     */
+    public ShardProjectorChain(int numShards,
+                               List<Projection> projections,
+                               ProjectionToProjectorVisitor nodeProjectorVisitor,
+                               RamAccountingContext ramAccountingContext,
+                               boolean cacheShardOutput) {
         this.ramAccountingContext = ramAccountingContext;
         nodeProjectors = new ArrayList<>();
 
         if (projections.size() == 0) {
+            this.projections = projections;
+            shardOutputCacheable = false;
             firstNodeProjector = new CollectingProjector();
             lastProjector = (ResultProvider) firstNodeProjector;
             nodeProjectors.add(firstNodeProjector);
@@ -102,6 +121,17 @@ public class ShardProjectorChain implements ResultProvider {
             }
             idx++;
         }
+        if (cacheShardOutput && shardProjectionsIndex < 0) {
+            List<Projection> pushedDown = ShardResultCache.pushDownPartialAggregation(projections);
+            if (pushedDown != null) {
+                projections = pushedDown;
+                shardProjectionsIndex = 0;
+            }
+        }
+        this.projections = projections;
+        shardOutputCacheable = cacheShardOutput && shardProjectionsIndex == 0 && (
+                projections.get(0).projectionType() == ProjectionType.GROUP
+                || projections.get(0).projectionType() == ProjectionType.AGGREGATION);
 
         Projector previousProjector = null;
         // create the node level projectors
@@ -143,10 +173,25 @@ public class ShardProjectorChain implements ResultProvider {
      * @return a new projector connected to the internal chain
      */
     public Projector newShardDownstreamProjector(ProjectionToProjectorVisitor projectorVisitor) {
+        return newShardDownstreamProjector(projectorVisitor, null);
+    }
+
+    /**
+     * Like {@link #newShardDownstreamProjector(io.crate.operation.projectors.ProjectionToProjectorVisitor)}
+     * but the rows emitted by the shard level projectors are passed through the given projector
+     * before they reach the node level projectors.
+     */
+    public Projector newShardDownstreamProjector(ProjectionToProjectorVisitor projectorVisitor,
+                                                 @Nullable Projector shardOutputProjector) {
         if (shardProjectionsIndex < 0) {
             return firstNodeProjector;
         }
         Projector previousProjector = firstNodeProjector;
+        if (shardOutputProjector != null) {
+            shardOutputProjector.downstream(firstNodeProjector);
+            shardProjectors.add(shardOutputProjector);
+            previousProjector = shardOutputProjector;
+        }
         Projector projector = null;
         for (int i = shardProjectionsIndex; i >= 0; i--) {
             projector = projectorVisitor.process(projections.get(i), ramAccountingContext);
@@ -157,6 +202,29 @@ public class ShardProjectorChain implements ResultProvider {
         return projector;
     }
 
+    /**
+     * @return true if the shard level projection can be cached by the {@link ShardResultCache}
+     */
+    public boolean shardOutputCacheable() {
+        return shardOutputCacheable;
+    }
+
+    /**
+     * @return the projection whose output is cached, only valid if {@link #shardOutputCacheable()} is true
+     */
+    public Projection shardOutputProjection() {
+        assert shardOutputCacheable : "shard output isn't cacheable";
+        return projections.get(shardProjectionsIndex);
+    }
+
+    /**
+     * @return the projector which receives the output of the shard level projectors.
+     *         The upstream feeding it must replace the shard level projectors of one shard.
+     */
+    public Projector shardOutputDownstream() {
+        return firstNodeProjector;
+    }
+
     public ListenableFuture<Object[][]> result() {
         return lastProjector.result();
     }
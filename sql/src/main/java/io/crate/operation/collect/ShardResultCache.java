@@ -0,0 +1,558 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.collect;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import io.crate.Streamer;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.metadata.FunctionImplementation;
+import io.crate.metadata.Functions;
+import io.crate.operation.ProjectorUpstream;
+import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.operation.projectors.Projector;
+import io.crate.planner.RowGranularity;
+import io.crate.planner.node.dql.CollectNode;
+import io.crate.planner.projection.AggregationProjection;
+import io.crate.planner.projection.GroupProjection;
+import io.crate.planner.projection.Projection;
+import io.crate.planner.projection.ProjectionType;
+import io.crate.planner.symbol.*;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.MemorySizeValue;
+import org.elasticsearch.index.shard.ShardId;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the rows emitted by the shard level projection of a collect operation.
+ *
+ * An entry is identified by the shard, the collected symbols, the where clause,
+ * the shard level projection and the version of the index reader the rows were computed from.
+ * A refresh of the shard changes the reader version, so outdated entries are never hit
+ * again and get evicted eventually.
+ *
+ * The cache is bounded by the size of the serialized rows, least recently used entries are evicted first.
+ * It is disabled if {@value #SIZE_SETTING} is 0, which is the default.
+ */
+@ThreadSafe
+public class ShardResultCache extends AbstractComponent {
+
+    public static final String SIZE_SETTING = "node.result_cache.size";
+    public static final String DEFAULT_SIZE = "0b";
+
+    /**
+     * rows which need more than this fraction of the cache size aren't cached
+     */
+    private static final int MAX_ENTRY_FRACTION = 20;
+
+    /**
+     * rough estimate of the memory used by the key and entry objects
+     */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private static final DeterministicSymbolVisitor DETERMINISTIC_SYMBOL_VISITOR = new DeterministicSymbolVisitor();
+
+    private final Functions functions;
+    private final long maxSizeInBytes;
+    private final long maxEntrySizeInBytes;
+    private final Cache<Key, Entry> cache;
+    private final AtomicLong sizeInBytes = new AtomicLong();
+
+    @Inject
+    public ShardResultCache(Settings settings, Functions functions) {
+        this(settings,
+                MemorySizeValue.parseBytesSizeValueOrHeapRatio(settings.get(SIZE_SETTING, DEFAULT_SIZE)).bytes(),
+                functions);
+    }
+
+    public ShardResultCache(Settings settings, long maxSizeInBytes, Functions functions) {
+        super(settings);
+        this.functions = functions;
+        this.maxSizeInBytes = Math.max(0, maxSizeInBytes);
+        this.maxEntrySizeInBytes = Math.min(this.maxSizeInBytes / MAX_ENTRY_FRACTION, Integer.MAX_VALUE / 2);
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(this.maxSizeInBytes)
+                .weigher(new Weigher<Key, Entry>() {
+                    @Override
+                    public int weigh(Key key, Entry entry) {
+                        return weight(key, entry);
+                    }
+                })
+                .removalListener(new RemovalListener<Key, Entry>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<Key, Entry> notification) {
+                        sizeInBytes.addAndGet(-weight(notification.getKey(), notification.getValue()));
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    private static int weight(Key key, Entry entry) {
+        return key.plan.length + entry.rows.length() + ENTRY_OVERHEAD;
+    }
+
+    public boolean enabled() {
+        return maxSizeInBytes > 0;
+    }
+
+    /**
+     * Rewrites the projections so that a leading partial aggregation can run on every shard.
+     *
+     * The partial aggregation (ITER -> PARTIAL) is moved to the shards and the node
+     * reduces the partial results of its shards (PARTIAL -> PARTIAL), so the output
+     * of the node doesn't change.
+     *
+     * @return the rewritten projections or null if the first projection isn't a partial aggregation
+     */
+    @Nullable
+    public static List<Projection> pushDownPartialAggregation(List<Projection> projections) {
+        if (projections.isEmpty()) {
+            return null;
+        }
+        Projection first = projections.get(0);
+        Projection merge;
+        if (first.projectionType() == ProjectionType.GROUP) {
+            GroupProjection groupProjection = (GroupProjection) first;
+            List<Aggregation> aggregations = mergeAggregations(
+                    groupProjection.values(), groupProjection.keys().size());
+            if (aggregations == null) {
+                return null;
+            }
+            List<Symbol> keys = new ArrayList<>(groupProjection.keys().size());
+            for (int i = 0; i < groupProjection.keys().size(); i++) {
+                keys.add(new InputColumn(i, groupProjection.keys().get(i).valueType()));
+            }
+            merge = new GroupProjection(keys, aggregations);
+        } else if (first.projectionType() == ProjectionType.AGGREGATION) {
+            List<Aggregation> aggregations = mergeAggregations(
+                    ((AggregationProjection) first).aggregations(), 0);
+            if (aggregations == null) {
+                return null;
+            }
+            merge = new AggregationProjection(aggregations);
+        } else {
+            return null;
+        }
+        List<Projection> pushedDown = new ArrayList<>(projections.size() + 1);
+        pushedDown.add(first);
+        pushedDown.add(merge);
+        pushedDown.addAll(projections.subList(1, projections.size()));
+        return pushedDown;
+    }
+
+    @Nullable
+    private static List<Aggregation> mergeAggregations(List<Aggregation> aggregations, int offset) {
+        List<Aggregation> merged = new ArrayList<>(aggregations.size());
+        for (int i = 0; i < aggregations.size(); i++) {
+            Aggregation aggregation = aggregations.get(i);
+            if (aggregation.fromStep() != Aggregation.Step.ITER
+                    || aggregation.toStep() != Aggregation.Step.PARTIAL) {
+                return null;
+            }
+            merged.add(new Aggregation(
+                    aggregation.functionInfo(),
+                    Arrays.<Symbol>asList(new InputColumn(offset + i, aggregation.valueType())),
+                    Aggregation.Step.PARTIAL,
+                    Aggregation.Step.PARTIAL));
+        }
+        return merged;
+    }
+
+    /**
+     * @return the version of the given reader or -1 if it has none
+     */
+    public static long readerVersion(IndexReader reader) {
+        if (reader instanceof DirectoryReader) {
+            return ((DirectoryReader) reader).getVersion();
+        }
+        return -1L;
+    }
+
+    /**
+     * @return a request to look up or store the shard output of the given collect operation
+     *         or null if the output can't be cached
+     */
+    @Nullable
+    public Request request(String indexUUID,
+                           ShardId shardId,
+                           CollectNode collectNode,
+                           ShardProjectorChain projectorChain) throws IOException {
+        if (!enabled()
+                || !projectorChain.shardOutputCacheable()
+                || collectNode.maxRowGranularity() != RowGranularity.DOC) {
+            return null;
+        }
+        Projection projection = projectorChain.shardOutputProjection();
+        if (!deterministic(collectNode.toCollect())
+                || (collectNode.whereClause().hasQuery()
+                    && !DETERMINISTIC_SYMBOL_VISITOR.process(collectNode.whereClause().query(), null))
+                || !deterministic(projection.outputs())) {
+            return null;
+        }
+        Streamer<?>[] streamers = streamers(collectNode, projection);
+        if (streamers == null) {
+            return null;
+        }
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        out.writeVInt(collectNode.toCollect().size());
+        for (Symbol symbol : collectNode.toCollect()) {
+            Symbol.toStream(symbol, out);
+        }
+        collectNode.whereClause().writeTo(out);
+        Projection.toStream(projection, out);
+        return new Request(indexUUID, shardId, out.bytes().toBytes(), streamers);
+    }
+
+    private static boolean deterministic(List<? extends Symbol> symbols) {
+        for (Symbol symbol : symbols) {
+            if (!DETERMINISTIC_SYMBOL_VISITOR.process(symbol, null)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Nullable
+    private Streamer<?>[] streamers(CollectNode collectNode, Projection projection) {
+        List<? extends Symbol> outputs = projection.outputs();
+        Streamer<?>[] streamers = new Streamer<?>[outputs.size()];
+        for (int i = 0; i < outputs.size(); i++) {
+            Symbol output = outputs.get(i);
+            DataType type;
+            if (output.symbolType() == SymbolType.AGGREGATION) {
+                Aggregation aggregation = (Aggregation) output;
+                if (aggregation.toStep() == Aggregation.Step.PARTIAL) {
+                    FunctionImplementation implementation = functions.get(aggregation.functionIdent());
+                    if (!(implementation instanceof AggregationFunction)) {
+                        return null;
+                    }
+                    type = ((AggregationFunction<?, ?>) implementation).partialType();
+                } else {
+                    type = aggregation.valueType();
+                }
+            } else if (output.symbolType() == SymbolType.INPUT_COLUMN) {
+                int index = ((InputColumn) output).index();
+                if (index >= collectNode.toCollect().size()) {
+                    return null;
+                }
+                type = collectNode.toCollect().get(index).valueType();
+            } else {
+                type = output.valueType();
+            }
+            if (type == null || type.equals(DataTypes.UNDEFINED)) {
+                return null;
+            }
+            streamers[i] = type.streamer();
+        }
+        return streamers;
+    }
+
+    public long maxSizeInBytes() {
+        return maxSizeInBytes;
+    }
+
+    public long sizeInBytes() {
+        return sizeInBytes.get();
+    }
+
+    public long entries() {
+        return cache.size();
+    }
+
+    public long hits() {
+        return cache.stats().hitCount();
+    }
+
+    public long misses() {
+        return cache.stats().missCount();
+    }
+
+    public long evictions() {
+        return cache.stats().evictionCount();
+    }
+
+    /**
+     * The output of one collect operation on one shard.
+     */
+    public class Request {
+
+        private final String indexUUID;
+        private final ShardId shardId;
+        private final byte[] plan;
+        private final Streamer<?>[] streamers;
+
+        private Request(String indexUUID, ShardId shardId, byte[] plan, Streamer<?>[] streamers) {
+            this.indexUUID = indexUUID;
+            this.shardId = shardId;
+            this.plan = plan;
+            this.streamers = streamers;
+        }
+
+        /**
+         * @return a collector emitting the cached rows to the downstream
+         *         or null if no rows are cached for the given reader version
+         */
+        @Nullable
+        public CrateCollector cachedCollector(long readerVersion, Projector downstream) {
+            if (readerVersion < 0) {
+                return null;
+            }
+            Entry entry = cache.getIfPresent(new Key(indexUUID, shardId, readerVersion, plan));
+            if (entry == null) {
+                return null;
+            }
+            return new CachedRowsCollector(entry, streamers, downstream);
+        }
+
+        /**
+         * @return a projector passing rows through to its downstream, which caches them once
+         *         its upstream finished successfully
+         */
+        public Recorder newRecorder() {
+            return new Recorder(this);
+        }
+
+        private void put(long readerVersion, BytesReference rows, int numRows) {
+            Key key = new Key(indexUUID, shardId, readerVersion, plan);
+            Entry entry = new Entry(rows, numRows);
+            sizeInBytes.addAndGet(weight(key, entry));
+            cache.put(key, entry);
+        }
+    }
+
+    /**
+     * Serializes the rows it receives and stores them in the cache,
+     * the version of the reader used to compute them has to be set using {@link #readerVersion(long)}.
+     */
+    public class Recorder implements Projector {
+
+        private final Request request;
+        private Projector downstream;
+        private BytesStreamOutput out = new BytesStreamOutput();
+        private int numRows = 0;
+        private volatile long readerVersion = -1L;
+
+        private Recorder(Request request) {
+            this.request = request;
+        }
+
+        public void readerVersion(long readerVersion) {
+            this.readerVersion = readerVersion;
+        }
+
+        @Override
+        public void downstream(Projector downstream) {
+            downstream.registerUpstream(this);
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void startProjection() {
+        }
+
+        @Override
+        public synchronized boolean setNextRow(Object... row) {
+            if (out != null) {
+                try {
+                    for (int i = 0; i < request.streamers.length; i++) {
+                        request.streamers[i].writeValueTo(out, row[i]);
+                    }
+                    numRows++;
+                    if (out.size() > maxEntrySizeInBytes) {
+                        out = null;
+                    }
+                } catch (IOException e) {
+                    logger.trace("could not serialize shard output for {}", e, request.shardId);
+                    out = null;
+                }
+            }
+            if (!downstream.setNextRow(row)) {
+                // the upstream stops sending rows, the recorded output is incomplete
+                out = null;
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void registerUpstream(ProjectorUpstream upstream) {
+        }
+
+        @Override
+        public void upstreamFinished() {
+            synchronized (this) {
+                if (out != null && readerVersion >= 0) {
+                    request.put(readerVersion, new BytesArray(out.bytes().toBytes()), numRows);
+                }
+                out = null;
+            }
+            downstream.upstreamFinished();
+        }
+
+        @Override
+        public void upstreamFailed(Throwable throwable) {
+            synchronized (this) {
+                out = null;
+            }
+            downstream.upstreamFailed(throwable);
+        }
+    }
+
+    private static class CachedRowsCollector implements CrateCollector {
+
+        private final Entry entry;
+        private final Streamer<?>[] streamers;
+        private Projector downstream;
+
+        private CachedRowsCollector(Entry entry, Streamer<?>[] streamers, Projector downstream) {
+            this.entry = entry;
+            this.streamers = streamers;
+            downstream(downstream);
+        }
+
+        @Override
+        public void downstream(Projector downstream) {
+            downstream.registerUpstream(this);
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void doCollect(RamAccountingContext ramAccountingContext) throws Exception {
+            try {
+                StreamInput in = entry.rows.streamInput();
+                for (int i = 0; i < entry.numRows; i++) {
+                    Object[] row = new Object[streamers.length];
+                    for (int c = 0; c < streamers.length; c++) {
+                        row[c] = streamers[c].readValueFrom(in);
+                    }
+                    if (!downstream.setNextRow(row)) {
+                        break;
+                    }
+                }
+            } catch (Exception e) {
+                downstream.upstreamFailed(e);
+                throw e;
+            }
+            downstream.upstreamFinished();
+        }
+    }
+
+    private static class Entry {
+
+        private final BytesReference rows;
+        private final int numRows;
+
+        private Entry(BytesReference rows, int numRows) {
+            this.rows = rows;
+            this.numRows = numRows;
+        }
+    }
+
+    private static class Key {
+
+        private final String indexUUID;
+        private final ShardId shardId;
+        private final long readerVersion;
+        private final byte[] plan;
+        private final int hashCode;
+
+        private Key(String indexUUID, ShardId shardId, long readerVersion, byte[] plan) {
+            this.indexUUID = indexUUID;
+            this.shardId = shardId;
+            this.readerVersion = readerVersion;
+            this.plan = plan;
+            int result = indexUUID.hashCode();
+            result = 31 * result + shardId.hashCode();
+            result = 31 * result + (int) (readerVersion ^ (readerVersion >>> 32));
+            result = 31 * result + Arrays.hashCode(plan);
+            this.hashCode = result;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return readerVersion == key.readerVersion
+                    && indexUUID.equals(key.indexUUID)
+                    && shardId.equals(key.shardId)
+                    && Arrays.equals(plan, key.plan);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * returns false if the symbol contains a function which may return different values for the same input
+     */
+    private static class DeterministicSymbolVisitor extends SymbolVisitor<Void, Boolean> {
+
+        @Override
+        public Boolean visitFunction(Function symbol, Void context) {
+            return symbol.info().deterministic() && allDeterministic(symbol.arguments());
+        }
+
+        @Override
+        public Boolean visitAggregation(Aggregation symbol, Void context) {
+            return symbol.functionInfo().deterministic() && allDeterministic(symbol.inputs());
+        }
+
+        private boolean allDeterministic(List<Symbol> symbols) {
+            for (Symbol symbol : symbols) {
+                if (!process(symbol, null)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        protected Boolean visitSymbol(Symbol symbol, Void context) {
+            return true;
+        }
+    }
+}
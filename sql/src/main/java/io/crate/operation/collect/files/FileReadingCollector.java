@@ -27,6 +27,7 @@ import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import io.crate.breaker.RamAccountingContext;
+import io.crate.exceptions.JobKilledException;
 import io.crate.operation.Input;
 import io.crate.operation.collect.CollectionAbortedException;
 import io.crate.operation.collect.CrateCollector;
@@ -159,6 +160,7 @@ public class FileReadingCollector implements CrateCollector {
         String line;
         List<URI> uris;
         uris = getUris(fileInput, uriPredicate);
+        boolean killed = false;
         try {
             for (URI uri : uris) {
                 InputStream inputStream = fileInput.getStream(uri);
@@ -170,6 +172,9 @@ public class FileReadingCollector implements CrateCollector {
 
                 try {
                     while ((line = reader.readLine()) != null) {
+                        if (ramAccountingContext != null && ramAccountingContext.killed()) {
+                            throw new JobKilledException();
+                        }
                         collectorContext.lineContext().rawSource(line.getBytes(StandardCharsets.UTF_8));
                         newRow = new Object[inputs.size()];
                         for (LineCollectorExpression expression : collectorExpressions) {
@@ -187,8 +192,14 @@ public class FileReadingCollector implements CrateCollector {
                     reader.close();
                 }
             }
+        } catch (JobKilledException e) {
+            killed = true;
+            downstream.upstreamFailed(e);
+            throw e;
         } finally {
-            downstream.upstreamFinished();
+            if (!killed) {
+                downstream.upstreamFinished();
+            }
         }
     }
 
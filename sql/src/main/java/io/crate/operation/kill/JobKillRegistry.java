@@ -0,0 +1,119 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.kill;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of the {@link Killable}s of all jobs with operations running on this node.
+ *
+ * Killing a job kills all registered Killables of that job.
+ * The job is remembered as killed for a while so that operations which are registered
+ * after the kill request arrived (e.g. collect requests still on the wire) are killed immediately.
+ *
+ * injected via guice instead of using static so that if two nodes run
+ * in the same jvm the registries aren't shared between the nodes.
+ */
+@ThreadSafe
+public class JobKillRegistry {
+
+    private static final ESLogger LOGGER = Loggers.getLogger(JobKillRegistry.class);
+
+    private final Map<UUID, List<Killable>> activeJobs = new HashMap<>();
+    private final Cache<UUID, Boolean> killedJobs = CacheBuilder.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .build();
+    private final Object lock = new Object();
+
+    /**
+     * register a killable for the given job.
+     * If the job was already killed the killable is killed right away.
+     */
+    public void register(UUID jobId, Killable killable) {
+        synchronized (lock) {
+            if (killedJobs.getIfPresent(jobId) == null) {
+                List<Killable> killables = activeJobs.get(jobId);
+                if (killables == null) {
+                    killables = new ArrayList<>(2);
+                    activeJobs.put(jobId, killables);
+                }
+                killables.add(killable);
+                return;
+            }
+        }
+        LOGGER.trace("job {} was already killed, killing newly registered operation", jobId);
+        killable.kill();
+    }
+
+    public void unregister(UUID jobId, Killable killable) {
+        synchronized (lock) {
+            List<Killable> killables = activeJobs.get(jobId);
+            if (killables != null) {
+                killables.remove(killable);
+                if (killables.isEmpty()) {
+                    activeJobs.remove(jobId);
+                }
+            }
+        }
+    }
+
+    /**
+     * kill all operations of the given job that are registered on this node
+     *
+     * @return the number of killed operations
+     */
+    public int kill(UUID jobId) {
+        List<Killable> killables;
+        synchronized (lock) {
+            killedJobs.put(jobId, Boolean.TRUE);
+            killables = activeJobs.remove(jobId);
+        }
+        if (killables == null) {
+            return 0;
+        }
+        LOGGER.debug("killing {} operations of job {}", killables.size(), jobId);
+        for (Killable killable : killables) {
+            try {
+                killable.kill();
+            } catch (Exception e) {
+                LOGGER.error("error killing operation of job {}", e, jobId);
+            }
+        }
+        return killables.size();
+    }
+
+    public boolean isKilled(UUID jobId) {
+        return killedJobs.getIfPresent(jobId) != null;
+    }
+}
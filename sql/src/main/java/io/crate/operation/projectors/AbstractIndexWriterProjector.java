@@ -31,6 +31,7 @@ import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import io.crate.analyze.Id;
+import io.crate.exceptions.JobKilledException;
 import io.crate.metadata.ColumnIdent;
 import io.crate.metadata.PartitionName;
 import io.crate.operation.Input;
@@ -197,7 +198,12 @@ public abstract class AbstractIndexWriterProjector implements Projector {
         if (downstream != null) {
             downstream.upstreamFailed(throwable);
         }
-        bulkShardProcessor.close();
+        if (throwable instanceof JobKilledException) {
+            // don't flush the buffered rows of a killed job
+            bulkShardProcessor.kill(throwable);
+        } else {
+            bulkShardProcessor.close();
+        }
     }
 
     private void setResultCallback() {
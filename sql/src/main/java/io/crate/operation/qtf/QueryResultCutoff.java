@@ -0,0 +1,207 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.qtf;
+
+import io.crate.analyze.WhereClause;
+import io.crate.operation.predicate.MatchPredicate;
+import io.crate.planner.symbol.Function;
+import io.crate.planner.symbol.Symbol;
+import io.crate.planner.symbol.SymbolVisitor;
+import org.apache.lucene.search.FieldComparator;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.util.PriorityQueue;
+
+import java.io.IOException;
+
+/**
+ * Merges the top docs of the query phase results into the global top-N while the shard responses arrive.
+ *
+ * <p>
+ * Without an order any N documents are a valid result, so the fetch phase can start as soon as
+ * the shards which responded returned enough documents (see {@link #isComplete()}).
+ * The results of slower shards are dropped.
+ * </p>
+ *
+ * <p>
+ * If the result is ordered the N-th best document of the responses so far is the cutoff
+ * for the responses which arrive later: A shard whose best document sorts after it can't
+ * contribute to the result and its search context can be released right away.
+ * </p>
+ *
+ * Not thread-safe, callers have to synchronize on the cutoff.
+ */
+class QueryResultCutoff {
+
+    private final int topN;
+    private final boolean ordered;
+
+    private ScoreDocQueue queue;
+    private int numDocs = 0;
+    private boolean secondPhaseStarted = false;
+
+    /**
+     * @param topN the number of documents required, including the offset
+     * @param ordered if false the result may consist of any documents
+     */
+    QueryResultCutoff(int topN, boolean ordered) {
+        this.topN = topN;
+        this.ordered = ordered;
+    }
+
+    /**
+     * a result without ORDER BY is still ordered by score if it is queried using the match predicate
+     */
+    static boolean isOrdered(boolean hasOrderBy, WhereClause whereClause) {
+        if (hasOrderBy) {
+            return true;
+        }
+        if (!whereClause.hasQuery()) {
+            return false;
+        }
+        return MATCH_PREDICATE_VISITOR.process(whereClause.query(), null);
+    }
+
+    /**
+     * @return false if the shard can't contribute to the global top-N
+     */
+    boolean offer(int shardIndex, TopDocs topDocs) throws IOException {
+        ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+        if (!ordered) {
+            numDocs += scoreDocs.length;
+            return true;
+        }
+        if (scoreDocs.length == 0) {
+            return queue == null || queue.size() < topN;
+        }
+        if (queue == null) {
+            queue = new ScoreDocQueue(topN, topDocs);
+        } else if (queue.size() == topN && queue.compare(scoreDocs[0], queue.top(), false) > 0) {
+            return false;
+        }
+        for (ScoreDoc scoreDoc : scoreDocs) {
+            scoreDoc.shardIndex = shardIndex;
+            if (queue.insertWithOverflow(scoreDoc) == scoreDoc) {
+                // the docs of a shard are sorted, so the following ones aren't competitive either
+                break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the responses so far contain enough documents for the result
+     */
+    boolean isComplete() {
+        return !ordered && numDocs >= topN;
+    }
+
+    boolean secondPhaseStarted() {
+        return secondPhaseStarted;
+    }
+
+    void startSecondPhase() {
+        secondPhaseStarted = true;
+    }
+
+    /**
+     * keeps the best docs, the worst doc on top.
+     * Compares in the same way as {@link TopDocs#merge(org.apache.lucene.search.Sort, int, int, TopDocs[])}
+     */
+    static class ScoreDocQueue extends PriorityQueue<ScoreDoc> {
+
+        private final FieldComparator<Object>[] comparators;
+        private final int[] reverseMul;
+
+        @SuppressWarnings("unchecked")
+        ScoreDocQueue(int maxSize, TopDocs topDocs) throws IOException {
+            super(maxSize);
+            if (topDocs instanceof TopFieldDocs) {
+                SortField[] sortFields = ((TopFieldDocs) topDocs).fields;
+                comparators = new FieldComparator[sortFields.length];
+                reverseMul = new int[sortFields.length];
+                for (int i = 0; i < sortFields.length; i++) {
+                    comparators[i] = (FieldComparator<Object>) sortFields[i].getComparator(1, i);
+                    reverseMul[i] = sortFields[i].getReverse() ? -1 : 1;
+                }
+            } else {
+                comparators = null;
+                reverseMul = null;
+            }
+        }
+
+        @Override
+        protected boolean lessThan(ScoreDoc a, ScoreDoc b) {
+            return compare(a, b, true) > 0;
+        }
+
+        /**
+         * @return a negative number if the first doc sorts before the second one
+         */
+        int compare(ScoreDoc first, ScoreDoc second, boolean tieBreak) {
+            int cmp = 0;
+            if (comparators == null) {
+                cmp = Float.compare(second.score, first.score);
+            } else {
+                FieldDoc firstDoc = (FieldDoc) first;
+                FieldDoc secondDoc = (FieldDoc) second;
+                for (int i = 0; i < comparators.length && cmp == 0; i++) {
+                    cmp = reverseMul[i] * comparators[i].compareValues(firstDoc.fields[i], secondDoc.fields[i]);
+                }
+            }
+            if (cmp != 0 || !tieBreak) {
+                return cmp;
+            }
+            if (first.shardIndex != second.shardIndex) {
+                return first.shardIndex < second.shardIndex ? -1 : 1;
+            }
+            return first.doc < second.doc ? -1 : (first.doc == second.doc ? 0 : 1);
+        }
+    }
+
+    private static final MatchPredicateVisitor MATCH_PREDICATE_VISITOR = new MatchPredicateVisitor();
+
+    private static class MatchPredicateVisitor extends SymbolVisitor<Void, Boolean> {
+
+        @Override
+        public Boolean visitFunction(Function symbol, Void context) {
+            if (symbol.info().ident().name().equals(MatchPredicate.NAME)) {
+                return true;
+            }
+            for (Symbol argument : symbol.arguments()) {
+                if (process(argument, context)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        protected Boolean visitSymbol(Symbol symbol, Void context) {
+            return false;
+        }
+    }
+}
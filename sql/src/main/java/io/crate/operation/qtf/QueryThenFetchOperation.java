@@ -31,8 +31,11 @@ import io.crate.action.sql.query.QueryShardScrollRequest;
 import io.crate.action.sql.query.TransportQueryShardAction;
 import io.crate.exceptions.Exceptions;
 import io.crate.exceptions.FailedShardsException;
+import io.crate.exceptions.JobKilledException;
 import io.crate.executor.PageInfo;
 import io.crate.executor.transport.task.elasticsearch.FieldExtractor;
+import io.crate.operation.kill.JobKillRegistry;
+import io.crate.operation.kill.Killable;
 import io.crate.planner.node.dql.QueryThenFetchNode;
 import io.crate.planner.symbol.Reference;
 import org.apache.lucene.search.ScoreDoc;
@@ -88,6 +91,7 @@ public class QueryThenFetchOperation {
     private final BigArrays bigArrays;
     private final CrateResultSorter crateResultSorter;
     private final ClusterService clusterService;
+    private final JobKillRegistry jobKillRegistry;
 
     /**
      * dummy request required to re-use the searchService transport
@@ -102,7 +106,8 @@ public class QueryThenFetchOperation {
                                    SearchPhaseController searchPhaseController,
                                    ThreadPool threadPool,
                                    BigArrays bigArrays,
-                                   CrateResultSorter crateResultSorter) {
+                                   CrateResultSorter crateResultSorter,
+                                   JobKillRegistry jobKillRegistry) {
         this.transportQueryShardAction = transportQueryShardAction;
         this.searchServiceTransportAction = searchServiceTransportAction;
         this.searchPhaseController = searchPhaseController;
@@ -110,14 +115,25 @@ public class QueryThenFetchOperation {
         this.bigArrays = bigArrays;
         this.crateResultSorter = crateResultSorter;
         this.clusterService = clusterService;
+        this.jobKillRegistry = jobKillRegistry;
     }
 
-    public ListenableFuture<QueryThenFetchContext> execute(QueryThenFetchNode searchNode,
+    /**
+     * runs the query phase and the fetch phase of the first page.
+     * The returned context is registered in the {@link JobKillRegistry} until it is closed.
+     */
+    public ListenableFuture<QueryThenFetchContext> execute(UUID jobId,
+                                                           QueryThenFetchNode searchNode,
                                                            List<Reference> outputs,
                                                            Optional<PageInfo> pageInfo) {
         SettableFuture<QueryThenFetchContext> future = SettableFuture.create();
         // do stuff
-        QueryThenFetchContext ctx = new QueryThenFetchContext(bigArrays, searchNode, outputs, pageInfo);
+        QueryThenFetchContext ctx = new QueryThenFetchContext(jobId, bigArrays, searchNode, outputs, pageInfo);
+        ctx.pendingFuture = future;
+        jobKillRegistry.register(jobId, ctx);
+        if (ctx.killed) {
+            return future;
+        }
         prepareRequests(ctx);
 
         if (!searchNode.routing().hasLocations() || ctx.requests.size() == 0) {
@@ -176,6 +192,7 @@ public class QueryThenFetchOperation {
                     ctx.requests.add(new Tuple<>(
                             node,
                             new QueryShardRequest(
+                                    ctx.jobId,
                                     index,
                                     shard,
                                     ctx.outputs,
@@ -186,6 +203,7 @@ public class QueryThenFetchOperation {
                                     queryOffset, // handle offset manually on handler for paged/scrolled calls
                                     ctx.searchNode.whereClause(),
                                     ctx.searchNode.partitionBy(),
+                                    ctx.searchNode.fetchFromDocValues(),
                                     keepAliveValue
                             )
                     ));
@@ -197,6 +215,11 @@ public class QueryThenFetchOperation {
     public ListenableFuture<InternalSearchResponse> executePageQuery(final int from, final int size, final QueryThenFetchContext ctx) {
 
         final SettableFuture<InternalSearchResponse> future = SettableFuture.create();
+        ctx.pendingFuture = future;
+        if (ctx.killed) {
+            future.setException(new JobKilledException(ctx.jobId));
+            return future;
+        }
         final QueryThenFetchPageContext pageContext = new QueryThenFetchPageContext(ctx);
         final Scroll scroll = new Scroll(DEFAULT_KEEP_ALIVE);
 
@@ -374,6 +397,7 @@ public class QueryThenFetchOperation {
 
     private void raiseEarlyFailure(QueryThenFetchContext ctx, SettableFuture<?> future, Throwable t) {
         ctx.releaseAllContexts();
+        jobKillRegistry.unregister(ctx.jobId, ctx);
         t = Exceptions.unwrap(t);
         if (t instanceof QueryPhaseExecutionException) {
             future.setException(t.getCause());
@@ -398,8 +422,14 @@ public class QueryThenFetchOperation {
         }
     }
 
-    public class QueryThenFetchContext implements Closeable {
+    /**
+     * Killing the job frees the search contexts known to the handler and fails the
+     * running phase. Search contexts whose query result didn't arrive yet are freed
+     * by the kill on their node or as soon as their result arrives.
+     */
+    public class QueryThenFetchContext implements Closeable, Killable {
 
+        private final UUID jobId;
         private final Optional<PageInfo> pageInfo;
         private final DiscoveryNodes nodes;
         private final QueryThenFetchNode searchNode;
@@ -410,6 +440,12 @@ public class QueryThenFetchOperation {
 
         private final Map<SearchShardTarget, Long> searchContextIds;
 
+        /**
+         * null for paged queries, their search contexts are needed for the following pages
+         */
+        @Nullable
+        private final QueryResultCutoff cutoff;
+
         private final AtomicArray<IntArrayList> docIdsToLoad;
         private final AtomicArray<QuerySearchResult> queryResults;
         private final AtomicArray<FetchSearchResult> fetchResults;
@@ -420,10 +456,18 @@ public class QueryThenFetchOperation {
         private volatile AtomicArray<ShardSearchFailure> shardFailures;
         private List<Tuple<String, QueryShardRequest>> requests;
 
-        public QueryThenFetchContext(BigArrays bigArrays,
+        private volatile boolean killed = false;
+        /**
+         * the future of the running query, fetch or page query phase
+         */
+        private volatile SettableFuture<?> pendingFuture;
+
+        public QueryThenFetchContext(UUID jobId,
+                                     BigArrays bigArrays,
                                      QueryThenFetchNode node,
                                      List<Reference> outputs,
                                      Optional<PageInfo> pageInfo) {
+            this.jobId = jobId;
             this.searchNode = node;
             this.outputs = outputs;
             this.pageInfo = pageInfo;
@@ -436,6 +480,14 @@ public class QueryThenFetchOperation {
             queryResults = new AtomicArray<>(numShards);
             fetchResults = new AtomicArray<>(numShards);
             numColumns = node.outputs().size();
+
+            int topN = node.offset() + node.limit();
+            if (pageInfo.isPresent() || topN <= 0) {
+                cutoff = null;
+            } else {
+                cutoff = new QueryResultCutoff(topN,
+                        QueryResultCutoff.isOrdered(!node.orderBy().isEmpty(), node.whereClause()));
+            }
         }
 
         public ListenableFuture<InternalSearchResponse> createSearchResponse() {
@@ -496,6 +548,13 @@ public class QueryThenFetchOperation {
             }
         }
 
+        private void releaseContext(QuerySearchResult queryResult) {
+            DiscoveryNode node = nodes.get(queryResult.shardTarget().nodeId());
+            if (node != null) {
+                searchServiceTransportAction.sendFreeContext(node, queryResult.id(), EMPTY_SEARCH_REQUEST);
+            }
+        }
+
         private void releaseAllContexts() {
             for (Map.Entry<SearchShardTarget, Long> entry : searchContextIds.entrySet()) {
                 DiscoveryNode node = nodes.get(entry.getKey().nodeId());
@@ -534,9 +593,24 @@ public class QueryThenFetchOperation {
 
         @Override
         public void close() throws IOException {
+            jobKillRegistry.unregister(jobId, this);
             releaseAllContexts();
         }
 
+        @Override
+        public void kill() {
+            killed = true;
+            releaseAllContexts();
+            SettableFuture<?> future = pendingFuture;
+            if (future != null) {
+                future.setException(new JobKilledException(jobId));
+            }
+        }
+
+        public UUID jobId() {
+            return jobId;
+        }
+
         public List<Reference> outputs() {
             return outputs;
         }
@@ -618,19 +692,59 @@ public class QueryThenFetchOperation {
 
             querySearchResult.shardTarget(
                     new SearchShardTarget(requestTuple.v1(), request.index(), request.shardId()));
-            ctx.searchContextIds.put(querySearchResult.shardTarget(), querySearchResult.id());
-            ctx.queryResults.set(requestIdx, querySearchResult);
-            if (totalOps.incrementAndGet() == expectedOps) {
-                try {
+            if (ctx.killed) {
+                ctx.releaseContext(querySearchResult);
+                return;
+            }
+            try {
+                if (ctx.cutoff == null) {
+                    addQueryResult(querySearchResult);
+                    if (totalOps.incrementAndGet() == expectedOps) {
+                        moveToSecondPhase(ctx, future);
+                    }
+                    return;
+                }
+
+                boolean relevant = false;
+                boolean startSecondPhase = false;
+                synchronized (ctx.cutoff) {
+                    if (!ctx.cutoff.secondPhaseStarted()) {
+                        relevant = ctx.cutoff.offer(requestIdx, querySearchResult.topDocs());
+                        if (relevant) {
+                            addQueryResult(querySearchResult);
+                        }
+                        startSecondPhase = totalOps.incrementAndGet() == expectedOps || ctx.cutoff.isComplete();
+                        if (startSecondPhase) {
+                            ctx.cutoff.startSecondPhase();
+                        }
+                    }
+                }
+                if (!relevant) {
+                    ctx.releaseContext(querySearchResult);
+                }
+                if (startSecondPhase) {
                     moveToSecondPhase(ctx, future);
-                } catch (IOException e) {
-                    raiseEarlyFailure(ctx, future, e);
                 }
+            } catch (IOException e) {
+                raiseEarlyFailure(ctx, future, e);
             }
         }
 
+        private void addQueryResult(QuerySearchResult querySearchResult) {
+            ctx.searchContextIds.put(querySearchResult.shardTarget(), querySearchResult.id());
+            ctx.queryResults.set(requestIdx, querySearchResult);
+        }
+
         @Override
         public void onFailure(Throwable e) {
+            if (ctx.cutoff != null) {
+                synchronized (ctx.cutoff) {
+                    if (ctx.cutoff.secondPhaseStarted()) {
+                        logger.debug("ignoring failure of a shard which responded after the cutoff", e);
+                        return;
+                    }
+                }
+            }
             raiseEarlyFailure(ctx, future, e);
         }
     }
@@ -39,7 +39,7 @@ public class BooleanColumnReference extends FieldCacheExpression<IndexFieldData,
     @Override
     public void setNextReader(AtomicReaderContext context) {
         super.setNextReader(context);
-        values = indexFieldData.load(context).getBytesValues();
+        values = loadFieldData(context).getBytesValues();
     }
 
     @Override
@@ -24,6 +24,7 @@ package io.crate.operation.reference.doc.lucene;
 import io.crate.exceptions.GroupByOnArrayUnsupportedException;
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.SortedNumericDocValues;
+import org.elasticsearch.index.fielddata.AtomicNumericFieldData;
 import org.elasticsearch.index.fielddata.IndexNumericFieldData;
 
 public class ByteColumnReference extends FieldCacheExpression<IndexNumericFieldData, Byte> {
@@ -55,7 +56,7 @@ public class ByteColumnReference extends FieldCacheExpression<IndexNumericFieldD
     @Override
     public void setNextReader(AtomicReaderContext context) {
         super.setNextReader(context);
-        values = indexFieldData.load(context).getLongValues();
+        values = this.<AtomicNumericFieldData>loadFieldData(context).getLongValues();
     }
 
     @Override
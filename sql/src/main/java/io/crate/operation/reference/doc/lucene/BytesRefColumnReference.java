@@ -26,6 +26,7 @@ import io.crate.exceptions.ValidationException;
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.RandomAccessOrds;
 import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.index.fielddata.AtomicOrdinalsFieldData;
 import org.elasticsearch.index.fielddata.IndexOrdinalsFieldData;
 
 public class BytesRefColumnReference extends FieldCacheExpression<IndexOrdinalsFieldData, BytesRef> {
@@ -52,7 +53,7 @@ public class BytesRefColumnReference extends FieldCacheExpression<IndexOrdinalsF
     @Override
     public void setNextReader(AtomicReaderContext context) {
         super.setNextReader(context);
-        values = indexFieldData.load(context).getOrdinalsValues();
+        values = this.<AtomicOrdinalsFieldData>loadFieldData(context).getOrdinalsValues();
     }
 
     @Override
@@ -22,6 +22,9 @@
 package io.crate.operation.reference.doc.lucene;
 
 import io.crate.Constants;
+import io.crate.lucene.PinnedFieldData;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.elasticsearch.index.fielddata.AtomicFieldData;
 import org.elasticsearch.index.fielddata.IndexFieldData;
 import org.elasticsearch.index.mapper.FieldMapper;
 
@@ -43,4 +46,17 @@ public abstract class FieldCacheExpression<IFD extends IndexFieldData, ReturnTyp
                 (columnName, DEFAULT_MAPPING_TYPES);
         indexFieldData = (IFD) context.searchContext().fieldData().getForField(mapper);
     }
+
+    /**
+     * loads the field data of the segment, field data which has been pinned
+     * by the {@link io.crate.operation.collect.HotColumnsWarmer} is used if available
+     */
+    @SuppressWarnings("unchecked")
+    protected <FD extends AtomicFieldData> FD loadFieldData(AtomicReaderContext context) {
+        AtomicFieldData fieldData = PinnedFieldData.get(context.reader(), indexFieldData.getFieldNames().indexName());
+        if (fieldData == null) {
+            fieldData = indexFieldData.load(context);
+        }
+        return (FD) fieldData;
+    }
 }
@@ -23,6 +23,7 @@ package io.crate.operation.reference.doc.lucene;
 
 import io.crate.exceptions.GroupByOnArrayUnsupportedException;
 import org.apache.lucene.index.AtomicReaderContext;
+import org.elasticsearch.index.fielddata.AtomicNumericFieldData;
 import org.elasticsearch.index.fielddata.IndexNumericFieldData;
 import org.elasticsearch.index.fielddata.SortedNumericDoubleValues;
 
@@ -49,7 +50,7 @@ public class FloatColumnReference extends FieldCacheExpression<IndexNumericField
     @Override
     public void setNextReader(AtomicReaderContext context) {
         super.setNextReader(context);
-        values = indexFieldData.load(context).getDoubleValues();
+        values = this.<AtomicNumericFieldData>loadFieldData(context).getDoubleValues();
     }
 
     @Override
@@ -24,6 +24,7 @@ package io.crate.operation.reference.doc.lucene;
 import io.crate.exceptions.GroupByOnArrayUnsupportedException;
 import org.apache.lucene.index.AtomicReaderContext;
 import org.elasticsearch.common.geo.GeoPoint;
+import org.elasticsearch.index.fielddata.AtomicGeoPointFieldData;
 import org.elasticsearch.index.fielddata.IndexGeoPointFieldData;
 import org.elasticsearch.index.fielddata.MultiGeoPointValues;
 
@@ -51,7 +52,7 @@ public class GeoPointColumnReference extends FieldCacheExpression<IndexGeoPointF
     @Override
     public void setNextReader(AtomicReaderContext context) {
         super.setNextReader(context);
-        values = indexFieldData.load(context).getGeoPointValues();
+        values = this.<AtomicGeoPointFieldData>loadFieldData(context).getGeoPointValues();
     }
 
     @Override
@@ -25,6 +25,7 @@ import io.crate.exceptions.GroupByOnArrayUnsupportedException;
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.SortedNumericDocValues;
 import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.index.fielddata.AtomicNumericFieldData;
 import org.elasticsearch.index.fielddata.IndexNumericFieldData;
 import org.elasticsearch.index.mapper.ip.IpFieldMapper;
 
@@ -57,6 +58,6 @@ public class IpColumnReference extends FieldCacheExpression<IndexNumericFieldDat
     @Override
     public void setNextReader(AtomicReaderContext context) {
         super.setNextReader(context);
-        values = indexFieldData.load(context).getLongValues();
+        values = this.<AtomicNumericFieldData>loadFieldData(context).getLongValues();
     }
 }
@@ -0,0 +1,93 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.reference.sys.node;
+
+import io.crate.operation.admission.AdmissionController;
+import io.crate.operation.admission.QueryClass;
+import io.crate.operation.reference.sys.SysNodeObjectReference;
+import org.apache.lucene.util.BytesRef;
+
+public class NodeAdmissionQueryClassExpression extends SysNodeObjectReference {
+
+    public static final String NAME = NodeAdmissionExpression.NAME;
+
+    abstract class AdmissionExpression<ChildType> extends SysNodeExpression<ChildType> {
+    }
+
+    public static final String CLASS_NAME = "name";
+    public static final String RUNNING = "running";
+    public static final String QUEUED = "queued";
+    public static final String ADMITTED = "admitted";
+    public static final String REJECTED = "rejected";
+    public static final String WAIT_TIME = "wait_time";
+
+    private final AdmissionController admissionController;
+    private final QueryClass queryClass;
+    private final BytesRef name;
+
+    public NodeAdmissionQueryClassExpression(AdmissionController admissionController, QueryClass queryClass) {
+        this.admissionController = admissionController;
+        this.queryClass = queryClass;
+        this.name = new BytesRef(queryClass.displayName());
+        addChildImplementations();
+    }
+
+    private void addChildImplementations() {
+        childImplementations.put(CLASS_NAME, new AdmissionExpression<BytesRef>() {
+            @Override
+            public BytesRef value() {
+                return name;
+            }
+        });
+        childImplementations.put(RUNNING, new AdmissionExpression<Integer>() {
+            @Override
+            public Integer value() {
+                return admissionController.running(queryClass);
+            }
+        });
+        childImplementations.put(QUEUED, new AdmissionExpression<Integer>() {
+            @Override
+            public Integer value() {
+                return admissionController.queued(queryClass);
+            }
+        });
+        childImplementations.put(ADMITTED, new AdmissionExpression<Long>() {
+            @Override
+            public Long value() {
+                return admissionController.admitted(queryClass);
+            }
+        });
+        childImplementations.put(REJECTED, new AdmissionExpression<Long>() {
+            @Override
+            public Long value() {
+                return admissionController.rejected(queryClass);
+            }
+        });
+        childImplementations.put(WAIT_TIME, new AdmissionExpression<Long>() {
+            @Override
+            public Long value() {
+                return admissionController.waitTime(queryClass);
+            }
+        });
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.reference.sys.node;
+
+import io.crate.metadata.ColumnIdent;
+import io.crate.operation.reference.sys.SysNodeObjectArrayReference;
+import io.crate.operation.reference.sys.SysNodeObjectReference;
+import io.crate.operation.reference.sys.SysObjectReference;
+import io.crate.operation.routing.ReplicaSelector;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.inject.Inject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * the statistics the {@link ReplicaSelector} of this node collected about the nodes it sent requests to
+ */
+public class NodeReplicaSelectionExpression extends SysNodeObjectArrayReference {
+
+    public static final String NAME = "replica_selection";
+
+    private final ReplicaSelector replicaSelector;
+
+    @Inject
+    protected NodeReplicaSelectionExpression(ReplicaSelector replicaSelector) {
+        super(new ColumnIdent(NAME));
+        this.replicaSelector = replicaSelector;
+    }
+
+    @Override
+    protected List<SysObjectReference> getChildImplementations() {
+        Map<String, ReplicaSelector.NodeStats> nodeStats = replicaSelector.nodeStats();
+        List<SysObjectReference> childImplementations = new ArrayList<>(nodeStats.size());
+        for (Map.Entry<String, ReplicaSelector.NodeStats> entry : nodeStats.entrySet()) {
+            childImplementations.add(new NodeStatsExpression(entry.getKey(), entry.getValue()));
+        }
+        return childImplementations;
+    }
+
+    private static class NodeStatsExpression extends SysNodeObjectReference {
+
+        public static final String NODE_ID = "node_id";
+        public static final String RESPONSE_TIME = "response_time";
+        public static final String QUEUE_SIZE = "queue_size";
+        public static final String OUTSTANDING = "outstanding";
+
+        private final BytesRef nodeId;
+        private final ReplicaSelector.NodeStats stats;
+
+        private NodeStatsExpression(String nodeId, ReplicaSelector.NodeStats stats) {
+            this.nodeId = new BytesRef(nodeId);
+            this.stats = stats;
+            addChildImplementations();
+        }
+
+        private void addChildImplementations() {
+            childImplementations.put(NODE_ID, new ChildExpression<BytesRef>() {
+                @Override
+                public BytesRef value() {
+                    return nodeId;
+                }
+            });
+            childImplementations.put(RESPONSE_TIME, new ChildExpression<Double>() {
+                @Override
+                public Double value() {
+                    return stats.responseTime();
+                }
+            });
+            childImplementations.put(QUEUE_SIZE, new ChildExpression<Double>() {
+                @Override
+                public Double value() {
+                    return stats.queueSize();
+                }
+            });
+            childImplementations.put(OUTSTANDING, new ChildExpression<Integer>() {
+                @Override
+                public Integer value() {
+                    return stats.outstanding();
+                }
+            });
+        }
+    }
+}
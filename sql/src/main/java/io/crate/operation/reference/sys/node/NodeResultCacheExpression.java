@@ -0,0 +1,88 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.reference.sys.node;
+
+import io.crate.operation.collect.ShardResultCache;
+import io.crate.operation.reference.sys.SysNodeObjectReference;
+import org.elasticsearch.common.inject.Inject;
+
+public class NodeResultCacheExpression extends SysNodeObjectReference {
+
+    abstract class ResultCacheExpression extends SysNodeExpression<Long> {
+    }
+
+    public static final String NAME = "result_cache";
+
+    public static final String SIZE = "size";
+    public static final String MAX_SIZE = "max_size";
+    public static final String ENTRIES = "entries";
+    public static final String HITS = "hits";
+    public static final String MISSES = "misses";
+    public static final String EVICTIONS = "evictions";
+
+    private final ShardResultCache resultCache;
+
+    @Inject
+    public NodeResultCacheExpression(ShardResultCache resultCache) {
+        this.resultCache = resultCache;
+        addChildImplementations();
+    }
+
+    private void addChildImplementations() {
+        childImplementations.put(SIZE, new ResultCacheExpression() {
+            @Override
+            public Long value() {
+                return resultCache.sizeInBytes();
+            }
+        });
+        childImplementations.put(MAX_SIZE, new ResultCacheExpression() {
+            @Override
+            public Long value() {
+                return resultCache.maxSizeInBytes();
+            }
+        });
+        childImplementations.put(ENTRIES, new ResultCacheExpression() {
+            @Override
+            public Long value() {
+                return resultCache.entries();
+            }
+        });
+        childImplementations.put(HITS, new ResultCacheExpression() {
+            @Override
+            public Long value() {
+                return resultCache.hits();
+            }
+        });
+        childImplementations.put(MISSES, new ResultCacheExpression() {
+            @Override
+            public Long value() {
+                return resultCache.misses();
+            }
+        });
+        childImplementations.put(EVICTIONS, new ResultCacheExpression() {
+            @Override
+            public Long value() {
+                return resultCache.evictions();
+            }
+        });
+    }
+}
@@ -57,6 +57,9 @@ public class SysNodeExpressionModule extends AbstractModule {
         bindExpr(NodeHeapExpression.NAME, NodeHeapExpression.class);
         bindExpr(NodeVersionExpression.NAME, NodeVersionExpression.class);
         bindExpr(NodeThreadPoolsExpression.NAME, NodeThreadPoolsExpression.class);
+        bindExpr(NodeAdmissionExpression.NAME, NodeAdmissionExpression.class);
+        bindExpr(NodeReplicaSelectionExpression.NAME, NodeReplicaSelectionExpression.class);
+        bindExpr(NodeResultCacheExpression.NAME, NodeResultCacheExpression.class);
         bindExpr(NodeNetworkExpression.NAME, NodeNetworkExpression.class);
         bindExpr(NodeOsExpression.NAME, NodeOsExpression.class);
         bindExpr(NodeProcessExpression.NAME, NodeProcessExpression.class);
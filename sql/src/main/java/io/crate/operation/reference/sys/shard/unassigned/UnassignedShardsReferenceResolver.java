@@ -86,6 +86,12 @@ public class UnassignedShardsReferenceResolver implements DocLevelReferenceResol
                 return this.row.orphanedPartition();
             }
         });
+        register(new UnassignedShardCollectorExpression<Long>(ShardHotColumnsSizeExpression.NAME) {
+            @Override
+            public Long value() {
+                return 0L;
+            }
+        });
         register(new UnassignedShardCollectorExpression(SysNodesTableInfo.SYS_COL_NAME) {
             @Override
             public Object value() {
@@ -0,0 +1,231 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.routing;
+
+import io.crate.metadata.settings.CrateSettings;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.ClusterStateListener;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.routing.ShardIterator;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.node.settings.NodeSettingsService;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chooses which copy of a shard is queried.
+ *
+ * Keeps an exponentially weighted moving average of the response time and the
+ * search queue size of every node this node sends collect or query requests to.
+ * If the <code>adaptive</code> shard selection is enabled the copy on the node with the
+ * lowest rank is chosen instead of a random one, so that a node stuck in GC or busy
+ * merging gets less requests until it recovers.
+ *
+ * The rank is the response time multiplied by the cubed number of queued and outstanding requests
+ * (similar to the C3 replica ranking). Nodes without recent statistics are ranked as if they
+ * answered within {@value #PROBE_RESPONSE_TIME_MILLIS}ms and had no queued requests, so that they
+ * are probed again, but their outstanding requests still count so that they aren't flooded
+ * until their first response arrives.
+ */
+@ThreadSafe
+public class ReplicaSelector implements ClusterStateListener {
+
+    public static final String ADAPTIVE = "adaptive";
+
+    static final double ALPHA = 0.3;
+    static final long STATS_EXPIRATION_NANOS = TimeUnit.SECONDS.toNanos(30);
+    static final double PROBE_RESPONSE_TIME_MILLIS = 1.0;
+
+    public static class NodeStats {
+
+        private double responseTime = -1;
+        private double queueSize = -1;
+        private int outstanding = 0;
+        private long lastUpdate = 0;
+
+        /**
+         * moving average of the response time in milliseconds, -1 if unknown
+         */
+        public synchronized double responseTime() {
+            return responseTime;
+        }
+
+        /**
+         * moving average of the search queue size reported by the node, -1 if unknown
+         */
+        public synchronized double queueSize() {
+            return queueSize;
+        }
+
+        /**
+         * number of requests sent to the node which haven't been answered yet
+         */
+        public synchronized int outstanding() {
+            return outstanding;
+        }
+
+        private synchronized void requestStarted() {
+            outstanding++;
+        }
+
+        private synchronized void requestFinished(long tookNanos, int newQueueSize) {
+            outstanding = Math.max(0, outstanding - 1);
+            double took = tookNanos / 1_000_000.0d;
+            if (responseTime < 0) {
+                responseTime = took;
+            } else {
+                responseTime = ALPHA * took + (1 - ALPHA) * responseTime;
+            }
+            if (newQueueSize >= 0) {
+                if (queueSize < 0) {
+                    queueSize = newQueueSize;
+                } else {
+                    queueSize = ALPHA * newQueueSize + (1 - ALPHA) * queueSize;
+                }
+            }
+            lastUpdate = System.nanoTime();
+        }
+
+        public synchronized double rank(long now) {
+            if (responseTime < 0 || now - lastUpdate > STATS_EXPIRATION_NANOS) {
+                double queue = 1 + outstanding;
+                return PROBE_RESPONSE_TIME_MILLIS * queue * queue * queue;
+            }
+            double queue = 1 + outstanding + Math.max(0, queueSize);
+            return responseTime * queue * queue * queue;
+        }
+    }
+
+    private final ConcurrentMap<String, NodeStats> nodeStats = new ConcurrentHashMap<>();
+    private volatile boolean adaptive;
+
+    @Inject
+    public ReplicaSelector(Settings settings,
+                           ClusterService clusterService,
+                           NodeSettingsService nodeSettingsService) {
+        clusterService.add(this);
+        adaptive = extractAdaptive(settings);
+        nodeSettingsService.addListener(new NodeSettingsService.Listener() {
+            @Override
+            public void onRefreshSettings(Settings settings) {
+                adaptive = extractAdaptive(settings);
+            }
+        });
+    }
+
+    private static boolean extractAdaptive(Settings settings) {
+        return ADAPTIVE.equals(settings.get(CrateSettings.ROUTING_SHARD_SELECTION.settingName(),
+                CrateSettings.ROUTING_SHARD_SELECTION.defaultValue()));
+    }
+
+    public boolean adaptive() {
+        return adaptive;
+    }
+
+    /**
+     * returns the copy of the shard which should be queried.
+     * Without adaptive shard selection this is the first copy of the iterator,
+     * otherwise it's the active copy with the lowest rank.
+     */
+    @Nullable
+    public ShardRouting select(ShardIterator shardIterator) {
+        if (!adaptive || shardIterator.size() < 2) {
+            return shardIterator.nextOrNull();
+        }
+        long now = System.nanoTime();
+        ShardRouting selected = null;
+        double selectedRank = Double.MAX_VALUE;
+        ShardRouting shardRouting;
+        while ((shardRouting = shardIterator.nextOrNull()) != null) {
+            if (!shardRouting.active()) {
+                continue;
+            }
+            double rank = rank(shardRouting.currentNodeId(), now);
+            if (selected == null || rank < selectedRank) {
+                selected = shardRouting;
+                selectedRank = rank;
+            }
+        }
+        return selected;
+    }
+
+    private double rank(String nodeId, long now) {
+        NodeStats stats = nodeStats.get(nodeId);
+        if (stats == null) {
+            return 0;
+        }
+        return stats.rank(now);
+    }
+
+    /**
+     * to be called before a request is sent to a node
+     *
+     * @return the start time that must be passed to {@link #requestFinished(String, long, int)}
+     */
+    public long requestStarted(String nodeId) {
+        statsFor(nodeId).requestStarted();
+        return System.nanoTime();
+    }
+
+    /**
+     * to be called once the response of a request or a failure was received
+     *
+     * @param queueSize the size of the search queue on the node or -1 if unknown
+     */
+    public void requestFinished(String nodeId, long startedNanos, int queueSize) {
+        statsFor(nodeId).requestFinished(System.nanoTime() - startedNanos, queueSize);
+    }
+
+    private NodeStats statsFor(String nodeId) {
+        NodeStats stats = nodeStats.get(nodeId);
+        if (stats == null) {
+            stats = new NodeStats();
+            NodeStats existing = nodeStats.putIfAbsent(nodeId, stats);
+            if (existing != null) {
+                stats = existing;
+            }
+        }
+        return stats;
+    }
+
+    public Map<String, NodeStats> nodeStats() {
+        return Collections.unmodifiableMap(nodeStats);
+    }
+
+    @Override
+    public void clusterChanged(ClusterChangedEvent event) {
+        if (event.nodesRemoved()) {
+            for (DiscoveryNode node : event.nodesDelta().removedNodes()) {
+                nodeStats.remove(node.id());
+            }
+        }
+    }
+}
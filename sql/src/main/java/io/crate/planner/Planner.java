@@ -120,7 +120,7 @@ public class Planner extends AnalyzedStatementVisitor<Planner.Context, Plan> {
 
     @Override
     protected Plan visitSelectStatement(SelectAnalyzedStatement statement, Context context) {
-        return consumingPlanner.plan(statement.relation());
+        return consumingPlanner.plan(statement.relation(), context.analysis().upToDateRollups());
     }
 
     @Override
@@ -399,6 +399,11 @@ public class Planner extends AnalyzedStatementVisitor<Planner.Context, Plan> {
         return node != null ? new IterablePlan(node) : NoopPlan.INSTANCE;
     }
 
+    @Override
+    public Plan visitKillStatement(KillAnalyzedStatement analysis, Context context) {
+        return new IterablePlan(new KillNode(analysis.jobId()));
+    }
+
     private void createESDeleteNode(TableInfo tableInfo, WhereClause whereClause, IterablePlan plan) {
         assert whereClause.primaryKeys().get().size() == 1;
         Id pk = Iterables.get(whereClause.primaryKeys().get(), 0);
@@ -24,16 +24,27 @@ package io.crate.planner.consumer;
 
 import io.crate.analyze.relations.AnalyzedRelation;
 import io.crate.exceptions.ValidationException;
+import io.crate.metadata.TableIdent;
 import org.elasticsearch.common.Nullable;
 
+import java.util.Collections;
+import java.util.Set;
+
 public class ConsumerContext {
 
     private AnalyzedRelation rootRelation;
 
     private ValidationException validationException;
 
+    private final Set<TableIdent> upToDateRollups;
+
     public ConsumerContext(AnalyzedRelation rootRelation) {
+        this(rootRelation, Collections.<TableIdent>emptySet());
+    }
+
+    public ConsumerContext(AnalyzedRelation rootRelation, Set<TableIdent> upToDateRollups) {
         this.rootRelation = rootRelation;
+        this.upToDateRollups = upToDateRollups;
     }
 
     public void rootRelation(AnalyzedRelation rootRelation) {
@@ -52,4 +63,11 @@ public class ConsumerContext {
     public ValidationException validationException(){
         return validationException;
     }
+
+    /**
+     * the rollups whose content matches their source table, only these may be read instead of the source table
+     */
+    public Set<TableIdent> upToDateRollups() {
+        return upToDateRollups;
+    }
 }
@@ -26,19 +26,23 @@ import io.crate.analyze.AnalysisMetaData;
 import io.crate.analyze.relations.AnalyzedRelation;
 import io.crate.analyze.relations.PlannedAnalyzedRelation;
 import io.crate.analyze.relations.TableRelation;
+import io.crate.metadata.TableIdent;
 import io.crate.planner.Plan;
 import io.crate.sql.tree.QualifiedName;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class ConsumingPlanner {
 
     private final List<Consumer> consumers = new ArrayList<>();
 
     public ConsumingPlanner(AnalysisMetaData analysisMetaData) {
+        consumers.add(new RollupConsumer(analysisMetaData));
         consumers.add(new NonDistributedGroupByConsumer(analysisMetaData));
         consumers.add(new ReduceOnCollectorGroupByConsumer(analysisMetaData));
         consumers.add(new DistributedGroupByConsumer(analysisMetaData));
@@ -53,7 +57,15 @@ public class ConsumingPlanner {
 
     @Nullable
     public Plan plan(AnalyzedRelation rootRelation) {
-        ConsumerContext consumerContext = new ConsumerContext(rootRelation);
+        return plan(rootRelation, Collections.<TableIdent>emptySet());
+    }
+
+    /**
+     * @param upToDateRollups rollups which may be read instead of their source table
+     */
+    @Nullable
+    public Plan plan(AnalyzedRelation rootRelation, Set<TableIdent> upToDateRollups) {
+        ConsumerContext consumerContext = new ConsumerContext(rootRelation, upToDateRollups);
 
         for (int i = 0; i < consumers.size(); i++) {
             Consumer consumer = consumers.get(i);
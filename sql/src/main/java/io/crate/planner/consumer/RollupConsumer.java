@@ -0,0 +1,393 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.planner.consumer;
+
+import io.crate.analyze.*;
+import io.crate.analyze.relations.AnalyzedRelation;
+import io.crate.analyze.relations.AnalyzedRelationVisitor;
+import io.crate.analyze.relations.TableRelation;
+import io.crate.exceptions.ResourceUnknownException;
+import io.crate.metadata.ColumnIdent;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionInfo;
+import io.crate.metadata.Functions;
+import io.crate.metadata.OutputName;
+import io.crate.metadata.ReferenceInfo;
+import io.crate.metadata.TableIdent;
+import io.crate.metadata.doc.DocTableInfo;
+import io.crate.metadata.doc.RollupInfo;
+import io.crate.metadata.table.TableInfo;
+import io.crate.operation.aggregation.impl.AverageAggregation;
+import io.crate.operation.aggregation.impl.CountAggregation;
+import io.crate.operation.aggregation.impl.MaximumAggregation;
+import io.crate.operation.aggregation.impl.MinimumAggregation;
+import io.crate.operation.aggregation.impl.SumAggregation;
+import io.crate.operation.scalar.arithmetic.DivideFunction;
+import io.crate.operation.scalar.cast.CastFunctionResolver;
+import io.crate.planner.symbol.*;
+import io.crate.sql.tree.QualifiedName;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * Rewrites aggregations on a table which has rollups to read one of its rollups instead.
+ *
+ * A rollup can be used if all columns used outside of aggregations are grouped by the rollup
+ * and every aggregation can be computed by aggregating the values stored in the rollup:
+ * <ul>
+ *     <li><code>count</code> by summing up the counts</li>
+ *     <li><code>sum</code>, <code>min</code> and <code>max</code> by aggregating the partial results</li>
+ *     <li><code>avg</code> by dividing the sum by the count of the column</li>
+ * </ul>
+ *
+ * Only rollups whose content matches their source table, as given by
+ * {@link ConsumerContext#upToDateRollups()}, are used.
+ *
+ * The rewritten relation is planned by the other consumers.
+ */
+public class RollupConsumer implements Consumer {
+
+    private final Visitor visitor;
+
+    public RollupConsumer(AnalysisMetaData analysisMetaData) {
+        visitor = new Visitor(analysisMetaData);
+    }
+
+    @Override
+    public boolean consume(AnalyzedRelation rootRelation, ConsumerContext context) {
+        AnalyzedRelation analyzedRelation = visitor.process(rootRelation, context);
+        if (analyzedRelation != null) {
+            context.rootRelation(analyzedRelation);
+            return true;
+        }
+        return false;
+    }
+
+    private static class Visitor extends AnalyzedRelationVisitor<ConsumerContext, QueriedTable> {
+
+        private static final Comparator<RollupInfo> SMALLEST_FIRST = new Comparator<RollupInfo>() {
+            @Override
+            public int compare(RollupInfo o1, RollupInfo o2) {
+                return Integer.compare(o1.groupBy().size(), o2.groupBy().size());
+            }
+        };
+
+        private final AnalysisMetaData analysisMetaData;
+
+        public Visitor(AnalysisMetaData analysisMetaData) {
+            this.analysisMetaData = analysisMetaData;
+        }
+
+        @Override
+        public QueriedTable visitQueriedTable(QueriedTable table, ConsumerContext context) {
+            QuerySpec querySpec = table.querySpec();
+            if (querySpec.groupBy() == null && !querySpec.hasAggregates()) {
+                return null;
+            }
+            TableInfo tableInfo = table.tableRelation().tableInfo();
+            if (!(tableInfo instanceof DocTableInfo) || ((DocTableInfo) tableInfo).rollups().isEmpty()) {
+                return null;
+            }
+            if (querySpec.where() != null && querySpec.where().version().isPresent()) {
+                return null;
+            }
+            List<RollupInfo> rollups = new ArrayList<>(((DocTableInfo) tableInfo).rollups());
+            Collections.sort(rollups, SMALLEST_FIRST);
+            for (RollupInfo rollup : rollups) {
+                if (!context.upToDateRollups().contains(rollup.ident())) {
+                    continue;
+                }
+                DocTableInfo rollupTable = rollupTable(rollup);
+                if (rollupTable == null) {
+                    continue;
+                }
+                QueriedTable rewritten = rewrite(table, new RollupContext(
+                        table.tableRelation(), rollup, rollupTable, analysisMetaData.functions(),
+                        querySpec.groupBy() == null));
+                if (rewritten != null) {
+                    return rewritten;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        protected QueriedTable visitAnalyzedRelation(AnalyzedRelation relation, ConsumerContext context) {
+            return null;
+        }
+
+        @Nullable
+        private DocTableInfo rollupTable(RollupInfo rollup) {
+            TableInfo rollupTable;
+            try {
+                rollupTable = analysisMetaData.referenceInfos().getTableInfo(rollup.ident());
+            } catch (ResourceUnknownException e) {
+                return null;
+            }
+            if (!(rollupTable instanceof DocTableInfo) || rollupTable.isPartitioned()) {
+                return null;
+            }
+            return (DocTableInfo) rollupTable;
+        }
+    }
+
+    @Nullable
+    private static QueriedTable rewrite(QueriedTable table, RollupContext context) {
+        QuerySpec querySpec = table.querySpec();
+        QuerySpec rewritten = new QuerySpec()
+                .limit(querySpec.limit())
+                .offset(querySpec.offset())
+                .hasAggregates(querySpec.hasAggregates());
+
+        List<Symbol> outputs = REWRITER.rewrite(querySpec.outputs(), context);
+        if (outputs == null) {
+            return null;
+        }
+        rewritten.outputs(outputs);
+        if (querySpec.groupBy() != null) {
+            List<Symbol> groupBy = REWRITER.rewrite(querySpec.groupBy(), context);
+            if (groupBy == null) {
+                return null;
+            }
+            rewritten.groupBy(groupBy);
+        }
+        WhereClause where = querySpec.where();
+        if (where != null && where.hasQuery()) {
+            Symbol query = REWRITER.process(where.query(), context);
+            if (query == null) {
+                return null;
+            }
+            where = new WhereClause(query, null, null, null);
+        }
+        rewritten.where(where);
+        HavingClause having = querySpec.having();
+        if (having != null && having.hasQuery()) {
+            Symbol query = REWRITER.process(having.query(), context);
+            if (query == null) {
+                return null;
+            }
+            having = new HavingClause(query);
+        }
+        rewritten.having(having);
+        OrderBy orderBy = querySpec.orderBy();
+        if (orderBy != null) {
+            List<Symbol> orderBySymbols = REWRITER.rewrite(orderBy.orderBySymbols(), context);
+            if (orderBySymbols == null) {
+                return null;
+            }
+            orderBy = new OrderBy(orderBySymbols, orderBy.reverseFlags(), orderBy.nullsFirst());
+        }
+        rewritten.orderBy(orderBy);
+
+        List<OutputName> outputNames = new ArrayList<>(table.fields().size());
+        for (Field field : table.fields()) {
+            outputNames.add((OutputName) field.path());
+        }
+        TableIdent rollupIdent = context.rollupRelation.tableInfo().ident();
+        return new QueriedTable(
+                rollupIdent.schema() == null
+                        ? new QualifiedName(rollupIdent.name())
+                        : QualifiedName.of(rollupIdent.schema(), rollupIdent.name()),
+                context.rollupRelation,
+                outputNames,
+                rewritten);
+    }
+
+    private static final Rewriter REWRITER = new Rewriter();
+
+    private static class RollupContext {
+
+        private final TableRelation sourceRelation;
+        private final RollupInfo rollup;
+        private final TableRelation rollupRelation;
+        private final Functions functions;
+        private final boolean globalAggregate;
+
+        private RollupContext(TableRelation sourceRelation,
+                              RollupInfo rollup,
+                              DocTableInfo rollupTable,
+                              Functions functions,
+                              boolean globalAggregate) {
+            this.sourceRelation = sourceRelation;
+            this.rollup = rollup;
+            this.rollupRelation = new TableRelation(rollupTable);
+            this.functions = functions;
+            this.globalAggregate = globalAggregate;
+        }
+
+        @Nullable
+        private Reference rollupColumn(@Nullable String column) {
+            if (column == null) {
+                return null;
+            }
+            ReferenceInfo info = rollupRelation.tableInfo().getReferenceInfo(new ColumnIdent(column));
+            return info == null ? null : new Reference(info);
+        }
+
+        private Function function(String name, Symbol... arguments) {
+            List<DataType> argumentTypes = new ArrayList<>(arguments.length);
+            for (Symbol argument : arguments) {
+                argumentTypes.add(argument.valueType());
+            }
+            FunctionInfo info = functions.get(new FunctionIdent(name, argumentTypes)).info();
+            return new Function(info, Arrays.asList(arguments));
+        }
+
+        private static Function cast(Symbol symbol, DataType type) {
+            return new Function(CastFunctionResolver.functionInfo(symbol.valueType(), type),
+                    Arrays.asList(symbol));
+        }
+    }
+
+    /**
+     * converts symbols of the source table to symbols of the rollup table,
+     * returns null if a symbol can't be computed using the rollup
+     */
+    private static class Rewriter extends SymbolVisitor<RollupContext, Symbol> {
+
+        @Nullable
+        private List<Symbol> rewrite(List<Symbol> symbols, RollupContext context) {
+            List<Symbol> rewritten = new ArrayList<>(symbols.size());
+            for (Symbol symbol : symbols) {
+                Symbol rewrittenSymbol = process(symbol, context);
+                if (rewrittenSymbol == null) {
+                    return null;
+                }
+                rewritten.add(rewrittenSymbol);
+            }
+            return rewritten;
+        }
+
+        @Override
+        public Symbol visitReference(Reference symbol, RollupContext context) {
+            ColumnIdent column = sourceColumn(symbol, context);
+            if (column == null) {
+                return null;
+            }
+            return context.rollupColumn(context.rollup.groupByColumn(column));
+        }
+
+        @Override
+        public Symbol visitField(Field field, RollupContext context) {
+            if (field.relation() != context.sourceRelation) {
+                return null;
+            }
+            return process(context.sourceRelation.resolveField(field), context);
+        }
+
+        @Override
+        public Symbol visitLiteral(Literal symbol, RollupContext context) {
+            return symbol;
+        }
+
+        @Override
+        public Symbol visitFunction(Function function, RollupContext context) {
+            if (function.info().type() == FunctionInfo.Type.AGGREGATE) {
+                return rewriteAggregation(function, context);
+            }
+            List<Symbol> arguments = rewrite(function.arguments(), context);
+            if (arguments == null) {
+                return null;
+            }
+            return new Function(function.info(), arguments);
+        }
+
+        @Override
+        protected Symbol visitSymbol(Symbol symbol, RollupContext context) {
+            return null;
+        }
+
+        @Nullable
+        private Symbol rewriteAggregation(Function function, RollupContext context) {
+            String name = function.info().ident().name();
+            RollupInfo rollup = context.rollup;
+            ColumnIdent argument = null;
+            if (function.arguments().size() == 1) {
+                argument = sourceColumn(function.arguments().get(0), context);
+                if (argument == null) {
+                    return null;
+                }
+            } else if (function.arguments().size() > 1) {
+                return null;
+            }
+
+            if (name.equals(CountAggregation.NAME)) {
+                if (context.globalAggregate) {
+                    // the sum of no rows is null but a count is 0
+                    return null;
+                }
+                Reference counts = context.rollupColumn(rollup.aggregateColumn(CountAggregation.NAME, argument));
+                if (counts == null) {
+                    return null;
+                }
+                return RollupContext.cast(context.function(SumAggregation.NAME, counts), DataTypes.LONG);
+            }
+            if (argument == null) {
+                return null;
+            }
+            if (name.equals(SumAggregation.NAME)) {
+                Reference sums = context.rollupColumn(rollup.aggregateColumn(SumAggregation.NAME, argument));
+                return sums == null ? null : context.function(SumAggregation.NAME, sums);
+            }
+            if (name.equals(MinimumAggregation.NAME) || name.equals(MaximumAggregation.NAME)) {
+                String column = rollup.aggregateColumn(name, argument);
+                if (column == null) {
+                    column = rollup.groupByColumn(argument);
+                }
+                Reference values = context.rollupColumn(column);
+                return values == null ? null : context.function(name, values);
+            }
+            if (Arrays.asList(AverageAggregation.NAMES).contains(name)) {
+                Reference sums = context.rollupColumn(rollup.aggregateColumn(SumAggregation.NAME, argument));
+                Reference counts = context.rollupColumn(rollup.aggregateColumn(CountAggregation.NAME, argument));
+                if (sums == null || counts == null) {
+                    return null;
+                }
+                return context.function(DivideFunction.NAME,
+                        context.function(SumAggregation.NAME, sums),
+                        context.function(SumAggregation.NAME, counts));
+            }
+            return null;
+        }
+
+        @Nullable
+        private static ColumnIdent sourceColumn(Symbol symbol, RollupContext context) {
+            if (symbol instanceof Field) {
+                if (((Field) symbol).relation() != context.sourceRelation) {
+                    return null;
+                }
+                symbol = context.sourceRelation.resolveField((Field) symbol);
+            }
+            if (symbol == null || symbol.symbolType() != SymbolType.REFERENCE) {
+                return null;
+            }
+            ReferenceInfo info = ((Reference) symbol).info();
+            if (!info.ident().tableIdent().equals(context.sourceRelation.tableInfo().ident())) {
+                return null;
+            }
+            return info.ident().columnIdent();
+        }
+    }
+}
@@ -77,6 +77,10 @@ public class PlanNodeVisitor<C, R> {
         return visitDDLPlanNode(node, context);
     }
 
+    public R visitKillNode(KillNode node, C context) {
+        return visitDDLPlanNode(node, context);
+    }
+
     public R visitESCountNode(ESCountNode node, C context) {
         return visitPlanNode(node, context);
     }
@@ -48,6 +48,7 @@ public class QueryThenFetchNode extends ESDQLPlanNode {
     private final List<ReferenceInfo> partitionBy;
     private final Boolean[] nullsFirst;
     private final Routing routing;
+    private boolean fetchFromDocValues = true;
 
     private static final Boolean[] EMPTY_OBJ_BOOLEAN_ARR = new Boolean[0];
     private static final boolean[] EMPTY_VALUE_BOOLEAN_ARR = new boolean[0];
@@ -119,6 +120,18 @@ public class QueryThenFetchNode extends ESDQLPlanNode {
         return whereClause;
     }
 
+    /**
+     * if true, top-level columns with doc values are loaded from the doc values
+     * instead of the source, the source is only loaded for the remaining columns.
+     */
+    public boolean fetchFromDocValues() {
+        return fetchFromDocValues;
+    }
+
+    public void fetchFromDocValues(boolean fetchFromDocValues) {
+        this.fetchFromDocValues = fetchFromDocValues;
+    }
+
     @Override
     public <C, R> R accept(PlanNodeVisitor<C, R> visitor, C context) {
         return visitor.visitQueryThenFetchNode(this, context);
@@ -133,13 +146,14 @@ public class QueryThenFetchNode extends ESDQLPlanNode {
                 .add("reverseFlags", Arrays.toString(reverseFlags()))
                 .add("whereClause", whereClause())
                 .add("partitionBy", partitionBy)
+                .add("fetchFromDocValues", fetchFromDocValues)
                 .toString();
     }
 
     public static QueryThenFetchNode withLimitAndOffset(QueryThenFetchNode oldNode,
                                                         int newOffset,
                                                         int newLimit) {
-        return new QueryThenFetchNode(
+        QueryThenFetchNode node = new QueryThenFetchNode(
                 oldNode.routing(),
                 oldNode.outputs(),
                 oldNode.orderBy(),
@@ -150,5 +164,7 @@ public class QueryThenFetchNode extends ESDQLPlanNode {
                 oldNode.whereClause(),
                 oldNode.partitionBy()
         );
+        node.fetchFromDocValues(oldNode.fetchFromDocValues());
+        return node;
     }
 }
@@ -27,6 +27,7 @@ import io.crate.action.sql.SQLAction;
 import io.crate.action.sql.SQLBulkAction;
 import io.crate.action.sql.TransportSQLAction;
 import io.crate.action.sql.TransportSQLBulkAction;
+import io.crate.analyze.TableParameterInfo;
 import io.crate.breaker.CircuitBreakerModule;
 import io.crate.breaker.CrateCircuitBreakerService;
 import io.crate.executor.transport.TransportExecutorModule;
@@ -65,6 +66,7 @@ import org.elasticsearch.common.component.LifecycleComponent;
 import org.elasticsearch.common.inject.Module;
 import org.elasticsearch.common.settings.ImmutableSettings;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.settings.IndexDynamicSettingsModule;
 import org.elasticsearch.plugins.AbstractPlugin;
 import org.elasticsearch.rest.RestModule;
 import org.elasticsearch.script.ScriptModule;
@@ -161,9 +163,15 @@ public class SQLPlugin extends AbstractPlugin {
         clusterDynamicSettingsModule.addDynamicSettings(Constants.CUSTOM_ANALYSIS_SETTINGS_PREFIX + "*");
         clusterDynamicSettingsModule.addDynamicSettings(CrateCircuitBreakerService.QUERY_CIRCUIT_BREAKER_LIMIT_SETTING);
         clusterDynamicSettingsModule.addDynamicSettings(CrateCircuitBreakerService.QUERY_CIRCUIT_BREAKER_OVERHEAD_SETTING);
+        clusterDynamicSettingsModule.addDynamicSettings(CrateCircuitBreakerService.HOT_COLUMNS_CIRCUIT_BREAKER_LIMIT_SETTING);
+        clusterDynamicSettingsModule.addDynamicSettings(CrateCircuitBreakerService.HOT_COLUMNS_CIRCUIT_BREAKER_OVERHEAD_SETTING);
         registerSettings(clusterDynamicSettingsModule, CrateSettings.CRATE_SETTINGS);
     }
 
+    public void onModule(IndexDynamicSettingsModule indexDynamicSettingsModule) {
+        indexDynamicSettingsModule.addDynamicSettings(TableParameterInfo.HOT_COLUMNS);
+    }
+
     private void registerSettings(ClusterDynamicSettingsModule clusterDynamicSettingsModule, List<Setting> settings) {
         for (Setting setting : settings) {
             /**
@@ -202,6 +202,25 @@ public class BulkShardProcessor {
         }
     }
 
+    /**
+     * Stop the processor without sending the requests which are still buffered.
+     * Requests which are already sent to the shards can't be revoked.
+     */
+    public void kill(Throwable e) {
+        trace("kill");
+        closed = true;
+        try {
+            executeLock.acquire();
+            requestsByShard.clear();
+        } catch (InterruptedException ie) {
+            Thread.interrupted();
+        } finally {
+            counter.set(0);
+            executeLock.release();
+        }
+        setFailure(e);
+    }
+
     private void setFailure(Throwable e) {
         failure.compareAndSet(null, e);
         result.setException(e);
@@ -36,6 +36,8 @@ import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.unit.TimeValue;
 import org.junit.Test;
 
+import java.util.UUID;
+
 import static io.crate.testing.TestingHelpers.createFunction;
 import static io.crate.testing.TestingHelpers.createReference;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -50,6 +52,7 @@ public class QueryShardRequestTest {
         Function query = createFunction(EqOperator.NAME, DataTypes.BOOLEAN, nameRef, Literal.newLiteral("Arthur"));
         WhereClause whereClause = new WhereClause(query);
         QueryShardRequest request = new QueryShardRequest(
+                UUID.randomUUID(),
                 "dummyTable",
                 1,
                 ImmutableList.of(nameRef),
@@ -60,6 +63,7 @@ public class QueryShardRequestTest {
                 0,
                 whereClause,
                 ImmutableList.<ReferenceInfo>of(),
+                true,
                 Optional.of(TimeValue.timeValueHours(3))
         );
 
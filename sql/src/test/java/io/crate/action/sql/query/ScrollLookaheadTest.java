@@ -0,0 +1,145 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.action.sql.query;
+
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldDocs;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.breaker.MemoryCircuitBreaker;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ScrollLookaheadTest {
+
+    private MemoryCircuitBreaker breaker;
+    private ScrollLookahead lookahead;
+
+    @Before
+    public void prepare() throws Exception {
+        breaker = new MemoryCircuitBreaker(
+                new ByteSizeValue(1, ByteSizeUnit.MB), 1.0, Loggers.getLogger(ScrollLookaheadTest.class));
+        lookahead = new ScrollLookahead("test", breaker);
+    }
+
+    /**
+     * docs with the doc ids from (inclusive) to (exclusive), sorted by doc id
+     */
+    private static TopDocs docs(int from, int to) {
+        ScoreDoc[] docs = new ScoreDoc[to - from];
+        for (int i = from; i < to; i++) {
+            docs[i - from] = new FieldDoc(i, Float.NaN, new Object[]{(long) i});
+        }
+        return new TopFieldDocs(100, docs, new SortField[]{new SortField("x", SortField.Type.LONG)}, Float.NaN);
+    }
+
+    private static int[] docIds(TopDocs topDocs) {
+        int[] ids = new int[topDocs.scoreDocs.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = topDocs.scoreDocs[i].doc;
+        }
+        return ids;
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        assertThat(lookahead.page(null, 10), nullValue());
+    }
+
+    @Test
+    public void testServePagesFromBuffer() throws Exception {
+        ScoreDoc after = new ScoreDoc(9, Float.NaN);
+        lookahead.fill(after, docs(10, 40), 30);
+
+        TopDocs page = lookahead.page(after, 10);
+        assertThat(page, instanceOf(TopFieldDocs.class));
+        assertThat(page.totalHits, is(100));
+        assertThat(docIds(page), is(new int[]{10, 11, 12, 13, 14, 15, 16, 17, 18, 19}));
+
+        page = lookahead.page(new ScoreDoc(19, Float.NaN), 10);
+        assertThat(docIds(page), is(new int[]{20, 21, 22, 23, 24, 25, 26, 27, 28, 29}));
+
+        // last emitted doc is unchanged if the shard didn't contribute to the last page
+        page = lookahead.page(new ScoreDoc(19, Float.NaN), 10);
+        assertThat(docIds(page)[0], is(20));
+
+        page = lookahead.page(new ScoreDoc(29, Float.NaN), 10);
+        assertThat(docIds(page), is(new int[]{30, 31, 32, 33, 34, 35, 36, 37, 38, 39}));
+
+        // not covered by the buffer
+        assertThat(lookahead.page(new ScoreDoc(39, Float.NaN), 10), nullValue());
+        assertThat(lookahead.page(new ScoreDoc(35, Float.NaN), 10), nullValue());
+        assertThat(lookahead.page(null, 10), nullValue());
+    }
+
+    @Test
+    public void testExhaustedBufferServesPartialPages() throws Exception {
+        lookahead.fill(null, docs(0, 15), 30);
+
+        assertThat(docIds(lookahead.page(null, 10)).length, is(10));
+        assertThat(docIds(lookahead.page(new ScoreDoc(9, Float.NaN), 10)), is(new int[]{10, 11, 12, 13, 14}));
+        assertThat(docIds(lookahead.page(new ScoreDoc(14, Float.NaN), 10)).length, is(0));
+    }
+
+    @Test
+    public void testMemoryIsAccountedAndReleased() throws Exception {
+        try {
+            lookahead.fill(null, docs(0, 50000), 50000);
+            fail("expected CircuitBreakingException");
+        } catch (CircuitBreakingException e) {
+            // expected
+        }
+        assertThat(breaker.getUsed(), is(0L));
+        assertThat(lookahead.page(null, 10), nullValue());
+        assertThat(lookahead.tripped(), is(true));
+    }
+
+    @Test
+    public void testDefaultLookaheadIsAccounted() throws Exception {
+        lookahead.fill(null, docs(0, 1000), 1000);
+        long used = breaker.getUsed();
+        assertThat(used, is(ScrollLookahead.ramBytesUsed(docs(0, 1000).scoreDocs)));
+
+        // filling again replaces the buffered docs
+        lookahead.fill(new ScoreDoc(999, Float.NaN), docs(1000, 2000), 1000);
+        assertThat(breaker.getUsed(), is(used));
+        assertThat(lookahead.tripped(), is(false));
+
+        lookahead.clear();
+        assertThat(breaker.getUsed(), is(0L));
+    }
+
+    @Test
+    public void testRamBytesUsed() throws Exception {
+        assertThat(ScrollLookahead.ramBytesUsed(docs(0, 10).scoreDocs), greaterThan(10 * 32L));
+    }
+}
@@ -38,6 +38,8 @@ import org.elasticsearch.search.query.QuerySearchResult;
 import org.hamcrest.Matchers;
 import org.junit.Test;
 
+import java.util.UUID;
+
 @CrateIntegrationTest.ClusterScope(scope = CrateIntegrationTest.Scope.GLOBAL)
 public class TransportQueryShardActionTest extends SQLTransportIntegrationTest {
 
@@ -55,7 +57,8 @@ public class TransportQueryShardActionTest extends SQLTransportIntegrationTest {
         DiscoveryNode[] discoveryNodes = clusterService.state().nodes().nodes().values().toArray(DiscoveryNode.class);
         queryShardAction.executeQuery(
                 discoveryNodes[1].id(),
-                new QueryShardRequest("foo",
+                new QueryShardRequest(UUID.randomUUID(),
+                        "foo",
                         1,
                         ImmutableList.<Reference>of(),
                         ImmutableList.<Symbol>of(),
@@ -65,6 +68,7 @@ public class TransportQueryShardActionTest extends SQLTransportIntegrationTest {
                         0,
                         WhereClause.MATCH_ALL,
                         ImmutableList.<ReferenceInfo>of(),
+                        true,
                         Optional.<TimeValue>absent()
                 ),
                 new ActionListener<QuerySearchResult>() {
@@ -29,6 +29,7 @@ import io.crate.analyze.relations.FullQualifedNameFieldProvider;
 import io.crate.analyze.relations.AnalyzedRelationVisitor;
 import io.crate.metadata.*;
 import io.crate.metadata.table.SchemaInfo;
+import io.crate.operation.routing.ReplicaSelector;
 import io.crate.planner.symbol.Field;
 import io.crate.planner.symbol.Literal;
 import io.crate.planner.symbol.Symbol;
@@ -86,7 +87,8 @@ public class CompoundLiteralTest extends AbstractRandomizedTest {
                         Collections.<String, DynamicFunctionResolver>emptyMap()),
                 new ReferenceInfos(Collections.<String, SchemaInfo>emptyMap(),
                                    clusterService,
-                                   transportPutIndexTemplateAction),
+                                   transportPutIndexTemplateAction,
+                                   mock(ReplicaSelector.class)),
                 new GlobalReferenceResolver(Collections.<ReferenceIdent, ReferenceImplementation>emptyMap())
         );
     }
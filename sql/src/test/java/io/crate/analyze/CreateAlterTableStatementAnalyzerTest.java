@@ -160,6 +160,37 @@ public class CreateAlterTableStatementAnalyzerTest extends BaseAnalyzerTest {
         assertEquals("1000", analysisReset.tableParameter().settings().get(TableParameterInfo.REFRESH_INTERVAL));
     }
 
+    @Test
+    public void testCreateTableWithHotColumns() throws Exception {
+        CreateTableAnalyzedStatement analysis = (CreateTableAnalyzedStatement)analyze(
+                "CREATE TABLE foo (id int primary key, content string) " +
+                        "with (hot_columns=['id', 'content'])");
+        assertThat(analysis.tableParameter().settings().get(TableParameterInfo.HOT_COLUMNS), is("id,content"));
+        assertThat(analysis.tableParameter().settings().getAsArray(TableParameterInfo.HOT_COLUMNS),
+                arrayContaining("id", "content"));
+    }
+
+    @Test
+    public void testCreateTableWithInvalidHotColumns() throws Exception {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Invalid value for argument 'hot_columns'");
+        analyze("CREATE TABLE foo (id int primary key, content string) " +
+                "with (hot_columns=[1, 2])");
+    }
+
+    @Test
+    public void testAlterTableWithHotColumns() throws Exception {
+        AlterTableAnalyzedStatement analysisSet = (AlterTableAnalyzedStatement)analyze(
+                "ALTER TABLE user_refresh_interval " +
+                "SET (hot_columns = 'content')");
+        assertEquals("content", analysisSet.tableParameter().settings().get(TableParameterInfo.HOT_COLUMNS));
+
+        AlterTableAnalyzedStatement analysisReset = (AlterTableAnalyzedStatement)analyze(
+                "ALTER TABLE user_refresh_interval " +
+                "RESET (hot_columns)");
+        assertEquals("", analysisReset.tableParameter().settings().get(TableParameterInfo.HOT_COLUMNS));
+    }
+
     @Test
     public void testAlterTableWithColumnPolicy() throws Exception {
         AlterTableAnalyzedStatement analysisSet = (AlterTableAnalyzedStatement)analyze(
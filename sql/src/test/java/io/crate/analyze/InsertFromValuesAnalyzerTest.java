@@ -570,6 +570,41 @@ public class InsertFromValuesAnalyzerTest extends BaseAnalyzerTest {
         assertThat((Long) analysis.sourceMaps().get(1)[0], is(2L));
     }
 
+    @Test
+    public void testInsertWithBulkArgsAndLiterals() throws Exception {
+        InsertFromValuesAnalyzedStatement analysis;
+        analysis = (InsertFromValuesAnalyzedStatement) analyze(
+                "insert into users (id, name, other_id, details) values (?, 'foo', 10, {a=1})",
+                new Object[][]{
+                        new Object[]{1},
+                        new Object[]{2},
+                        new Object[]{3}
+                });
+        assertThat(analysis.sourceMaps().size(), is(3));
+        assertThat(analysis.ids(), contains("1", "2", "3"));
+        assertThat(analysis.routingValues(), contains("1", "2", "3"));
+        for (int i = 0; i < 3; i++) {
+            Object[] values = analysis.sourceMaps().get(i);
+            assertThat((Long) values[0], is(i + 1L));
+            assertThat((BytesRef) values[1], is(new BytesRef("foo")));
+            assertThat((Long) values[2], is(10L));
+            assertThat(((Map) values[3]).get("a"), is((Object) 1L));
+        }
+        // object values must not be shared between rows
+        assertThat(analysis.sourceMaps().get(0)[3], not(sameInstance(analysis.sourceMaps().get(1)[3])));
+    }
+
+    @Test
+    public void testInsertWithBulkArgsInvalidLiteral() throws Exception {
+        expectedException.expect(ColumnValidationException.class);
+        expectedException.expectMessage("Validation failed for other_id");
+        analyze("insert into users (id, other_id) values (?, 'foo')",
+                new Object[][]{
+                        new Object[]{1},
+                        new Object[]{2}
+                });
+    }
+
     @Test
     public void testInsertWithBulkArgsMultiValue() throws Exception {
         // should be equal to testInsertWithBulkArgs()
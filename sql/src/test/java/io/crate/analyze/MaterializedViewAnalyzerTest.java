@@ -0,0 +1,280 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.analyze;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.exceptions.TableAlreadyExistsException;
+import io.crate.exceptions.UnsupportedFeatureException;
+import io.crate.metadata.*;
+import io.crate.metadata.doc.DocTableInfo;
+import io.crate.metadata.doc.RollupInfo;
+import io.crate.metadata.sys.MetaDataSysModule;
+import io.crate.metadata.table.SchemaInfo;
+import io.crate.metadata.table.TestingTableInfo;
+import io.crate.operation.aggregation.impl.AggregationImplModule;
+import io.crate.operation.operator.OperatorModule;
+import io.crate.operation.predicate.PredicateModule;
+import io.crate.operation.scalar.ScalarFunctionModule;
+import io.crate.planner.RowGranularity;
+import io.crate.sql.parser.SqlParser;
+import io.crate.sql.tree.CreateMaterializedView;
+import io.crate.testing.MockedClusterServiceModule;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.inject.Module;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MaterializedViewAnalyzerTest extends BaseAnalyzerTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    static final TableIdent METRICS_IDENT = new TableIdent(null, "metrics");
+    static final DocTableInfo METRICS_INFO = TestingTableInfo.builder(METRICS_IDENT, RowGranularity.DOC, shardRouting)
+            .add("day", DataTypes.TIMESTAMP, null)
+            .add("host", DataTypes.STRING, null)
+            .add("value", DataTypes.DOUBLE, null)
+            .add("tag", DataTypes.STRING, null)
+            .buildDocTableInfo(ImmutableList.<RollupInfo>of());
+
+    static class TestMetaDataModule extends MetaDataModule {
+        @Override
+        protected void configure() {
+            bind(FulltextAnalyzerResolver.class).toInstance(mock(FulltextAnalyzerResolver.class));
+            super.configure();
+        }
+
+        @Override
+        protected void bindSchemas() {
+            super.bindSchemas();
+            SchemaInfo schemaInfo = mock(SchemaInfo.class);
+            when(schemaInfo.getTableInfo(TEST_DOC_TABLE_IDENT.name())).thenReturn(userTableInfo);
+            when(schemaInfo.getTableInfo(TEST_PARTITIONED_TABLE_IDENT.name()))
+                    .thenReturn(TEST_PARTITIONED_TABLE_INFO);
+            when(schemaInfo.getTableInfo(METRICS_IDENT.name())).thenReturn(METRICS_INFO);
+            schemaBinder.addBinding(ReferenceInfos.DEFAULT_SCHEMA_NAME).toInstance(schemaInfo);
+        }
+    }
+
+    @Override
+    protected List<Module> getModules() {
+        List<Module> modules = super.getModules();
+        modules.addAll(Arrays.<Module>asList(
+                new MockedClusterServiceModule(),
+                new TestMetaDataModule(),
+                new MetaDataSysModule(),
+                new OperatorModule(),
+                new AggregationImplModule(),
+                new PredicateModule(),
+                new ScalarFunctionModule()
+        ));
+        return modules;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> viewMeta(CreateMaterializedViewAnalyzedStatement analysis) {
+        Map<String, Object> meta = (Map<String, Object>) analysis.mapping().get("_meta");
+        return (Map<String, Object>) meta.get(CreateMaterializedViewAnalyzedStatement.META_KEY);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCreateMaterializedView() throws Exception {
+        String stmt = "create materialized view v as select id, name, counters from users where name = 'Arthur'";
+        CreateMaterializedViewAnalyzedStatement analysis = (CreateMaterializedViewAnalyzedStatement) analyze(stmt);
+
+        assertThat(analysis.tableIdent().name(), is("v"));
+        assertThat(analysis.source(), is(TEST_DOC_TABLE_IDENT));
+        assertThat(analysis.isIncremental(), is(false));
+
+        Map<String, Object> properties = analysis.mappingProperties();
+        assertThat(properties.keySet(), containsInAnyOrder("id", "name", "counters"));
+        assertThat((String) ((Map<String, Object>) properties.get("id")).get("type"), is("long"));
+        assertThat((String) ((Map<String, Object>) properties.get("counters")).get("type"), is("array"));
+
+        Map<String, Object> viewMeta = viewMeta(analysis);
+        assertThat((List<String>) viewMeta.get(CreateMaterializedViewAnalyzedStatement.META_COLUMNS),
+                contains("id", "name", "counters"));
+        assertThat((String) viewMeta.get(CreateMaterializedViewAnalyzedStatement.META_SOURCE_TABLE), is("users"));
+        assertThat(viewMeta.containsKey(CreateMaterializedViewAnalyzedStatement.META_PARTITION_COLUMNS), is(false));
+
+        // the stored query must be parseable again
+        CreateMaterializedView node = (CreateMaterializedView) SqlParser.createStatement(stmt);
+        assertThat(SqlParser.createStatement((String) viewMeta.get(CreateMaterializedViewAnalyzedStatement.META_QUERY)),
+                is((Object) node.getTableDefinition()));
+    }
+
+    @Test
+    public void testGroupedViewOnPartitionedTableIsIncremental() throws Exception {
+        CreateMaterializedViewAnalyzedStatement analysis = (CreateMaterializedViewAnalyzedStatement) analyze(
+                "create materialized view daily as select date as day, count(*) as cnt from parted group by date");
+        assertThat(analysis.isIncremental(), is(true));
+        assertThat(analysis.partitionColumns(), contains("day"));
+        assertThat(analysis.isPartitioned(), is(false));
+    }
+
+    @Test
+    public void testGlobalAggregateViewOnPartitionedTableIsNotIncremental() throws Exception {
+        CreateMaterializedViewAnalyzedStatement analysis = (CreateMaterializedViewAnalyzedStatement) analyze(
+                "create materialized view total as select count(*) as cnt from parted");
+        assertThat(analysis.isIncremental(), is(false));
+    }
+
+    @Test
+    public void testViewWithoutPartitionColumnIsNotIncremental() throws Exception {
+        CreateMaterializedViewAnalyzedStatement analysis = (CreateMaterializedViewAnalyzedStatement) analyze(
+                "create materialized view names as select name, count(*) as cnt from parted group by name");
+        assertThat(analysis.isIncremental(), is(false));
+    }
+
+    @Test
+    public void testAggregateWithoutAlias() throws Exception {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Materialized view column \"count(*)\" must be named using an alias");
+        analyze("create materialized view v as select count(*) from users");
+    }
+
+    @Test
+    public void testDuplicateColumn() throws Exception {
+        expectedException.expect(IllegalArgumentException.class);
+        analyze("create materialized view v as select id, other_id as id from users");
+    }
+
+    @Test
+    public void testObjectColumnNotSupported() throws Exception {
+        expectedException.expect(UnsupportedFeatureException.class);
+        analyze("create materialized view v as select details from users");
+    }
+
+    @Test
+    public void testPeriodicRefreshNotSupported() throws Exception {
+        expectedException.expect(UnsupportedFeatureException.class);
+        analyze("create materialized view v refresh 60 as select id from users");
+    }
+
+    @Test
+    public void testOrderByNotSupported() throws Exception {
+        expectedException.expect(UnsupportedFeatureException.class);
+        analyze("create materialized view v as select id from users order by id");
+    }
+
+    @Test
+    public void testParametersNotSupported() throws Exception {
+        expectedException.expect(UnsupportedFeatureException.class);
+        analyze("create materialized view v as select id from users where name = ?", new Object[]{"Arthur"});
+    }
+
+    @Test
+    public void testViewOnSystemTable() throws Exception {
+        expectedException.expect(UnsupportedFeatureException.class);
+        analyze("create materialized view v as select id from sys.nodes");
+    }
+
+    @Test
+    public void testViewNameExists() throws Exception {
+        expectedException.expect(TableAlreadyExistsException.class);
+        analyze("create materialized view users as select id from users");
+    }
+
+    @Test
+    public void testRefreshMaterializedView() throws Exception {
+        RefreshMaterializedViewAnalyzedStatement analysis = (RefreshMaterializedViewAnalyzedStatement) analyze(
+                "refresh materialized view users");
+        assertThat(analysis.table(), is(userTableInfo));
+    }
+
+    @Test
+    public void testRefreshPartitionedTableAsView() throws Exception {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Table 'parted' is not a materialized view");
+        analyze("refresh materialized view parted");
+    }
+
+    @Test
+    public void testCreateRollup() throws Exception {
+        CreateMaterializedViewAnalyzedStatement analysis = (CreateMaterializedViewAnalyzedStatement) analyze(
+                "create rollup metrics_daily as select day, host, count(*) as cnt, " +
+                "sum(value) as value_sum, max(value) as value_max from metrics group by day, host");
+        RollupInfo rollup = analysis.rollup();
+        assertThat(rollup, notNullValue());
+        assertThat(rollup.ident().name(), is("metrics_daily"));
+        assertThat(rollup.groupBy(), contains(new ColumnIdent("day"), new ColumnIdent("host")));
+        assertThat(rollup.groupByColumns(), contains("day", "host"));
+        assertThat(rollup.aggregates(), contains(
+                new RollupInfo.Aggregate("count", null, "cnt"),
+                new RollupInfo.Aggregate("sum", new ColumnIdent("value"), "value_sum"),
+                new RollupInfo.Aggregate("max", new ColumnIdent("value"), "value_max")));
+        assertThat(rollup.aggregateColumn("sum", new ColumnIdent("value")), is("value_sum"));
+        assertThat(rollup.groupByColumn(new ColumnIdent("host")), is("host"));
+    }
+
+    @Test
+    public void testMaterializedViewIsNoRollup() throws Exception {
+        CreateMaterializedViewAnalyzedStatement analysis = (CreateMaterializedViewAnalyzedStatement) analyze(
+                "create materialized view v as select day, count(*) as cnt from metrics group by day");
+        assertThat(analysis.rollup(), nullValue());
+    }
+
+    @Test
+    public void testRollupWithoutGroupBy() throws Exception {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("A rollup must use GROUP BY");
+        analyze("create rollup r as select count(*) as cnt from metrics");
+    }
+
+    @Test
+    public void testRollupWithWhereClause() throws Exception {
+        expectedException.expect(UnsupportedFeatureException.class);
+        expectedException.expectMessage("Using where or having is not supported in rollup definitions");
+        analyze("create rollup r as select day, count(*) as cnt from metrics where host = 'a' group by day");
+    }
+
+    @Test
+    public void testRollupWithUnsupportedAggregate() throws Exception {
+        expectedException.expect(UnsupportedFeatureException.class);
+        analyze("create rollup r as select day, avg(value) as value_avg from metrics group by day");
+    }
+
+    @Test
+    public void testRollupMustSelectGroupedColumns() throws Exception {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Grouped column \"host\" must be selected in a rollup");
+        analyze("create rollup r as select day, count(*) as cnt from metrics group by day, host");
+    }
+
+    @Test
+    public void testRollupOnNonDocTable() throws Exception {
+        expectedException.expect(UnsupportedFeatureException.class);
+        expectedException.expectMessage("Cannot create a rollup on table \"users\"");
+        analyze("create rollup r as select name, count(*) as cnt from users group by name");
+    }
+}
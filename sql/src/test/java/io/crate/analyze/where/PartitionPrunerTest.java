@@ -0,0 +1,140 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.analyze.where;
+
+import com.google.common.collect.ImmutableSet;
+import io.crate.metadata.*;
+import io.crate.metadata.doc.PartitionIndex;
+import io.crate.operation.operator.*;
+import io.crate.planner.RowGranularity;
+import io.crate.planner.symbol.Function;
+import io.crate.planner.symbol.Literal;
+import io.crate.planner.symbol.Reference;
+import io.crate.planner.symbol.Symbol;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import io.crate.types.SetType;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class PartitionPrunerTest {
+
+    private static final TableIdent TABLE_IDENT = new TableIdent(null, "parted");
+    private static final ReferenceInfo DATE_INFO = new ReferenceInfo(
+            new ReferenceIdent(TABLE_IDENT, "date"), RowGranularity.PARTITION, DataTypes.TIMESTAMP);
+    private static final ReferenceInfo NAME_INFO = new ReferenceInfo(
+            new ReferenceIdent(TABLE_IDENT, "name"), RowGranularity.DOC, DataTypes.STRING);
+
+    private static PartitionName partition(String value) {
+        List<BytesRef> values = new ArrayList<>(1);
+        values.add(value == null ? null : new BytesRef(value));
+        return new PartitionName("parted", values);
+    }
+
+    // partition ordinals: 0 -> 30, 1 -> 10, 2 -> null, 3 -> 20, 4 -> 20
+    private final PartitionIndex partitionIndex = new PartitionIndex(
+            Arrays.asList(DATE_INFO),
+            Arrays.asList(partition("30"), partition("10"), partition(null), partition("20"), partition("20")));
+
+    private static Function function(String name, Symbol left, Symbol right) {
+        return new Function(
+                new FunctionInfo(new FunctionIdent(name, Arrays.<DataType>asList(left.valueType(), right.valueType())),
+                        DataTypes.BOOLEAN),
+                Arrays.asList(left, right));
+    }
+
+    private static Symbol date() {
+        return new Reference(DATE_INFO);
+    }
+
+    private static Symbol value(long value) {
+        return Literal.newLiteral(DataTypes.TIMESTAMP, value);
+    }
+
+    private BitSet prune(Symbol query) {
+        return PartitionPruner.INSTANCE.prune(query, partitionIndex);
+    }
+
+    private static BitSet bits(int... ordinals) {
+        BitSet bitSet = new BitSet();
+        for (int ordinal : ordinals) {
+            bitSet.set(ordinal);
+        }
+        return bitSet;
+    }
+
+    @Test
+    public void testComparisons() throws Exception {
+        assertThat(prune(function(EqOperator.NAME, date(), value(20L))), is(bits(3, 4)));
+        assertThat(prune(function(EqOperator.NAME, date(), value(15L))), is(bits()));
+        assertThat(prune(function(GtOperator.NAME, date(), value(10L))), is(bits(0, 3, 4)));
+        assertThat(prune(function(GteOperator.NAME, date(), value(10L))), is(bits(0, 1, 3, 4)));
+        assertThat(prune(function(LtOperator.NAME, date(), value(30L))), is(bits(1, 3, 4)));
+        assertThat(prune(function(LteOperator.NAME, date(), value(20L))), is(bits(1, 3, 4)));
+        // literal on the left side
+        assertThat(prune(function(LtOperator.NAME, value(20L), date())), is(bits(0)));
+    }
+
+    @Test
+    public void testInAndLogicalOperators() throws Exception {
+        Symbol in = function(InOperator.NAME, date(),
+                Literal.newLiteral(new SetType(DataTypes.TIMESTAMP), ImmutableSet.of(10L, 30L, 40L)));
+        assertThat(prune(in), is(bits(0, 1)));
+
+        Symbol range = function(AndOperator.NAME,
+                function(GtOperator.NAME, date(), value(10L)),
+                function(LtOperator.NAME, date(), value(30L)));
+        assertThat(prune(range), is(bits(3, 4)));
+
+        Symbol or = function(OrOperator.NAME,
+                function(EqOperator.NAME, date(), value(10L)),
+                function(EqOperator.NAME, date(), value(30L)));
+        assertThat(prune(or), is(bits(0, 1)));
+    }
+
+    @Test
+    public void testConditionsOnOtherColumnsArentPruned() throws Exception {
+        Symbol nameEq = function(EqOperator.NAME, new Reference(NAME_INFO), Literal.newLiteral("foo"));
+        assertThat(prune(nameEq), nullValue());
+
+        // AND with an unknown condition still prunes, OR can't
+        Symbol dateEq = function(EqOperator.NAME, date(), value(30L));
+        assertThat(prune(function(AndOperator.NAME, nameEq, dateEq)), is(bits(0)));
+        assertThat(prune(function(OrOperator.NAME, nameEq, dateEq)), nullValue());
+    }
+
+    @Test
+    public void testPartitionsInOriginalOrder() throws Exception {
+        List<PartitionName> partitions = partitionIndex.partitions(partitionIndex.all());
+        assertThat(partitions, is(partitionIndex.partitions()));
+        assertThat(partitionIndex.partitions(bits(4, 0)),
+                contains(partitionIndex.partitions().get(0), partitionIndex.partitions().get(4)));
+    }
+}
@@ -24,6 +24,7 @@ package io.crate.breaker;
 import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.settings.ImmutableSettings;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.indices.breaker.CircuitBreakerService;
 import org.elasticsearch.indices.breaker.CircuitBreakerStats;
@@ -49,6 +50,21 @@ public class CrateCircuitBreakerServiceTest {
         assertThat(breaker.getName(), is(CrateCircuitBreakerService.QUERY_BREAKER));
     }
 
+    @Test
+    public void testHotColumnsCircuitBreakerRegistration() throws Exception {
+        NodeSettingsService settingsService = new NodeSettingsService(ImmutableSettings.EMPTY);
+        CircuitBreakerService esBreakerService = new HierarchyCircuitBreakerService(ImmutableSettings.EMPTY, settingsService);
+        CrateCircuitBreakerService breakerService = new CrateCircuitBreakerService(
+                ImmutableSettings.settingsBuilder()
+                        .put(CrateCircuitBreakerService.HOT_COLUMNS_CIRCUIT_BREAKER_LIMIT_SETTING, "1mb").build(),
+                settingsService, esBreakerService);
+
+        CircuitBreaker breaker = breakerService.getBreaker(CrateCircuitBreakerService.HOT_COLUMNS_BREAKER);
+        assertThat(breaker, notNullValue());
+        assertThat(breaker.getName(), is(CrateCircuitBreakerService.HOT_COLUMNS_BREAKER));
+        assertThat(breaker.getLimit(), is(new ByteSizeValue(1, ByteSizeUnit.MB).bytes()));
+    }
+
     @Test
     public void testQueryCircuitBreakerDynamicSettings() throws Exception {
         final NodeSettingsService.Listener[] listeners = new NodeSettingsService.Listener[1];
@@ -89,7 +105,7 @@ public class CrateCircuitBreakerServiceTest {
                 ImmutableSettings.EMPTY, settingsService, esBreakerService);
 
         CircuitBreakerStats[] stats = breakerService.stats().getAllStats();
-        assertThat(stats.length, is(4));
+        assertThat(stats.length, is(5));
 
         CircuitBreakerStats queryBreakerStats = breakerService.stats(CrateCircuitBreakerService.QUERY_BREAKER);
         assertThat(queryBreakerStats.getEstimated(), is(0L));
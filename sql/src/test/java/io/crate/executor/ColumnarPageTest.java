@@ -0,0 +1,152 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.executor;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.util.BigArrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.Iterator;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
+public class ColumnarPageTest {
+
+    private static final List<DataType> TYPES = ImmutableList.<DataType>of(
+            DataTypes.LONG, DataTypes.INTEGER, DataTypes.DOUBLE, DataTypes.FLOAT,
+            DataTypes.STRING, DataTypes.BOOLEAN);
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private final BigArrays bigArrays = BigArrays.NON_RECYCLING_INSTANCE;
+
+    private ColumnarRows rows(int numRows) {
+        ColumnarRows rows = new ColumnarRows(bigArrays, TYPES, numRows);
+        for (int i = 0; i < numRows; i++) {
+            rows.set(i, new Object[]{
+                    (long) i,
+                    i,
+                    i + 0.5d,
+                    i + 0.25f,
+                    new BytesRef("row" + i),
+                    i % 2 == 0
+            });
+        }
+        return rows;
+    }
+
+    @Test
+    public void testRowsKeepValuesAndTypes() throws Exception {
+        // more rows than fit into a single page of the big arrays
+        ColumnarRows rows = rows(20000);
+        for (int i = 0; i < 20000; i++) {
+            Object[] row = rows.get(i);
+            assertThat(row, arrayContaining(
+                    (Object) (long) i, i, i + 0.5d, i + 0.25f, new BytesRef("row" + i), i % 2 == 0));
+        }
+        rows.close();
+    }
+
+    @Test
+    public void testTypedAccess() throws Exception {
+        ColumnarRows rows = rows(10);
+        ColumnarPage page = new ColumnarPage(rows, 5, 3);
+        assertThat(page.size(), is(3L));
+        assertThat(page.numColumns(), is(6));
+        assertThat(page.getLong(0, 0), is(5L));
+        assertThat(page.getLong(1, 1), is(6L));
+        assertThat(page.getDouble(2, 2), is(7.5d));
+        assertThat(page.getDouble(0, 3), is(5.25d));
+        assertThat(page.getBytesRef(1, 4, new BytesRef()).utf8ToString(), is("row6"));
+        assertThat(page.get(0, 5), is((Object) false));
+        rows.close();
+    }
+
+    @Test
+    public void testNullsAndUnexpectedTypes() throws Exception {
+        ColumnarRows rows = new ColumnarRows(bigArrays, TYPES, 3);
+        rows.set(0, new Object[]{null, null, null, null, null, null});
+        // e.g. values read from the source of documents indexed using ES
+        rows.set(1, new Object[]{1, 2L, 3, "4.5", "foo", true});
+        rows.set(2, new Object[]{10L, 20, 30.0d, 40.0f, "bar", null});
+
+        ColumnarPage page = new ColumnarPage(rows);
+        for (int c = 0; c < TYPES.size(); c++) {
+            assertThat(page.isNull(0, c), is(true));
+            assertThat(page.get(0, c), nullValue());
+            assertThat(page.isNull(1, c), is(false));
+        }
+        assertThat(rows.get(1), arrayContaining((Object) 1, 2L, 3, "4.5", "foo", true));
+        assertThat(page.getLong(1, 0), is(1L));
+        assertThat(page.getDouble(1, 2), is(3.0d));
+        assertThat(page.getBytesRef(1, 4, new BytesRef()), is(new BytesRef("foo")));
+
+        // the string column returns strings because the first value was a string
+        assertThat(rows.get(2), arrayContaining((Object) 10L, 20, 30.0d, 40.0f, "bar", null));
+        rows.close();
+    }
+
+    @Test
+    public void testTypedGetterOnNull() throws Exception {
+        ColumnarRows rows = new ColumnarRows(bigArrays, TYPES, 1);
+        rows.set(0, new Object[]{null, null, null, null, null, null});
+        try {
+            rows.getLong(0, 0);
+            fail("expected AssertionError");
+        } catch (AssertionError e) {
+            assertThat(e.getMessage(), is("value is null"));
+        } finally {
+            rows.close();
+        }
+    }
+
+    @Test
+    public void testIterator() throws Exception {
+        ColumnarRows rows = rows(50);
+        assertThat(Iterators.size(new ColumnarPage(rows).iterator()), is(50));
+        assertThat(Iterators.size(new ColumnarPage(rows, 40, 20).iterator()), is(10));
+
+        Iterator<Object[]> it = new ColumnarPage(rows, 10, 2).iterator();
+        assertThat(it.next()[0], is((Object) 10L));
+        assertThat(it.next()[0], is((Object) 11L));
+        assertThat(it.hasNext(), is(false));
+        rows.close();
+    }
+
+    @Test
+    public void testExceed() throws Exception {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("start exceeds page");
+        new ColumnarPage(new ColumnarRows(bigArrays, TYPES, 2), 3, 1);
+    }
+}
@@ -28,6 +28,7 @@ import io.crate.breaker.RamAccountingContext;
 import io.crate.executor.TaskResult;
 import io.crate.metadata.Routing;
 import io.crate.operation.collect.CollectOperation;
+import io.crate.operation.kill.JobKillRegistry;
 import io.crate.planner.RowGranularity;
 import io.crate.planner.node.dql.CollectNode;
 import io.crate.planner.symbol.Literal;
@@ -66,7 +67,8 @@ public class LocalCollectTaskTest {
                 return result;
             }
         };
-        LocalCollectTask collectTask = new LocalCollectTask(UUID.randomUUID(), collectOperation, collectNode, new NoopCircuitBreaker(CircuitBreaker.Name.FIELDDATA));
+        LocalCollectTask collectTask = new LocalCollectTask(UUID.randomUUID(), collectOperation, collectNode,
+                new NoopCircuitBreaker(CircuitBreaker.Name.FIELDDATA), new JobKillRegistry());
         collectTask.start();
         List<ListenableFuture<TaskResult>> results = collectTask.result();
         assertThat(results.size(), is(1));
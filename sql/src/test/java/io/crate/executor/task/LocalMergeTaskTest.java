@@ -32,6 +32,7 @@ import io.crate.operation.aggregation.AggregationFunction;
 import io.crate.operation.aggregation.impl.AggregationImplModule;
 import io.crate.operation.aggregation.impl.MinimumAggregation;
 import io.crate.operation.collect.StatsTables;
+import io.crate.operation.kill.JobKillRegistry;
 import io.crate.operation.projectors.TopN;
 import io.crate.planner.RowGranularity;
 import io.crate.planner.node.dql.MergeNode;
@@ -135,7 +136,8 @@ public class LocalMergeTaskTest {
                     mock(TransportActionProvider.class, Answers.RETURNS_DEEP_STUBS.get()),
                     symbolVisitor, mergeNode,
                     mock(StatsTables.class),
-                    new NoopCircuitBreaker(CircuitBreaker.Name.FIELDDATA));
+                    new NoopCircuitBreaker(CircuitBreaker.Name.FIELDDATA),
+                    new JobKillRegistry());
             localMergeTask.upstreamResult(upstreamResults);
             localMergeTask.start();
 
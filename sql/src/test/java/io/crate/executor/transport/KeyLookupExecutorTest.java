@@ -0,0 +1,143 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.executor.transport;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.get.*;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class KeyLookupExecutorTest {
+
+    private final List<MultiGetRequest> requests = new ArrayList<>();
+    private final List<ActionListener<MultiGetResponse>> listeners = new ArrayList<>();
+    private KeyLookupExecutor executor;
+
+    @Before
+    public void prepare() throws Exception {
+        executor = new KeyLookupExecutor(
+                ImmutableSettings.builder().put(KeyLookupExecutor.SETTING_MAX_CONCURRENT_REQUESTS, 1).build(),
+                (TransportMultiGetAction) null) {
+            @Override
+            void executeMultiGet(MultiGetRequest request, ActionListener<MultiGetResponse> listener) {
+                requests.add(request);
+                listeners.add(listener);
+            }
+        };
+    }
+
+    private static List<MultiGetRequest.Item> items(String... ids) {
+        List<MultiGetRequest.Item> items = new ArrayList<>(ids.length);
+        for (String id : ids) {
+            items.add(new MultiGetRequest.Item("characters", "default", id));
+        }
+        return items;
+    }
+
+    private static MultiGetResponse respond(MultiGetRequest request) {
+        MultiGetItemResponse[] responses = new MultiGetItemResponse[request.getItems().size()];
+        for (int i = 0; i < responses.length; i++) {
+            MultiGetRequest.Item item = request.getItems().get(i);
+            responses[i] = new MultiGetItemResponse(null,
+                    new MultiGetResponse.Failure(item.index(), item.type(), item.id(), "missing"));
+        }
+        return new MultiGetResponse(responses);
+    }
+
+    private static class CollectingListener implements ActionListener<MultiGetResponse> {
+
+        final AtomicReference<MultiGetResponse> response = new AtomicReference<>();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        @Override
+        public void onResponse(MultiGetResponse multiGetResponse) {
+            response.set(multiGetResponse);
+        }
+
+        @Override
+        public void onFailure(Throwable e) {
+            failure.set(e);
+        }
+    }
+
+    private static List<String> ids(MultiGetResponse response) {
+        List<String> ids = new ArrayList<>();
+        for (MultiGetItemResponse itemResponse : response) {
+            ids.add(itemResponse.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void testLookupsAreMergedWhileRequestIsInFlight() throws Exception {
+        CollectingListener first = new CollectingListener();
+        CollectingListener second = new CollectingListener();
+        CollectingListener third = new CollectingListener();
+
+        executor.lookup(items("1"), first);
+        executor.lookup(items("2", "3"), second);
+        executor.lookup(items("4"), third);
+        assertThat(requests.size(), is(1));
+        assertThat(requests.get(0).realtime(), is(true));
+
+        listeners.get(0).onResponse(respond(requests.get(0)));
+        assertThat(ids(first.response.get()), is(Arrays.asList("1")));
+
+        // the queued lookups are sent together
+        assertThat(requests.size(), is(2));
+        assertThat(requests.get(1).getItems().size(), is(3));
+        listeners.get(1).onResponse(respond(requests.get(1)));
+        assertThat(ids(second.response.get()), is(Arrays.asList("2", "3")));
+        assertThat(ids(third.response.get()), is(Arrays.asList("4")));
+
+        // nothing pending, next lookup is sent immediately
+        executor.lookup(items("5"), new CollectingListener());
+        assertThat(requests.size(), is(3));
+    }
+
+    @Test
+    public void testFailureIsPropagatedToAllLookupsOfBatch() throws Exception {
+        CollectingListener first = new CollectingListener();
+        CollectingListener second = new CollectingListener();
+        CollectingListener third = new CollectingListener();
+        executor.lookup(items("1"), first);
+        executor.lookup(items("2"), second);
+        executor.lookup(items("3"), third);
+
+        listeners.get(0).onFailure(new IllegalStateException("fail"));
+        assertThat(first.failure.get(), instanceOf(IllegalStateException.class));
+        assertThat(second.failure.get(), nullValue());
+
+        listeners.get(1).onFailure(new IllegalStateException("fail"));
+        assertThat(second.failure.get(), instanceOf(IllegalStateException.class));
+        assertThat(third.failure.get(), instanceOf(IllegalStateException.class));
+    }
+}
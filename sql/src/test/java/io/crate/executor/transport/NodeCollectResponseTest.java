@@ -0,0 +1,74 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.executor.transport;
+
+import io.crate.Streamer;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.netty.buffer.ChannelBuffers;
+import org.elasticsearch.transport.netty.ChannelBufferStreamInput;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class NodeCollectResponseTest {
+
+    private static final Streamer<?>[] STREAMERS = new Streamer<?>[]{DataTypes.INTEGER.streamer()};
+
+    @Test
+    public void testStreaming() throws Exception {
+        NodeCollectResponse response = new NodeCollectResponse(STREAMERS);
+        response.rows(new Object[][]{new Object[]{1}, new Object[]{2}});
+        response.searchQueueSize(7);
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        response.writeTo(out);
+
+        NodeCollectResponse streamed = new NodeCollectResponse(STREAMERS);
+        streamed.readFrom(new ChannelBufferStreamInput(ChannelBuffers.wrappedBuffer(out.bytes().toBytes())));
+
+        assertThat(streamed.rows().length, is(2));
+        assertThat((Integer) streamed.rows()[1][0], is(2));
+        assertThat(streamed.searchQueueSize(), is(7));
+    }
+
+    @Test
+    public void testStreamingWithoutSearchQueueSize() throws Exception {
+        NodeCollectResponse response = new NodeCollectResponse(STREAMERS);
+        response.rows(new Object[][]{new Object[]{1}});
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        response.writeTo(out);
+        // responses of older nodes end after the rows
+        byte[] bytes = out.bytes().toBytes();
+        ChannelBufferStreamInput in = new ChannelBufferStreamInput(
+                ChannelBuffers.wrappedBuffer(bytes, 0, bytes.length - 4));
+
+        NodeCollectResponse streamed = new NodeCollectResponse(STREAMERS);
+        streamed.readFrom(in);
+
+        assertThat(streamed.rows().length, is(1));
+        assertThat(streamed.searchQueueSize(), is(-1));
+    }
+}
@@ -27,9 +27,11 @@ import com.google.common.collect.Iterables;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.crate.Constants;
 import io.crate.action.sql.SQLResponse;
+import io.crate.action.sql.query.CrateSearchService;
 import io.crate.analyze.WhereClause;
 import io.crate.executor.*;
 import io.crate.executor.task.join.NestedLoopTask;
+import io.crate.exceptions.JobKilledException;
 import io.crate.executor.transport.task.elasticsearch.QueryThenFetchTask;
 import io.crate.metadata.ColumnIdent;
 import io.crate.metadata.doc.DocTableInfo;
@@ -44,6 +46,7 @@ import io.crate.planner.symbol.Symbol;
 import io.crate.testing.TestingHelpers;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
+import org.elasticsearch.search.SearchService;
 import org.elasticsearch.test.junit.annotations.TestLogging;
 import org.junit.After;
 import org.junit.Rule;
@@ -54,6 +57,7 @@ import java.io.Closeable;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
 
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.core.Is.is;
 
@@ -1020,4 +1024,51 @@ public class PagingTasksTest extends BaseTransportExecutorTest {
         closeMeWhenDone = backwardResult;
         assertThat(TestingHelpers.printedPage(backwardResult.page()), is("1| Arthur| false" + System.lineSeparator()));
     }
+
+    @Test
+    public void testKillPagedQueryThenFetchFreesSearchContexts() throws Exception {
+        setup.setUpCharacters();
+        DocTableInfo characters = docSchemaInfo.getTableInfo("characters");
+
+        QueryThenFetchNode qtfNode = new QueryThenFetchNode(
+                characters.getRouting(WhereClause.MATCH_ALL),
+                Arrays.<Symbol>asList(idRef, nameRef, femaleRef),
+                Arrays.<Symbol>asList(nameRef, idRef),
+                new boolean[]{false, false},
+                new Boolean[]{null, null},
+                5,
+                0,
+                WhereClause.MATCH_ALL,
+                null
+        );
+        int contextsBefore = numberOfActiveSearchContexts();
+
+        UUID jobId = UUID.randomUUID();
+        QueryThenFetchTask qtfTask = (QueryThenFetchTask)executor.newTasks(qtfNode, jobId).get(0);
+        PageInfo pageInfo = PageInfo.firstPage(2);
+        qtfTask.start(pageInfo);
+        PageableTaskResult pageableResult = (PageableTaskResult)qtfTask.result().get(0).get();
+        closeMeWhenDone = pageableResult;
+        assertThat(pageableResult.page().size(), is(2L));
+        assertThat(numberOfActiveSearchContexts(), greaterThan(contextsBefore));
+
+        SQLResponse response = execute("kill ?", new Object[]{jobId.toString()});
+        assertThat(response.rowCount(), greaterThan(0L));
+        assertThat(numberOfActiveSearchContexts(), is(contextsBefore));
+
+        try {
+            pageableResult.fetch(pageInfo.nextPage(2)).get();
+            fail("fetching a page of a killed job must fail");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(JobKilledException.class));
+        }
+    }
+
+    private int numberOfActiveSearchContexts() {
+        int contexts = 0;
+        for (SearchService searchService : cluster().getInstances(SearchService.class)) {
+            contexts += ((CrateSearchService) searchService).numberOfActiveContexts();
+        }
+        return contexts;
+    }
 }
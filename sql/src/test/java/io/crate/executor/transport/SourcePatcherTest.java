@@ -0,0 +1,106 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.executor.transport;
+
+import com.google.common.collect.ImmutableMap;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.compress.CompressorFactory;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class SourcePatcherTest {
+
+    private static final BytesReference SOURCE = new BytesArray(
+            "{\"id\":1,\"name\":\"Arthur\",\"details\":{\"age\":42,\"towel\":true},\"tags\":[\"a\",\"b\"]}");
+
+    private static String patch(BytesReference source, Map<String, Object> changes) throws Exception {
+        BytesReference patched = SourcePatcher.patch(source, changes);
+        return patched == null ? null : patched.toUtf8();
+    }
+
+    @Test
+    public void testPatchTopLevelField() throws Exception {
+        assertThat(patch(SOURCE, ImmutableMap.<String, Object>of("name", "Ford")),
+                is("{\"id\":1,\"name\":\"Ford\",\"details\":{\"age\":42,\"towel\":true},\"tags\":[\"a\",\"b\"]}"));
+    }
+
+    @Test
+    public void testPatchNestedAndMissingFields() throws Exception {
+        assertThat(patch(SOURCE, ImmutableMap.<String, Object>of(
+                        "details.age", 43,
+                        "details.planet", "earth",
+                        "counter", 1L,
+                        "o.a.b", 2)),
+                is("{\"id\":1,\"name\":\"Arthur\",\"details\":{\"age\":43,\"towel\":true,\"planet\":\"earth\"}," +
+                   "\"tags\":[\"a\",\"b\"],\"counter\":1,\"o\":{\"a\":{\"b\":2}}}"));
+    }
+
+    @Test
+    public void testObjectValueIsReplaced() throws Exception {
+        Map<String, Object> changes = new HashMap<>();
+        changes.put("details", ImmutableMap.of("age", 1));
+        changes.put("tags", null);
+        assertThat(patch(SOURCE, changes),
+                is("{\"id\":1,\"name\":\"Arthur\",\"details\":{\"age\":1},\"tags\":null}"));
+    }
+
+    @Test
+    public void testPathThroughNonObjectFieldIsNotPatched() throws Exception {
+        assertThat(patch(SOURCE, ImmutableMap.<String, Object>of("name.first", "Arthur")), nullValue());
+    }
+
+    @Test
+    public void testConflictingPathsAreNotPatched() throws Exception {
+        assertThat(patch(SOURCE, ImmutableMap.<String, Object>of(
+                "details", ImmutableMap.of("age", 1),
+                "details.age", 2)), nullValue());
+    }
+
+    @Test
+    public void testPatchKeepsContentType() throws Exception {
+        BytesReference smileSource = XContentFactory.smileBuilder()
+                .startObject().field("id", 1).field("name", "Arthur").endObject().bytes();
+        BytesReference patched = SourcePatcher.patch(smileSource, ImmutableMap.<String, Object>of("id", 2));
+        assertThat(XContentFactory.xContentType(patched), is(XContentType.SMILE));
+        Map<String, Object> map = XContentHelper.convertToMap(patched, true).v2();
+        assertThat(map.get("id"), is((Object) 2));
+        assertThat(map.get("name"), is((Object) "Arthur"));
+    }
+
+    @Test
+    public void testPatchCompressedSource() throws Exception {
+        byte[] bytes = SOURCE.toBytes();
+        BytesReference compressed = new BytesArray(CompressorFactory.defaultCompressor().compress(bytes, 0, bytes.length));
+        assertThat(patch(compressed, ImmutableMap.<String, Object>of("id", 2)),
+                is("{\"id\":2,\"name\":\"Arthur\",\"details\":{\"age\":42,\"towel\":true},\"tags\":[\"a\",\"b\"]}"));
+    }
+}
@@ -34,6 +34,7 @@ import io.crate.metadata.Functions;
 import io.crate.operation.DownstreamOperation;
 import io.crate.operation.DownstreamOperationFactory;
 import io.crate.operation.collect.StatsTables;
+import io.crate.operation.kill.JobKillRegistry;
 import io.crate.operation.projectors.Projector;
 import io.crate.planner.node.dql.MergeNode;
 import io.crate.planner.projection.Projection;
@@ -121,6 +122,7 @@ public class DistributedResultRequestTest {
         DistributedRequestContextManager contextManager =
                 new DistributedRequestContextManager(new DummyDownstreamOperationFactory(rows), functions,
                         new StatsTables(ImmutableSettings.EMPTY, mock(NodeSettingsService.class)),
+                        new JobKillRegistry(),
                         new NoopCircuitBreaker(CircuitBreaker.Name.FIELDDATA));
         BytesStreamInput streamInput = new BytesStreamInput(streamOutput.bytes());
         DistributedResultRequest requestReceiver = new DistributedResultRequest(contextManager);
@@ -167,6 +169,7 @@ public class DistributedResultRequestTest {
         DistributedRequestContextManager contextManager =
                 new DistributedRequestContextManager(new DummyDownstreamOperationFactory(rows), functions,
                         new StatsTables(ImmutableSettings.EMPTY, mock(NodeSettingsService.class)),
+                        new JobKillRegistry(),
                         new NoopCircuitBreaker(CircuitBreaker.Name.FIELDDATA));
 
         contextManager.createContext(dummyMergeNode, new NoopActionListener());
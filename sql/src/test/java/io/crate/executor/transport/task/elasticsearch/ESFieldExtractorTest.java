@@ -24,12 +24,26 @@ package io.crate.executor.transport.task.elasticsearch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import io.crate.metadata.ColumnIdent;
+import io.crate.metadata.ReferenceIdent;
+import io.crate.metadata.ReferenceInfo;
+import io.crate.metadata.TableIdent;
+import io.crate.metadata.table.ColumnPolicy;
+import io.crate.planner.RowGranularity;
+import io.crate.types.ArrayType;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.search.SearchHitField;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.elasticsearch.search.internal.InternalSearchHitField;
 import org.junit.Test;
 
 import java.util.*;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
 
 public class ESFieldExtractorTest {
 
@@ -110,4 +124,57 @@ public class ESFieldExtractorTest {
         assertEquals(expected, ex.toValue(source));
     }
 
+    private static final TableIdent TABLE_IDENT = new TableIdent(null, "t");
+
+    private static ReferenceInfo referenceInfo(ColumnIdent column, DataType type, ReferenceInfo.IndexType indexType) {
+        return new ReferenceInfo(new ReferenceIdent(TABLE_IDENT, column),
+                RowGranularity.DOC, type, ColumnPolicy.DYNAMIC, indexType);
+    }
+
+    private static InternalSearchHit hit(String source, String field, Object... values) {
+        Map<String, SearchHitField> fields = new HashMap<>();
+        if (field != null) {
+            fields.put(field, new InternalSearchHitField(field, Arrays.asList(values)));
+        }
+        InternalSearchHit hit = new InternalSearchHit(1, "1", null, fields);
+        if (source != null) {
+            hit.sourceRef(new BytesArray(source));
+        }
+        return hit;
+    }
+
+    @Test
+    public void testDocValuesSupports() throws Exception {
+        assertTrue(ESFieldExtractor.DocValues.supports(
+                referenceInfo(new ColumnIdent("l"), DataTypes.LONG, ReferenceInfo.IndexType.NOT_ANALYZED)));
+        assertTrue(ESFieldExtractor.DocValues.supports(
+                referenceInfo(new ColumnIdent("s"), DataTypes.STRING, ReferenceInfo.IndexType.NOT_ANALYZED)));
+        assertFalse(ESFieldExtractor.DocValues.supports(
+                referenceInfo(new ColumnIdent("s"), DataTypes.STRING, ReferenceInfo.IndexType.ANALYZED)));
+        assertFalse(ESFieldExtractor.DocValues.supports(
+                referenceInfo(new ColumnIdent("o", "l"), DataTypes.LONG, ReferenceInfo.IndexType.NOT_ANALYZED)));
+        assertFalse(ESFieldExtractor.DocValues.supports(
+                referenceInfo(new ColumnIdent("b"), DataTypes.BOOLEAN, ReferenceInfo.IndexType.NOT_ANALYZED)));
+        assertFalse(ESFieldExtractor.DocValues.supports(
+                referenceInfo(new ColumnIdent("a"), new ArrayType(DataTypes.LONG), ReferenceInfo.IndexType.NOT_ANALYZED)));
+    }
+
+    @Test
+    public void testDocValuesExtract() throws Exception {
+        ESFieldExtractor ex = new ESFieldExtractor.DocValues(
+                referenceInfo(new ColumnIdent("i"), DataTypes.INTEGER, ReferenceInfo.IndexType.NOT_ANALYZED));
+        assertEquals(10, ex.extract(hit(null, "i", 10L)));
+
+        ex = new ESFieldExtractor.DocValues(
+                referenceInfo(new ColumnIdent("s"), DataTypes.STRING, ReferenceInfo.IndexType.NOT_ANALYZED));
+        assertEquals("foo", ex.extract(hit(null, "s", "foo")));
+    }
+
+    @Test
+    public void testDocValuesFallbackToSource() throws Exception {
+        ESFieldExtractor ex = new ESFieldExtractor.DocValues(
+                referenceInfo(new ColumnIdent("i"), DataTypes.INTEGER, ReferenceInfo.IndexType.NOT_ANALYZED));
+        assertEquals(10, ex.extract(hit("{\"i\": 10}", null)));
+        assertNull(ex.extract(hit(null, null)));
+    }
 }
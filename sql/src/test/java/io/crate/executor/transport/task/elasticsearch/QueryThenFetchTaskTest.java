@@ -33,6 +33,7 @@ import io.crate.executor.TaskResult;
 import io.crate.metadata.Functions;
 import io.crate.metadata.Routing;
 import io.crate.operation.aggregation.impl.CountAggregation;
+import io.crate.operation.kill.JobKillRegistry;
 import io.crate.operation.qtf.QueryThenFetchOperation;
 import io.crate.planner.node.dql.QueryThenFetchNode;
 import io.crate.planner.symbol.Aggregation;
@@ -115,7 +116,8 @@ public class QueryThenFetchTaskTest {
                 searchPhaseController,
                 testPool,
                 mockedBigarrays,
-                crateResultSorter
+                crateResultSorter,
+                new JobKillRegistry()
         );
         queryThenFetchTask = new QueryThenFetchTask(
                 UUID.randomUUID(),
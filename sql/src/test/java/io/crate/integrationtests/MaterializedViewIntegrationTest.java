@@ -0,0 +1,115 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.integrationtests;
+
+import io.crate.test.integration.CrateIntegrationTest;
+import org.elasticsearch.common.base.Predicate;
+import org.junit.Test;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.core.Is.is;
+
+@CrateIntegrationTest.ClusterScope(scope = CrateIntegrationTest.Scope.GLOBAL)
+public class MaterializedViewIntegrationTest extends SQLTransportIntegrationTest {
+
+    @Test
+    public void testConcurrentInsertsStoreEveryRollupGroupOnce() throws Exception {
+        execute("create table visits (country string, duration long) " +
+                "clustered into 2 shards with (number_of_replicas = 0)");
+        ensureGreen();
+        execute("create rollup visits_by_country as " +
+                "select country, count(*) as cnt, sum(duration) as duration_sum from visits group by country");
+        ensureGreen();
+
+        final int numThreads = 4;
+        final int numInserts = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        List<Future<Void>> futures = new ArrayList<>(numThreads);
+        for (int i = 0; i < numThreads; i++) {
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    for (int j = 0; j < numInserts; j++) {
+                        // statements are sent to random nodes, so the groups are maintained concurrently
+                        sqlExecutor.exec("insert into visits (country, duration) values (?, ?), (?, ?)",
+                                new Object[]{"AT", 1, "DE", 2});
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // the rollup is refreshed in the background
+        assertTrue(awaitBusy(new Predicate<Object>() {
+            @Override
+            public boolean apply(@Nullable Object input) {
+                execute("refresh table visits_by_country");
+                execute("select sum(cnt) from visits_by_country");
+                return response.rows()[0][0] != null
+                        && ((Number) response.rows()[0][0]).longValue() == 2L * numThreads * numInserts;
+            }
+        }, 10, TimeUnit.SECONDS));
+        execute("select country, cnt, duration_sum from visits_by_country order by country");
+        assertThat(response.rowCount(), is(2L));
+        assertThat((String) response.rows()[0][0], is("AT"));
+        assertThat(((Number) response.rows()[0][1]).longValue(), is((long) numThreads * numInserts));
+        assertThat(((Number) response.rows()[0][2]).longValue(), is((long) numThreads * numInserts));
+        assertThat((String) response.rows()[1][0], is("DE"));
+        assertThat(((Number) response.rows()[1][1]).longValue(), is((long) numThreads * numInserts));
+        assertThat(((Number) response.rows()[1][2]).longValue(), is(2L * numThreads * numInserts));
+
+        execute("select country, count(*) from visits group by country order by country");
+        assertThat(((Number) response.rows()[0][1]).longValue(), is((long) numThreads * numInserts));
+        assertThat(((Number) response.rows()[1][1]).longValue(), is((long) numThreads * numInserts));
+    }
+
+    @Test
+    public void testQueryReadsSourceTableUntilRollupIsRefreshed() throws Exception {
+        execute("create table clicks (country string, duration long) " +
+                "clustered into 2 shards with (number_of_replicas = 0)");
+        ensureGreen();
+        execute("create rollup clicks_by_country as " +
+                "select country, count(*) as cnt from clicks group by country");
+        ensureGreen();
+
+        for (int i = 1; i <= 5; i++) {
+            execute("insert into clicks (country, duration) values (?, ?)", new Object[]{"AT", i});
+            execute("refresh table clicks");
+            // either the rollup is stale and the source table is read or the rollup contains the row
+            execute("select country, count(*) from clicks group by country");
+            assertThat(response.rowCount(), is(1L));
+            assertThat(((Number) response.rows()[0][1]).longValue(), is((long) i));
+        }
+    }
+}
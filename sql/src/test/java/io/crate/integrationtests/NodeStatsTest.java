@@ -106,6 +106,22 @@ public class NodeStatsTest extends ClassLifecycleIntegrationTest {
         assertThat((Integer) queues[0], greaterThanOrEqualTo(0));
     }
 
+    @Test
+    public void testAdmission() throws Exception {
+        SQLResponse response = executor.exec("select admission from sys.nodes limit 1");
+
+        Object[] admission = (Object[]) response.rows()[0][0];
+        assertThat(admission.length, is(4));
+
+        Map<String, Object> keyLookup = (Map<String, Object>) admission[0];
+        assertThat((String) keyLookup.get("name"), is("key_lookup"));
+        assertThat((Integer) keyLookup.get("running"), greaterThanOrEqualTo(0));
+        assertThat((Integer) keyLookup.get("queued"), greaterThanOrEqualTo(0));
+        assertThat((Long) keyLookup.get("admitted"), greaterThanOrEqualTo(0L));
+        assertThat((Long) keyLookup.get("rejected"), greaterThanOrEqualTo(0L));
+        assertThat((Long) keyLookup.get("wait_time"), greaterThanOrEqualTo(0L));
+    }
+
     @Test
     public void testNetwork() throws Exception {
         SQLResponse response = executor.exec("select network from sys.nodes limit 1");
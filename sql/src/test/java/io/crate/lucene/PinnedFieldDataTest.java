@@ -0,0 +1,153 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.lucene;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.*;
+import org.apache.lucene.store.RAMDirectory;
+import org.elasticsearch.common.breaker.MemoryCircuitBreaker;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.index.fielddata.AtomicFieldData;
+import org.elasticsearch.index.shard.ShardId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PinnedFieldDataTest {
+
+    private final ShardId shardId = new ShardId("pinned", 0);
+
+    private MemoryCircuitBreaker breaker;
+    private IndexWriter writer;
+    private DirectoryReader reader;
+
+    @Before
+    public void prepare() throws Exception {
+        breaker = new MemoryCircuitBreaker(
+                new ByteSizeValue(1000), 1.0, Loggers.getLogger(PinnedFieldDataTest.class));
+        writer = new IndexWriter(new RAMDirectory(),
+                new IndexWriterConfig(Lucene.VERSION, new StandardAnalyzer()));
+        Document doc = new Document();
+        doc.add(new StringField("name", "Arthur", Field.Store.NO));
+        writer.addDocument(doc);
+        writer.commit();
+        reader = DirectoryReader.open(writer, true);
+    }
+
+    @After
+    public void cleanUp() throws Exception {
+        if (reader != null) {
+            reader.close();
+        }
+        if (writer != null) {
+            writer.close();
+            writer.getDirectory().close();
+        }
+    }
+
+    private static AtomicFieldData fieldData(long ramBytesUsed) {
+        AtomicFieldData fieldData = mock(AtomicFieldData.class);
+        when(fieldData.ramBytesUsed()).thenReturn(ramBytesUsed);
+        return fieldData;
+    }
+
+    private AtomicReader segment() {
+        return reader.leaves().get(0).reader();
+    }
+
+    @Test
+    public void testPin() throws Exception {
+        AtomicFieldData fieldData = fieldData(100L);
+        assertThat(PinnedFieldData.get(segment(), "name"), nullValue());
+
+        assertThat(PinnedFieldData.pin(shardId, segment(), "name", fieldData, breaker), is(true));
+        assertThat(PinnedFieldData.get(segment(), "name"), sameInstance(fieldData));
+        assertThat(PinnedFieldData.get(segment(), "other"), nullValue());
+        assertThat(breaker.getUsed(), is(100L));
+        assertThat(PinnedFieldData.ramBytesUsed(shardId), is(100L));
+        assertThat(PinnedFieldData.ramBytesUsed(new ShardId("pinned", 1)), is(0L));
+    }
+
+    @Test
+    public void testPinTwice() throws Exception {
+        AtomicFieldData fieldData = fieldData(100L);
+        assertThat(PinnedFieldData.pin(shardId, segment(), "name", fieldData, breaker), is(true));
+        assertThat(PinnedFieldData.pin(shardId, segment(), "name", fieldData(200L), breaker), is(false));
+
+        assertThat(PinnedFieldData.get(segment(), "name"), sameInstance(fieldData));
+        assertThat(breaker.getUsed(), is(100L));
+    }
+
+    @Test
+    public void testPinExceedingBreakerLimit() throws Exception {
+        assertThat(PinnedFieldData.pin(shardId, segment(), "name", fieldData(2000L), breaker), is(false));
+
+        assertThat(PinnedFieldData.get(segment(), "name"), nullValue());
+        assertThat(breaker.getUsed(), is(0L));
+        assertThat(PinnedFieldData.ramBytesUsed(shardId), is(0L));
+    }
+
+    @Test
+    public void testRetain() throws Exception {
+        AtomicFieldData name = fieldData(100L);
+        assertThat(PinnedFieldData.pin(shardId, segment(), "name", name, breaker), is(true));
+        assertThat(PinnedFieldData.pin(shardId, segment(), "other", fieldData(200L), breaker), is(true));
+
+        PinnedFieldData.retain("another_index", Collections.<String>emptySet());
+        assertThat(breaker.getUsed(), is(300L));
+
+        PinnedFieldData.retain("pinned", Collections.singleton("name"));
+        assertThat(PinnedFieldData.get(segment(), "name"), sameInstance(name));
+        assertThat(PinnedFieldData.get(segment(), "other"), nullValue());
+        assertThat(breaker.getUsed(), is(100L));
+        assertThat(PinnedFieldData.ramBytesUsed(shardId), is(100L));
+    }
+
+    @Test
+    public void testReleasedOnSegmentClose() throws Exception {
+        AtomicReader segment = segment();
+        assertThat(PinnedFieldData.pin(shardId, segment, "name", fieldData(100L), breaker), is(true));
+
+        reader.close();
+        reader = null;
+        writer.close();
+        writer.getDirectory().close();
+        writer = null;
+
+        assertThat(PinnedFieldData.get(segment, "name"), nullValue());
+        assertThat(breaker.getUsed(), is(0L));
+        assertThat(PinnedFieldData.ramBytesUsed(shardId), is(0L));
+    }
+}
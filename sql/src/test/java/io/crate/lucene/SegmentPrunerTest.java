@@ -0,0 +1,166 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.lucene;
+
+import io.crate.analyze.WhereClause;
+import io.crate.metadata.*;
+import io.crate.operation.operator.*;
+import io.crate.operation.predicate.IsNullPredicate;
+import io.crate.planner.RowGranularity;
+import io.crate.planner.symbol.Function;
+import io.crate.planner.symbol.Literal;
+import io.crate.planner.symbol.Reference;
+import io.crate.planner.symbol.Symbol;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.*;
+import org.apache.lucene.store.RAMDirectory;
+import org.elasticsearch.common.lucene.Lucene;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class SegmentPrunerTest {
+
+    private static final ReferenceInfo TS_INFO = new ReferenceInfo(
+            new ReferenceIdent(new TableIdent(null, "t"), "ts"), RowGranularity.DOC, DataTypes.TIMESTAMP);
+
+    private IndexWriter writer;
+    private DirectoryReader reader;
+
+    @Before
+    public void prepare() throws Exception {
+        writer = new IndexWriter(new RAMDirectory(),
+                new IndexWriterConfig(Lucene.VERSION, new StandardAnalyzer())
+                        .setMergePolicy(NoMergePolicy.INSTANCE));
+        // first segment: 100 - 199
+        for (long l = 100; l < 200; l++) {
+            addDoc(l);
+        }
+        writer.commit();
+        // second segment: 1000 - 1009 and a document without a value
+        for (long l = 1000; l < 1010; l++) {
+            addDoc(l);
+        }
+        addDoc(null);
+        writer.commit();
+        reader = DirectoryReader.open(writer, true);
+        assertThat(reader.leaves().size(), is(2));
+    }
+
+    private void addDoc(Long value) throws Exception {
+        Document doc = new Document();
+        doc.add(new StringField("_id", String.valueOf(value), Field.Store.NO));
+        if (value != null) {
+            doc.add(new LongField("ts", value, Field.Store.NO));
+        }
+        writer.addDocument(doc);
+    }
+
+    @After
+    public void cleanUp() throws Exception {
+        reader.close();
+        writer.close();
+        writer.getDirectory().close();
+    }
+
+    private static Function function(String name, Symbol... arguments) {
+        DataType[] argumentTypes = new DataType[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            argumentTypes[i] = arguments[i].valueType();
+        }
+        return new Function(
+                new FunctionInfo(new FunctionIdent(name, Arrays.asList(argumentTypes)), DataTypes.BOOLEAN),
+                Arrays.asList(arguments));
+    }
+
+    private static Symbol ts() {
+        return new Reference(TS_INFO);
+    }
+
+    private static Symbol value(long value) {
+        return Literal.newLiteral(DataTypes.TIMESTAMP, value);
+    }
+
+    private boolean[] canMatch(Function query) throws Exception {
+        SegmentPruner pruner = SegmentPruner.create(new WhereClause(query));
+        assertThat(pruner, notNullValue());
+        boolean[] result = new boolean[reader.leaves().size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = pruner.canMatch(reader.leaves().get(i).reader());
+        }
+        return result;
+    }
+
+    @Test
+    public void testColumnSynopsis() throws Exception {
+        ColumnSynopsis synopsis = ColumnSynopsis.of(reader.leaves().get(0).reader(), "ts", DataTypes.TIMESTAMP);
+        assertThat(synopsis.min(), is((Number) 100L));
+        assertThat(synopsis.max(), is((Number) 199L));
+        assertThat(synopsis.nullCount(), is(0L));
+
+        synopsis = ColumnSynopsis.of(reader.leaves().get(1).reader(), "ts", DataTypes.TIMESTAMP);
+        assertThat(synopsis.min(), is((Number) 1000L));
+        assertThat(synopsis.max(), is((Number) 1009L));
+        assertThat(synopsis.nullCount(), is(1L));
+
+        assertThat(ColumnSynopsis.of(reader.leaves().get(0).reader(), "unknown", DataTypes.LONG), nullValue());
+    }
+
+    @Test
+    public void testRangeConditions() throws Exception {
+        assertThat(canMatch(function(GtOperator.NAME, ts(), value(500L))), is(new boolean[]{false, true}));
+        assertThat(canMatch(function(LteOperator.NAME, ts(), value(100L))), is(new boolean[]{true, false}));
+        assertThat(canMatch(function(EqOperator.NAME, ts(), value(500L))), is(new boolean[]{false, false}));
+        // literal on the left side
+        assertThat(canMatch(function(GtOperator.NAME, value(1000L), ts())), is(new boolean[]{true, false}));
+
+        Function range = function(AndOperator.NAME,
+                function(GteOperator.NAME, ts(), value(150L)),
+                function(LtOperator.NAME, ts(), value(1000L)));
+        assertThat(canMatch(range), is(new boolean[]{true, false}));
+    }
+
+    @Test
+    public void testNullConditions() throws Exception {
+        assertThat(canMatch(function(IsNullPredicate.NAME, ts())), is(new boolean[]{false, true}));
+    }
+
+    @Test
+    public void testWhereClauseWithoutUsableConditions() throws Exception {
+        assertThat(SegmentPruner.create(WhereClause.MATCH_ALL), nullValue());
+        Function or = function(OrOperator.NAME,
+                function(GtOperator.NAME, ts(), value(500L)),
+                function(LtOperator.NAME, ts(), value(100L)));
+        assertThat(SegmentPruner.create(new WhereClause(or)), nullValue());
+    }
+}
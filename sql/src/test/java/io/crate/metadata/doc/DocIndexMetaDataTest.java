@@ -9,6 +9,7 @@ import io.crate.analyze.*;
 import io.crate.metadata.*;
 import io.crate.metadata.table.ColumnPolicy;
 import io.crate.metadata.table.SchemaInfo;
+import io.crate.operation.routing.ReplicaSelector;
 import io.crate.sql.parser.SqlParser;
 import io.crate.sql.tree.Statement;
 import io.crate.types.ArrayType;
@@ -709,12 +710,14 @@ public class DocIndexMetaDataTest {
         when(state.metaData()).thenReturn(metaData);
         when(clusterService.state()).thenReturn(state);
         TransportPutIndexTemplateAction transportPutIndexTemplateAction = mock(TransportPutIndexTemplateAction.class);
+        ReplicaSelector replicaSelector = mock(ReplicaSelector.class);
         CreateTableStatementAnalyzer analyzer = new CreateTableStatementAnalyzer(
             new ReferenceInfos(
                 ImmutableMap.<String, SchemaInfo>of("doc",
-                    new DocSchemaInfo(clusterService, transportPutIndexTemplateAction)),
+                    new DocSchemaInfo(clusterService, transportPutIndexTemplateAction, replicaSelector)),
                     clusterService,
-                    transportPutIndexTemplateAction),
+                    transportPutIndexTemplateAction,
+                    replicaSelector),
             new FulltextAnalyzerResolver(clusterService, mock(IndicesAnalysisService.class))
         );
 
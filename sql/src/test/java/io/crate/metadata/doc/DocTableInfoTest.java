@@ -40,7 +40,8 @@ public class DocTableInfoTest {
                 new BytesRef("0"),
                 ImmutableList.<ColumnIdent>of(),
                 ImmutableList.<PartitionName>of(),
-                ColumnPolicy.DYNAMIC);
+                ColumnPolicy.DYNAMIC,
+                ImmutableList.<RollupInfo>of());
 
         ReferenceInfo foobar = info.getReferenceInfo(new ColumnIdent("o", ImmutableList.of("foobar")));
         assertNull(foobar);
@@ -85,7 +86,8 @@ public class DocTableInfoTest {
                 new BytesRef("0"),
                 ImmutableList.<ColumnIdent>of(),
                 ImmutableList.<PartitionName>of(),
-                ColumnPolicy.DYNAMIC);
+                ColumnPolicy.DYNAMIC,
+                ImmutableList.<RollupInfo>of());
 
 
         ColumnIdent columnIdent = new ColumnIdent("foobar", Arrays.asList("foo", "bar"));
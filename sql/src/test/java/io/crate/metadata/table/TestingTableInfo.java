@@ -28,10 +28,15 @@ import io.crate.analyze.TableParameterInfo;
 import io.crate.analyze.WhereClause;
 import io.crate.exceptions.ColumnUnknownException;
 import io.crate.metadata.*;
+import io.crate.metadata.doc.DocSchemaInfo;
 import io.crate.metadata.doc.DocSysColumns;
+import io.crate.metadata.doc.DocTableInfo;
+import io.crate.metadata.doc.RollupInfo;
 import io.crate.planner.RowGranularity;
 import io.crate.planner.symbol.DynamicReference;
 import io.crate.types.DataType;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.cluster.ClusterService;
 import org.mockito.Answers;
 
 import javax.annotation.Nullable;
@@ -165,6 +170,33 @@ public class TestingTableInfo extends AbstractDynamicTableInfo {
             return this;
         }
 
+        /**
+         * build a {@link DocTableInfo} instead, to test features only available for doc tables
+         */
+        public DocTableInfo buildDocTableInfo(List<RollupInfo> rollups) {
+            addDocSysColumns();
+            List<ColumnIdent> primaryKeys = primaryKey.build();
+            return new DocTableInfo(
+                    mock(DocSchemaInfo.class, Answers.RETURNS_MOCKS.get()),
+                    ident,
+                    columns.build(),
+                    partitionedByColumns.build(),
+                    indexColumns.build(),
+                    references.build(),
+                    primaryKeys,
+                    clusteredBy,
+                    isAlias,
+                    primaryKeys.isEmpty(),
+                    new String[]{ident.esName()},
+                    mock(ClusterService.class),
+                    5,
+                    new BytesRef("0"),
+                    partitionedBy.build(),
+                    partitions.build(),
+                    columnPolicy,
+                    rollups);
+        }
+
         public TableInfo build() {
             addDocSysColumns();
             return new TestingTableInfo(
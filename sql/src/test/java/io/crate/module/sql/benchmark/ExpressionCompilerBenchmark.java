@@ -0,0 +1,154 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.module.sql.benchmark;
+
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.carrotsearch.junitbenchmarks.BenchmarkRule;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.Functions;
+import io.crate.metadata.Scalar;
+import io.crate.operation.ExpressionCompiler;
+import io.crate.operation.Input;
+import io.crate.operation.aggregation.FunctionExpression;
+import io.crate.operation.operator.AndOperator;
+import io.crate.operation.operator.GtOperator;
+import io.crate.operation.operator.LtOperator;
+import io.crate.operation.operator.OperatorModule;
+import io.crate.operation.predicate.PredicateModule;
+import io.crate.operation.scalar.ScalarFunctionModule;
+import io.crate.operation.scalar.arithmetic.AddFunction;
+import io.crate.operation.scalar.arithmetic.DivideFunction;
+import io.crate.operation.scalar.arithmetic.MultiplyFunction;
+import io.crate.planner.symbol.Function;
+import io.crate.planner.symbol.InputColumn;
+import io.crate.planner.symbol.Literal;
+import io.crate.planner.symbol.Symbol;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.inject.ModulesBuilder;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * compares a compiled filter with the same filter evaluated by a tree of {@link FunctionExpression}s
+ */
+@BenchmarkOptions(benchmarkRounds = 10, warmupRounds = 3)
+public class ExpressionCompilerBenchmark {
+
+    private static final int ROWS = 10_000_000;
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private static class Value implements Input<Object> {
+
+        private Object value;
+
+        @Override
+        public Object value() {
+            return value;
+        }
+    }
+
+    private final Value[] values = new Value[]{new Value(), new Value()};
+    private Functions functions;
+    private Function filter;
+
+    @Before
+    public void setUp() throws Exception {
+        functions = new ModulesBuilder().add(
+                new OperatorModule(),
+                new PredicateModule(),
+                new ScalarFunctionModule()
+        ).createInjector().getInstance(Functions.class);
+
+        InputColumn x = new InputColumn(0, DataTypes.LONG);
+        InputColumn y = new InputColumn(1, DataTypes.DOUBLE);
+        // (x * 3 + 1) / y > 2.5 and x < 9000000
+        filter = function(AndOperator.NAME,
+                function(GtOperator.NAME,
+                        function(DivideFunction.NAME,
+                                function(AddFunction.NAME,
+                                        function(MultiplyFunction.NAME, x, Literal.newLiteral(3L)),
+                                        Literal.newLiteral(1L)),
+                                y),
+                        Literal.newLiteral(2.5d)),
+                function(LtOperator.NAME, x, Literal.newLiteral(9_000_000L)));
+    }
+
+    private Function function(String name, Symbol... arguments) {
+        List<DataType> argumentTypes = new ArrayList<>(arguments.length);
+        for (Symbol argument : arguments) {
+            argumentTypes.add(argument.valueType());
+        }
+        return new Function(
+                functions.get(new FunctionIdent(name, argumentTypes)).info(), Arrays.asList(arguments));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Input<?> interpreted(Symbol symbol) {
+        if (symbol instanceof InputColumn) {
+            return values[((InputColumn) symbol).index()];
+        }
+        if (symbol instanceof Literal) {
+            return (Literal) symbol;
+        }
+        Function function = (Function) symbol;
+        Input[] arguments = new Input[function.arguments().size()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = interpreted(function.arguments().get(i));
+        }
+        return new FunctionExpression<>((Scalar) functions.get(function.info().ident()), arguments);
+    }
+
+    private int matches(Input<?> input) {
+        int matches = 0;
+        for (long i = 0; i < ROWS; i++) {
+            values[0].value = i;
+            values[1].value = (double) (i % 17) + 1.0d;
+            if (input.value() == Boolean.TRUE) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Test
+    public void testInterpreted() throws Exception {
+        matches(interpreted(filter));
+    }
+
+    @Test
+    public void testCompiled() throws Exception {
+        matches(new ExpressionCompiler(functions).compile(filter, new ExpressionCompiler.Leaves() {
+            @Override
+            public Input<?> input(Symbol symbol) {
+                return interpreted(symbol);
+            }
+        }));
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation;
+
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.Functions;
+import io.crate.metadata.Scalar;
+import io.crate.operation.aggregation.FunctionExpression;
+import io.crate.operation.operator.*;
+import io.crate.operation.predicate.IsNullPredicate;
+import io.crate.operation.predicate.NotPredicate;
+import io.crate.operation.predicate.PredicateModule;
+import io.crate.operation.scalar.ScalarFunctionModule;
+import io.crate.operation.scalar.arithmetic.*;
+import io.crate.operation.scalar.cast.ToLongFunction;
+import io.crate.planner.symbol.Function;
+import io.crate.planner.symbol.InputColumn;
+import io.crate.planner.symbol.Literal;
+import io.crate.planner.symbol.Symbol;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.inject.ModulesBuilder;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class ExpressionCompilerTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private static class Value implements Input<Object> {
+
+        private Object value;
+
+        @Override
+        public Object value() {
+            return value;
+        }
+    }
+
+    private final Value[] values = new Value[]{new Value(), new Value()};
+    private final ExpressionCompiler.Leaves leaves = new ExpressionCompiler.Leaves() {
+        @Override
+        public Input<?> input(Symbol symbol) {
+            return interpreted(symbol);
+        }
+    };
+
+    private Functions functions;
+    private ExpressionCompiler compiler;
+
+    @Before
+    public void setUp() throws Exception {
+        functions = new ModulesBuilder().add(
+                new OperatorModule(),
+                new PredicateModule(),
+                new ScalarFunctionModule()
+        ).createInjector().getInstance(Functions.class);
+        compiler = new ExpressionCompiler(functions);
+    }
+
+    private Function function(String name, Symbol... arguments) {
+        List<DataType> argumentTypes = new ArrayList<>(arguments.length);
+        for (Symbol argument : arguments) {
+            argumentTypes.add(argument.valueType());
+        }
+        return new Function(
+                functions.get(new FunctionIdent(name, argumentTypes)).info(), Arrays.asList(arguments));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Input<?> interpreted(Symbol symbol) {
+        if (symbol instanceof InputColumn) {
+            return values[((InputColumn) symbol).index()];
+        }
+        if (symbol instanceof Literal) {
+            return (Literal) symbol;
+        }
+        Function function = (Function) symbol;
+        Input[] arguments = new Input[function.arguments().size()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = interpreted(function.arguments().get(i));
+        }
+        return new FunctionExpression<>((Scalar) functions.get(function.info().ident()), arguments);
+    }
+
+    /**
+     * evaluates the function compiled and interpreted for all combinations of the given values
+     */
+    private void assertCompiledLikeInterpreted(Function function, Object[] firstValues, Object[] secondValues) {
+        Input<?> compiled = compiler.compile(function, leaves);
+        assertThat(compiled, notNullValue());
+        Input<?> interpreted = interpreted(function);
+        for (Object first : firstValues) {
+            for (Object second : secondValues) {
+                values[0].value = first;
+                values[1].value = second;
+                assertThat(function + " with " + first + ", " + second,
+                        compiled.value(), is((Object) interpreted.value()));
+            }
+        }
+    }
+
+    @Test
+    public void testLongArithmetic() throws Exception {
+        Object[] longs = new Object[]{null, 0L, 7L, -3L, Long.MAX_VALUE};
+        InputColumn x = new InputColumn(0, DataTypes.LONG);
+        InputColumn y = new InputColumn(1, DataTypes.LONG);
+        for (String name : Arrays.asList(AddFunction.NAME, SubtractFunction.NAME, MultiplyFunction.NAME)) {
+            assertCompiledLikeInterpreted(function(name, x, y), longs, longs);
+        }
+        Object[] nonZero = new Object[]{null, 2L, -3L};
+        assertCompiledLikeInterpreted(function(DivideFunction.NAME, x, y), longs, nonZero);
+        assertCompiledLikeInterpreted(function(ModulusFunction.NAME, x, y), longs, nonZero);
+    }
+
+    @Test
+    public void testMixedArithmetic() throws Exception {
+        Object[] ints = new Object[]{null, 0, 5, -2};
+        Object[] doubles = new Object[]{null, 0.0d, 1.5d, -0.0d, Double.NaN};
+        InputColumn x = new InputColumn(0, DataTypes.INTEGER);
+        InputColumn y = new InputColumn(1, DataTypes.DOUBLE);
+        // (x * 2) / y + 0.5
+        Function function = function(AddFunction.NAME,
+                function(DivideFunction.NAME, function(MultiplyFunction.NAME, x, Literal.newLiteral(2L)), y),
+                Literal.newLiteral(0.5d));
+        assertThat(function.valueType(), is((DataType) DataTypes.DOUBLE));
+        assertCompiledLikeInterpreted(function, ints, doubles);
+    }
+
+    @Test
+    public void testComparison() throws Exception {
+        Object[] longs = new Object[]{null, -1L, 0L, 3L};
+        InputColumn x = new InputColumn(0, DataTypes.LONG);
+        InputColumn y = new InputColumn(1, DataTypes.LONG);
+        for (String name : Arrays.asList(EqOperator.NAME, LtOperator.NAME, LteOperator.NAME, GtOperator.NAME, GteOperator.NAME)) {
+            assertCompiledLikeInterpreted(
+                    function(name, function(AddFunction.NAME, x, Literal.newLiteral(1L)), y), longs, longs);
+        }
+    }
+
+    @Test
+    public void testDoubleComparison() throws Exception {
+        Object[] doubles = new Object[]{null, -1.0d, -0.0d, 0.0d, 2.5d, Double.NaN, Double.POSITIVE_INFINITY};
+        InputColumn x = new InputColumn(0, DataTypes.DOUBLE);
+        InputColumn y = new InputColumn(1, DataTypes.DOUBLE);
+        for (String name : Arrays.asList(EqOperator.NAME, LtOperator.NAME, LteOperator.NAME, GtOperator.NAME, GteOperator.NAME)) {
+            assertCompiledLikeInterpreted(function(name, x, y), doubles, doubles);
+        }
+    }
+
+    @Test
+    public void testThreeValuedLogic() throws Exception {
+        Object[] booleans = new Object[]{null, true, false};
+        InputColumn x = new InputColumn(0, DataTypes.BOOLEAN);
+        InputColumn y = new InputColumn(1, DataTypes.BOOLEAN);
+        assertCompiledLikeInterpreted(function(AndOperator.NAME, x, y), booleans, booleans);
+        assertCompiledLikeInterpreted(function(OrOperator.NAME, x, y), booleans, booleans);
+        assertCompiledLikeInterpreted(function(NotPredicate.NAME, function(OrOperator.NAME, x, y)), booleans, booleans);
+        assertCompiledLikeInterpreted(function(IsNullPredicate.NAME, function(AndOperator.NAME, x, y)), booleans, booleans);
+    }
+
+    @Test
+    public void testCast() throws Exception {
+        Object[] doubles = new Object[]{null, -1.7d, 0.0d, 2.5d};
+        InputColumn x = new InputColumn(0, DataTypes.DOUBLE);
+        assertCompiledLikeInterpreted(
+                function(GtOperator.NAME, function(ToLongFunction.NAME, x), Literal.newLiteral(1L)),
+                doubles, new Object[]{null});
+    }
+
+    @Test
+    public void testUnsupportedArgumentIsEvaluatedAsLeaf() throws Exception {
+        InputColumn x = new InputColumn(0, DataTypes.LONG);
+        Function abs = function(AbsFunction.NAME, x);
+        assertThat(compiler.canCompile(abs), is(false));
+        assertCompiledLikeInterpreted(function(GtOperator.NAME, abs, Literal.newLiteral(2L)),
+                new Object[]{null, -3L, 1L}, new Object[]{null});
+    }
+
+    @Test
+    public void testUnsupportedFunctions() throws Exception {
+        InputColumn x = new InputColumn(0, DataTypes.STRING);
+        assertThat(compiler.canCompile(function(EqOperator.NAME, x, Literal.newLiteral("foo"))), is(false));
+        assertThat(compiler.compile(function(EqOperator.NAME, x, Literal.newLiteral("foo")), leaves), nullValue());
+    }
+
+    @Test
+    public void testLiterals() throws Exception {
+        Object[] booleans = new Object[]{null, true, false};
+        InputColumn x = new InputColumn(0, DataTypes.BOOLEAN);
+        InputColumn y = new InputColumn(1, DataTypes.LONG);
+        Function nullLiteral = function(AndOperator.NAME, x,
+                function(GtOperator.NAME, y, Literal.newLiteral(DataTypes.LONG, null)));
+        assertCompiledLikeInterpreted(nullLiteral, booleans, new Object[]{null, 1L});
+        assertCompiledLikeInterpreted(function(OrOperator.NAME, x, Literal.newLiteral(false)), booleans, new Object[]{null});
+        assertCompiledLikeInterpreted(function(OrOperator.NAME, x, Literal.newLiteral(true)), booleans, new Object[]{null});
+    }
+
+    @Test
+    public void testGeneratedClassIsSharedBySameStructure() throws Exception {
+        InputColumn x = new InputColumn(0, DataTypes.LONG);
+        Input<?> first = compiler.compile(function(GtOperator.NAME, x, Literal.newLiteral(1L)), leaves);
+        Input<?> second = compiler.compile(function(GtOperator.NAME, x, Literal.newLiteral(5L)), leaves);
+        Input<?> other = compiler.compile(function(LtOperator.NAME, x, Literal.newLiteral(5L)), leaves);
+        assertThat(second.getClass(), is((Object) first.getClass()));
+        assertThat(other.getClass(), not((Object) first.getClass()));
+
+        values[0].value = 3L;
+        assertThat((Boolean) first.value(), is(true));
+        assertThat((Boolean) second.value(), is(false));
+    }
+
+    @Test
+    public void testLongDivisionByZero() throws Exception {
+        Function divide = function(DivideFunction.NAME,
+                new InputColumn(0, DataTypes.LONG), new InputColumn(1, DataTypes.LONG));
+        Input<?> compiled = compiler.compile(divide, leaves);
+        values[0].value = 1L;
+        values[1].value = 0L;
+        expectedException.expect(ArithmeticException.class);
+        compiled.value();
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.admission;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import io.crate.breaker.CrateCircuitBreakerService;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AdmissionControllerTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private CircuitBreaker breaker;
+    private CrateCircuitBreakerService breakerService;
+    private final List<String> executed = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        breaker = mock(CircuitBreaker.class);
+        when(breaker.getLimit()).thenReturn(1000L);
+        when(breaker.getUsed()).thenReturn(0L);
+        breakerService = mock(CrateCircuitBreakerService.class);
+        when(breakerService.getBreaker(CrateCircuitBreakerService.QUERY_BREAKER)).thenReturn(breaker);
+    }
+
+    private AdmissionController newController(int maxConcurrentJobs, int queueSize) {
+        return new AdmissionController(ImmutableSettings.EMPTY, maxConcurrentJobs, queueSize, 0.8d,
+                breakerService, MoreExecutors.sameThreadExecutor());
+    }
+
+    private AdmissionController.Ticket admit(AdmissionController controller,
+                                             QueryClass queryClass,
+                                             final String name) {
+        AdmissionController.Ticket ticket = controller.ticket(queryClass);
+        controller.admit(ticket, new Runnable() {
+            @Override
+            public void run() {
+                executed.add(name);
+            }
+        });
+        return ticket;
+    }
+
+    @Test
+    public void testAdmitRunsTaskIfSlotIsFree() throws Exception {
+        AdmissionController controller = newController(1, 10);
+        admit(controller, QueryClass.SMALL_SCAN, "s1");
+        admit(controller, QueryClass.SMALL_SCAN, "s2");
+
+        assertThat(executed, contains("s1"));
+        assertThat(controller.running(QueryClass.SMALL_SCAN), is(1));
+        assertThat(controller.queued(QueryClass.SMALL_SCAN), is(1));
+    }
+
+    @Test
+    public void testReleaseAdmitsNextStatement() throws Exception {
+        AdmissionController controller = newController(1, 10);
+        AdmissionController.Ticket first = admit(controller, QueryClass.WRITE, "w1");
+        admit(controller, QueryClass.WRITE, "w2");
+
+        controller.release(first);
+        // releasing twice must not free another slot
+        controller.release(first);
+
+        assertThat(executed, contains("w1", "w2"));
+        assertThat(controller.running(QueryClass.WRITE), is(1));
+        assertThat(controller.queued(QueryClass.WRITE), is(0));
+        assertThat(controller.admitted(QueryClass.WRITE), is(2L));
+    }
+
+    @Test
+    public void testKeyLookupsAreNotBlockedByOtherClasses() throws Exception {
+        AdmissionController controller = newController(1, 10);
+        admit(controller, QueryClass.HEAVY_AGGREGATION, "h1");
+        admit(controller, QueryClass.HEAVY_AGGREGATION, "h2");
+        admit(controller, QueryClass.KEY_LOOKUP, "k1");
+
+        assertThat(executed, contains("h1", "k1"));
+    }
+
+    @Test
+    public void testWeightedFairQueuing() throws Exception {
+        AdmissionController controller = newController(1, 20);
+        Map<String, AdmissionController.Ticket> tickets = new HashMap<>();
+        tickets.put("running", admit(controller, QueryClass.HEAVY_AGGREGATION, "running"));
+        tickets.put("h1", admit(controller, QueryClass.HEAVY_AGGREGATION, "h1"));
+        tickets.put("h2", admit(controller, QueryClass.HEAVY_AGGREGATION, "h2"));
+        for (int i = 1; i <= 8; i++) {
+            tickets.put("s" + i, admit(controller, QueryClass.SMALL_SCAN, "s" + i));
+        }
+        // release the running statement until all are done
+        for (int i = 0; i < executed.size(); i++) {
+            controller.release(tickets.get(executed.get(i)));
+        }
+
+        // small scans get 4 times the share of heavy aggregations
+        assertThat(executed, contains("running", "s1", "s2", "s3", "s4", "s5", "s6", "s7", "s8", "h1", "h2"));
+    }
+
+    @Test
+    public void testMemoryBudgetHoldsBackStatements() throws Exception {
+        AdmissionController controller = newController(4, 10);
+        AdmissionController.Ticket first = admit(controller, QueryClass.HEAVY_AGGREGATION, "h1");
+
+        when(breaker.getUsed()).thenReturn(900L);
+        admit(controller, QueryClass.HEAVY_AGGREGATION, "h2");
+        admit(controller, QueryClass.KEY_LOOKUP, "k1");
+        assertThat(executed, contains("h1", "k1"));
+        assertThat(controller.queued(QueryClass.HEAVY_AGGREGATION), is(1));
+
+        // the last running statement is released, the next one is admitted regardless of the budget
+        controller.release(first);
+        assertThat(executed, contains("h1", "k1", "h2"));
+    }
+
+    @Test
+    public void testReleaseQueuedStatement() throws Exception {
+        AdmissionController controller = newController(1, 10);
+        AdmissionController.Ticket first = admit(controller, QueryClass.SMALL_SCAN, "s1");
+        AdmissionController.Ticket second = admit(controller, QueryClass.SMALL_SCAN, "s2");
+
+        controller.release(second);
+        assertThat(controller.queued(QueryClass.SMALL_SCAN), is(0));
+
+        controller.release(first);
+        assertThat(executed, contains("s1"));
+        assertThat(controller.running(QueryClass.SMALL_SCAN), is(0));
+    }
+
+    @Test
+    public void testRejectIfQueueIsFull() throws Exception {
+        AdmissionController controller = newController(1, 1);
+        admit(controller, QueryClass.SMALL_SCAN, "s1");
+        admit(controller, QueryClass.SMALL_SCAN, "s2");
+
+        // key lookups have free slots and aren't rejected
+        admit(controller, QueryClass.KEY_LOOKUP, "k1");
+        assertThat(executed, contains("s1", "k1"));
+
+        expectedException.expect(EsRejectedExecutionException.class);
+        expectedException.expectMessage("rejected execution of small_scan statement, " +
+                "admission queue with 1 statements is full");
+        try {
+            admit(controller, QueryClass.SMALL_SCAN, "s3");
+        } finally {
+            assertThat(controller.rejected(QueryClass.SMALL_SCAN), is(1L));
+            assertThat(controller.queued(QueryClass.SMALL_SCAN), is(1));
+        }
+    }
+}
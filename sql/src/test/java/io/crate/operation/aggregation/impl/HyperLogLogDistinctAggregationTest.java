@@ -0,0 +1,140 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.aggregation.impl;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.metadata.FunctionIdent;
+import io.crate.operation.Input;
+import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.operation.aggregation.AggregationTest;
+import io.crate.planner.symbol.Function;
+import io.crate.planner.symbol.Literal;
+import io.crate.planner.symbol.Reference;
+import io.crate.planner.symbol.Symbol;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class HyperLogLogDistinctAggregationTest extends AggregationTest {
+
+    private AggregationFunction<HyperLogLogDistinctAggregation.HllState, Long> aggregation(DataType... types) {
+        //noinspection unchecked
+        return (AggregationFunction<HyperLogLogDistinctAggregation.HllState, Long>) functions.get(
+                new FunctionIdent(HyperLogLogDistinctAggregation.NAME, ImmutableList.copyOf(types)));
+    }
+
+    private HyperLogLogDistinctAggregation.HllState iterate(
+            AggregationFunction<HyperLogLogDistinctAggregation.HllState, Long> impl, long from, long to) {
+        HyperLogLogDistinctAggregation.HllState state = impl.newState(ramAccountingContext);
+        for (long l = from; l < to; l++) {
+            state = impl.iterate(ramAccountingContext, state, Literal.newLiteral(l));
+        }
+        return state;
+    }
+
+    @Test
+    public void testReturnType() throws Exception {
+        assertThat(aggregation(DataTypes.STRING).info().returnType(), is((DataType) DataTypes.LONG));
+        assertThat(aggregation(DataTypes.DOUBLE, DataTypes.LONG).info().returnType(), is((DataType) DataTypes.LONG));
+    }
+
+    @Test
+    public void testSmallCardinality() throws Exception {
+        Object[][] result = executeAggregation(HyperLogLogDistinctAggregation.NAME, DataTypes.STRING,
+                new Object[][]{{new BytesRef("Youri")}, {new BytesRef("Ruben")}, {new BytesRef("Ruben")}, {null}});
+        assertThat((Long) result[0][0], is(2L));
+    }
+
+    @Test
+    public void testNoValues() throws Exception {
+        Object[][] result = executeAggregation(HyperLogLogDistinctAggregation.NAME, DataTypes.LONG, new Object[][]{});
+        assertThat((Long) result[0][0], is(0L));
+    }
+
+    @Test
+    public void testLargeCardinality() throws Exception {
+        AggregationFunction<HyperLogLogDistinctAggregation.HllState, Long> impl = aggregation(DataTypes.LONG);
+        HyperLogLogDistinctAggregation.HllState state = iterate(impl, 0, 100000);
+        assertThat(state.isSparse(), is(false));
+        long cardinality = impl.terminatePartial(ramAccountingContext, state);
+        assertThat(cardinality, greaterThan(97000L));
+        assertThat(cardinality, lessThan(103000L));
+    }
+
+    @Test
+    public void testPrecision() throws Exception {
+        AggregationFunction<HyperLogLogDistinctAggregation.HllState, Long> impl =
+                aggregation(DataTypes.LONG, DataTypes.LONG);
+        HyperLogLogDistinctAggregation.HllState state = impl.newState(ramAccountingContext);
+        Input precision = Literal.newLiteral(10L);
+        for (long l = 0; l < 200; l++) {
+            state = impl.iterate(ramAccountingContext, state, Literal.newLiteral(l), precision);
+        }
+        // 2^10 registers are used as soon as more than 1/8 of them are set
+        assertThat(state.isSparse(), is(false));
+        assertThat(state.sizeInBytes(), is(1024L));
+    }
+
+    @Test
+    public void testInvalidPrecision() throws Exception {
+        AggregationFunction<HyperLogLogDistinctAggregation.HllState, Long> impl =
+                aggregation(DataTypes.LONG, DataTypes.LONG);
+        Function function = new Function(impl.info(), Arrays.<Symbol>asList(
+                new Reference(), Literal.newLiteral(30L)));
+
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("precision of hyperloglog_distinct must be between 4 and 18");
+        impl.normalizeSymbol(function);
+    }
+
+    @Test
+    public void testReduceSerializedStates() throws Exception {
+        AggregationFunction<HyperLogLogDistinctAggregation.HllState, Long> impl = aggregation(DataTypes.LONG);
+        // one sparse and one dense state with overlapping values
+        HyperLogLogDistinctAggregation.HllState sparse = iterate(impl, 0, 1000);
+        HyperLogLogDistinctAggregation.HllState dense = iterate(impl, 500, 50000);
+        assertThat(sparse.isSparse(), is(true));
+        assertThat(dense.isSparse(), is(false));
+
+        HyperLogLogDistinctAggregation.HllState state = impl.newState(ramAccountingContext);
+        for (HyperLogLogDistinctAggregation.HllState partial : new HyperLogLogDistinctAggregation.HllState[]{sparse, dense}) {
+            BytesStreamOutput out = new BytesStreamOutput();
+            impl.partialType().streamer().writeValueTo(out, partial);
+            HyperLogLogDistinctAggregation.HllState received = (HyperLogLogDistinctAggregation.HllState)
+                    impl.partialType().streamer().readValueFrom(new BytesStreamInput(out.bytes()));
+            assertThat(received.cardinality(), is(partial.cardinality()));
+            state = impl.reduce(ramAccountingContext, state, received);
+        }
+        long cardinality = impl.terminatePartial(ramAccountingContext, state);
+        assertThat(cardinality, greaterThan(48500L));
+        assertThat(cardinality, lessThan(51500L));
+    }
+}
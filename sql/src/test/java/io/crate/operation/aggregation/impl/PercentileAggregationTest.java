@@ -0,0 +1,129 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.aggregation.impl;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.metadata.FunctionIdent;
+import io.crate.operation.Input;
+import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.operation.aggregation.AggregationTest;
+import io.crate.planner.symbol.Function;
+import io.crate.planner.symbol.Literal;
+import io.crate.planner.symbol.Reference;
+import io.crate.planner.symbol.Symbol;
+import io.crate.types.ArrayType;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class PercentileAggregationTest extends AggregationTest {
+
+    private static final DataType DOUBLE_ARRAY = new ArrayType(DataTypes.DOUBLE);
+
+    private AggregationFunction<PercentileAggregation.PercentileState, Object> aggregation(DataType... types) {
+        //noinspection unchecked
+        return (AggregationFunction<PercentileAggregation.PercentileState, Object>) functions.get(
+                new FunctionIdent(PercentileAggregation.NAME, ImmutableList.copyOf(types)));
+    }
+
+    private PercentileAggregation.PercentileState iterate(
+            AggregationFunction<PercentileAggregation.PercentileState, Object> impl, Input fractions, long from, long to) {
+        PercentileAggregation.PercentileState state = impl.newState(ramAccountingContext);
+        for (long l = from; l < to; l++) {
+            state = impl.iterate(ramAccountingContext, state, Literal.newLiteral(l), fractions);
+        }
+        return state;
+    }
+
+    @Test
+    public void testReturnType() throws Exception {
+        assertThat(aggregation(DataTypes.LONG, DataTypes.DOUBLE).info().returnType(), is((DataType) DataTypes.DOUBLE));
+        assertThat(aggregation(DataTypes.DOUBLE, DOUBLE_ARRAY).info().returnType(), is(DOUBLE_ARRAY));
+    }
+
+    @Test
+    public void testSingleFraction() throws Exception {
+        AggregationFunction<PercentileAggregation.PercentileState, Object> impl =
+                aggregation(DataTypes.LONG, DataTypes.DOUBLE);
+        PercentileAggregation.PercentileState state = iterate(impl, Literal.newLiteral(0.5), 0, 100001);
+        assertThat((Double) impl.terminatePartial(ramAccountingContext, state), closeTo(50000.0, 500.0));
+    }
+
+    @Test
+    public void testMultipleFractions() throws Exception {
+        AggregationFunction<PercentileAggregation.PercentileState, Object> impl =
+                aggregation(DataTypes.LONG, DOUBLE_ARRAY);
+        Input fractions = Literal.newLiteral(DOUBLE_ARRAY, new Object[]{0.0, 0.95, 1.0});
+        Object[] result = (Object[]) impl.terminatePartial(ramAccountingContext, iterate(impl, fractions, 1, 1001));
+        assertThat(result.length, is(3));
+        assertThat((Double) result[0], is(1.0));
+        assertThat((Double) result[1], closeTo(950.0, 10.0));
+        assertThat((Double) result[2], is(1000.0));
+    }
+
+    @Test
+    public void testNoValues() throws Exception {
+        AggregationFunction<PercentileAggregation.PercentileState, Object> impl =
+                aggregation(DataTypes.LONG, DataTypes.DOUBLE);
+        PercentileAggregation.PercentileState state = impl.newState(ramAccountingContext);
+        state = impl.iterate(ramAccountingContext, state, Literal.newLiteral(DataTypes.LONG, null), Literal.newLiteral(0.5));
+        assertThat(impl.terminatePartial(ramAccountingContext, state), nullValue());
+    }
+
+    @Test
+    public void testInvalidFraction() throws Exception {
+        AggregationFunction<PercentileAggregation.PercentileState, Object> impl =
+                aggregation(DataTypes.LONG, DataTypes.DOUBLE);
+        Function function = new Function(impl.info(), Arrays.<Symbol>asList(
+                new Reference(), Literal.newLiteral(1.5)));
+
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("fraction of percentile must be between 0 and 1, got 1.5");
+        impl.normalizeSymbol(function);
+    }
+
+    @Test
+    public void testReduceSerializedStates() throws Exception {
+        AggregationFunction<PercentileAggregation.PercentileState, Object> impl =
+                aggregation(DataTypes.LONG, DataTypes.DOUBLE);
+        Input fraction = Literal.newLiteral(0.99);
+
+        PercentileAggregation.PercentileState state = impl.newState(ramAccountingContext);
+        for (int shard = 0; shard < 4; shard++) {
+            PercentileAggregation.PercentileState partial = iterate(impl, fraction, shard * 25000, (shard + 1) * 25000);
+            BytesStreamOutput out = new BytesStreamOutput();
+            impl.partialType().streamer().writeValueTo(out, partial);
+            PercentileAggregation.PercentileState received = (PercentileAggregation.PercentileState)
+                    impl.partialType().streamer().readValueFrom(new BytesStreamInput(out.bytes()));
+            state = impl.reduce(ramAccountingContext, state, received);
+        }
+        assertThat((Double) impl.terminatePartial(ramAccountingContext, state), closeTo(99000.0, 500.0));
+    }
+}
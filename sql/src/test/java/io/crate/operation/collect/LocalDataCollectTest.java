@@ -336,7 +336,8 @@ public class LocalDataCollectTest {
                             discoveryService,
                             functions,
                             new StatsTables(ImmutableSettings.EMPTY, nodeSettingsService))
-                )
+                ),
+                injector.getInstance(ShardResultCache.class)
         );
     }
 
@@ -91,7 +91,8 @@ public class MapSideDataCollectOperationTest {
                             functions,
                             new StatsTables(ImmutableSettings.EMPTY, nodeSettingsService)
                     )
-                )
+                ),
+                new ShardResultCache(ImmutableSettings.EMPTY, functions)
         );
 
         File tmpFile = File.createTempFile("fileUriCollectOperation", ".json");
@@ -0,0 +1,276 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.collect;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.executor.transport.TransportActionProvider;
+import io.crate.metadata.*;
+import io.crate.operation.ImplementationSymbolVisitor;
+import io.crate.operation.aggregation.impl.AggregationImplModule;
+import io.crate.operation.aggregation.impl.CountAggregation;
+import io.crate.operation.projectors.CollectingProjector;
+import io.crate.operation.projectors.ProjectionToProjectorVisitor;
+import io.crate.operation.projectors.Projector;
+import io.crate.planner.RowGranularity;
+import io.crate.planner.node.dql.CollectNode;
+import io.crate.planner.projection.GroupProjection;
+import io.crate.planner.projection.Projection;
+import io.crate.planner.projection.TopNProjection;
+import io.crate.planner.symbol.*;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.elasticsearch.common.inject.ModulesBuilder;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.index.shard.ShardId;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.mock;
+
+public class ShardResultCacheTest {
+
+    private static final RamAccountingContext RAM_ACCOUNTING_CONTEXT =
+            new RamAccountingContext("dummy", new NoopCircuitBreaker(CircuitBreaker.Name.FIELDDATA));
+    private static final ShardId SHARD_ID = new ShardId("t", 0);
+    private static final Reference NAME_REF = new Reference(new ReferenceInfo(
+            new ReferenceIdent(new TableIdent(null, "t"), "name"), RowGranularity.DOC, DataTypes.STRING));
+
+    private Functions functions;
+    private ProjectionToProjectorVisitor projectorVisitor;
+    private ShardResultCache cache;
+
+    @Before
+    public void prepare() throws Exception {
+        functions = new ModulesBuilder().add(new AggregationImplModule())
+                .createInjector().getInstance(Functions.class);
+        projectorVisitor = new ProjectionToProjectorVisitor(
+                mock(ClusterService.class),
+                ImmutableSettings.EMPTY,
+                mock(TransportActionProvider.class),
+                new ImplementationSymbolVisitor(mock(ReferenceResolver.class), functions, RowGranularity.CLUSTER));
+        cache = new ShardResultCache(ImmutableSettings.EMPTY, 1024 * 1024, functions);
+    }
+
+    private static GroupProjection countByName() {
+        return new GroupProjection(
+                Arrays.<Symbol>asList(new InputColumn(0, DataTypes.STRING)),
+                Arrays.asList(new Aggregation(
+                        CountAggregation.COUNT_STAR_FUNCTION,
+                        ImmutableList.<Symbol>of(),
+                        Aggregation.Step.ITER,
+                        Aggregation.Step.PARTIAL)));
+    }
+
+    private static CollectNode collectNode(List<Symbol> toCollect, List<Projection> projections) {
+        CollectNode collectNode = new CollectNode("collect", null, toCollect, projections);
+        collectNode.maxRowGranularity(RowGranularity.DOC);
+        return collectNode;
+    }
+
+    private ShardProjectorChain chain(CollectNode collectNode) {
+        return new ShardProjectorChain(1, collectNode.projections(), projectorVisitor, RAM_ACCOUNTING_CONTEXT, true);
+    }
+
+    private static Object[][] sorted(Object[][] rows) {
+        Arrays.sort(rows, new Comparator<Object[]>() {
+            @Override
+            public int compare(Object[] o1, Object[] o2) {
+                return ((BytesRef) o1[0]).compareTo((BytesRef) o2[0]);
+            }
+        });
+        return rows;
+    }
+
+    @Test
+    public void testPushDownPartialAggregation() throws Exception {
+        GroupProjection groupProjection = countByName();
+        TopNProjection topN = new TopNProjection(10, 0);
+        List<Projection> projections = ShardResultCache.pushDownPartialAggregation(
+                ImmutableList.<Projection>of(groupProjection, topN));
+
+        assertThat(projections.size(), is(3));
+        assertThat(projections.get(0), sameInstance((Projection) groupProjection));
+        GroupProjection merge = (GroupProjection) projections.get(1);
+        assertThat(merge.keys().get(0), instanceOf(InputColumn.class));
+        Aggregation aggregation = merge.values().get(0);
+        assertThat(aggregation.fromStep(), is(Aggregation.Step.PARTIAL));
+        assertThat(aggregation.toStep(), is(Aggregation.Step.PARTIAL));
+        assertThat(((InputColumn) aggregation.inputs().get(0)).index(), is(1));
+        assertThat(projections.get(2), sameInstance((Projection) topN));
+    }
+
+    @Test
+    public void testNoPushDownOfFinalAggregation() throws Exception {
+        GroupProjection groupProjection = new GroupProjection(
+                Arrays.<Symbol>asList(new InputColumn(0, DataTypes.STRING)),
+                Arrays.asList(new Aggregation(
+                        CountAggregation.COUNT_STAR_FUNCTION,
+                        ImmutableList.<Symbol>of(),
+                        Aggregation.Step.ITER,
+                        Aggregation.Step.FINAL)));
+        assertThat(ShardResultCache.pushDownPartialAggregation(
+                ImmutableList.<Projection>of(groupProjection)), nullValue());
+        assertThat(ShardResultCache.pushDownPartialAggregation(
+                ImmutableList.<Projection>of(new TopNProjection(10, 0))), nullValue());
+    }
+
+    @Test
+    public void testCachedOutputIsReplayed() throws Exception {
+        CollectNode collectNode = collectNode(
+                ImmutableList.<Symbol>of(NAME_REF), ImmutableList.<Projection>of(countByName()));
+
+        ShardProjectorChain chain = chain(collectNode);
+        ShardResultCache.Request request = cache.request("uuid", SHARD_ID, collectNode, chain);
+        assertThat(request, notNullValue());
+        assertThat(request.cachedCollector(1L, chain.shardOutputDownstream()), nullValue());
+
+        ShardResultCache.Recorder recorder = request.newRecorder();
+        recorder.readerVersion(1L);
+        Projector shardProjector = chain.newShardDownstreamProjector(projectorVisitor, recorder);
+        shardProjector.registerUpstream(null);
+        chain.startProjections();
+        shardProjector.setNextRow(new BytesRef("a"));
+        shardProjector.setNextRow(new BytesRef("b"));
+        shardProjector.setNextRow(new BytesRef("a"));
+        shardProjector.upstreamFinished();
+        Object[][] expected = sorted(chain.result().get());
+        assertThat(expected.length, is(2));
+        assertThat(cache.entries(), is(1L));
+        assertThat(cache.sizeInBytes(), greaterThan(0L));
+
+        ShardProjectorChain cachedChain = chain(collectNode);
+        ShardResultCache.Request cachedRequest = cache.request("uuid", SHARD_ID, collectNode, cachedChain);
+        CrateCollector collector = cachedRequest.cachedCollector(1L, cachedChain.shardOutputDownstream());
+        assertThat(collector, notNullValue());
+        cachedChain.startProjections();
+        collector.doCollect(RAM_ACCOUNTING_CONTEXT);
+        Object[][] cached = sorted(cachedChain.result().get());
+        assertThat(cached, is(expected));
+        assertThat((Long) cached[0][1], is(2L));
+
+        // a refresh changes the reader version
+        assertThat(cachedRequest.cachedCollector(2L, new CollectingProjector()), nullValue());
+        assertThat(cache.hits(), is(1L));
+        assertThat(cache.misses(), is(2L));
+    }
+
+    private static TopNProjection limit(int limit) {
+        TopNProjection topN = new TopNProjection(limit, 0);
+        topN.outputs(Arrays.<Symbol>asList(new InputColumn(0, DataTypes.STRING), new InputColumn(1, DataTypes.LONG)));
+        return topN;
+    }
+
+    private Object[][] collect(ShardResultCache.Request request, ShardProjectorChain chain, String... names) throws Exception {
+        ShardResultCache.Recorder recorder = request.newRecorder();
+        recorder.readerVersion(1L);
+        Projector shardProjector = chain.newShardDownstreamProjector(projectorVisitor, recorder);
+        shardProjector.registerUpstream(null);
+        chain.startProjections();
+        for (String name : names) {
+            shardProjector.setNextRow(new BytesRef(name));
+        }
+        shardProjector.upstreamFinished();
+        return chain.result().get();
+    }
+
+    @Test
+    public void testOutputCutShortByLimitIsNotCached() throws Exception {
+        // grouped on the shard, the limit is applied to the shard output directly
+        GroupProjection groupProjection = countByName();
+        groupProjection.setRequiredGranularity(RowGranularity.SHARD);
+        CollectNode limitOne = collectNode(
+                ImmutableList.<Symbol>of(NAME_REF), ImmutableList.<Projection>of(groupProjection, limit(1)));
+        ShardProjectorChain chain = chain(limitOne);
+        ShardResultCache.Request request = cache.request("uuid", SHARD_ID, limitOne, chain);
+        assertThat(request, notNullValue());
+        assertThat(collect(request, chain, "a", "b", "c").length, is(1));
+        assertThat(cache.entries(), is(0L));
+
+        CollectNode limitHundred = collectNode(
+                ImmutableList.<Symbol>of(NAME_REF), ImmutableList.<Projection>of(groupProjection, limit(100)));
+        chain = chain(limitHundred);
+        request = cache.request("uuid", SHARD_ID, limitHundred, chain);
+        assertThat(request.cachedCollector(1L, chain.shardOutputDownstream()), nullValue());
+        assertThat(collect(request, chain, "a", "b", "c").length, is(3));
+        assertThat(cache.entries(), is(1L));
+
+        // the complete output is cached and used for the smaller limit as well
+        chain = chain(limitOne);
+        request = cache.request("uuid", SHARD_ID, limitOne, chain);
+        CrateCollector collector = request.cachedCollector(1L, chain.shardOutputDownstream());
+        assertThat(collector, notNullValue());
+        chain.startProjections();
+        collector.doCollect(RAM_ACCOUNTING_CONTEXT);
+        assertThat(chain.result().get().length, is(1));
+    }
+
+    @Test
+    public void testFailedOutputIsNotCached() throws Exception {
+        CollectNode collectNode = collectNode(
+                ImmutableList.<Symbol>of(NAME_REF), ImmutableList.<Projection>of(countByName()));
+        ShardProjectorChain chain = chain(collectNode);
+        ShardResultCache.Request request = cache.request("uuid", SHARD_ID, collectNode, chain);
+
+        ShardResultCache.Recorder recorder = request.newRecorder();
+        recorder.readerVersion(1L);
+        Projector shardProjector = chain.newShardDownstreamProjector(projectorVisitor, recorder);
+        shardProjector.registerUpstream(null);
+        chain.startProjections();
+        shardProjector.setNextRow(new BytesRef("a"));
+        shardProjector.upstreamFailed(new RuntimeException("killed"));
+
+        assertThat(cache.entries(), is(0L));
+    }
+
+    @Test
+    public void testNonDeterministicFunctionsAreNotCached() throws Exception {
+        FunctionInfo randomInfo = new FunctionInfo(
+                new FunctionIdent("random", ImmutableList.<DataType>of()),
+                DataTypes.DOUBLE, FunctionInfo.Type.SCALAR, false);
+        CollectNode collectNode = collectNode(
+                ImmutableList.<Symbol>of(new Function(randomInfo, ImmutableList.<Symbol>of())),
+                ImmutableList.<Projection>of(countByName()));
+
+        assertThat(cache.request("uuid", SHARD_ID, collectNode, chain(collectNode)), nullValue());
+    }
+
+    @Test
+    public void testDisabledCache() throws Exception {
+        ShardResultCache disabled = new ShardResultCache(ImmutableSettings.EMPTY, functions);
+        assertThat(disabled.enabled(), is(false));
+
+        CollectNode collectNode = collectNode(
+                ImmutableList.<Symbol>of(NAME_REF), ImmutableList.<Projection>of(countByName()));
+        assertThat(disabled.request("uuid", SHARD_ID, collectNode, chain(collectNode)), nullValue());
+    }
+}
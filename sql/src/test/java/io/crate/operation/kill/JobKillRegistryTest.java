@@ -0,0 +1,116 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.kill;
+
+import io.crate.breaker.RamAccountingContext;
+import org.elasticsearch.common.breaker.MemoryCircuitBreaker;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class JobKillRegistryTest {
+
+    private static class CountingKillable implements Killable {
+
+        final AtomicInteger kills = new AtomicInteger(0);
+
+        @Override
+        public void kill() {
+            kills.incrementAndGet();
+        }
+    }
+
+    @Test
+    public void testKillRegisteredOperations() throws Exception {
+        JobKillRegistry registry = new JobKillRegistry();
+        UUID jobId = UUID.randomUUID();
+        CountingKillable first = new CountingKillable();
+        CountingKillable second = new CountingKillable();
+        CountingKillable otherJob = new CountingKillable();
+        registry.register(jobId, first);
+        registry.register(jobId, second);
+        registry.register(UUID.randomUUID(), otherJob);
+
+        assertThat(registry.kill(jobId), is(2));
+        assertThat(first.kills.get(), is(1));
+        assertThat(second.kills.get(), is(1));
+        assertThat(otherJob.kills.get(), is(0));
+        assertThat(registry.isKilled(jobId), is(true));
+
+        // operations are only killed once
+        assertThat(registry.kill(jobId), is(0));
+        assertThat(first.kills.get(), is(1));
+    }
+
+    @Test
+    public void testUnregisteredOperationIsNotKilled() throws Exception {
+        JobKillRegistry registry = new JobKillRegistry();
+        UUID jobId = UUID.randomUUID();
+        CountingKillable killable = new CountingKillable();
+        registry.register(jobId, killable);
+        registry.unregister(jobId, killable);
+
+        assertThat(registry.kill(jobId), is(0));
+        assertThat(killable.kills.get(), is(0));
+    }
+
+    @Test
+    public void testRegisterAfterKillKillsImmediately() throws Exception {
+        JobKillRegistry registry = new JobKillRegistry();
+        UUID jobId = UUID.randomUUID();
+        assertThat(registry.isKilled(jobId), is(false));
+        registry.kill(jobId);
+
+        CountingKillable killable = new CountingKillable();
+        registry.register(jobId, killable);
+        assertThat(killable.kills.get(), is(1));
+    }
+
+    @Test
+    public void testKillKeepsAccountingUntilRamAccountingContextIsClosed() throws Exception {
+        MemoryCircuitBreaker breaker = new MemoryCircuitBreaker(
+                new ByteSizeValue(10, ByteSizeUnit.MB), 1.0, Loggers.getLogger(JobKillRegistryTest.class));
+        RamAccountingContext context = new RamAccountingContext("test", breaker);
+        context.addBytes(RamAccountingContext.FLUSH_BUFFER_SIZE);
+        assertThat(breaker.getUsed(), is(RamAccountingContext.FLUSH_BUFFER_SIZE));
+
+        JobKillRegistry registry = new JobKillRegistry();
+        UUID jobId = UUID.randomUUID();
+        registry.register(jobId, context);
+        registry.kill(jobId);
+
+        assertThat(context.killed(), is(true));
+        // the killed operation may still use memory until it notices the kill
+        context.addBytes(RamAccountingContext.FLUSH_BUFFER_SIZE);
+        assertThat(breaker.getUsed(), is(2 * RamAccountingContext.FLUSH_BUFFER_SIZE));
+
+        context.close();
+        assertThat(breaker.getUsed(), is(0L));
+    }
+}
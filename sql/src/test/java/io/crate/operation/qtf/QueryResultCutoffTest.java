@@ -0,0 +1,106 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.qtf;
+
+import io.crate.analyze.WhereClause;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldDocs;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class QueryResultCutoffTest {
+
+    private static TopDocs longDocs(boolean reverse, long... values) {
+        ScoreDoc[] docs = new ScoreDoc[values.length];
+        for (int i = 0; i < values.length; i++) {
+            docs[i] = new FieldDoc(i, Float.NaN, new Object[]{values[i]});
+        }
+        return new TopFieldDocs(values.length, docs,
+                new SortField[]{new SortField("x", SortField.Type.LONG, reverse)}, Float.NaN);
+    }
+
+    private static TopDocs scoreDocs(float... scores) {
+        ScoreDoc[] docs = new ScoreDoc[scores.length];
+        for (int i = 0; i < scores.length; i++) {
+            docs[i] = new ScoreDoc(i, scores[i]);
+        }
+        return new TopDocs(scores.length, docs, scores.length > 0 ? scores[0] : Float.NaN);
+    }
+
+    @Test
+    public void testUnorderedIsCompleteWithEnoughDocs() throws Exception {
+        QueryResultCutoff cutoff = new QueryResultCutoff(5, false);
+        assertThat(cutoff.offer(0, scoreDocs(1.0f, 1.0f, 1.0f)), is(true));
+        assertThat(cutoff.isComplete(), is(false));
+        assertThat(cutoff.offer(1, scoreDocs(1.0f, 1.0f)), is(true));
+        assertThat(cutoff.isComplete(), is(true));
+    }
+
+    @Test
+    public void testOrderedCutsOffShardsWhichSortAfterTopN() throws Exception {
+        QueryResultCutoff cutoff = new QueryResultCutoff(3, true);
+        assertThat(cutoff.offer(0, longDocs(false, 1L, 2L, 3L)), is(true));
+        assertThat(cutoff.offer(1, longDocs(false, 4L, 5L, 6L)), is(false));
+        // equal to the current bound, may still win the tie
+        assertThat(cutoff.offer(2, longDocs(false, 3L, 7L, 8L)), is(true));
+        assertThat(cutoff.offer(3, longDocs(false, 0L, 9L, 10L)), is(true));
+        // the bound is now 2
+        assertThat(cutoff.offer(4, longDocs(false, 3L)), is(false));
+        assertThat(cutoff.offer(5, longDocs(false)), is(false));
+        assertThat(cutoff.isComplete(), is(false));
+    }
+
+    @Test
+    public void testOrderedReverse() throws Exception {
+        QueryResultCutoff cutoff = new QueryResultCutoff(2, true);
+        assertThat(cutoff.offer(0, longDocs(true, 10L, 9L)), is(true));
+        assertThat(cutoff.offer(1, longDocs(true, 8L, 7L)), is(false));
+        assertThat(cutoff.offer(2, longDocs(true, 11L)), is(true));
+    }
+
+    @Test
+    public void testOrderedByScore() throws Exception {
+        QueryResultCutoff cutoff = new QueryResultCutoff(2, true);
+        assertThat(cutoff.offer(0, scoreDocs(3.0f, 2.0f)), is(true));
+        assertThat(cutoff.offer(1, scoreDocs(1.5f, 1.0f)), is(false));
+        assertThat(cutoff.offer(2, scoreDocs(2.5f)), is(true));
+    }
+
+    @Test
+    public void testEmptyShardsAreKeptUntilTopNIsFull() throws Exception {
+        QueryResultCutoff cutoff = new QueryResultCutoff(2, true);
+        assertThat(cutoff.offer(0, longDocs(false)), is(true));
+        assertThat(cutoff.offer(1, longDocs(false, 1L)), is(true));
+    }
+
+    @Test
+    public void testIsOrdered() throws Exception {
+        assertThat(QueryResultCutoff.isOrdered(true, WhereClause.MATCH_ALL), is(true));
+        assertThat(QueryResultCutoff.isOrdered(false, WhereClause.MATCH_ALL), is(false));
+    }
+}
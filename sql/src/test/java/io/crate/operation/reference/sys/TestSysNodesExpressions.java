@@ -24,12 +24,17 @@ import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
 import io.crate.Build;
 import io.crate.Version;
+import io.crate.breaker.CrateCircuitBreakerService;
+import io.crate.metadata.Functions;
 import io.crate.metadata.GlobalReferenceResolver;
 import io.crate.metadata.ReferenceIdent;
 import io.crate.metadata.ReferenceResolver;
 import io.crate.metadata.sys.SysExpression;
 import io.crate.metadata.sys.SysNodesTableInfo;
 import io.crate.operation.Input;
+import io.crate.operation.admission.AdmissionController;
+import io.crate.operation.collect.ShardResultCache;
+import io.crate.operation.routing.ReplicaSelector;
 import io.crate.operation.reference.sys.node.NodeVersionExpression;
 import io.crate.operation.reference.sys.node.SysNodeExpression;
 import io.crate.operation.reference.sys.node.SysNodeExpressionModule;
@@ -63,6 +68,7 @@ import org.elasticsearch.monitor.process.ProcessInfo;
 import org.elasticsearch.monitor.process.ProcessStats;
 import org.elasticsearch.monitor.sigar.SigarService;
 import org.elasticsearch.node.service.NodeService;
+import org.elasticsearch.node.settings.NodeSettingsService;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.hyperic.sigar.*;
 import org.junit.Before;
@@ -78,6 +84,7 @@ import java.util.Map;
 
 import static junit.framework.Assert.assertNull;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertEquals;
@@ -116,6 +123,12 @@ public class TestSysNodesExpressions {
             ClusterService clusterService = mock(ClusterService.class);
             bind(ClusterService.class).toInstance(clusterService);
 
+            ReplicaSelector replicaSelector = new ReplicaSelector(ImmutableSettings.EMPTY,
+                    clusterService, mock(NodeSettingsService.class));
+            long started = replicaSelector.requestStarted("node-2");
+            replicaSelector.requestFinished("node-2", started, 3);
+            bind(ReplicaSelector.class).toInstance(replicaSelector);
+
 
             OsService osService = mock(OsService.class);
             OsStats osStats = mock(OsStats.class);
@@ -280,6 +293,11 @@ public class TestSysNodesExpressions {
 
             ThreadPool threadPool = new ThreadPool(getClass().getName());
             bind(ThreadPool.class).toInstance(threadPool);
+
+            bind(AdmissionController.class).toInstance(new AdmissionController(ImmutableSettings.EMPTY,
+                    4, 10, 1.0d, mock(CrateCircuitBreakerService.class), threadPool.generic()));
+            bind(ShardResultCache.class).toInstance(
+                    new ShardResultCache(ImmutableSettings.EMPTY, 1024L, mock(Functions.class)));
         }
     }
 
@@ -523,6 +541,51 @@ public class TestSysNodesExpressions {
         assertEquals(1000L, (long) v.get("max_open_file_descriptors"));
     }
 
+    @Test
+    public void testAdmission() throws Exception {
+        ReferenceIdent ident = new ReferenceIdent(SysNodesTableInfo.IDENT, "admission");
+        SysObjectArrayReference admission = (SysObjectArrayReference) resolver.getImplementation(ident);
+
+        Object[] v = admission.value();
+        assertThat(v.length, is(4));
+        Map<String, Object> keyLookup = (Map<String, Object>) v[0];
+        assertThat((String) keyLookup.get("name"), is("key_lookup"));
+        assertThat((Integer) keyLookup.get("running"), is(0));
+        assertThat((Integer) keyLookup.get("queued"), is(0));
+        assertThat((Long) keyLookup.get("admitted"), is(0L));
+        assertThat((Long) keyLookup.get("rejected"), is(0L));
+        assertThat((Long) keyLookup.get("wait_time"), is(0L));
+        assertThat((String) ((Map<String, Object>) v[3]).get("name"), is("heavy_aggregation"));
+    }
+
+    @Test
+    public void testReplicaSelection() throws Exception {
+        ReferenceIdent ident = new ReferenceIdent(SysNodesTableInfo.IDENT, "replica_selection");
+        SysObjectArrayReference replicaSelection = (SysObjectArrayReference) resolver.getImplementation(ident);
+
+        Object[] v = replicaSelection.value();
+        assertThat(v.length, is(1));
+        Map<String, Object> stats = (Map<String, Object>) v[0];
+        assertThat((String) stats.get("node_id"), is("node-2"));
+        assertThat((Double) stats.get("response_time"), greaterThanOrEqualTo(0.0d));
+        assertThat((Double) stats.get("queue_size"), is(3.0d));
+        assertThat((Integer) stats.get("outstanding"), is(0));
+    }
+
+    @Test
+    public void testResultCache() throws Exception {
+        ReferenceIdent ident = new ReferenceIdent(SysNodesTableInfo.IDENT, "result_cache");
+        SysObjectReference resultCache = (SysObjectReference) resolver.getImplementation(ident);
+
+        Map<String, Object> v = resultCache.value();
+        assertEquals(1024L, v.get("max_size"));
+        assertEquals(0L, v.get("size"));
+        assertEquals(0L, v.get("entries"));
+        assertEquals(0L, v.get("hits"));
+        assertEquals(0L, v.get("misses"));
+        assertEquals(0L, v.get("evictions"));
+    }
+
     @Test
     public void testNestedBytesRefExpressionsString() throws Exception {
         ReferenceIdent ident = new ReferenceIdent(SysNodesTableInfo.IDENT, "version");
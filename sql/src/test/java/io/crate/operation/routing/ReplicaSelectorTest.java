@@ -0,0 +1,141 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.routing;
+
+import io.crate.metadata.settings.CrateSettings;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.routing.ImmutableShardRouting;
+import org.elasticsearch.cluster.routing.PlainShardIterator;
+import org.elasticsearch.cluster.routing.ShardIterator;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.cluster.routing.ShardRoutingState;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.node.settings.NodeSettingsService;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class ReplicaSelectorTest {
+
+    private ReplicaSelector adaptiveSelector;
+
+    @Before
+    public void setUp() throws Exception {
+        adaptiveSelector = newSelector(ImmutableSettings.builder()
+                .put(CrateSettings.ROUTING_SHARD_SELECTION.settingName(), ReplicaSelector.ADAPTIVE)
+                .build());
+    }
+
+    private static ReplicaSelector newSelector(Settings settings) {
+        return new ReplicaSelector(settings, mock(ClusterService.class), mock(NodeSettingsService.class));
+    }
+
+    private static ShardIterator shardIterator(String... nodeIds) {
+        List<ShardRouting> copies = new ArrayList<>(nodeIds.length);
+        for (int i = 0; i < nodeIds.length; i++) {
+            copies.add(new ImmutableShardRouting("t1", 0, nodeIds[i], i == 0, ShardRoutingState.STARTED, 1));
+        }
+        return new PlainShardIterator(new ShardId("t1", 0), copies);
+    }
+
+    private static void response(ReplicaSelector selector, String nodeId, long tookMillis, int queueSize) {
+        selector.requestStarted(nodeId);
+        selector.requestFinished(nodeId, System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(tookMillis), queueSize);
+    }
+
+    @Test
+    public void testDefaultSelectsFirstCopy() throws Exception {
+        ReplicaSelector selector = newSelector(ImmutableSettings.EMPTY);
+        assertThat(selector.adaptive(), is(false));
+        response(selector, "n1", 500, 20);
+        response(selector, "n2", 1, 0);
+
+        assertThat(selector.select(shardIterator("n1", "n2")).currentNodeId(), is("n1"));
+    }
+
+    @Test
+    public void testAdaptivePrefersLeastLoadedNode() throws Exception {
+        response(adaptiveSelector, "n1", 500, 20);
+        response(adaptiveSelector, "n2", 10, 0);
+
+        assertThat(adaptiveSelector.select(shardIterator("n1", "n2")).currentNodeId(), is("n2"));
+        assertThat(adaptiveSelector.select(shardIterator("n2", "n1")).currentNodeId(), is("n2"));
+    }
+
+    @Test
+    public void testOutstandingRequestsIncreaseRank() throws Exception {
+        response(adaptiveSelector, "n1", 10, 0);
+        response(adaptiveSelector, "n2", 10, 0);
+        adaptiveSelector.requestStarted("n1");
+
+        assertThat(adaptiveSelector.select(shardIterator("n1", "n2")).currentNodeId(), is("n2"));
+        assertThat(adaptiveSelector.nodeStats().get("n1").outstanding(), is(1));
+    }
+
+    @Test
+    public void testNodesWithoutStatsAreProbed() throws Exception {
+        response(adaptiveSelector, "n1", 10, 0);
+
+        assertThat(adaptiveSelector.select(shardIterator("n1", "n2")).currentNodeId(), is("n2"));
+    }
+
+    @Test
+    public void testOutstandingRequestsCountForNodesWithoutStats() throws Exception {
+        response(adaptiveSelector, "n1", 10, 0);
+        for (int i = 0; i < 3; i++) {
+            adaptiveSelector.requestStarted("n2");
+        }
+
+        assertThat(adaptiveSelector.select(shardIterator("n1", "n2")).currentNodeId(), is("n1"));
+        assertThat(adaptiveSelector.select(shardIterator("n2", "n1")).currentNodeId(), is("n1"));
+    }
+
+    @Test
+    public void testInactiveCopiesAreSkipped() throws Exception {
+        response(adaptiveSelector, "n1", 500, 20);
+        List<ShardRouting> copies = new ArrayList<>(2);
+        copies.add(new ImmutableShardRouting("t1", 0, "n1", true, ShardRoutingState.STARTED, 1));
+        copies.add(new ImmutableShardRouting("t1", 0, "n2", false, ShardRoutingState.INITIALIZING, 1));
+
+        ShardRouting selected = adaptiveSelector.select(new PlainShardIterator(new ShardId("t1", 0), copies));
+        assertThat(selected.currentNodeId(), is("n1"));
+    }
+
+    @Test
+    public void testMovingAverage() throws Exception {
+        response(adaptiveSelector, "n1", 100, 10);
+        response(adaptiveSelector, "n1", 100, 0);
+
+        ReplicaSelector.NodeStats stats = adaptiveSelector.nodeStats().get("n1");
+        assertThat(stats.queueSize(), is(7.0d));
+        assertThat(stats.outstanding(), is(0));
+    }
+}
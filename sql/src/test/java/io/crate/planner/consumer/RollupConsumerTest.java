@@ -0,0 +1,240 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.planner.consumer;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.crate.analyze.AnalysisMetaData;
+import io.crate.analyze.Analyzer;
+import io.crate.analyze.QueriedTable;
+import io.crate.analyze.SelectAnalyzedStatement;
+import io.crate.analyze.relations.AnalyzedRelation;
+import io.crate.metadata.*;
+import io.crate.metadata.doc.DocTableInfo;
+import io.crate.metadata.doc.RollupInfo;
+import io.crate.metadata.sys.MetaDataSysModule;
+import io.crate.metadata.table.SchemaInfo;
+import io.crate.metadata.table.TestingTableInfo;
+import io.crate.operation.aggregation.impl.AggregationImplModule;
+import io.crate.operation.operator.OperatorModule;
+import io.crate.operation.predicate.PredicateModule;
+import io.crate.operation.scalar.ScalarFunctionModule;
+import io.crate.planner.RowGranularity;
+import io.crate.planner.symbol.Function;
+import io.crate.planner.symbol.Reference;
+import io.crate.planner.symbol.Symbol;
+import io.crate.sql.parser.SqlParser;
+import io.crate.testing.MockedClusterServiceModule;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.inject.Injector;
+import org.elasticsearch.common.inject.ModulesBuilder;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RollupConsumerTest {
+
+    private static final Routing ROUTING = new Routing(ImmutableMap.<String, Map<String, Set<Integer>>>of(
+            "nodeOne", ImmutableMap.<String, Set<Integer>>of("t1", ImmutableSet.of(1, 2))));
+
+    private static final TableIdent METRICS_IDENT = new TableIdent(null, "metrics");
+    private static final TableIdent DAILY_IDENT = new TableIdent(null, "metrics_daily");
+    private static final TableIdent HOURLY_IDENT = new TableIdent(null, "metrics_hourly");
+
+    private static final RollupInfo DAILY = new RollupInfo(
+            DAILY_IDENT,
+            ImmutableList.of(new ColumnIdent("day"), new ColumnIdent("host")),
+            ImmutableList.of("day", "host"),
+            ImmutableList.of(
+                    new RollupInfo.Aggregate("count", null, "cnt"),
+                    new RollupInfo.Aggregate("count", new ColumnIdent("value"), "value_count"),
+                    new RollupInfo.Aggregate("sum", new ColumnIdent("value"), "value_sum"),
+                    new RollupInfo.Aggregate("min", new ColumnIdent("value"), "value_min"),
+                    new RollupInfo.Aggregate("max", new ColumnIdent("value"), "value_max")));
+
+    // the rollup table of this rollup doesn't exist (anymore)
+    private static final RollupInfo HOURLY = new RollupInfo(
+            HOURLY_IDENT,
+            ImmutableList.of(new ColumnIdent("host")),
+            ImmutableList.of("host"),
+            ImmutableList.of(new RollupInfo.Aggregate("count", null, "cnt")));
+
+    private static final DocTableInfo METRICS_INFO = TestingTableInfo.builder(METRICS_IDENT, RowGranularity.DOC, ROUTING)
+            .add("day", DataTypes.TIMESTAMP, null)
+            .add("host", DataTypes.STRING, null)
+            .add("value", DataTypes.DOUBLE, null)
+            .add("tag", DataTypes.STRING, null)
+            .buildDocTableInfo(ImmutableList.of(DAILY, HOURLY));
+
+    private static final DocTableInfo DAILY_INFO = TestingTableInfo.builder(DAILY_IDENT, RowGranularity.DOC, ROUTING)
+            .add("day", DataTypes.TIMESTAMP, null)
+            .add("host", DataTypes.STRING, null)
+            .add("cnt", DataTypes.LONG, null)
+            .add("value_count", DataTypes.LONG, null)
+            .add("value_sum", DataTypes.DOUBLE, null)
+            .add("value_min", DataTypes.DOUBLE, null)
+            .add("value_max", DataTypes.DOUBLE, null)
+            .buildDocTableInfo(ImmutableList.<RollupInfo>of());
+
+    static class TestMetaDataModule extends MetaDataModule {
+        @Override
+        protected void configure() {
+            bind(FulltextAnalyzerResolver.class).toInstance(mock(FulltextAnalyzerResolver.class));
+            super.configure();
+        }
+
+        @Override
+        protected void bindSchemas() {
+            super.bindSchemas();
+            SchemaInfo schemaInfo = mock(SchemaInfo.class);
+            when(schemaInfo.getTableInfo(METRICS_IDENT.name())).thenReturn(METRICS_INFO);
+            when(schemaInfo.getTableInfo(DAILY_IDENT.name())).thenReturn(DAILY_INFO);
+            schemaBinder.addBinding(ReferenceInfos.DEFAULT_SCHEMA_NAME).toInstance(schemaInfo);
+        }
+    }
+
+    private Analyzer analyzer;
+    private RollupConsumer consumer;
+
+    @Before
+    public void setUp() throws Exception {
+        Injector injector = new ModulesBuilder().add(
+                new MockedClusterServiceModule(),
+                new TestMetaDataModule(),
+                new MetaDataSysModule(),
+                new OperatorModule(),
+                new AggregationImplModule(),
+                new PredicateModule(),
+                new ScalarFunctionModule()
+        ).createInjector();
+        analyzer = injector.getInstance(Analyzer.class);
+        consumer = new RollupConsumer(injector.getInstance(AnalysisMetaData.class));
+    }
+
+    private QueriedTable consume(String statement) {
+        return consume(statement, ImmutableSet.of(DAILY_IDENT, HOURLY_IDENT));
+    }
+
+    private QueriedTable consume(String statement, Set<TableIdent> upToDateRollups) {
+        SelectAnalyzedStatement analyzedStatement = (SelectAnalyzedStatement) analyzer.analyze(
+                SqlParser.createStatement(statement)).analyzedStatement();
+        ConsumerContext context = new ConsumerContext(analyzedStatement.relation(), upToDateRollups);
+        if (!consumer.consume(analyzedStatement.relation(), context)) {
+            return null;
+        }
+        AnalyzedRelation rootRelation = context.rootRelation();
+        assertThat(rootRelation, instanceOf(QueriedTable.class));
+        return (QueriedTable) rootRelation;
+    }
+
+    private static String columnName(Symbol symbol) {
+        assertThat(symbol, instanceOf(Reference.class));
+        return ((Reference) symbol).info().ident().columnIdent().fqn();
+    }
+
+    private static String functionName(Symbol symbol) {
+        assertThat(symbol, instanceOf(Function.class));
+        return ((Function) symbol).info().ident().name();
+    }
+
+    @Test
+    public void testGroupByIsRewrittenToRollup() throws Exception {
+        QueriedTable rewritten = consume(
+                "select host, count(*), avg(value), min(value) from metrics where day > 0 group by host order by 2");
+        assertThat(rewritten, notNullValue());
+        assertThat(rewritten.tableRelation().tableInfo().ident(), is(DAILY_IDENT));
+        assertThat(rewritten.fields().size(), is(4));
+
+        assertThat(columnName(rewritten.querySpec().groupBy().get(0)), is("host"));
+        assertThat(columnName(rewritten.querySpec().outputs().get(0)), is("host"));
+
+        // count(*) -> cast(sum(cnt) as long)
+        Function count = (Function) rewritten.querySpec().outputs().get(1);
+        assertThat(count.valueType(), is(DataTypes.LONG));
+        assertThat(functionName(count.arguments().get(0)), is("sum"));
+        assertThat(columnName(((Function) count.arguments().get(0)).arguments().get(0)), is("cnt"));
+
+        // avg(value) -> sum(value_sum) / sum(value_count)
+        Function avg = (Function) rewritten.querySpec().outputs().get(2);
+        assertThat(functionName(avg), is("divide"));
+        assertThat(columnName(((Function) avg.arguments().get(0)).arguments().get(0)), is("value_sum"));
+        assertThat(columnName(((Function) avg.arguments().get(1)).arguments().get(0)), is("value_count"));
+
+        Function min = (Function) rewritten.querySpec().outputs().get(3);
+        assertThat(functionName(min), is("min"));
+        assertThat(columnName(min.arguments().get(0)), is("value_min"));
+
+        Function where = (Function) rewritten.querySpec().where().query();
+        assertThat(columnName(where.arguments().get(0)), is("day"));
+        assertThat(rewritten.querySpec().orderBy().orderBySymbols().get(0),
+                is(rewritten.querySpec().outputs().get(1)));
+    }
+
+    @Test
+    public void testGlobalAggregateIsRewrittenToRollup() throws Exception {
+        QueriedTable rewritten = consume("select sum(value), max(value), max(day) from metrics");
+        assertThat(rewritten, notNullValue());
+        assertThat(rewritten.tableRelation().tableInfo().ident(), is(DAILY_IDENT));
+        assertThat(columnName(((Function) rewritten.querySpec().outputs().get(2)).arguments().get(0)), is("day"));
+    }
+
+    @Test
+    public void testRollupNotUpToDateIsNotUsed() throws Exception {
+        assertThat(consume("select host, sum(value) from metrics group by host",
+                ImmutableSet.<TableIdent>of()), nullValue());
+        assertThat(consume("select host, sum(value) from metrics group by host",
+                ImmutableSet.of(HOURLY_IDENT)), nullValue());
+    }
+
+    @Test
+    public void testGlobalCountIsNotRewritten() throws Exception {
+        assertThat(consume("select count(*) from metrics"), nullValue());
+    }
+
+    @Test
+    public void testGroupByColumnNotInRollupIsNotRewritten() throws Exception {
+        assertThat(consume("select tag, count(*) from metrics group by tag"), nullValue());
+    }
+
+    @Test
+    public void testWhereOnAggregatedColumnIsNotRewritten() throws Exception {
+        assertThat(consume("select host, count(*) from metrics where value > 10 group by host"), nullValue());
+    }
+
+    @Test
+    public void testAggregationNotInRollupIsNotRewritten() throws Exception {
+        assertThat(consume("select host, count(tag) from metrics group by host"), nullValue());
+    }
+
+    @Test
+    public void testSelectWithoutAggregationIsNotRewritten() throws Exception {
+        assertThat(consume("select host from metrics"), nullValue());
+    }
+}